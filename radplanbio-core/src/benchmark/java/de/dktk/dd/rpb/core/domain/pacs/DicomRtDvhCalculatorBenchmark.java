@@ -0,0 +1,146 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DVH calculation of a structure set on a clinical sized dose grid
+ *
+ * Run with: mvn -P benchmark -pl radplanbio-core test-compile exec:exec
+ *
+ * @since 18 Oct 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DicomRtDvhCalculatorBenchmark {
+
+    //region Members
+
+    // Dose grid of 2.5 mm voxels
+    @Param({"128"})
+    public int gridSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private DicomRtDoseGrid grid;
+    private DicomRtStructureSet structureSet;
+
+    //endregion
+
+    //region Setup
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.pool = new ForkJoinPool(this.threads);
+
+        int frames = this.gridSize / 2;
+        double spacing = 2.5;
+        double[] frameZ = new double[frames];
+        float[] dose = new float[this.gridSize * this.gridSize * frames];
+        double centre = this.gridSize * spacing / 2;
+        for (int f = 0; f < frames; f++) {
+            frameZ[f] = f * spacing;
+            for (int r = 0; r < this.gridSize; r++) {
+                for (int c = 0; c < this.gridSize; c++) {
+                    double dx = c * spacing - centre;
+                    double dy = r * spacing - centre;
+                    dose[(f * this.gridSize + r) * this.gridSize + c] = (float) (60.0 * Math.exp(-(dx * dx + dy * dy) / 5000.0));
+                }
+            }
+        }
+        this.grid = new DicomRtDoseGrid(this.gridSize, this.gridSize, 0.0, 0.0, spacing, spacing, frameZ, dose);
+
+        // Body, target and organs at risk as circular contours on planes of 2.5 mm
+        double depth = (frames - 1) * spacing;
+        this.structureSet = new DicomRtStructureSet();
+        this.structureSet.put(1, new DicomRtStructureLayer(structure(1, centre, centre, centre * 0.9, 0.0, depth)));
+        this.structureSet.put(2, new DicomRtStructureLayer(structure(2, centre, centre, 30.0, depth * 0.3, depth * 0.7)));
+        this.structureSet.put(3, new DicomRtStructureLayer(structure(3, centre + 60.0, centre, 20.0, depth * 0.2, depth * 0.8)));
+        this.structureSet.put(4, new DicomRtStructureLayer(structure(4, centre - 60.0, centre + 20.0, 25.0, depth * 0.1, depth * 0.5)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.pool.shutdown();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    @Benchmark
+    public List<DicomRtDvh> calculateStructureSet() {
+        return new DicomRtDvhCalculator(this.pool, DicomRtDvhCalculator.DEFAULT_BIN_WIDTH).calculate(this.structureSet, this.grid);
+    }
+
+    //endregion
+
+    //region Helpers
+
+    /**
+     * Structure with circular contour (64 points) on planes from z to z
+     */
+    private static DicomRtStructure structure(int roiNumber, double x, double y, double radius, double fromZ, double toZ) {
+        DicomRtContourData.Builder builder = new DicomRtContourData.Builder();
+        for (double z = fromZ; z <= toZ; z += 2.5) {
+            double[] points = new double[64 * 3];
+            for (int i = 0; i < 64; i++) {
+                double angle = 2 * Math.PI * i / 64;
+                points[i * 3] = x + radius * Math.cos(angle);
+                points[i * 3 + 1] = y + radius * Math.sin(angle);
+                points[i * 3 + 2] = z;
+            }
+            builder.addContour("CLOSED_PLANAR", points);
+        }
+
+        DicomRtStructure structure = new DicomRtStructure();
+        structure.setRoiNumber(roiNumber);
+        structure.setContourData(builder.build());
+        structure.setThickness(structure.getContourData().getThickness());
+
+        return structure;
+    }
+
+    //endregion
+
+}
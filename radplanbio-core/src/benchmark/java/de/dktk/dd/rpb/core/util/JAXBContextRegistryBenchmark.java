@@ -0,0 +1,146 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.util;
+
+import de.dktk.dd.rpb.core.domain.edc.ClinicalData;
+import de.dktk.dd.rpb.core.domain.edc.EventData;
+import de.dktk.dd.rpb.core.domain.edc.FormData;
+import de.dktk.dd.rpb.core.domain.edc.ItemData;
+import de.dktk.dd.rpb.core.domain.edc.ItemGroupData;
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ODM marshalling and unmarshalling with pooled (un)marshallers of shared context compared to a fresh context
+ * per operation (as before JAXBContextRegistry)
+ *
+ * Run with: mvn -P benchmark -pl radplanbio-core test-compile exec:exec -Dbenchmark.includes=JAXBContextRegistryBenchmark
+ *
+ * @since 18 Oct 2026
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class JAXBContextRegistryBenchmark {
+
+    //region Members
+
+    // Study subjects in ODM document (each with one event, form and 20 items)
+    @Param({"10", "500"})
+    public int subjects;
+
+    private Odm odm;
+    private String odmXml;
+
+    //endregion
+
+    //region Setup
+
+    @Setup(Level.Trial)
+    public void setUp() throws JAXBException {
+        List<StudySubject> studySubjects = new ArrayList<>();
+        for (int s = 0; s < this.subjects; s++) {
+            List<ItemData> items = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                items.add(new ItemData("I_ITEM_" + i, Integer.toString(s * i)));
+            }
+            ItemGroupData itemGroupData = new ItemGroupData("IG_GROUP", "1");
+            itemGroupData.setItemDataList(items);
+            FormData formData = new FormData("F_FORM");
+            formData.setItemGroupDataList(Collections.singletonList(itemGroupData));
+            EventData eventData = new EventData("SE_BASELINE", "1");
+            eventData.setFormDataList(Collections.singletonList(formData));
+
+            StudySubject studySubject = new StudySubject();
+            studySubject.setSubjectKey("SS_" + s);
+            studySubject.setStudySubjectId("S-" + s);
+            studySubject.setStudyEventDataList(Collections.singletonList(eventData));
+            studySubjects.add(studySubject);
+        }
+
+        ClinicalData clinicalData = new ClinicalData("S_STUDY", "v1.0.0");
+        clinicalData.setStudySubjects(studySubjects);
+        this.odm = new Odm();
+        this.odm.setClinicalDataList(Collections.singletonList(clinicalData));
+
+        this.odmXml = this.marshalPooled();
+    }
+
+    //endregion
+
+    //region Benchmarks
+
+    @Benchmark
+    public String marshalPooled() throws JAXBException {
+        StringWriter sw = new StringWriter();
+        JAXBContextRegistry.marshal(Odm.class, m -> m.marshal(this.odm, sw));
+        return sw.toString();
+    }
+
+    @Benchmark
+    public String marshalFreshContext() throws JAXBException {
+        Marshaller marshaller = JAXBContext.newInstance(Odm.class).createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+
+        StringWriter sw = new StringWriter();
+        marshaller.marshal(this.odm, sw);
+        return sw.toString();
+    }
+
+    @Benchmark
+    public Odm unmarshalPooled() throws JAXBException {
+        return JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(new StringReader(this.odmXml)));
+    }
+
+    @Benchmark
+    public Odm unmarshalFreshContext() throws JAXBException {
+        return (Odm) JAXBContext.newInstance(Odm.class).createUnmarshaller().unmarshal(new StringReader(this.odmXml));
+    }
+
+    //endregion
+
+}
@@ -25,12 +25,20 @@ import de.dktk.dd.rpb.core.exception.DataBaseItemNotFoundException;
 import de.dktk.dd.rpb.core.util.Constants;
 import org.openclinica.ws.beans.SiteType;
 import org.openclinica.ws.beans.StudyType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.support.JdbcDaoSupport;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 /**
@@ -43,6 +51,25 @@ import java.util.*;
 @Singleton
 public class OpenClinicaDataDao extends JdbcDaoSupport {
 
+    //region Finals
+
+    // Formatters are immutable and thread safe, so they are shared by all conversions
+    private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(Constants.OC_DATEFORMAT);
+    private static final DateTimeFormatter timestampFormatter = DateTimeFormatter.ofPattern(Constants.OC_TIMESTAMPFORMAT);
+
+    //endregion
+
+    //region Members
+
+    // Rows fetched per round trip by subject loaders (PostgreSQL uses a cursor only within a transaction)
+    @Value("${oc.jdbc.fetchSize:1000}")
+    private int streamingFetchSize = 1000;
+
+    private volatile JdbcTemplate streamingJdbcTemplate;
+    private volatile TransactionTemplate streamingTransactionTemplate;
+
+    //endregion
+
     //region Methods
 
     //region UserAccount
@@ -724,11 +751,7 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "  WHERE s.unique_identifier = ?\n" +
                 "  ORDER BY ss.label";
 
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsStudySubjects = getJdbcTemplate().queryForList(sql, params);
-        List<StudySubject> results = convertDbResultsToStudySubjectList(rowsStudySubjects);
-
-        return results;
+        return streamingQuery(sql, new Object[]{studyIdentifier}, new StudySubjectRowMapper());
     }
 
     /**
@@ -756,11 +779,7 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "  WHERE s2.unique_identifier = ?\n" +
                 "  ORDER BY ss.label";
 
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsStudySubjects = getJdbcTemplate().queryForList(sql, params);
-        List<StudySubject> results = convertDbResultsToStudySubjectList(rowsStudySubjects);
-
-        return results;
+        return streamingQuery(sql, new Object[]{studyIdentifier}, new StudySubjectRowMapper());
     }
 
     public List<StudySubject> findStudySubjectsWithEventsAndTreatmentGroups(String studyIdentifier) {
@@ -781,32 +800,9 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "left join study s on s.study_id=ss.study_id\n" +
                 "where s.unique_identifier = ?\n";
 
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsTreatmentGroups = getJdbcTemplate().queryForList(sqlTreatmentGroupData, params);
-
-        HashMap<String, List<SubjectGroupData>> subjectIdToSubjectGroupDataMap = new HashMap<>();
-
-        if (rowsTreatmentGroups != null) {
-            for (Map<String, Object> row : rowsTreatmentGroups) {
-                String studySubjectId = (String) row.get("studysubjectid");
-                int studyGroupClassId = (int) row.get("studygroupclassid");
-                String studyGroupClassName = (String) row.get("studyGroupClassName");
-                String studyGroupName = (String) row.get("studygroupname");
-
-                SubjectGroupData subjectGroupData = new SubjectGroupData();
-                subjectGroupData.setStudyGroupClassID("SGC_" + String.valueOf(studyGroupClassId));
-                subjectGroupData.setStudyGroupClassName(studyGroupClassName);
-                subjectGroupData.setStudyGroupName(studyGroupName);
-
-                if (subjectIdToSubjectGroupDataMap.containsKey(studySubjectId)) {
-                    subjectIdToSubjectGroupDataMap.get(studySubjectId).add(subjectGroupData);
-                } else {
-                    List<SubjectGroupData> subjectGroupDataList = new ArrayList<>();
-                    subjectGroupDataList.add(subjectGroupData);
-                    subjectIdToSubjectGroupDataMap.put(studySubjectId, subjectGroupDataList);
-                }
-            }
-        }
+        SubjectGroupDataCallbackHandler handler = new SubjectGroupDataCallbackHandler();
+        streamingQuery(sqlTreatmentGroupData, new Object[]{studyIdentifier}, handler);
+        Map<String, List<SubjectGroupData>> subjectIdToSubjectGroupDataMap = handler.getResults();
 
         for (StudySubject subject : studySubjectList) {
             if (subjectIdToSubjectGroupDataMap.containsKey(subject.getStudySubjectId())) {
@@ -836,33 +832,9 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "LEFT JOIN STUDY s2 on s1.parent_study_id = s2.study_id\n" +
                 "WHERE s2.unique_identifier = ?\n";
 
-
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsTreatmentGroups = getJdbcTemplate().queryForList(sqlTreatmentGroupData, params);
-
-        HashMap<String, List<SubjectGroupData>> subjectIdToSubjectGroupDataMap = new HashMap<>();
-
-        if (rowsTreatmentGroups != null) {
-            for (Map<String, Object> row : rowsTreatmentGroups) {
-                String studySubjectId = (String) row.get("studysubjectid");
-                int studyGroupClassId = (int) row.get("studygroupclassid");
-                String studyGroupClassName = (String) row.get("studyGroupClassName");
-                String studyGroupName = (String) row.get("studygroupname");
-
-                SubjectGroupData subjectGroupData = new SubjectGroupData();
-                subjectGroupData.setStudyGroupClassID("SGC_" + String.valueOf(studyGroupClassId));
-                subjectGroupData.setStudyGroupClassName(studyGroupClassName);
-                subjectGroupData.setStudyGroupName(studyGroupName);
-
-                if (subjectIdToSubjectGroupDataMap.containsKey(studySubjectId)) {
-                    subjectIdToSubjectGroupDataMap.get(studySubjectId).add(subjectGroupData);
-                } else {
-                    List<SubjectGroupData> subjectGroupDataList = new ArrayList<>();
-                    subjectGroupDataList.add(subjectGroupData);
-                    subjectIdToSubjectGroupDataMap.put(studySubjectId, subjectGroupDataList);
-                }
-            }
-        }
+        SubjectGroupDataCallbackHandler handler = new SubjectGroupDataCallbackHandler();
+        streamingQuery(sqlTreatmentGroupData, new Object[]{studyIdentifier}, handler);
+        Map<String, List<SubjectGroupData>> subjectIdToSubjectGroupDataMap = handler.getResults();
 
         for (StudySubject subject : studySubjectList) {
             if (subjectIdToSubjectGroupDataMap.containsKey(subject.getStudySubjectId())) {
@@ -907,10 +879,9 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "  WHERE s.unique_identifier = ?\n" +
                 "  ORDER BY ss.label, sed.ordinal, ed.sample_ordinal";
 
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsStudySubjectEvents = getJdbcTemplate().queryForList(sqlEventData, params);
-
-        HashMap<String, List<EventData>> mapStudySubjectEvents = convertDbResultsToStudyEventHashMap(rowsStudySubjectEvents);
+        StudyEventCallbackHandler handler = new StudyEventCallbackHandler();
+        streamingQuery(sqlEventData, new Object[]{studyIdentifier}, handler);
+        Map<String, List<EventData>> mapStudySubjectEvents = handler.getResults();
 
         // Assign events
         for (StudySubject studySubject : results) {
@@ -957,10 +928,9 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "  WHERE s2.unique_identifier = ?\n" +
                 "  ORDER BY ss.label, sed.ordinal, ed.sample_ordinal";
 
-        Object[] params = {studyIdentifier};
-        List<Map<String, Object>> rowsStudySubjectEvents = getJdbcTemplate().queryForList(sqlEventData, params);
-
-        HashMap<String, List<EventData>> mapStudySubjectEvents = convertDbResultsToStudyEventHashMap(rowsStudySubjectEvents);
+        StudyEventCallbackHandler handler = new StudyEventCallbackHandler();
+        streamingQuery(sqlEventData, new Object[]{studyIdentifier}, handler);
+        Map<String, List<EventData>> mapStudySubjectEvents = handler.getResults();
 
         // Assign events
         for (StudySubject studySubject : results) {
@@ -972,6 +942,43 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
         return results;
     }
 
+    /**
+     * Get cheap change fingerprint of study subject data of the specified Study and its children (sites)
+     *
+     * Fingerprint consists of row count, latest update date and sum of PostgreSQL row versions (xmin) of the
+     * study_subject, subject, study_event and subject_group_map rows of the study. OpenClinica keeps date_updated
+     * only with day precision, the row versions change with every insert, update and delete of the rows.
+     *
+     * @param studyIdentifier identifier of the (parent) study
+     * @return fingerprint which changes whenever study subjects, their events or treatment groups change
+     */
+    public String getStudySubjectsFingerprint(String studyIdentifier) {
+
+        String sql = "WITH ss AS (\n" +
+                "  SELECT ss.study_subject_id, ss.subject_id, ss.date_updated, ss.xmin\n" +
+                "  FROM STUDY_SUBJECT ss\n" +
+                "  JOIN STUDY s on s.study_id = ss.study_id\n" +
+                "  LEFT JOIN STUDY parent on parent.study_id = s.parent_study_id\n" +
+                "  WHERE s.unique_identifier = ? OR parent.unique_identifier = ?\n" +
+                ")\n" +
+                "SELECT\n" +
+                "  (SELECT count(*) || ':' || coalesce(max(ss.date_updated)::text, '') || ':' || coalesce(sum(ss.xmin::text::bigint), 0)\n" +
+                "    FROM ss) as studySubjects,\n" +
+                "  (SELECT count(*) || ':' || coalesce(max(sub.date_updated)::text, '') || ':' || coalesce(sum(sub.xmin::text::bigint), 0)\n" +
+                "    FROM SUBJECT sub WHERE sub.subject_id IN (SELECT ss.subject_id FROM ss)) as subjects,\n" +
+                "  (SELECT count(*) || ':' || coalesce(max(se.date_updated)::text, '') || ':' || coalesce(sum(se.xmin::text::bigint), 0)\n" +
+                "    FROM STUDY_EVENT se WHERE se.study_subject_id IN (SELECT ss.study_subject_id FROM ss)) as studyEvents,\n" +
+                "  (SELECT count(*) || ':' || coalesce(max(sgm.date_updated)::text, '') || ':' || coalesce(sum(sgm.xmin::text::bigint), 0)\n" +
+                "    FROM SUBJECT_GROUP_MAP sgm WHERE sgm.study_subject_id IN (SELECT ss.study_subject_id FROM ss)) as subjectGroups";
+
+        Map<String, Object> row = getJdbcTemplate().queryForMap(sql, studyIdentifier, studyIdentifier);
+
+        return row.get("studySubjects") + "|" +
+                row.get("subjects") + "|" +
+                row.get("studyEvents") + "|" +
+                row.get("subjectGroups");
+    }
+
     //endregion
 
     //region EventData
@@ -1270,13 +1277,15 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
     // TODO: can be re-factored, DataQueryResult is not used anywhere (can be removed)
     public List<DataQueryResult> findItemData(String uniqueIdentifier, List<ItemDefinition> query, Boolean decodeItemValues) {
 
-        // Prepare content of IN statement for big SELECT based on query parameter list
-        String inQuery = "";
+        if (query == null || query.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Item OIDs for IN statement of big SELECT based on query parameter list
+        List<String> itemOidList = new ArrayList<>();
         for (ItemDefinition i : query) {
-            inQuery += "'" + i.getOid() + "', ";
+            itemOidList.add(i.getOid());
         }
-        // Remove last comma space
-        inQuery = inQuery.substring(0, inQuery.length() - 2);
 
         // Get main studyId
         String sql = "SELECT s.study_id as StudyId\n" +
@@ -1291,13 +1300,10 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "WHERE s.study_id = ? OR s.parent_study_id = ?";
 
         // Private key of study in OC database
-        String inStudy = "";
-        List<Map<String, Object>> studies = getJdbcTemplate().queryForList(sql, studyId, studyId);
-        for (Map<String, Object> study : studies) {
-            inStudy += "'" + study.get("StudyId") + "', ";
+        List<Integer> studyIdList = getJdbcTemplate().queryForList(sql, Integer.class, studyId, studyId);
+        if (studyIdList.isEmpty()) {
+            return new ArrayList<>();
         }
-        // Remove last comma space
-        inStudy = inStudy.substring(0, inStudy.length() - 2);
 
         sql = "SELECT ss.study_subject_id AS Id,\n" +
                 "ss.label AS StudySubjectLabel,\n" +
@@ -1390,7 +1396,7 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "AND ifm.crf_version_id = cls.crf_version_id\n" +
                 "AND id.value = cls.value\n" +
                 "\n" +
-                "WHERE ss.study_id IN (" + inStudy + ") AND i.oc_oid IN (" + inQuery + ") \n" +
+                "WHERE ss.study_id IN " + generateInStatement(studyIdList) + " AND i.oc_oid IN " + generateInStatement(itemOidList) + " \n" +
                 "ORDER BY\n" +
                 "ss.study_subject_id,\n" +
                 "s.unique_identifier,\n" +
@@ -1400,55 +1406,68 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
                 "id.ordinal,\n" +
                 "ifm.ordinal";
 
-        List<Map<String, Object>> rows = getJdbcTemplate().queryForList(sql);
+        List<Object> params = new ArrayList<>(studyIdList.size() + itemOidList.size());
+        params.addAll(studyIdList);
+        params.addAll(itemOidList);
 
-        // I need to create an object structure for displaying of query result
-        List<DataQueryResult> queryResults = new ArrayList<>();
-        StudySubject studySubject;
-        DataQueryResult data;
-        for (Map<String, Object> row : rows) {
+        // Rows are consumed while reading the result set and grouped by study subject
+        DataQueryResultCallbackHandler handler = new DataQueryResultCallbackHandler(decodeItemValues);
+        getJdbcTemplate().query(sql, params.toArray(), handler);
 
-            // Subject as entity to group the results according to
-            studySubject = new StudySubject();
-            studySubject.setId((Integer) row.get("Id"));
-            studySubject.setStudySubjectId((String) row.get("StudySubjectLabel"));
-            studySubject.setPid((String) row.get("PersonId"));
+        List<DataQueryResult> queryResults = handler.getResults();
+        return queryResults;
+    }
 
-            data = OpenClinicaDataDao.getByStudySubject(queryResults, studySubject);
-            // Results for such subject does not exist (need to create a new one)
-            if (data == null) {
-                data = new DataQueryResult();
-                queryResults.add(data);
-            }
+    //endregion
 
-            data.setStudySubject(studySubject);
+    //region Helpers
 
-            // Data Item
-            ItemDefinition itemDefinition = new ItemDefinition(decodeItemValues);
-            itemDefinition.setId((Integer) row.get("ItemID"));
-            itemDefinition.setOid((String) row.get("ItemOID"));
-            itemDefinition.setName((String) row.get("ItemName"));
-            itemDefinition.setLabel((String) row.get("ItemLabel"));
-            itemDefinition.setRightText((String) row.get("ItemRightText"));
-            itemDefinition.setDescription((String) row.get("ItemDescription"));
-            itemDefinition.setValue((String) row.get("ItemValue"));
-            if (row.get("ItemDecode") != null) {
-                itemDefinition.setDecodedValue((String) row.get("ItemDecode"));
-            }
-            itemDefinition.setDataType((String) row.get("ItemType"));
-            itemDefinition.setRepeatItemRow((Integer) row.get("RepeatItemRow"));
-            itemDefinition.setUnits((String) row.get("ItemUnits"));
-            itemDefinition.setIsPhi((Boolean) row.get("ItemPhi"));
-            itemDefinition.setIsRequired((Boolean) row.get("ItemRequired"));
-            data.addDataItem(itemDefinition);
+    /**
+     * Query for loaders of large result sets (all subjects of a study), rows are fetched in chunks and mapped
+     * directly from the result set
+     */
+    private <T> List<T> streamingQuery(final String sql, final Object[] args, final RowMapper<T> rowMapper) {
+        return getStreamingTransactionTemplate().execute(
+                status -> getStreamingJdbcTemplate().query(sql, args, rowMapper)
+        );
+    }
+
+    /**
+     * Query for loaders of large result sets (all subjects of a study), rows are fetched in chunks and handed
+     * to the callback handler directly from the result set
+     */
+    private void streamingQuery(final String sql, final Object[] args, final RowCallbackHandler handler) {
+        getStreamingTransactionTemplate().execute(status -> {
+            getStreamingJdbcTemplate().query(sql, args, handler);
+            return null;
+        });
+    }
+
+    private JdbcTemplate getStreamingJdbcTemplate() {
+        JdbcTemplate template = this.streamingJdbcTemplate;
+        if (template == null) {
+            template = new JdbcTemplate(getDataSource());
+            template.setFetchSize(this.streamingFetchSize);
+            this.streamingJdbcTemplate = template;
         }
 
-        return queryResults;
+        return template;
     }
 
-    //endregion
+    /**
+     * OC data source works in auto commit mode and PostgreSQL driver ignores the fetch size outside of a transaction
+     * (whole result set is loaded at once), so streaming queries run in a read only transaction on their connection
+     */
+    private TransactionTemplate getStreamingTransactionTemplate() {
+        TransactionTemplate template = this.streamingTransactionTemplate;
+        if (template == null) {
+            template = new TransactionTemplate(new DataSourceTransactionManager(getDataSource()));
+            template.setReadOnly(true);
+            this.streamingTransactionTemplate = template;
+        }
 
-    //region Helpers
+        return template;
+    }
 
     public static List<Study> convertDbResultsToStudyList(List<Map<String, Object>> rows) {
         List<Study> studies = new ArrayList<>();
@@ -1681,9 +1700,7 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
     public static String convertTimestampToString(Timestamp timestamp) {
         String result = "";
         if (timestamp != null) {
-            Date date = new Date(timestamp.getTime());
-            SimpleDateFormat sdf = new SimpleDateFormat(Constants.OC_TIMESTAMPFORMAT);
-            result = sdf.format(date);
+            result = timestampFormatter.format(timestamp.toLocalDateTime());
         }
         return result;
     }
@@ -1691,9 +1708,7 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
     public static String convertDbDateToString(java.sql.Date dbDate) {
         String result = "";
         if (dbDate != null) {
-            Date date = new Date(dbDate.getTime());
-            SimpleDateFormat sdf = new SimpleDateFormat(Constants.OC_DATEFORMAT);
-            result = sdf.format(date);
+            result = dateFormatter.format(dbDate.toLocalDate());
         }
         return result;
     }
@@ -1709,10 +1724,16 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
     }
 
 
+    /**
+     * Generate parametrized IN statement with one placeholder per list element, an empty list yields (NULL) which
+     * matches no rows instead of an invalid statement
+     */
     public static <T> String generateInStatement(List<T> objectList) {
         StringBuilder inStatement = new StringBuilder();
 
-        if (objectList != null) {
+        if (objectList != null && objectList.isEmpty()) {
+            inStatement.append("(NULL)");
+        } else if (objectList != null) {
             inStatement.append("(");
             int i = 0;
             for (T o : objectList) {
@@ -1732,4 +1753,160 @@ public class OpenClinicaDataDao extends JdbcDaoSupport {
 
     //endregion
 
+    //region Inner classes
+
+    /**
+     * Maps study subject row (see findStudySubjects) to StudySubject
+     */
+    static class StudySubjectRowMapper implements RowMapper<StudySubject> {
+
+        @Override
+        public StudySubject mapRow(ResultSet rs, int rowNum) throws SQLException {
+            StudySubject ss = new StudySubject();
+
+            ss.setId((Integer) rs.getObject("id"));
+            ss.setStudySubjectId(rs.getString("studySubjectId"));
+            ss.setSecondaryId(rs.getString("secondaryId"));
+            ss.setPid(rs.getString("pid"));
+            ss.setSubjectKey(rs.getString("subjectKey"));
+            ss.setSex(rs.getString("sex"));
+            ss.setDateOfBirth(convertDbDateToString(rs.getDate("dateOfBirth")));
+            ss.setEnrollmentDate(convertDbDateToString(rs.getDate("enrollmentDate")));
+            ss.setStatus(rs.getString("studySubjectStatus"));
+
+            Person person = new Person();
+            person.setPid(ss.getPid());
+
+            ss.setPerson(person);
+
+            return ss;
+        }
+    }
+
+    /**
+     * Groups study event rows (see findStudySubjectsWithEvents) by study subject label
+     */
+    static class StudyEventCallbackHandler implements RowCallbackHandler {
+
+        private final Map<String, List<EventData>> results = new HashMap<>();
+
+        Map<String, List<EventData>> getResults() {
+            return this.results;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            String label = rs.getString("studySubjectId");
+
+            EventData eventData = new EventData();
+            eventData.setId((Integer) rs.getObject("eventId"));
+            String eventOid = rs.getString("studyEventOid");
+            eventData.setStudyEventOid(eventOid);
+            String eventName = rs.getString("eventName");
+            eventData.setEventName(eventName);
+            eventData.setStartDate(convertTimestampToString(rs.getTimestamp("startDate")));
+            eventData.setEndDate(convertTimestampToString(rs.getTimestamp("endDate")));
+            eventData.setStudyEventRepeatKey(String.valueOf(rs.getInt("studyEventRepeatKey")));
+            eventData.setSystemStatus(rs.getString("eventSystemStatus"));
+            eventData.setStatus(rs.getString("eventStatus"));
+
+            EventDefinition eventDefinition = new EventDefinition();
+            eventDefinition.setId((Integer) rs.getObject("eventDefinitionId"));
+            eventDefinition.setOid(eventOid);
+            eventDefinition.setName(eventName);
+            eventDefinition.setDescription(rs.getString("eventDescription"));
+            eventDefinition.setType(rs.getString("eventType"));
+            eventDefinition.setCategory(rs.getString("eventCategory"));
+            eventDefinition.setIsRepeating((Boolean) rs.getObject("isRepeating"));
+            eventDefinition.setOrdinal((Integer) rs.getObject("eventDefinitionOrdinal"));
+
+            eventData.setEventDefinition(eventDefinition);
+
+            this.results.computeIfAbsent(label, k -> new ArrayList<>()).add(eventData);
+        }
+    }
+
+    /**
+     * Groups treatment group rows (subject group map) by study subject label
+     */
+    static class SubjectGroupDataCallbackHandler implements RowCallbackHandler {
+
+        private final Map<String, List<SubjectGroupData>> results = new HashMap<>();
+
+        Map<String, List<SubjectGroupData>> getResults() {
+            return this.results;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            String studySubjectId = rs.getString("studySubjectId");
+
+            SubjectGroupData subjectGroupData = new SubjectGroupData();
+            subjectGroupData.setStudyGroupClassID("SGC_" + rs.getInt("studyGroupClassId"));
+            subjectGroupData.setStudyGroupClassName(rs.getString("studyGroupClassName"));
+            subjectGroupData.setStudyGroupName(rs.getString("studyGroupName"));
+
+            this.results.computeIfAbsent(studySubjectId, k -> new ArrayList<>()).add(subjectGroupData);
+        }
+    }
+
+    /**
+     * Creates the object structure of an item data query result directly from the result set, results are indexed
+     * by study subject (primary key) so each row is assigned in constant time
+     */
+    static class DataQueryResultCallbackHandler implements RowCallbackHandler {
+
+        private final Boolean decodeItemValues;
+        private final Map<Integer, DataQueryResult> resultsByStudySubject = new LinkedHashMap<>();
+
+        DataQueryResultCallbackHandler(Boolean decodeItemValues) {
+            this.decodeItemValues = decodeItemValues;
+        }
+
+        List<DataQueryResult> getResults() {
+            return new ArrayList<>(this.resultsByStudySubject.values());
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            Integer studySubjectPk = rs.getInt("Id");
+
+            DataQueryResult data = this.resultsByStudySubject.get(studySubjectPk);
+            // Results for such subject does not exist (need to create a new one)
+            if (data == null) {
+                // Subject as entity to group the results according to
+                StudySubject studySubject = new StudySubject();
+                studySubject.setId(studySubjectPk);
+                studySubject.setStudySubjectId(rs.getString("StudySubjectLabel"));
+                studySubject.setPid(rs.getString("PersonId"));
+
+                data = new DataQueryResult();
+                data.setStudySubject(studySubject);
+                this.resultsByStudySubject.put(studySubjectPk, data);
+            }
+
+            // Data Item
+            ItemDefinition itemDefinition = new ItemDefinition(this.decodeItemValues);
+            itemDefinition.setId(rs.getInt("ItemID"));
+            itemDefinition.setOid(rs.getString("ItemOID"));
+            itemDefinition.setName(rs.getString("ItemName"));
+            itemDefinition.setLabel(rs.getString("ItemLabel"));
+            itemDefinition.setRightText(rs.getString("ItemRightText"));
+            itemDefinition.setDescription(rs.getString("ItemDescription"));
+            itemDefinition.setValue(rs.getString("ItemValue"));
+            String decode = rs.getString("ItemDecode");
+            if (decode != null) {
+                itemDefinition.setDecodedValue(decode);
+            }
+            itemDefinition.setDataType(rs.getString("ItemType"));
+            itemDefinition.setRepeatItemRow((Integer) rs.getObject("RepeatItemRow"));
+            itemDefinition.setUnits(rs.getString("ItemUnits"));
+            itemDefinition.setIsPhi((Boolean) rs.getObject("ItemPhi"));
+            itemDefinition.setIsRequired((Boolean) rs.getObject("ItemRequired"));
+            data.addDataItem(itemDefinition);
+        }
+    }
+
+    //endregion
+
 }
\ No newline at end of file
@@ -94,6 +94,10 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     private StudyDetails studyDetails;
 
+    // Lazily built lookup indices (see OdmIndex), transient fields are not bound by JAXB
+    private transient volatile OdmIndex.Metadata metadataIndex;
+    private transient volatile OdmIndex.Subjects subjectIndex;
+
     //endregion
 
     //region Constructors
@@ -226,6 +230,7 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     public void setStudies(List<Study> list) {
         this.studies = list;
+        this.metadataIndex = null;
     }
 
     //endregion
@@ -258,6 +263,7 @@ public class Odm implements Identifiable<Integer>, Serializable {
     @SuppressWarnings("unused")
     public void setClinicalDataList(List<ClinicalData> list) {
         this.clinicalDataList = list;
+        this.subjectIndex = null;
     }
 
     //endregion
@@ -347,10 +353,14 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     public EventDefinition findUniqueEventDefinitionOrNone(String eventDefinitionOid) {
         if (eventDefinitionOid != null) {
-            MetaDataVersion metadata = this.findUniqueMetadataOrNone();
-            if (metadata != null) {
-                return metadata.findUniqueEventDefinition(eventDefinitionOid);
+            EventDefinition eventDefinition = this.findMetadataIndex().findEventDefinition(eventDefinitionOid);
+            if (eventDefinition == null || eventDefinitionOid.equals(eventDefinition.getOid())) {
+                return eventDefinition;
             }
+
+            // Definition OID was changed after the index was built
+            this.metadataIndex = null;
+            return this.findMetadataIndex().findEventDefinition(eventDefinitionOid);
         }
 
         return null;
@@ -362,16 +372,13 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     public FormDefinition findUniqueFormDefinitionOrNone(String formDefinitionOid) {
         if (formDefinitionOid != null) {
-            MetaDataVersion metadata = this.findUniqueMetadataOrNone();
-            if (metadata != null && metadata.getStudyEventDefinitions() != null) {
-                for (EventDefinition eventDefinition : metadata.getStudyEventDefinitions()) {
-                    for (FormDefinition formDefinition : eventDefinition.getFormDefs()) {
-                        if (formDefinitionOid.equals(formDefinition.getOid())) {
-                            return formDefinition;
-                        }
-                    }
-                }
+            FormDefinition formDefinition = this.findMetadataIndex().findFormDefinition(formDefinitionOid);
+            if (formDefinition == null || formDefinitionOid.equals(formDefinition.getOid())) {
+                return formDefinition;
             }
+
+            this.metadataIndex = null;
+            return this.findMetadataIndex().findFormDefinition(formDefinitionOid);
         }
 
         return null;
@@ -383,18 +390,13 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     public ItemGroupDefinition findUniqueItemGroupDefinitionOrNone(String itemGroupDefinitionOid) {
         if (itemGroupDefinitionOid != null) {
-            MetaDataVersion metadata = this.findUniqueMetadataOrNone();
-            if (metadata != null && metadata.getStudyEventDefinitions() != null) {
-                for (EventDefinition eventDefinition : metadata.getStudyEventDefinitions()) {
-                    for (FormDefinition formDefinition : eventDefinition.getFormDefs()) {
-                        for (ItemGroupDefinition itemGroupDefinition : formDefinition.getItemGroupDefs()) {
-                            if (itemGroupDefinitionOid.equals(itemGroupDefinition.getOid())) {
-                                return itemGroupDefinition;
-                            }
-                        }
-                    }
-                }
+            ItemGroupDefinition itemGroupDefinition = this.findMetadataIndex().findItemGroupDefinition(itemGroupDefinitionOid);
+            if (itemGroupDefinition == null || itemGroupDefinitionOid.equals(itemGroupDefinition.getOid())) {
+                return itemGroupDefinition;
             }
+
+            this.metadataIndex = null;
+            return this.findMetadataIndex().findItemGroupDefinition(itemGroupDefinitionOid);
         }
 
         return null;
@@ -406,20 +408,13 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     public ItemDefinition findUniqueItemDefinitionOrNone(String itemDefinitionOid) {
         if (itemDefinitionOid != null) {
-            MetaDataVersion metadata = this.findUniqueMetadataOrNone();
-            if (metadata != null && metadata.getStudyEventDefinitions() != null) {
-                for (EventDefinition eventDefinition : metadata.getStudyEventDefinitions()) {
-                    for (FormDefinition formDefinition : eventDefinition.getFormDefs()) {
-                        for (ItemGroupDefinition itemGroupDefinition : formDefinition.getItemGroupDefs()) {
-                            for (ItemDefinition itemDefinition : itemGroupDefinition.getItemDefs()) {
-                                if (itemDefinitionOid.equals(itemDefinition.getOid())) {
-                                    return itemDefinition;
-                                }
-                            }
-                        }
-                    }
-                }
+            ItemDefinition itemDefinition = this.findMetadataIndex().findItemDefinition(itemDefinitionOid);
+            if (itemDefinition == null || itemDefinitionOid.equals(itemDefinition.getOid())) {
+                return itemDefinition;
             }
+
+            this.metadataIndex = null;
+            return this.findMetadataIndex().findItemDefinition(itemDefinitionOid);
         }
 
         return null;
@@ -438,13 +433,10 @@ public class Odm implements Identifiable<Integer>, Serializable {
         Odm resultOdm = new Odm(this);
         resultOdm.setDescription(null);
 
-        for (StudySubject ss : this.getClinicalDataList().get(0).getStudySubjects()) {
-
-            if (studySubjectIdentifier.equals(ss.getStudySubjectId()) || studySubjectIdentifier.equals(ss.getSubjectKey())) {
-
-                resultOdm.getClinicalDataList().get(0).getStudySubjects().add(ss);
-                return resultOdm;
-            }
+        StudySubject ss = this.findStudySubjectInClinicalData(studySubjectIdentifier);
+        if (ss != null) {
+            resultOdm.getClinicalDataList().get(0).getStudySubjects().add(ss);
+            return resultOdm;
         }
 
         return null;
@@ -512,6 +504,7 @@ public class Odm implements Identifiable<Integer>, Serializable {
         if (this.clinicalDataList != null) {
             for (ClinicalData clinicaData : this.clinicalDataList) {
                 if (clinicaData.getStudySubjects() != null) {
+                    this.subjectIndex = null;
                     return clinicaData.getStudySubjects().add(ss);
                 }
             }
@@ -610,10 +603,21 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     //endregion
 
+    /**
+     * Drop lookup indices, needed only when the object graph was changed directly (not via this ODM object)
+     * in a way which keeps the size of the lists (e.g. definition or subject replaced in place)
+     */
+    public void invalidateIndex() {
+        this.metadataIndex = null;
+        this.subjectIndex = null;
+    }
+
     /**
      * Correct messed up ODM where multiple unique OID nodes exists however they have mergeable content
      */
     public void groupElementsByOid() {
+        this.invalidateIndex();
+
         // Study metadata
         if (this.studies != null) {
             for (Study s : this.studies) {
@@ -634,6 +638,8 @@ public class Odm implements Identifiable<Integer>, Serializable {
      * Update the entities hierarchy CDISC element definitions according to the entities references from metadata
      */
     public void updateHierarchy() {
+        this.invalidateIndex();
+
         for (Study s : this.studies) {
             // Study metadata
             MetaDataVersion mdv = s.getMetaDataVersion();
@@ -754,27 +760,23 @@ public class Odm implements Identifiable<Integer>, Serializable {
      */
     public ItemDefinition getItemDefinition(MappedOdmItem target) {
         if (this.getStudies() != null && target != null) {
-            for (Study s : this.getStudies()) {
-                if (s.getMetaDataVersion() != null) {
-                    for (EventDefinition ed : s.getMetaDataVersion().getStudyEventDefinitions()) {
-                        if (ed.getOid().equals(target.getStudyEventOid())) {
-                            for (FormDefinition fd : ed.getFormDefs()) {
-                                if (fd.getOid().equals(target.getFormOid())) {
-                                    for (ItemGroupDefinition igd : fd.getItemGroupDefs()) {
-                                        if (igd.getOid().equals(target.getItemGroupOid())) {
-                                            for (ItemDefinition id : igd.getItemDefs()) {
-                                                if (id.getOid().equals(target.getItemOid())) {
-                                                    return id;
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
+            ItemDefinition itemDefinition = this.findMetadataIndex().findItemDefinition(
+                    target.getStudyEventOid(),
+                    target.getFormOid(),
+                    target.getItemGroupOid(),
+                    target.getItemOid()
+            );
+            if (itemDefinition == null || target.getItemOid().equals(itemDefinition.getOid())) {
+                return itemDefinition;
             }
+
+            this.metadataIndex = null;
+            return this.findMetadataIndex().findItemDefinition(
+                    target.getStudyEventOid(),
+                    target.getFormOid(),
+                    target.getItemGroupOid(),
+                    target.getItemOid()
+            );
         }
 
         return null;
@@ -817,6 +819,7 @@ public class Odm implements Identifiable<Integer>, Serializable {
                 }
             }
 
+            this.subjectIndex = null;
             result = true;
         }
 
@@ -834,6 +837,7 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
         if (this.clinicalDataList.size() > 0) {
             this.clinicalDataList.get(0).setStudySubjects(studySubjects);
+            this.subjectIndex = null;
             result = true;
         }
 
@@ -1044,6 +1048,45 @@ public class Odm implements Identifiable<Integer>, Serializable {
 
     //endregion
 
+    //region Index
+
+    private OdmIndex.Metadata findMetadataIndex() {
+        MetaDataVersion metadata = this.findUniqueMetadataOrNone();
+
+        OdmIndex.Metadata index = this.metadataIndex;
+        if (index == null || !index.isValid(this.studies, metadata)) {
+            index = new OdmIndex.Metadata(this.studies, metadata);
+            this.metadataIndex = index;
+        }
+
+        return index;
+    }
+
+    /**
+     * Find study subject according to StudySubjectID or SubjectKey in main study clinical data
+     */
+    private StudySubject findStudySubjectInClinicalData(String studySubjectIdentifier) {
+        List<StudySubject> studySubjects = this.getClinicalDataList().get(0).getStudySubjects();
+
+        OdmIndex.Subjects index = this.subjectIndex;
+        if (index == null || !index.isValid(studySubjects)) {
+            index = new OdmIndex.Subjects(studySubjects);
+            this.subjectIndex = index;
+        }
+
+        StudySubject ss = index.findStudySubject(studySubjectIdentifier);
+        if (ss != null && !studySubjectIdentifier.equals(ss.getStudySubjectId()) && !studySubjectIdentifier.equals(ss.getSubjectKey())) {
+            // Subject identifiers were changed after the index was built
+            index = new OdmIndex.Subjects(studySubjects);
+            this.subjectIndex = index;
+            ss = index.findStudySubject(studySubjectIdentifier);
+        }
+
+        return ss;
+    }
+
+    //endregion
+
     //endregion
 
     /**
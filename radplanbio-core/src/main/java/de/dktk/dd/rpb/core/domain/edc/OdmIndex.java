@@ -0,0 +1,212 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup indices over the ODM object graph
+ *
+ * Indices are built lazily by the Odm on first lookup and keep the first match in document order, so the lookups
+ * return the same elements as a sequential scan. Each index remembers the lists it was built from and is considered
+ * stale when these lists were replaced or changed their size. Indices are immutable after construction.
+ *
+ * @since 18 Oct 2026
+ */
+final class OdmIndex {
+
+    //region Constructors
+
+    private OdmIndex() {
+        // NOOP
+    }
+
+    //endregion
+
+    //region Metadata
+
+    /**
+     * OID to definition index over the main study metadata and target index over metadata of all studies
+     */
+    static final class Metadata {
+
+        private final List<Study> studies;
+        private final int studiesSize;
+        private final MetaDataVersion metaDataVersion;
+        private final List<EventDefinition> eventDefinitions;
+        private final int eventDefinitionsSize;
+
+        private final Map<String, EventDefinition> eventDefinitionsByOid = new HashMap<>();
+        private final Map<String, FormDefinition> formDefinitionsByOid = new HashMap<>();
+        private final Map<String, ItemGroupDefinition> itemGroupDefinitionsByOid = new HashMap<>();
+        private final Map<String, ItemDefinition> itemDefinitionsByOid = new HashMap<>();
+        private final Map<String, ItemDefinition> itemDefinitionsByTarget = new HashMap<>();
+
+        Metadata(List<Study> studies, MetaDataVersion metaDataVersion) {
+            this.studies = studies;
+            this.studiesSize = studies != null ? studies.size() : 0;
+            this.metaDataVersion = metaDataVersion;
+            this.eventDefinitions = metaDataVersion != null ? metaDataVersion.getStudyEventDefinitions() : null;
+            this.eventDefinitionsSize = this.eventDefinitions != null ? this.eventDefinitions.size() : 0;
+
+            // Main study metadata
+            if (this.eventDefinitions != null) {
+                for (EventDefinition ed : this.eventDefinitions) {
+                    putIfAbsent(this.eventDefinitionsByOid, ed.getOid(), ed);
+                    if (ed.getFormDefs() == null) {
+                        continue;
+                    }
+                    for (FormDefinition fd : ed.getFormDefs()) {
+                        putIfAbsent(this.formDefinitionsByOid, fd.getOid(), fd);
+                        if (fd.getItemGroupDefs() == null) {
+                            continue;
+                        }
+                        for (ItemGroupDefinition igd : fd.getItemGroupDefs()) {
+                            putIfAbsent(this.itemGroupDefinitionsByOid, igd.getOid(), igd);
+                            if (igd.getItemDefs() == null) {
+                                continue;
+                            }
+                            for (ItemDefinition id : igd.getItemDefs()) {
+                                putIfAbsent(this.itemDefinitionsByOid, id.getOid(), id);
+                            }
+                        }
+                    }
+                }
+            }
+
+            // Mapping targets can point to metadata of any study in ODM
+            if (studies != null) {
+                for (Study s : studies) {
+                    if (s.getMetaDataVersion() == null || s.getMetaDataVersion().getStudyEventDefinitions() == null) {
+                        continue;
+                    }
+                    for (EventDefinition ed : s.getMetaDataVersion().getStudyEventDefinitions()) {
+                        if (ed.getFormDefs() == null) {
+                            continue;
+                        }
+                        for (FormDefinition fd : ed.getFormDefs()) {
+                            if (fd.getItemGroupDefs() == null) {
+                                continue;
+                            }
+                            for (ItemGroupDefinition igd : fd.getItemGroupDefs()) {
+                                if (igd.getItemDefs() == null) {
+                                    continue;
+                                }
+                                for (ItemDefinition id : igd.getItemDefs()) {
+                                    String key = targetKey(ed.getOid(), fd.getOid(), igd.getOid(), id.getOid());
+                                    putIfAbsent(this.itemDefinitionsByTarget, key, id);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        boolean isValid(List<Study> studies, MetaDataVersion metaDataVersion) {
+            return this.studies == studies &&
+                    (studies == null || this.studiesSize == studies.size()) &&
+                    this.metaDataVersion == metaDataVersion &&
+                    (metaDataVersion == null || this.eventDefinitions == metaDataVersion.getStudyEventDefinitions()) &&
+                    (this.eventDefinitions == null || this.eventDefinitionsSize == this.eventDefinitions.size());
+        }
+
+        EventDefinition findEventDefinition(String oid) {
+            return this.eventDefinitionsByOid.get(oid);
+        }
+
+        FormDefinition findFormDefinition(String oid) {
+            return this.formDefinitionsByOid.get(oid);
+        }
+
+        ItemGroupDefinition findItemGroupDefinition(String oid) {
+            return this.itemGroupDefinitionsByOid.get(oid);
+        }
+
+        ItemDefinition findItemDefinition(String oid) {
+            return this.itemDefinitionsByOid.get(oid);
+        }
+
+        ItemDefinition findItemDefinition(String studyEventOid, String formOid, String itemGroupOid, String itemOid) {
+            String key = targetKey(studyEventOid, formOid, itemGroupOid, itemOid);
+            return key != null ? this.itemDefinitionsByTarget.get(key) : null;
+        }
+
+        private static String targetKey(String studyEventOid, String formOid, String itemGroupOid, String itemOid) {
+            if (studyEventOid == null || formOid == null || itemGroupOid == null || itemOid == null) {
+                return null;
+            }
+
+            // OIDs cannot contain white space
+            return studyEventOid + " " + formOid + " " + itemGroupOid + " " + itemOid;
+        }
+    }
+
+    //endregion
+
+    //region Subjects
+
+    /**
+     * StudySubjectID and SubjectKey to study subject index over the main study clinical data
+     */
+    static final class Subjects {
+
+        private final List<StudySubject> studySubjects;
+        private final int studySubjectsSize;
+
+        private final Map<String, StudySubject> studySubjectsByIdentifier = new HashMap<>();
+
+        Subjects(List<StudySubject> studySubjects) {
+            this.studySubjects = studySubjects;
+            this.studySubjectsSize = studySubjects != null ? studySubjects.size() : 0;
+
+            if (studySubjects != null) {
+                for (StudySubject ss : studySubjects) {
+                    putIfAbsent(this.studySubjectsByIdentifier, ss.getStudySubjectId(), ss);
+                    putIfAbsent(this.studySubjectsByIdentifier, ss.getSubjectKey(), ss);
+                }
+            }
+        }
+
+        boolean isValid(List<StudySubject> studySubjects) {
+            return this.studySubjects == studySubjects &&
+                    (studySubjects == null || this.studySubjectsSize == studySubjects.size());
+        }
+
+        StudySubject findStudySubject(String studySubjectIdentifier) {
+            return this.studySubjectsByIdentifier.get(studySubjectIdentifier);
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static <T> void putIfAbsent(Map<String, T> index, String key, T value) {
+        if (key != null && !index.containsKey(key)) {
+            index.put(key, value);
+        }
+    }
+
+    //endregion
+
+}
@@ -22,6 +22,7 @@ package de.dktk.dd.rpb.core.domain.edc;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.XmlType;
 import java.io.Serializable;
 import java.util.List;
@@ -52,6 +53,12 @@ public class StudyParameterConfiguration implements Serializable {
     @XmlElement(name="StudyParameterListRef", namespace="http://www.openclinica.org/ns/odm_ext_v130/v3.1")
     private List<StudyParameter> studyParameterList;
 
+    // RPB study specific LabKey upload settings (from RPB study tags, null means default)
+    @XmlTransient
+    private Boolean labKeyStreamingUpload;
+    @XmlTransient
+    private Integer labKeyUploadThreads;
+
     //endregion
 
     //region Properties
@@ -144,6 +151,22 @@ public class StudyParameterConfiguration implements Serializable {
         this.studyParameterList = list;
     }
 
+    public Boolean getLabKeyStreamingUpload() {
+        return this.labKeyStreamingUpload;
+    }
+
+    public void setLabKeyStreamingUpload(Boolean value) {
+        this.labKeyStreamingUpload = value;
+    }
+
+    public Integer getLabKeyUploadThreads() {
+        return this.labKeyUploadThreads;
+    }
+
+    public void setLabKeyUploadThreads(Integer value) {
+        this.labKeyUploadThreads = value;
+    }
+
     //endregion
 
     //region Methods
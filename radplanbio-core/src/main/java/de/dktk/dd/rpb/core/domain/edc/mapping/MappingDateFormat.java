@@ -0,0 +1,104 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc.mapping;
+
+import de.dktk.dd.rpb.core.util.Constants;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Conversion of source date values of a mapping record to OpenClinica date format
+ *
+ * Date formats are created on first use and reused for all following values. Instances are not thread safe,
+ * one instance should be used per mapping record and transformation.
+ *
+ * @since 18 Oct 2026
+ */
+public class MappingDateFormat {
+
+    //region Members
+
+    private final String sourcePattern;
+
+    private SimpleDateFormat sourceFormat;
+    private SimpleDateFormat ocFormat;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * @param sourcePattern SimpleDateFormat pattern of the source values
+     */
+    public MappingDateFormat(String sourcePattern) {
+        this.sourcePattern = sourcePattern;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Convert source date value to OpenClinica date format
+     *
+     * @param sourceValue date value in source format
+     * @return date value in OpenClinica format
+     * @throws ParseException when source value does not match the source format
+     */
+    public String toOcDate(String sourceValue) throws ParseException {
+        return this.getOcFormat().format(this.getSourceFormat().parse(sourceValue));
+    }
+
+    /**
+     * Parse date in OpenClinica date format
+     *
+     * @param ocValue date value in OpenClinica format
+     * @return date
+     * @throws ParseException when value is not in OpenClinica format
+     */
+    public Date parseOcDate(String ocValue) throws ParseException {
+        return this.getOcFormat().parse(ocValue);
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private SimpleDateFormat getSourceFormat() {
+        if (this.sourceFormat == null) {
+            this.sourceFormat = new SimpleDateFormat(this.sourcePattern);
+        }
+
+        return this.sourceFormat;
+    }
+
+    private SimpleDateFormat getOcFormat() {
+        if (this.ocFormat == null) {
+            this.ocFormat = new SimpleDateFormat(Constants.OC_DATEFORMAT);
+        }
+
+        return this.ocFormat;
+    }
+
+    //endregion
+
+}
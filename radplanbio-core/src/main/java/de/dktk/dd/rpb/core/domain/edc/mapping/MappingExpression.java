@@ -0,0 +1,730 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc.mapping;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compiled calculation expression of a mapping record
+ *
+ * The calculation string is parsed once (shunting-yard) into an expression tree which is then evaluated for each
+ * source value. Supported are numbers, operators + - * / ^ with the usual precedence, parentheses, the source value
+ * (value or x), other source columns ([column header]) and functions abs, min, max, round(expr, digits) and
+ * convert(expr, 'unit', 'unit'). Legacy calculation strings consisting of an operator and a number (e.g. "* 2.54"
+ * or "- 3") are applied to the source value, a minus directly followed by its operand (e.g. "-3" or "-x") is
+ * negation. Compiled expressions are immutable and thread safe.
+ *
+ * @since 18 Oct 2026
+ */
+public final class MappingExpression {
+
+    //region Finals
+
+    /**
+     * Precision of division and unit conversion results
+     */
+    public static final MathContext MATH_CONTEXT = MathContext.DECIMAL64;
+
+    private static final String TOKEN_OPERATORS = "+-*/^";
+
+    private final String expression;
+    private final Node root;
+
+    //endregion
+
+    //region Constructors
+
+    private MappingExpression(String expression, Node root) {
+        this.expression = expression;
+        this.root = root;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Compile calculation string to expression
+     *
+     * @param expression calculation string
+     * @return compiled expression
+     * @throws ParseException when the calculation string is not a valid expression
+     */
+    public static MappingExpression compile(String expression) throws ParseException {
+        if (expression == null || expression.trim().isEmpty()) {
+            throw new ParseException("Calculation expression is empty", 0);
+        }
+
+        List<Token> tokens = tokenize(expression);
+
+        // Legacy calculation string: operator and operand applied to the source value
+        if (isLegacyCalculation(tokens)) {
+            tokens.add(0, new Token(TokenType.IDENTIFIER, "value", 0));
+        }
+
+        return new MappingExpression(expression, parse(tokens));
+    }
+
+    /**
+     * Evaluate expression
+     *
+     * @param sourceValue numeric source value
+     * @param columns     values of other source columns (can be null when expression does not reference columns)
+     * @return result of calculation
+     * @throws ArithmeticException      when the result is not defined (e.g. division by zero)
+     * @throws IllegalArgumentException when the source value or referenced column value is missing or not numeric
+     */
+    public BigDecimal evaluate(BigDecimal sourceValue, Columns columns) {
+        return this.root.evaluate(sourceValue, columns);
+    }
+
+    /**
+     * Evaluate expression on string values
+     *
+     * @param sourceValue source value
+     * @param columns     values of other source columns (can be null when expression does not reference columns)
+     * @return plain string result of calculation
+     * @throws ArithmeticException      when the result is not defined (e.g. division by zero)
+     * @throws IllegalArgumentException when the source value or referenced column value is missing or not numeric
+     */
+    public String evaluate(String sourceValue, Columns columns) {
+        return this.evaluate(toNumber("value", sourceValue), columns).stripTrailingZeros().toPlainString();
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static List<Token> tokenize(String expression) throws ParseException {
+        List<Token> tokens = new ArrayList<>();
+
+        int i = 0;
+        while (i < expression.length()) {
+            char c = expression.charAt(i);
+            int start = i;
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || c == '.') {
+                while (i < expression.length() && (Character.isDigit(expression.charAt(i)) || expression.charAt(i) == '.')) {
+                    i++;
+                }
+                // Exponent notation
+                if (i < expression.length() && (expression.charAt(i) == 'e' || expression.charAt(i) == 'E')) {
+                    int exponent = i + 1;
+                    if (exponent < expression.length() && (expression.charAt(exponent) == '+' || expression.charAt(exponent) == '-')) {
+                        exponent++;
+                    }
+                    if (exponent < expression.length() && Character.isDigit(expression.charAt(exponent))) {
+                        i = exponent;
+                        while (i < expression.length() && Character.isDigit(expression.charAt(i))) {
+                            i++;
+                        }
+                    }
+                }
+                tokens.add(new Token(TokenType.NUMBER, expression.substring(start, i), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.IDENTIFIER, expression.substring(start, i), start));
+            } else if (c == '[' || c == '\'' || c == '"') {
+                char end = c == '[' ? ']' : c;
+                int close = expression.indexOf(end, i + 1);
+                if (close < 0) {
+                    throw new ParseException("Missing closing " + end + " in calculation expression: " + expression, start);
+                }
+                tokens.add(new Token(c == '[' ? TokenType.COLUMN : TokenType.STRING, expression.substring(i + 1, close), start));
+                i = close + 1;
+            } else if (TOKEN_OPERATORS.indexOf(c) >= 0) {
+                tokens.add(new Token(TokenType.OPERATOR, String.valueOf(c), start));
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LEFT_PARENTHESIS, "(", start));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RIGHT_PARENTHESIS, ")", start));
+                i++;
+            } else if (c == ',') {
+                tokens.add(new Token(TokenType.COMMA, ",", start));
+                i++;
+            } else {
+                throw new ParseException("Unexpected character '" + c + "' in calculation expression: " + expression, start);
+            }
+        }
+
+        if (tokens.isEmpty()) {
+            throw new ParseException("Calculation expression is empty", 0);
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Shunting-yard: operators are kept on stack until an operator with lower precedence arrives,
+     * instead of postfix output the expression tree is built directly
+     */
+    private static Node parse(List<Token> tokens) throws ParseException {
+        Deque<Node> output = new ArrayDeque<>();
+        Deque<Token> operators = new ArrayDeque<>();
+        Deque<Integer> argumentCounts = new ArrayDeque<>();
+
+        Token previous = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+
+            switch (token.type) {
+                case NUMBER:
+                    try {
+                        output.push(new Constant(new BigDecimal(token.text)));
+                    } catch (NumberFormatException err) {
+                        throw new ParseException("Invalid number " + token.text + " in calculation expression", token.position);
+                    }
+                    break;
+                case COLUMN:
+                    output.push(new Column(token.text.trim()));
+                    break;
+                case STRING:
+                    output.push(new Text(token.text));
+                    break;
+                case IDENTIFIER:
+                    if (i + 1 < tokens.size() && tokens.get(i + 1).type == TokenType.LEFT_PARENTHESIS) {
+                        operators.push(new Token(TokenType.FUNCTION, token.text.toLowerCase(Locale.ENGLISH), token.position));
+                        argumentCounts.push(tokens.get(i + 2 < tokens.size() ? i + 2 : i + 1).type == TokenType.RIGHT_PARENTHESIS ? 0 : 1);
+                    } else if ("value".equalsIgnoreCase(token.text) || "x".equalsIgnoreCase(token.text)) {
+                        output.push(SourceValue.INSTANCE);
+                    } else {
+                        throw new ParseException("Unknown identifier " + token.text + " in calculation expression", token.position);
+                    }
+                    break;
+                case OPERATOR:
+                    Token operator = token;
+                    if (isOperandExpected(previous)) {
+                        if ("+".equals(token.text)) {
+                            // Unary plus does not change the value
+                            break;
+                        } else if ("-".equals(token.text)) {
+                            operator = new Token(TokenType.OPERATOR, "neg", token.position);
+                        } else {
+                            throw new ParseException("Missing operand before " + token.text + " in calculation expression", token.position);
+                        }
+                    }
+                    // Unary operator has no left operand, so nothing stacked before can be applied yet
+                    while (!"neg".equals(operator.text) && !operators.isEmpty() &&
+                            operators.peek().type == TokenType.OPERATOR &&
+                            takesPrecedence(operators.peek().text, operator.text)) {
+                        apply(operators.pop(), output);
+                    }
+                    operators.push(operator);
+                    break;
+                case LEFT_PARENTHESIS:
+                    operators.push(token);
+                    break;
+                case COMMA:
+                    while (!operators.isEmpty() && operators.peek().type != TokenType.LEFT_PARENTHESIS) {
+                        apply(operators.pop(), output);
+                    }
+                    if (!isFunctionArgument(operators)) {
+                        throw new ParseException("Argument separator outside of function call in calculation expression", token.position);
+                    }
+                    argumentCounts.push(argumentCounts.pop() + 1);
+                    break;
+                case RIGHT_PARENTHESIS:
+                    while (!operators.isEmpty() && operators.peek().type != TokenType.LEFT_PARENTHESIS) {
+                        apply(operators.pop(), output);
+                    }
+                    if (operators.isEmpty()) {
+                        throw new ParseException("Missing opening parenthesis in calculation expression", token.position);
+                    }
+                    operators.pop();
+                    if (!operators.isEmpty() && operators.peek().type == TokenType.FUNCTION) {
+                        applyFunction(operators.pop(), argumentCounts.pop(), output);
+                    }
+                    break;
+                default:
+                    throw new ParseException("Unexpected token " + token.text + " in calculation expression", token.position);
+            }
+
+            previous = token;
+        }
+
+        while (!operators.isEmpty()) {
+            Token operator = operators.pop();
+            if (operator.type != TokenType.OPERATOR) {
+                throw new ParseException("Missing closing parenthesis in calculation expression", operator.position);
+            }
+            apply(operator, output);
+        }
+
+        if (output.size() != 1) {
+            throw new ParseException("Missing operator in calculation expression", 0);
+        }
+
+        Node root = output.pop();
+        if (root instanceof Text) {
+            throw new ParseException("Text is allowed only as unit of convert function in calculation expression", 0);
+        }
+
+        return root;
+    }
+
+    /**
+     * Legacy calculation strings were split by spaces into operator and number, so minus is legacy only when it is
+     * separated from the number (otherwise it is a negative number)
+     */
+    private static boolean isLegacyCalculation(List<Token> tokens) {
+        if (tokens.size() != 2 || tokens.get(0).type != TokenType.OPERATOR || tokens.get(1).type != TokenType.NUMBER) {
+            return false;
+        }
+
+        Token operator = tokens.get(0);
+        return !"-".equals(operator.text) || tokens.get(1).position > operator.position + 1;
+    }
+
+    private static boolean isOperandExpected(Token previous) {
+        return previous == null ||
+                previous.type == TokenType.OPERATOR ||
+                previous.type == TokenType.LEFT_PARENTHESIS ||
+                previous.type == TokenType.COMMA;
+    }
+
+    private static boolean isFunctionArgument(Deque<Token> operators) {
+        Iterator<Token> iterator = operators.iterator();
+        return iterator.hasNext() && iterator.next().type == TokenType.LEFT_PARENTHESIS &&
+                iterator.hasNext() && iterator.next().type == TokenType.FUNCTION;
+    }
+
+    private static boolean takesPrecedence(String stacked, String current) {
+        int stackedPrecedence = precedence(stacked);
+        int currentPrecedence = precedence(current);
+
+        // Power and negation are right associative
+        boolean rightAssociative = "^".equals(current) || "neg".equals(current);
+        return stackedPrecedence > currentPrecedence || (stackedPrecedence == currentPrecedence && !rightAssociative);
+    }
+
+    private static int precedence(String operator) {
+        switch (operator) {
+            case "+":
+            case "-":
+                return 1;
+            case "*":
+            case "/":
+                return 2;
+            case "neg":
+                return 3;
+            case "^":
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static void apply(Token operator, Deque<Node> output) throws ParseException {
+        if ("neg".equals(operator.text)) {
+            Node operand = pop(output, operator);
+            if (operand instanceof Text) {
+                throw new ParseException("Text is allowed only as unit of convert function in calculation expression", operator.position);
+            }
+            output.push(new Negation(operand));
+            return;
+        }
+
+        Node right = pop(output, operator);
+        Node left = pop(output, operator);
+        if (left instanceof Text || right instanceof Text) {
+            throw new ParseException("Text is allowed only as unit of convert function in calculation expression", operator.position);
+        }
+        output.push(new BinaryOperation(operator.text.charAt(0), left, right));
+    }
+
+    private static void applyFunction(Token function, int argumentCount, Deque<Node> output) throws ParseException {
+        Node[] arguments = new Node[argumentCount];
+        for (int i = argumentCount - 1; i >= 0; i--) {
+            arguments[i] = pop(output, function);
+        }
+
+        switch (function.text) {
+            case "abs":
+                checkArguments(function, arguments, 1, 1);
+                output.push(new Function(function.text, arguments));
+                break;
+            case "min":
+            case "max":
+                checkArguments(function, arguments, 1, Integer.MAX_VALUE);
+                output.push(new Function(function.text, arguments));
+                break;
+            case "round":
+                checkArguments(function, arguments, 1, 2);
+                output.push(new Function(function.text, arguments));
+                break;
+            case "convert":
+                checkArguments(function, arguments, 3, 3);
+                if (arguments[0] instanceof Text || !(arguments[1] instanceof Text) || !(arguments[2] instanceof Text)) {
+                    throw new ParseException("Units of convert function have to be quoted text", function.position);
+                }
+                Unit from = Unit.find(((Text) arguments[1]).text);
+                Unit to = Unit.find(((Text) arguments[2]).text);
+                if (from == null || to == null || from.dimension != to.dimension) {
+                    throw new ParseException("Cannot convert " + ((Text) arguments[1]).text + " to " + ((Text) arguments[2]).text, function.position);
+                }
+                output.push(new Conversion(arguments[0], from, to));
+                break;
+            default:
+                throw new ParseException("Unknown function " + function.text + " in calculation expression", function.position);
+        }
+    }
+
+    private static void checkArguments(Token function, Node[] arguments, int min, int max) throws ParseException {
+        if (arguments.length < min || arguments.length > max) {
+            throw new ParseException("Wrong number of arguments for function " + function.text, function.position);
+        }
+        for (Node argument : arguments) {
+            if (argument instanceof Text && !"convert".equals(function.text)) {
+                throw new ParseException("Text argument is not allowed for function " + function.text, function.position);
+            }
+        }
+    }
+
+    private static Node pop(Deque<Node> output, Token token) throws ParseException {
+        if (output.isEmpty()) {
+            throw new ParseException("Missing operand for " + token.text + " in calculation expression", token.position);
+        }
+
+        return output.pop();
+    }
+
+    private static BigDecimal toNumber(String name, String value) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing " + name + " for calculation");
+        }
+
+        return new BigDecimal(value.trim());
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Values of the other source columns of currently processed source record
+     */
+    public interface Columns {
+        String getValue(String column);
+    }
+
+    private enum TokenType {
+        NUMBER,
+        IDENTIFIER,
+        COLUMN,
+        STRING,
+        OPERATOR,
+        FUNCTION,
+        LEFT_PARENTHESIS,
+        RIGHT_PARENTHESIS,
+        COMMA
+    }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final int position;
+
+        private Token(TokenType type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    private enum Dimension {
+        MASS,
+        LENGTH,
+        VOLUME,
+        TEMPERATURE
+    }
+
+    /**
+     * Units for conversion, base value = (value + offset) * numerator / denominator
+     */
+    private enum Unit {
+        KG(Dimension.MASS, "1", "1", "0", "kg"),
+        G(Dimension.MASS, "1", "1000", "0", "g"),
+        MG(Dimension.MASS, "1", "1000000", "0", "mg"),
+        LB(Dimension.MASS, "0.45359237", "1", "0", "lb", "lbs"),
+        OZ(Dimension.MASS, "0.028349523125", "1", "0", "oz"),
+        M(Dimension.LENGTH, "1", "1", "0", "m"),
+        CM(Dimension.LENGTH, "1", "100", "0", "cm"),
+        MM(Dimension.LENGTH, "1", "1000", "0", "mm"),
+        IN(Dimension.LENGTH, "0.0254", "1", "0", "in", "inch"),
+        FT(Dimension.LENGTH, "0.3048", "1", "0", "ft"),
+        L(Dimension.VOLUME, "1", "1", "0", "l"),
+        DL(Dimension.VOLUME, "1", "10", "0", "dl"),
+        ML(Dimension.VOLUME, "1", "1000", "0", "ml"),
+        K(Dimension.TEMPERATURE, "1", "1", "0", "k"),
+        C(Dimension.TEMPERATURE, "1", "1", "273.15", "c", "degc"),
+        F(Dimension.TEMPERATURE, "5", "9", "459.67", "f", "degf");
+
+        private final Dimension dimension;
+        private final BigDecimal numerator;
+        private final BigDecimal denominator;
+        private final BigDecimal offset;
+        private final String[] symbols;
+
+        Unit(Dimension dimension, String numerator, String denominator, String offset, String... symbols) {
+            this.dimension = dimension;
+            this.numerator = new BigDecimal(numerator);
+            this.denominator = new BigDecimal(denominator);
+            this.offset = new BigDecimal(offset);
+            this.symbols = symbols;
+        }
+
+        static Unit find(String symbol) {
+            String normalised = symbol.trim().toLowerCase(Locale.ENGLISH);
+            for (Unit unit : values()) {
+                for (String s : unit.symbols) {
+                    if (s.equals(normalised)) {
+                        return unit;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        BigDecimal toBase(BigDecimal value) {
+            return value.add(this.offset).multiply(this.numerator).divide(this.denominator, MATH_CONTEXT);
+        }
+
+        BigDecimal fromBase(BigDecimal value) {
+            return value.multiply(this.denominator).divide(this.numerator, MATH_CONTEXT).subtract(this.offset);
+        }
+    }
+
+    /**
+     * Node of compiled expression tree
+     */
+    private interface Node {
+        BigDecimal evaluate(BigDecimal value, Columns columns);
+    }
+
+    private static final class Constant implements Node {
+
+        private final BigDecimal number;
+
+        private Constant(BigDecimal number) {
+            this.number = number;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            return this.number;
+        }
+    }
+
+    private static final class SourceValue implements Node {
+
+        private static final SourceValue INSTANCE = new SourceValue();
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value for calculation");
+            }
+
+            return value;
+        }
+    }
+
+    private static final class Column implements Node {
+
+        private final String name;
+
+        private Column(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            if (columns == null) {
+                throw new IllegalArgumentException("Column [" + this.name + "] is not available for calculation");
+            }
+
+            return toNumber("column [" + this.name + "]", columns.getValue(this.name));
+        }
+    }
+
+    /**
+     * Quoted text, only used as unit argument of convert function
+     */
+    private static final class Text implements Node {
+
+        private final String text;
+
+        private Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            throw new IllegalStateException("Text " + this.text + " cannot be evaluated");
+        }
+    }
+
+    private static final class Negation implements Node {
+
+        private final Node operand;
+
+        private Negation(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            return this.operand.evaluate(value, columns).negate();
+        }
+    }
+
+    private static final class BinaryOperation implements Node {
+
+        private final char operator;
+        private final Node left;
+        private final Node right;
+
+        private BinaryOperation(char operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            BigDecimal l = this.left.evaluate(value, columns);
+            BigDecimal r = this.right.evaluate(value, columns);
+
+            switch (this.operator) {
+                case '+':
+                    return l.add(r);
+                case '-':
+                    return l.subtract(r);
+                case '*':
+                    return l.multiply(r);
+                case '/':
+                    return l.divide(r, MATH_CONTEXT);
+                case '^':
+                    return power(l, r);
+                default:
+                    throw new IllegalStateException("Unknown operator " + this.operator);
+            }
+        }
+
+        private static BigDecimal power(BigDecimal base, BigDecimal exponent) {
+            int n;
+            try {
+                n = exponent.intValueExact();
+            } catch (ArithmeticException err) {
+                throw new ArithmeticException("Only integer exponent is supported: " + exponent.toPlainString());
+            }
+
+            if (n < 0) {
+                return BigDecimal.ONE.divide(base.pow(-n, MATH_CONTEXT), MATH_CONTEXT);
+            }
+
+            return base.pow(n, MATH_CONTEXT);
+        }
+    }
+
+    private static final class Function implements Node {
+
+        private final String name;
+        private final Node[] arguments;
+
+        private Function(String name, Node[] arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            BigDecimal result = this.arguments[0].evaluate(value, columns);
+
+            switch (this.name) {
+                case "abs":
+                    return result.abs();
+                case "min":
+                    for (int i = 1; i < this.arguments.length; i++) {
+                        result = result.min(this.arguments[i].evaluate(value, columns));
+                    }
+                    return result;
+                case "max":
+                    for (int i = 1; i < this.arguments.length; i++) {
+                        result = result.max(this.arguments[i].evaluate(value, columns));
+                    }
+                    return result;
+                case "round":
+                    int digits = this.arguments.length > 1 ? this.arguments[1].evaluate(value, columns).intValue() : 0;
+                    return result.setScale(digits, RoundingMode.HALF_UP);
+                default:
+                    throw new IllegalStateException("Unknown function " + this.name);
+            }
+        }
+    }
+
+    private static final class Conversion implements Node {
+
+        private final Node operand;
+        private final Unit from;
+        private final Unit to;
+
+        private Conversion(Node operand, Unit from, Unit to) {
+            this.operand = operand;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public BigDecimal evaluate(BigDecimal value, Columns columns) {
+            BigDecimal result = this.operand.evaluate(value, columns);
+            if (this.from == this.to) {
+                return result;
+            }
+
+            return this.to.fromBase(this.from.toBase(result));
+        }
+    }
+
+    //endregion
+
+}
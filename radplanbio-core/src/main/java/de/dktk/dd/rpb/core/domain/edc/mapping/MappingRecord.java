@@ -24,7 +24,6 @@ import de.dktk.dd.rpb.core.domain.Identifiable;
 import de.dktk.dd.rpb.core.domain.IdentifiableHashBuilder;
 import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
 import de.dktk.dd.rpb.core.util.Constants;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,7 +37,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 /**
  * MappingRecord domain entity
@@ -79,6 +77,10 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
 
     private Map<String, String> mapping = new HashMap<>(); // mapping options
 
+    // Calculation compiled once from calculation string
+    private transient volatile MappingExpression calculation;
+    private transient volatile boolean calculationInvalid;
+
     // Object hash
     private IdentifiableHashBuilder identifiableHashBuilder = new IdentifiableHashBuilder();
 
@@ -183,6 +185,8 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
 
     public void setCalculationString(String value) {
         this.calculationString = value;
+        this.calculation = null;
+        this.calculationInvalid = false;
     }
 
     //endregion
@@ -285,66 +289,49 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
     //region Methods
 
     public String process(String sourceValue, ItemDefinition itemMetaData) {
+        return this.process(sourceValue, itemMetaData, new MappingDateFormat(this.dateFormatString));
+    }
+
+    /**
+     * Process source value to target value, date values are converted with provided date format
+     * (so that the date format can be reused when processing many source values of this mapping record)
+     *
+     * @param sourceValue  source value
+     * @param itemMetaData target item definition
+     * @param dateFormat   conversion of date values of this mapping record
+     * @return target value
+     */
+    public String process(String sourceValue, ItemDefinition itemMetaData, MappingDateFormat dateFormat) {
+        return this.process(sourceValue, itemMetaData, dateFormat, null);
+    }
+
+    /**
+     * Process source value to target value, calculation can reference values of other source columns
+     *
+     * @param sourceValue  source value
+     * @param itemMetaData target item definition
+     * @param dateFormat   conversion of date values of this mapping record
+     * @param columns      values of the other source columns of the processed record (can be null)
+     * @return target value
+     */
+    public String process(String sourceValue, ItemDefinition itemMetaData, MappingDateFormat dateFormat, MappingExpression.Columns columns) {
         String result = this.defaultValue;
 
         // Should any calculations be performed on source data
-        // TODO: this is just quick an dirty, later implement parsing according to shunting-yard algorithm
-        if (this.calculationString != null && !this.calculationString.isEmpty()) {
-
-            Stack<String> operators = new Stack<>();
-            Stack<String> output = new Stack<>();
-
-            for (String token : calculationString.split(" ")) {
-                if (token.equals("+")) {
-                    operators.push(token);
-                } else if (token.equals("-")) {
-                    operators.push(token);
-                } else if (token.equals("*")) {
-                    operators.push(token);
-                } else if (token.equals("/")) {
-                    operators.push(token);
-                } else if (NumberUtils.isNumber(token)) {
-                    output.push(token);
-                }
+        MappingExpression calculation = this.compileCalculation();
+        if (calculation != null) {
+            try {
+                sourceValue = calculation.evaluate(sourceValue, columns);
             }
-
-            if (!operators.isEmpty() && !output.isEmpty()) {
-                String operator = operators.pop();
-                switch (operator) {
-                    case "+": {
-                        BigDecimal number1 = new BigDecimal(output.pop());
-                        BigDecimal number = new BigDecimal(sourceValue);
-                        sourceValue = number.add(number1).stripTrailingZeros().toPlainString();
-                        break;
-                    }
-                    case "-": {
-                        BigDecimal number1 = new BigDecimal(output.pop());
-                        BigDecimal number = new BigDecimal(sourceValue);
-                        sourceValue = number.subtract(number1).stripTrailingZeros().toPlainString();
-                        break;
-                    }
-                    case "*": {
-                        BigDecimal number1 = new BigDecimal(output.pop());
-                        BigDecimal number = new BigDecimal(sourceValue);
-                        sourceValue = number.multiply(number1).stripTrailingZeros().toPlainString();
-                        break;
-                    }
-                    case "/": {
-                        BigDecimal number1 = new BigDecimal(output.pop());
-                        BigDecimal number = new BigDecimal(sourceValue);
-                        sourceValue = number.divide(number1).stripTrailingZeros().toPlainString();
-                        break;
-                    }
-                }
+            catch (ArithmeticException | IllegalArgumentException err) {
+                log.error("Cannot calculate target value with " + this.calculationString + " from source value " + sourceValue + ": " + err.getMessage());
+                return result;
             }
         }
 
         // Nothing special use the data types in metadata to decide how to transform source value
         if (itemMetaData.getCodeListDef() == null && itemMetaData.getMultiSelectListDef() == null) {
 
-            // Setup OC date format
-            SimpleDateFormat ocFormat = new SimpleDateFormat(Constants.OC_DATEFORMAT);
-
             switch (itemMetaData.getDataType()) {
                 case Constants.OC_INTEGER:
                     try {
@@ -368,11 +355,7 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
                     break;
                 case Constants.OC_DATE:
                     try {
-                        result = ocFormat.format(
-                                new SimpleDateFormat(this.dateFormatString).parse(
-                                        sourceValue
-                                )
-                        );
+                        result = dateFormat.toOcDate(sourceValue);
                     }
                     catch (ParseException e) {
                         result = this.parseDate(sourceValue);
@@ -381,11 +364,7 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
                 case Constants.OC_PDATE:
                     // Even if the format is PDATE the data for import can be complete so try to parse it
                     try {
-                        result = ocFormat.format(
-                                new SimpleDateFormat(this.dateFormatString).parse(
-                                        sourceValue
-                                )
-                        );
+                        result = dateFormat.toOcDate(sourceValue);
                     }
                     catch (ParseException e) {
                         log.info("Processing unknown PDATE type format: skipping");
@@ -493,6 +472,31 @@ public class MappingRecord implements Identifiable<Integer>, Serializable {
 
     //region Private Methods
 
+    /**
+     * Compile calculation string on first use
+     *
+     * @return calculation or null when there is no or an invalid calculation string (source value is not changed)
+     */
+    private MappingExpression compileCalculation() {
+        if (this.calculationString == null || this.calculationString.isEmpty() || this.calculationInvalid) {
+            return null;
+        }
+
+        MappingExpression calculation = this.calculation;
+        if (calculation == null) {
+            try {
+                calculation = MappingExpression.compile(this.calculationString);
+                this.calculation = calculation;
+            }
+            catch (ParseException err) {
+                log.error("Invalid calculation string " + this.calculationString + " of mapping record " + this.id + ": " + err.getMessage());
+                this.calculationInvalid = true;
+            }
+        }
+
+        return calculation;
+    }
+
     private Boolean canPerformMapping(Map<String, String> mapping) {
         if(mapping == null) {
             throw new NullPointerException("mapping should not be null");
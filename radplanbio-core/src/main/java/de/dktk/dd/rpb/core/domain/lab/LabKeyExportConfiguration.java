@@ -49,6 +49,10 @@ public class LabKeyExportConfiguration {
     // helps to sort the ItemDefinitions in a specific order
     private Comparator<ItemDefinition> itemComparator;
 
+    // upload settings
+    private boolean streamingUpload;
+    private int uploadThreads;
+
     // region Constructor
 
     public LabKeyExportConfiguration(StudyParameterConfiguration configuration) {
@@ -140,6 +144,28 @@ public class LabKeyExportConfiguration {
         this.itemComparator = itemComparator;
     }
 
+    /**
+     * @return true when dataset tables are written directly to the upload request instead of being buffered in memory
+     */
+    public boolean isStreamingUpload() {
+        return streamingUpload;
+    }
+
+    public void setStreamingUpload(boolean streamingUpload) {
+        this.streamingUpload = streamingUpload;
+    }
+
+    /**
+     * @return number of dataset tables uploaded in parallel
+     */
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    public void setUploadThreads(int uploadThreads) {
+        this.uploadThreads = uploadThreads;
+    }
+
     public ItemDefinitionClinicaComparator getFormItemComparator(String formOid) {
         return new ItemDefinitionClinicaComparator(formOid);
     }
@@ -163,6 +189,9 @@ public class LabKeyExportConfiguration {
         this.yearOfBirthRequired = false;
 
         itemComparator = new ItemDefinitionDefaultComparator();
+
+        this.streamingUpload = true;
+        this.uploadThreads = 4;
     }
 
     private void overwriteDefaultsWithStudySpecificSettings(StudyParameterConfiguration configuration) {
@@ -182,6 +211,14 @@ public class LabKeyExportConfiguration {
                 this.setFullDateOfBirthRequired(false);
                 this.setYearOfBirthRequired(false);
         }
+
+        // study specific upload (buffered sequential upload when streaming is switched off)
+        if (configuration.getLabKeyStreamingUpload() != null) {
+            this.setStreamingUpload(configuration.getLabKeyStreamingUpload());
+        }
+        if (configuration.getLabKeyUploadThreads() != null && configuration.getLabKeyUploadThreads() > 0) {
+            this.setUploadThreads(configuration.getLabKeyUploadThreads());
+        }
     }
 
     // endregion
@@ -48,6 +48,7 @@ public class DicomRtContour {
     private double[] points;
     private double[] coordinatesX;
     private double[] coordinatesY;
+    private double[] bounds;
     private double area;
 
     private Double setContourSlabThickness;
@@ -69,6 +70,10 @@ public class DicomRtContour {
 
     public void setPoints(double[] points) {
         this.points = points;
+        this.coordinatesX = null;
+        this.coordinatesY = null;
+        this.bounds = null;
+        this.area = -1.0;
     }
 
 //    public List<Point> getListOfPoints() {
@@ -150,62 +155,46 @@ public class DicomRtContour {
     }
 
     public double[] getCoordinatesX() {
-        if (this.coordinatesX == null) {
-            if (points != null && points.length % 3 == 0) {
-                this.coordinatesX = new double[points.length / 3];
-
-                int j = 0;
-                for (int i = 0; i < points.length; i = i + 3) {
-                    this.coordinatesX[j] = points[i];
-                    j++;
-                }
-            }
-        }
-
+        this.initCoordinates();
         return this.coordinatesX;
     }
 
     public double[] getCoordinatesY() {
-        if (this.coordinatesY == null) {
-            if (points != null && points.length % 3 == 0) {
-                this.coordinatesY = new double[points.length / 3];
-
-                int j = 0;
-                for (int i = 1; i < points.length; i = i + 3) {
-                    this.coordinatesY[j] = points[i];
-                    j++;
-                }
-            }
-        }
-
+        this.initCoordinates();
         return this.coordinatesY;
     }
 
+    /**
+     * @return minX, minY, maxX, maxY of contour points or null when the contour has no points
+     */
+    public double[] getBounds() {
+        this.initCoordinates();
+        return this.bounds;
+    }
+
     public boolean containsContour(DicomRtContour contour) {
-        // Assume if one point is inside, all will be inside
-        contour.getCoordinateX();
-        contour.getCoordinatesY();
+        double[] bounds = this.getBounds();
+        double[] x = this.getCoordinatesX();
+        double[] y = this.getCoordinatesY();
+        if (bounds == null || contour.getBounds() == null) {
+            return false;
+        }
 
-        //TODO: Contour bounding
-        double minX = 0;// Arrays.stream(this.getCoordinatesX()).min().getAsDouble();
-        double maxX = 0;//Arrays.stream(this.getCoordinatesX()).max().getAsDouble();
-        double minY = 0;//Arrays.stream(this.getCoordinatesY()).min().getAsDouble();
-        double maxY = 0;//Arrays.stream(this.getCoordinatesY()).max().getAsDouble();
+        // Assume if one point is inside, all will be inside
+        double pointX = contour.getCoordinateX();
+        double pointY = contour.getCoordinateY();
 
         // Outside of the contour bounding box
-        if (contour.getCoordinateX() < minX || contour.getCoordinateX() > maxX || contour.getCoordinateY() < minY || contour.getCoordinateY() > maxY) {
+        if (pointX < bounds[0] || pointX > bounds[2] || pointY < bounds[1] || pointY > bounds[3]) {
             return false;
         }
 
-        int j = this.getContourPoints() - 1;
+        int j = x.length - 1;
         boolean isInside = false;
 
-        for (int i = 0; i < this.getContourPoints(); i++) {
-            if (this.getCoordinatesY()[i] < contour.getCoordinateY() &&
-                    this.getCoordinatesY()[j] >= contour.getCoordinateY() ||
-                    this.getCoordinatesY()[j] < contour.getCoordinateY() &&
-                            this.getCoordinatesY()[i] >= contour.getCoordinateY()) {
-                if (this.getCoordinatesX()[i] + (contour.getCoordinateY() - this.getCoordinatesY()[i]) / (this.getCoordinatesY()[j] - this.getCoordinatesY()[i]) * (this.getCoordinatesX()[j] - this.getCoordinatesX()[i]) < contour.getCoordinateX()) {
+        for (int i = 0; i < x.length; i++) {
+            if (y[i] < pointY && y[j] >= pointY || y[j] < pointY && y[i] >= pointY) {
+                if (x[i] + (pointY - y[i]) / (y[j] - y[i]) * (x[j] - x[i]) < pointX) {
                     isInside = !isInside;
                 }
             }
@@ -216,6 +205,33 @@ public class DicomRtContour {
         return isInside;
     }
 
+    /**
+     * De-interleave x and y coordinates and calculate bounding box in one pass over contour points
+     */
+    private void initCoordinates() {
+        if (this.coordinatesX != null || this.points == null || this.points.length % 3 != 0) {
+            return;
+        }
+
+        int count = this.points.length / 3;
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] bounds = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+
+        for (int i = 0, j = 0; j < count; i += 3, j++) {
+            x[j] = this.points[i];
+            y[j] = this.points[i + 1];
+            bounds[0] = Math.min(bounds[0], x[j]);
+            bounds[1] = Math.min(bounds[1], y[j]);
+            bounds[2] = Math.max(bounds[2], x[j]);
+            bounds[3] = Math.max(bounds[3], y[j]);
+        }
+
+        this.coordinatesY = y;
+        this.bounds = count > 0 ? bounds : null;
+        this.coordinatesX = x;
+    }
+
     private double polygonArea(double[] x, double[] y) {
         // Initialise the area
         double area = 0.0;
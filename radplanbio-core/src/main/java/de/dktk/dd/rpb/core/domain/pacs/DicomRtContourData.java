@@ -0,0 +1,513 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import java.util.Arrays;
+
+/**
+ * Packed contour data of one DICOM-RT structure (ROI)
+ *
+ * All contour points of the ROI are stored in one primitive array (x, y, z triplets), contours are addressed via
+ * offset index and grouped into planes which are sorted by z coordinate. Compared to one object per contour plane
+ * this keeps large structure sets (many ROIs with thousands of planes) compact and cache friendly.
+ *
+ * Bounding boxes of contours and planes are precomputed when the data is built. Planes are found via binary search
+ * over their z coordinates and contours are rejected by their bounding box before any ray casting, so point queries,
+ * nesting detection (holes vs. islands) and overlap checks do not have to visit all points of the structure.
+ *
+ * @since 18 Oct 2026
+ */
+public class DicomRtContourData {
+
+    //region Members
+
+    // x, y, z triplets of all contours
+    private final double[] points;
+    // contour c occupies points[contourOffsets[c] .. contourOffsets[c + 1])
+    private final int[] contourOffsets;
+    private final String[] geometricTypes;
+    // plane p is composed of contours planeOffsets[p] .. planeOffsets[p + 1] - 1
+    private final double[] planeZ;
+    private final int[] planeOffsets;
+    // minX, minY, maxX, maxY of contour c at bounds[c * 4 ..] and of plane p at planeBounds[p * 4 ..]
+    private final double[] bounds;
+    private final double[] planeBounds;
+    // number of other contours of the same plane enclosing the contour, created on first use
+    private volatile int[] nestingDepths;
+
+    //endregion
+
+    //region Constructors
+
+    private DicomRtContourData(double[] points, int[] contourOffsets, String[] geometricTypes, double[] planeZ, int[] planeOffsets) {
+        this.points = points;
+        this.contourOffsets = contourOffsets;
+        this.geometricTypes = geometricTypes;
+        this.planeZ = planeZ;
+        this.planeOffsets = planeOffsets;
+        this.bounds = createContourBounds(points, contourOffsets, geometricTypes.length);
+        this.planeBounds = createPlaneBounds(this.bounds, planeOffsets, planeZ.length);
+    }
+
+    //endregion
+
+    //region Properties
+
+    public int getContourCount() {
+        return this.geometricTypes.length;
+    }
+
+    public int getPlaneCount() {
+        return this.planeZ.length;
+    }
+
+    public double getPlaneZ(int plane) {
+        return this.planeZ[plane];
+    }
+
+    public int getPlaneContourStart(int plane) {
+        return this.planeOffsets[plane];
+    }
+
+    public int getPlaneContourEnd(int plane) {
+        return this.planeOffsets[plane + 1];
+    }
+
+    public String getGeometricType(int contour) {
+        return this.geometricTypes[contour];
+    }
+
+    public int getPointCount(int contour) {
+        return (this.contourOffsets[contour + 1] - this.contourOffsets[contour]) / 3;
+    }
+
+    public double getX(int contour, int point) {
+        return this.points[this.contourOffsets[contour] + point * 3];
+    }
+
+    public double getY(int contour, int point) {
+        return this.points[this.contourOffsets[contour] + point * 3 + 1];
+    }
+
+    public double getZ(int contour, int point) {
+        return this.points[this.contourOffsets[contour] + point * 3 + 2];
+    }
+
+    public double getMinX(int contour) {
+        return this.bounds[contour * 4];
+    }
+
+    public double getMinY(int contour) {
+        return this.bounds[contour * 4 + 1];
+    }
+
+    public double getMaxX(int contour) {
+        return this.bounds[contour * 4 + 2];
+    }
+
+    public double getMaxY(int contour) {
+        return this.bounds[contour * 4 + 3];
+    }
+
+    public double getPlaneMinX(int plane) {
+        return this.planeBounds[plane * 4];
+    }
+
+    public double getPlaneMinY(int plane) {
+        return this.planeBounds[plane * 4 + 1];
+    }
+
+    public double getPlaneMaxX(int plane) {
+        return this.planeBounds[plane * 4 + 2];
+    }
+
+    public double getPlaneMaxY(int plane) {
+        return this.planeBounds[plane * 4 + 3];
+    }
+
+    /**
+     * @param contour contour index
+     * @return copy of contour points (x, y, z triplets)
+     */
+    public double[] getPoints(int contour) {
+        return Arrays.copyOfRange(this.points, this.contourOffsets[contour], this.contourOffsets[contour + 1]);
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Find plane with exactly provided z coordinate
+     *
+     * @param z plane z coordinate
+     * @return plane index or -1 when the structure is not delineated on such plane
+     */
+    public int findPlane(double z) {
+        int index = Arrays.binarySearch(this.planeZ, z);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Plane thickness is the minimal distance of two neighbouring planes
+     *
+     * @return plane thickness or 0 when the structure has less than two planes
+     */
+    public double getThickness() {
+        double thickness = Double.MAX_VALUE;
+
+        for (int i = 1; i < this.planeZ.length; i++) {
+            double distance = this.planeZ[i] - this.planeZ[i - 1];
+            if (distance < thickness) {
+                thickness = distance;
+            }
+        }
+
+        return thickness == Double.MAX_VALUE ? 0.0 : thickness;
+    }
+
+    /**
+     * Area of contour polygon in xy plane (shoelace formula)
+     *
+     * @param contour contour index
+     * @return area in mm^2
+     */
+    public double getArea(int contour) {
+        int start = this.contourOffsets[contour];
+        int end = this.contourOffsets[contour + 1];
+
+        double area = 0.0;
+        for (int i = start; i < end; i += 3) {
+            int j = i + 3 < end ? i + 3 : start;
+            area += (this.points[i] * this.points[j + 1]) - (this.points[j] * this.points[i + 1]);
+        }
+
+        return Math.abs(area / 2.0);
+    }
+
+    /**
+     * Check whether point lies inside of contour polygon in xy plane (ray casting)
+     *
+     * @param contour contour index
+     * @param x       point x coordinate
+     * @param y       point y coordinate
+     * @return true when the point is inside
+     */
+    public boolean containsPoint(int contour, double x, double y) {
+        int start = this.contourOffsets[contour];
+        int end = this.contourOffsets[contour + 1];
+        if (end - start < 9 || !this.boundsContain(contour, x, y)) {
+            return false;
+        }
+
+        boolean isInside = false;
+        for (int i = start, j = end - 3; i < end; j = i, i += 3) {
+            double xi = this.points[i];
+            double yi = this.points[i + 1];
+            double xj = this.points[j];
+            double yj = this.points[j + 1];
+
+            if ((yi < y && yj >= y || yj < y && yi >= y) && xi + (y - yi) / (yj - yi) * (xj - xi) < x) {
+                isInside = !isInside;
+            }
+        }
+
+        return isInside;
+    }
+
+    /**
+     * Check whether other contour lies inside of contour polygon (assumes if one point is inside all will be inside)
+     *
+     * @param contour outer contour index
+     * @param other   inner contour index
+     * @return true when the other contour is inside
+     */
+    public boolean containsContour(int contour, int other) {
+        if (this.getPointCount(other) == 0 || contour == other) {
+            return false;
+        }
+
+        // Enclosed contour has to lie within the bounding box of the enclosing one
+        if (this.getMinX(other) < this.getMinX(contour) || this.getMaxX(other) > this.getMaxX(contour) ||
+                this.getMinY(other) < this.getMinY(contour) || this.getMaxY(other) > this.getMaxY(contour)) {
+            return false;
+        }
+
+        return this.containsPoint(contour, this.getX(other, 0), this.getY(other, 0));
+    }
+
+    /**
+     * Number of other contours of the same plane which enclose the contour
+     *
+     * @param contour contour index
+     * @return 0 for outer contour, 1 for hole, 2 for island inside of a hole, ...
+     */
+    public int getNestingDepth(int contour) {
+        int[] depths = this.nestingDepths;
+        if (depths == null) {
+            depths = this.createNestingDepths();
+            this.nestingDepths = depths;
+        }
+
+        return depths[contour];
+    }
+
+    /**
+     * Contour is a hole when it is enclosed by odd number of other contours of its plane
+     *
+     * @param contour contour index
+     * @return true when the contour area has to be subtracted from the plane area
+     */
+    public boolean isHole(int contour) {
+        return this.getNestingDepth(contour) % 2 == 1;
+    }
+
+    /**
+     * Check whether point lies inside of the structure (even-odd rule over all contours of the plane)
+     *
+     * @param x point x coordinate
+     * @param y point y coordinate
+     * @param z point z coordinate, has to match a plane of the structure
+     * @return true when the point is inside
+     */
+    public boolean containsPoint(double x, double y, double z) {
+        int plane = this.findPlane(z);
+        if (plane < 0 || x < this.getPlaneMinX(plane) || x > this.getPlaneMaxX(plane) || y < this.getPlaneMinY(plane) || y > this.getPlaneMaxY(plane)) {
+            return false;
+        }
+
+        boolean isInside = false;
+        for (int c = this.planeOffsets[plane]; c < this.planeOffsets[plane + 1]; c++) {
+            if (this.containsPoint(c, x, y)) {
+                isInside = !isInside;
+            }
+        }
+
+        return isInside;
+    }
+
+    /**
+     * Check whether bounding boxes of the structure and other structure overlap on any common plane
+     *
+     * @param other contour data of other structure
+     * @return false when the structures certainly do not overlap
+     */
+    public boolean boundsOverlap(DicomRtContourData other) {
+        if (other == null || this.getPlaneCount() == 0 || other.getPlaneCount() == 0) {
+            return false;
+        }
+
+        // Look up planes of the structure with less planes in the other one
+        DicomRtContourData smaller = this.getPlaneCount() <= other.getPlaneCount() ? this : other;
+        DicomRtContourData larger = smaller == this ? other : this;
+        if (smaller.planeZ[smaller.planeZ.length - 1] < larger.planeZ[0] || smaller.planeZ[0] > larger.planeZ[larger.planeZ.length - 1]) {
+            return false;
+        }
+
+        for (int p = 0; p < smaller.getPlaneCount(); p++) {
+            int q = larger.findPlane(smaller.planeZ[p]);
+            if (q >= 0 &&
+                    smaller.getPlaneMinX(p) <= larger.getPlaneMaxX(q) && smaller.getPlaneMaxX(p) >= larger.getPlaneMinX(q) &&
+                    smaller.getPlaneMinY(p) <= larger.getPlaneMaxY(q) && smaller.getPlaneMaxY(p) >= larger.getPlaneMinY(q)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private boolean boundsContain(int contour, double x, double y) {
+        int b = contour * 4;
+        return x >= this.bounds[b] && y >= this.bounds[b + 1] && x <= this.bounds[b + 2] && y <= this.bounds[b + 3];
+    }
+
+    private int[] createNestingDepths() {
+        int[] depths = new int[this.getContourCount()];
+
+        for (int p = 0; p < this.getPlaneCount(); p++) {
+            int start = this.planeOffsets[p];
+            int end = this.planeOffsets[p + 1];
+
+            // Single contour plane is the most common case
+            if (end - start < 2) {
+                continue;
+            }
+
+            for (int c = start; c < end; c++) {
+                for (int other = start; other < end; other++) {
+                    if (this.containsContour(other, c)) {
+                        depths[c]++;
+                    }
+                }
+            }
+        }
+
+        return depths;
+    }
+
+    private static double[] createContourBounds(double[] points, int[] contourOffsets, int count) {
+        double[] bounds = new double[count * 4];
+
+        for (int c = 0; c < count; c++) {
+            double minX = Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+
+            for (int i = contourOffsets[c]; i < contourOffsets[c + 1]; i += 3) {
+                minX = Math.min(minX, points[i]);
+                minY = Math.min(minY, points[i + 1]);
+                maxX = Math.max(maxX, points[i]);
+                maxY = Math.max(maxY, points[i + 1]);
+            }
+
+            bounds[c * 4] = minX;
+            bounds[c * 4 + 1] = minY;
+            bounds[c * 4 + 2] = maxX;
+            bounds[c * 4 + 3] = maxY;
+        }
+
+        return bounds;
+    }
+
+    private static double[] createPlaneBounds(double[] bounds, int[] planeOffsets, int planeCount) {
+        double[] planeBounds = new double[planeCount * 4];
+
+        for (int p = 0; p < planeCount; p++) {
+            double minX = Double.MAX_VALUE;
+            double minY = Double.MAX_VALUE;
+            double maxX = -Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+
+            for (int c = planeOffsets[p]; c < planeOffsets[p + 1]; c++) {
+                minX = Math.min(minX, bounds[c * 4]);
+                minY = Math.min(minY, bounds[c * 4 + 1]);
+                maxX = Math.max(maxX, bounds[c * 4 + 2]);
+                maxY = Math.max(maxY, bounds[c * 4 + 3]);
+            }
+
+            planeBounds[p * 4] = minX;
+            planeBounds[p * 4 + 1] = minY;
+            planeBounds[p * 4 + 2] = maxX;
+            planeBounds[p * 4 + 3] = maxY;
+        }
+
+        return planeBounds;
+    }
+
+    //endregion
+
+    //region Builder
+
+    /**
+     * Collects contours while parsing and packs them into sorted planes
+     */
+    public static class Builder {
+
+        private double[] points = new double[3 * 1024];
+        private int pointsLength = 0;
+
+        private int[] offsets = new int[64];
+        private double[] z = new double[64];
+        private String[] types = new String[64];
+        private int count = 0;
+
+        /**
+         * Add contour, contour z coordinate is taken from its first point
+         *
+         * @param geometricType contour geometric type
+         * @param contourPoints x, y, z triplets
+         * @return builder
+         */
+        public Builder addContour(String geometricType, double[] contourPoints) {
+            if (contourPoints == null || contourPoints.length < 3 || contourPoints.length % 3 != 0) {
+                return this;
+            }
+
+            if (this.pointsLength + contourPoints.length > this.points.length) {
+                this.points = Arrays.copyOf(this.points, Math.max(this.points.length * 2, this.pointsLength + contourPoints.length));
+            }
+            if (this.count == this.offsets.length) {
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+                this.z = Arrays.copyOf(this.z, this.count * 2);
+                this.types = Arrays.copyOf(this.types, this.count * 2);
+            }
+
+            System.arraycopy(contourPoints, 0, this.points, this.pointsLength, contourPoints.length);
+            this.offsets[this.count] = this.pointsLength;
+            this.z[this.count] = contourPoints[2];
+            this.types[this.count] = geometricType;
+            this.count++;
+            this.pointsLength += contourPoints.length;
+
+            return this;
+        }
+
+        public DicomRtContourData build() {
+            // Order contours by z (stable, so contours keep their DICOM order within plane)
+            Integer[] order = new Integer[this.count];
+            for (int i = 0; i < this.count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(this.z[a], this.z[b]));
+
+            double[] packedPoints = new double[this.pointsLength];
+            int[] contourOffsets = new int[this.count + 1];
+            String[] geometricTypes = new String[this.count];
+            double[] planeZ = new double[this.count];
+            int[] planeOffsets = new int[this.count + 1];
+            int planes = 0;
+
+            int position = 0;
+            for (int c = 0; c < this.count; c++) {
+                int source = order[c];
+                int length = (source + 1 < this.count ? this.offsets[source + 1] : this.pointsLength) - this.offsets[source];
+
+                System.arraycopy(this.points, this.offsets[source], packedPoints, position, length);
+                contourOffsets[c] = position;
+                geometricTypes[c] = this.types[source];
+                position += length;
+
+                if (planes == 0 || planeZ[planes - 1] != this.z[source]) {
+                    planeZ[planes] = this.z[source];
+                    planeOffsets[planes] = c;
+                    planes++;
+                }
+            }
+            contourOffsets[this.count] = position;
+            planeOffsets[planes] = this.count;
+
+            return new DicomRtContourData(
+                    packedPoints,
+                    contourOffsets,
+                    geometricTypes,
+                    Arrays.copyOf(planeZ, planes),
+                    Arrays.copyOf(planeOffsets, planes + 1)
+            );
+        }
+    }
+
+    //endregion
+
+}
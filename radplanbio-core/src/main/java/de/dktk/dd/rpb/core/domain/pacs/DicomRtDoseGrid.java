@@ -0,0 +1,195 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import java.util.Arrays;
+
+/**
+ * Dose grid of DICOM RTDOSE instance
+ *
+ * Dose values (already multiplied with DoseGridScaling) of all frames are stored in one primitive array, frame f
+ * occupies dose[f * rows * columns .. (f + 1) * rows * columns). The grid is expected in axial orientation
+ * (image orientation 1\0\0\0\1\0) with frames sorted by z coordinate, which is what treatment planning systems export.
+ *
+ * @since 18 Oct 2026
+ */
+public class DicomRtDoseGrid {
+
+    //region Members
+
+    private final int columns;
+    private final int rows;
+    // patient coordinates (mm) of the first voxel centre in frame
+    private final double x0;
+    private final double y0;
+    // distance of neighbouring columns (x) and rows (y) in mm
+    private final double columnSpacing;
+    private final double rowSpacing;
+    // z coordinate of each frame in mm, ascending
+    private final double[] frameZ;
+    private final float[] dose;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Create dose grid
+     *
+     * @param columns       number of columns
+     * @param rows          number of rows
+     * @param x0            x coordinate of first voxel centre
+     * @param y0            y coordinate of first voxel centre
+     * @param columnSpacing distance of neighbouring columns
+     * @param rowSpacing    distance of neighbouring rows
+     * @param frameZ        ascending z coordinates of frames
+     * @param dose          scaled dose values frame by frame, row by row
+     */
+    public DicomRtDoseGrid(int columns, int rows, double x0, double y0, double columnSpacing, double rowSpacing, double[] frameZ, float[] dose) {
+        if (columns <= 0 || rows <= 0 || frameZ == null || frameZ.length == 0) {
+            throw new IllegalArgumentException("Dose grid has no voxels");
+        }
+        if (dose == null || dose.length != columns * rows * frameZ.length) {
+            throw new IllegalArgumentException("Dose values do not match the dose grid size");
+        }
+        for (int f = 1; f < frameZ.length; f++) {
+            if (frameZ[f] <= frameZ[f - 1]) {
+                throw new IllegalArgumentException("Dose grid frames are not sorted by z");
+            }
+        }
+
+        this.columns = columns;
+        this.rows = rows;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.columnSpacing = columnSpacing;
+        this.rowSpacing = rowSpacing;
+        this.frameZ = frameZ;
+        this.dose = dose;
+    }
+
+    //endregion
+
+    //region Properties
+
+    public int getColumns() {
+        return this.columns;
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    public int getFrameCount() {
+        return this.frameZ.length;
+    }
+
+    public double getX0() {
+        return this.x0;
+    }
+
+    public double getY0() {
+        return this.y0;
+    }
+
+    public double getColumnSpacing() {
+        return this.columnSpacing;
+    }
+
+    public double getRowSpacing() {
+        return this.rowSpacing;
+    }
+
+    public double getFrameZ(int frame) {
+        return this.frameZ[frame];
+    }
+
+    /**
+     * @return dose of voxel in frame, row and column
+     */
+    public float getDose(int frame, int row, int column) {
+        return this.dose[(frame * this.rows + row) * this.columns + column];
+    }
+
+    /**
+     * @return maximal dose of the grid
+     */
+    public double getMaxDose() {
+        float max = 0;
+        for (float value : this.dose) {
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        return max;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Check whether plane with z coordinate lies within the frames of the grid
+     */
+    public boolean containsZ(double z) {
+        return z >= this.frameZ[0] && z <= this.frameZ[this.frameZ.length - 1];
+    }
+
+    /**
+     * Dose of rows in plane with arbitrary z coordinate, linearly interpolated between the neighbouring frames
+     *
+     * @param z       plane z coordinate (has to be within the grid, see containsZ)
+     * @param fromRow first row to interpolate
+     * @param toRow   row after the last row to interpolate
+     * @param target  array of rows * columns values, the interpolated rows are written at their frame position
+     * @return target
+     */
+    public float[] interpolatePlane(double z, int fromRow, int toRow, float[] target) {
+        int from = fromRow * this.columns;
+        int to = toRow * this.columns;
+
+        // First frame at or above the plane
+        int upper = Arrays.binarySearch(this.frameZ, z);
+        if (upper < 0) {
+            upper = Math.min(-upper - 1, this.frameZ.length - 1);
+        }
+
+        int frameSize = this.rows * this.columns;
+        if (upper == 0 || this.frameZ[upper] == z) {
+            System.arraycopy(this.dose, upper * frameSize + from, target, from, to - from);
+            return target;
+        }
+
+        int lower = upper - 1;
+        float weight = (float) ((z - this.frameZ[lower]) / (this.frameZ[upper] - this.frameZ[lower]));
+        int lowerOffset = lower * frameSize;
+        int upperOffset = upper * frameSize;
+        for (int i = from; i < to; i++) {
+            float lowerDose = this.dose[lowerOffset + i];
+            target[i] = lowerDose + (this.dose[upperOffset + i] - lowerDose) * weight;
+        }
+
+        return target;
+    }
+
+    //endregion
+
+}
@@ -21,6 +21,9 @@ package de.dktk.dd.rpb.core.domain.pacs;
 
 /**
  * Created by root on 12/2/15.   Cumulative DVH
+ *
+ * DVH data are pairs of dose bin width and volume, the volume of bin n is the volume receiving at least the sum of
+ * widths of all preceding bins (provided by RTDOSE or calculated by DicomRtDvhCalculator, see source)
  */
 public class DicomRtDvh {
 
@@ -45,6 +48,7 @@ public class DicomRtDvh {
     private double dvhMaximumDose;
     private double dvhMeanDose;
     private double[] dvhData;   // Careful "filler" values are included in DVH data array (even values are DVH values)
+    private DVHSOURCE source = DVHSOURCE.PROVIDED;
 
     //endregion
 
@@ -54,6 +58,26 @@ public class DicomRtDvh {
 
     }
 
+    /**
+     * Initialise DVH as copy of another DVH
+     *
+     * @param other DVH to copy
+     */
+    public DicomRtDvh(DicomRtDvh other) {
+        this.referencedRoiNumber = other.referencedRoiNumber;
+        this.type = other.type;
+        this.doseUnit = other.doseUnit;
+        this.doseType = other.doseType;
+        this.dvhDoseScaling = other.dvhDoseScaling;
+        this.dvhVolumeUnit = other.dvhVolumeUnit;
+        this.dvhNumberOfBins = other.dvhNumberOfBins;
+        this.dvhMinimumDose = other.dvhMinimumDose;
+        this.dvhMaximumDose = other.dvhMaximumDose;
+        this.dvhMeanDose = other.dvhMeanDose;
+        this.dvhData = other.dvhData != null ? other.dvhData.clone() : null;
+        this.source = other.source;
+    }
+
     //endregion
 
     //region Properties
@@ -146,6 +170,118 @@ public class DicomRtDvh {
         this.dvhData = dvhData;
     }
 
+    public DVHSOURCE getSource() {
+        return source;
+    }
+
+    public void setSource(DVHSOURCE source) {
+        this.source = source;
+    }
+
+    /**
+     * @return volume of the structure (cumulative volume of the first bin) in DVH volume unit
+     */
+    public double getTotalVolume() {
+        if (this.dvhData == null || this.dvhData.length < 2) {
+            return 0.0;
+        }
+
+        return this.dvhData[1];
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Vx metric of cumulative DVH
+     *
+     * @param dose dose in DVH dose unit
+     * @return volume receiving at least the dose (in DVH volume unit), linearly interpolated between bins
+     */
+    public double getVolumeAtDose(double dose) {
+        if (this.dvhData == null || this.dvhData.length < 2) {
+            return 0.0;
+        }
+
+        double binStart = 0.0;
+        for (int i = 0; i < this.dvhData.length / 2; i++) {
+            double binEnd = binStart + this.dvhData[i * 2] * this.dvhDoseScaling;
+            if (dose < binEnd) {
+                double volume = this.dvhData[i * 2 + 1];
+                double nextVolume = i * 2 + 3 < this.dvhData.length ? this.dvhData[i * 2 + 3] : 0.0;
+                double position = Math.max(0.0, (dose - binStart) / (binEnd - binStart));
+                return volume + (nextVolume - volume) * position;
+            }
+            binStart = binEnd;
+        }
+
+        return 0.0;
+    }
+
+    /**
+     * Vx metric of cumulative DVH relative to the structure volume
+     *
+     * @param dose dose in DVH dose unit
+     * @return percentage of structure volume receiving at least the dose
+     */
+    public double getVolumePercentAtDose(double dose) {
+        double totalVolume = this.getTotalVolume();
+        return totalVolume > 0 ? this.getVolumeAtDose(dose) * 100.0 / totalVolume : 0.0;
+    }
+
+    /**
+     * Dx metric of cumulative DVH
+     *
+     * @param volumePercent percentage of structure volume
+     * @return minimal dose received by the hottest volumePercent of the structure, linearly interpolated between bins
+     */
+    public double getDoseAtVolumePercent(double volumePercent) {
+        double totalVolume = this.getTotalVolume();
+        if (totalVolume <= 0) {
+            return 0.0;
+        }
+
+        double volume = totalVolume * volumePercent / 100.0;
+        // Summed bin volumes are not exact, bins with (almost) the searched volume are a plateau of the curve
+        double tolerance = totalVolume * 1e-9;
+        double binStart = 0.0;
+        for (int i = 0; i < this.dvhData.length / 2; i++) {
+            double binEnd = binStart + this.dvhData[i * 2] * this.dvhDoseScaling;
+            double nextVolume = i * 2 + 3 < this.dvhData.length ? this.dvhData[i * 2 + 3] : 0.0;
+            if (nextVolume < volume - tolerance) {
+                double binVolume = this.dvhData[i * 2 + 1];
+                double position = binVolume > nextVolume ? (binVolume - volume) / (binVolume - nextVolume) : 0.0;
+                return binStart + (binEnd - binStart) * Math.max(0.0, position);
+            }
+            binStart = binEnd;
+        }
+
+        return binStart;
+    }
+
+    /**
+     * Convert differential DVH data to cumulative
+     *
+     * @param differentialData dose bin width and bin volume pairs
+     * @return dose bin width and cumulative volume pairs (volume receiving at least the dose of the bin start)
+     */
+    public static double[] toCumulative(double[] differentialData) {
+        if (differentialData == null) {
+            return null;
+        }
+
+        double[] cumulativeData = new double[differentialData.length - differentialData.length % 2];
+        double cumulative = 0.0;
+        for (int i = cumulativeData.length - 2; i >= 0; i -= 2) {
+            cumulative += differentialData[i + 1];
+            cumulativeData[i] = differentialData[i];
+            cumulativeData[i + 1] = cumulative;
+        }
+
+        return cumulativeData;
+    }
+
     //endregion
 
 }
\ No newline at end of file
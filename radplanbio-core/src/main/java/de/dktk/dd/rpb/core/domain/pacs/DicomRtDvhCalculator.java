@@ -0,0 +1,389 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Dose volume histogram calculation from RTDOSE grid and RTSTRUCT contours
+ *
+ * Each contour plane of a structure is rasterised onto the dose grid with scanline polygon fill (even-odd rule,
+ * so inner contours of the plane are holes), the dose of the plane is interpolated between the neighbouring dose
+ * frames and every voxel inside of the plane contributes its pixel area multiplied with the structure thickness
+ * (half thickness for the first and the last plane, same as the structure volume calculation).
+ * Structures and plane ranges of each structure are processed in parallel with fork-join.
+ *
+ * @since 18 Oct 2026
+ */
+public class DicomRtDvhCalculator {
+
+    //region Finals
+
+    // 1 cGy bins
+    public static final double DEFAULT_BIN_WIDTH = 0.01;
+
+    // Planes which are rasterised by one task without further splitting
+    private static final int planesPerTask = 4;
+
+    private final ForkJoinPool pool;
+    private final double binWidth;
+
+    //endregion
+
+    //region Constructors
+
+    public DicomRtDvhCalculator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BIN_WIDTH);
+    }
+
+    /**
+     * @param pool     fork-join pool the calculation runs on
+     * @param binWidth dose bin width in Gy
+     */
+    public DicomRtDvhCalculator(ForkJoinPool pool, double binWidth) {
+        if (binWidth <= 0) {
+            throw new IllegalArgumentException("DVH bin width has to be positive");
+        }
+
+        this.pool = pool;
+        this.binWidth = binWidth;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Calculate cumulative DVH of all structures of structure set (in order of ROI number)
+     *
+     * @param structureSet structure set with contour data
+     * @param grid         dose grid in Gy
+     * @return DVHs of structures which have contours within the dose grid
+     */
+    public List<DicomRtDvh> calculate(DicomRtStructureSet structureSet, DicomRtDoseGrid grid) {
+        List<DicomRtStructure> structures = new ArrayList<>();
+        for (DicomRtStructureLayer layer : new TreeMap<>(structureSet).values()) {
+            structures.add(layer.getStructure());
+        }
+
+        return this.calculate(structures, grid);
+    }
+
+    /**
+     * Calculate cumulative DVH of structures, structures are processed in parallel
+     *
+     * @param structures structures with contour data
+     * @param grid       dose grid in Gy
+     * @return DVHs of structures which have contours within the dose grid (in order of structures)
+     */
+    public List<DicomRtDvh> calculate(List<DicomRtStructure> structures, DicomRtDoseGrid grid) {
+        int binCount = this.getBinCount(grid);
+
+        List<StructureTask> tasks = new ArrayList<>();
+        for (DicomRtStructure structure : structures) {
+            tasks.add(new StructureTask(structure, grid, binCount));
+        }
+
+        this.pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+
+        List<DicomRtDvh> result = new ArrayList<>();
+        for (StructureTask task : tasks) {
+            DicomRtDvh dvh = task.join();
+            if (dvh != null) {
+                result.add(dvh);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Calculate cumulative DVH of single structure
+     *
+     * @param structure structure with contour data
+     * @param grid      dose grid in Gy
+     * @return DVH or null when the structure has no contours within the dose grid
+     */
+    public DicomRtDvh calculate(DicomRtStructure structure, DicomRtDoseGrid grid) {
+        return this.pool.invoke(new StructureTask(structure, grid, this.getBinCount(grid)));
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private int getBinCount(DicomRtDoseGrid grid) {
+        return (int) Math.floor(grid.getMaxDose() / this.binWidth) + 1;
+    }
+
+    private DicomRtDvh createDvh(DicomRtStructure structure, Histogram histogram) {
+        if (histogram.totalVolume <= 0) {
+            return null;
+        }
+
+        // Highest bin with volume, cumulative volumes of higher bins would be 0
+        int bins = histogram.volumes.length;
+        while (bins > 1 && histogram.volumes[bins - 1] == 0) {
+            bins--;
+        }
+
+        // Dose bin width and cumulative volume pairs (volume receiving at least the dose of the bin start)
+        double[] data = new double[bins * 2];
+        double cumulative = 0.0;
+        for (int i = bins - 1; i >= 0; i--) {
+            cumulative += histogram.volumes[i];
+            data[i * 2] = this.binWidth;
+            data[i * 2 + 1] = cumulative;
+        }
+
+        DicomRtDvh dvh = new DicomRtDvh();
+        dvh.setReferencedRoiNumber(structure.getRoiNumber());
+        dvh.setType("CUMULATIVE");
+        dvh.setDoseUnit("GY");
+        dvh.setDvhDoseScaling(1.0);
+        dvh.setDvhVolumeUnit("CM3");
+        dvh.setDvhNumberOfBins(bins);
+        dvh.setDvhData(data);
+        dvh.setDvhMinimumDose(histogram.minDose);
+        dvh.setDvhMaximumDose(histogram.maxDose);
+        dvh.setDvhMeanDose(histogram.doseVolume / histogram.totalVolume);
+        dvh.setSource(DicomRtDvh.DVHSOURCE.RPB_CALCUALTED);
+
+        return dvh;
+    }
+
+    private static boolean isClosedContour(DicomRtContourData contourData, int contour) {
+        String type = contourData.getGeometricType(contour);
+        return contourData.getPointCount(contour) >= 3 && (type == null || "CLOSED_PLANAR".equals(type));
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Dose histogram of part of a structure (primitive volume bins in cm^3)
+     */
+    private static class Histogram {
+
+        private final double[] volumes;
+        private double totalVolume = 0.0;
+        private double doseVolume = 0.0;
+        private double minDose = Double.MAX_VALUE;
+        private double maxDose = 0.0;
+
+        Histogram(int binCount) {
+            this.volumes = new double[binCount];
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < this.volumes.length; i++) {
+                this.volumes[i] += other.volumes[i];
+            }
+            this.totalVolume += other.totalVolume;
+            this.doseVolume += other.doseVolume;
+            this.minDose = Math.min(this.minDose, other.minDose);
+            this.maxDose = Math.max(this.maxDose, other.maxDose);
+        }
+    }
+
+    /**
+     * DVH of one structure, contour planes are split into plane range tasks
+     */
+    private class StructureTask extends RecursiveTask<DicomRtDvh> {
+
+        private final DicomRtStructure structure;
+        private final DicomRtDoseGrid grid;
+        private final int binCount;
+
+        StructureTask(DicomRtStructure structure, DicomRtDoseGrid grid, int binCount) {
+            this.structure = structure;
+            this.grid = grid;
+            this.binCount = binCount;
+        }
+
+        @Override
+        protected DicomRtDvh compute() {
+            DicomRtContourData contourData = this.structure.getContourData();
+            if (contourData == null || contourData.getPlaneCount() == 0) {
+                return null;
+            }
+
+            // Single plane structures have no thickness of their own, the dose grid resolution is used instead
+            double thickness = this.structure.getThickness();
+            if (thickness <= 0) {
+                thickness = this.grid.getFrameCount() > 1 ? this.grid.getFrameZ(1) - this.grid.getFrameZ(0) : 1.0;
+            }
+
+            Histogram histogram = new PlaneTask(contourData, this.grid, this.binCount, thickness, 0, contourData.getPlaneCount()).compute();
+            return createDvh(this.structure, histogram);
+        }
+    }
+
+    /**
+     * Rasterisation of range of contour planes of one structure
+     */
+    private class PlaneTask extends RecursiveTask<Histogram> {
+
+        private final DicomRtContourData contourData;
+        private final DicomRtDoseGrid grid;
+        private final int binCount;
+        private final double thickness;
+        private final int fromPlane;
+        private final int toPlane;
+
+        PlaneTask(DicomRtContourData contourData, DicomRtDoseGrid grid, int binCount, double thickness, int fromPlane, int toPlane) {
+            this.contourData = contourData;
+            this.grid = grid;
+            this.binCount = binCount;
+            this.thickness = thickness;
+            this.fromPlane = fromPlane;
+            this.toPlane = toPlane;
+        }
+
+        @Override
+        protected Histogram compute() {
+            if (this.toPlane - this.fromPlane > planesPerTask) {
+                int middle = (this.fromPlane + this.toPlane) >>> 1;
+                PlaneTask lower = new PlaneTask(this.contourData, this.grid, this.binCount, this.thickness, this.fromPlane, middle);
+                PlaneTask upper = new PlaneTask(this.contourData, this.grid, this.binCount, this.thickness, middle, this.toPlane);
+                upper.fork();
+                Histogram result = lower.compute();
+                result.merge(upper.join());
+                return result;
+            }
+
+            Histogram histogram = new Histogram(this.binCount);
+            float[] planeDose = new float[this.grid.getRows() * this.grid.getColumns()];
+            double[] intersections = new double[64];
+
+            for (int plane = this.fromPlane; plane < this.toPlane; plane++) {
+                intersections = this.rasterisePlane(plane, histogram, planeDose, intersections);
+            }
+
+            return histogram;
+        }
+
+        private double[] rasterisePlane(int plane, Histogram histogram, float[] planeDose, double[] intersections) {
+            double z = this.contourData.getPlaneZ(plane);
+            if (!this.grid.containsZ(z)) {
+                return intersections;
+            }
+
+            int start = this.contourData.getPlaneContourStart(plane);
+            int end = this.contourData.getPlaneContourEnd(plane);
+
+            // Extent of plane in y decides which rows of the dose grid have to be scanned
+            double minY = Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+            for (int c = start; c < end; c++) {
+                if (isClosedContour(this.contourData, c)) {
+                    minY = Math.min(minY, this.contourData.getMinY(c));
+                    maxY = Math.max(maxY, this.contourData.getMaxY(c));
+                }
+            }
+            if (minY > maxY) {
+                return intersections;
+            }
+
+            double x0 = this.grid.getX0();
+            double y0 = this.grid.getY0();
+            double dx = this.grid.getColumnSpacing();
+            double dy = this.grid.getRowSpacing();
+            int columns = this.grid.getColumns();
+
+            int fromRow = Math.max(0, (int) Math.ceil((minY - y0) / dy));
+            int toRow = Math.min(this.grid.getRows(), (int) Math.floor((maxY - y0) / dy) + 1);
+            if (fromRow >= toRow) {
+                return intersections;
+            }
+
+            this.grid.interpolatePlane(z, fromRow, toRow, planeDose);
+
+            boolean endPlane = plane == 0 || plane == this.contourData.getPlaneCount() - 1;
+            double voxelVolume = dx * dy * (endPlane ? this.thickness * 0.5 : this.thickness) / 1000.0;
+
+            for (int row = fromRow; row < toRow; row++) {
+                double y = y0 + row * dy;
+
+                // Crossings of the scanline with edges of all closed contours of the plane
+                int count = 0;
+                for (int c = start; c < end; c++) {
+                    // Contours which the scanline does not cross are skipped via their bounding box
+                    if (y < this.contourData.getMinY(c) || y >= this.contourData.getMaxY(c) || !isClosedContour(this.contourData, c)) {
+                        continue;
+                    }
+
+                    int points = this.contourData.getPointCount(c);
+                    for (int i = 0, j = points - 1; i < points; j = i, i++) {
+                        double yi = this.contourData.getY(c, i);
+                        double yj = this.contourData.getY(c, j);
+                        if ((yi <= y && yj > y) || (yj <= y && yi > y)) {
+                            if (count == intersections.length) {
+                                intersections = Arrays.copyOf(intersections, count * 2);
+                            }
+                            double xi = this.contourData.getX(c, i);
+                            double xj = this.contourData.getX(c, j);
+                            intersections[count++] = xi + (y - yi) / (yj - yi) * (xj - xi);
+                        }
+                    }
+                }
+                Arrays.sort(intersections, 0, count);
+
+                // Voxel centres between pairs of crossings are inside
+                int rowOffset = row * columns;
+                for (int k = 0; k + 1 < count; k += 2) {
+                    int fromColumn = Math.max(0, (int) Math.ceil((intersections[k] - x0) / dx));
+                    int toColumn = Math.min(columns, (int) Math.ceil((intersections[k + 1] - x0) / dx));
+
+                    for (int column = fromColumn; column < toColumn; column++) {
+                        double dose = planeDose[rowOffset + column];
+                        int bin = Math.min(this.binCount - 1, Math.max(0, (int) (dose / binWidth)));
+                        histogram.volumes[bin] += voxelVolume;
+                        histogram.totalVolume += voxelVolume;
+                        histogram.doseVolume += dose * voxelVolume;
+                        if (dose < histogram.minDose) {
+                            histogram.minDose = dose;
+                        }
+                        if (dose > histogram.maxDose) {
+                            histogram.maxDose = dose;
+                        }
+                    }
+                }
+            }
+
+            return intersections;
+        }
+    }
+
+    //endregion
+
+}
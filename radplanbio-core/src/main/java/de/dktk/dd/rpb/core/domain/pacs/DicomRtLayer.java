@@ -28,6 +28,11 @@ public class DicomRtLayer {
         // NOOP
     }
 
+    public DicomRtLayer(DicomRtLayer other) {
+        this.name = other.name;
+        this.isSelected = other.isSelected;
+    }
+
     public String getName() {
         return this.name;
     }
@@ -24,6 +24,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.TreeMap;
 
 
 /**
@@ -46,7 +47,7 @@ public class DicomRtStructure {
     private EnumDataSource volumeSource;
 
     private Color color;
-    private Map<Double, ArrayList<DicomRtContour>> planes;
+    private DicomRtContourData contourData;
 
     //endregion
 
@@ -56,6 +57,24 @@ public class DicomRtStructure {
         this.volume = -1.0;
     }
 
+    /**
+     * Initialise structure as copy of another structure, the immutable contour data are shared
+     *
+     * @param other structure to copy
+     */
+    public DicomRtStructure(DicomRtStructure other) {
+        this.roiNumber = other.roiNumber;
+        this.roiName = other.roiName;
+        this.observationNumber = other.observationNumber;
+        this.rtRoiInterpretedType = other.rtRoiInterpretedType;
+        this.roiObservationLabel = other.roiObservationLabel;
+        this.thickness = other.thickness;
+        this.volume = other.volume;
+        this.volumeSource = other.volumeSource;
+        this.color = other.color;
+        this.contourData = other.contourData;
+    }
+
     //endregion
 
     //region Properties
@@ -171,14 +190,45 @@ public class DicomRtStructure {
 
     //endregion
 
+    //region ContourData
+
+    public DicomRtContourData getContourData() {
+        return this.contourData;
+    }
+
+    public void setContourData(DicomRtContourData contourData) {
+        this.contourData = contourData;
+    }
+
+    //endregion
+
     //region Planes
 
+    /**
+     * Contour planes view created from packed contour data, each call creates new contour objects
+     *
+     * @return contours per plane z coordinate sorted by z
+     */
     public Map<Double, ArrayList<DicomRtContour>> getPlanes() {
-        return this.planes;
-    }
+        Map<Double, ArrayList<DicomRtContour>> planes = new TreeMap<>();
+        if (this.contourData == null) {
+            return planes;
+        }
+
+        DicomRtStructureLayer layer = new DicomRtStructureLayer(this);
+        for (int p = 0; p < this.contourData.getPlaneCount(); p++) {
+            ArrayList<DicomRtContour> contours = new ArrayList<>();
+            for (int c = this.contourData.getPlaneContourStart(p); c < this.contourData.getPlaneContourEnd(p); c++) {
+                DicomRtContour contour = new DicomRtContour(layer);
+                contour.setGeometricType(this.contourData.getGeometricType(c));
+                contour.setPoints(this.contourData.getPoints(c));
+                contour.setContourPoints(this.contourData.getPointCount(c));
+                contours.add(contour);
+            }
+            planes.put(this.contourData.getPlaneZ(p), contours);
+        }
 
-    public void setPlanes(Map<Double, ArrayList<DicomRtContour>> contours) {
-        this.planes = contours;
+        return planes;
     }
 
     //endregion
@@ -187,6 +237,28 @@ public class DicomRtStructure {
 
     //region Methods
 
+    /**
+     * Check whether point lies inside of the structure
+     *
+     * @param x point x coordinate
+     * @param y point y coordinate
+     * @param z point z coordinate, has to match a contour plane of the structure
+     * @return true when the point is inside
+     */
+    public boolean containsPoint(double x, double y, double z) {
+        return this.contourData != null && this.contourData.containsPoint(x, y, z);
+    }
+
+    /**
+     * Check whether the structure may overlap with other structure (bounding boxes on common planes overlap)
+     *
+     * @param other other structure
+     * @return false when the structures certainly do not overlap
+     */
+    public boolean mayOverlap(DicomRtStructure other) {
+        return this.contourData != null && other != null && this.contourData.boundsOverlap(other.getContourData());
+    }
+
 //    public Pair<Integer, Double> calculateLargestContour(ArrayList<DicomRtContour> planeContours) {
 //        double maxContourArea = 0.0;
 //        int maxContourIndex = 0;
@@ -207,54 +279,37 @@ public class DicomRtStructure {
 
     private double calculateVolume() {
         double structureVolume = 0.0;
+        if (this.contourData == null) {
+            return structureVolume;
+        }
 
-        // Iterate over structure planes (z)
-        int n = 0;
-        for (ArrayList<DicomRtContour> structurePlaneContours : this.planes.values()) {
-
-            // TODO
-            // Calculate the area for each contour in the current plane
-            // Pair maxContour = this.calculateLargestContour(structurePlaneContours);
-            int maxContourIndex = 0; // (Integer)maxContour.getFirst();
-            double maxContourArea = 0; // (Double)maxContour.getSecond();
-
-            for (int i = 0; i < structurePlaneContours.size(); i++) {
-                DicomRtContour polygon = structurePlaneContours.get(i);
-
-                // Find the largest polygon of contour
-                if (polygon.getArea() > maxContourArea) {
-                    maxContourArea = polygon.getArea();
-                    maxContourIndex = i;
-                }
-            }
+        // Iterate over structure planes (sorted by z)
+        int planeCount = this.contourData.getPlaneCount();
+        for (int n = 0; n < planeCount; n++) {
+            int start = this.contourData.getPlaneContourStart(n);
+            int end = this.contourData.getPlaneContourEnd(n);
 
             // Sum the area of contours in the current plane
-            DicomRtContour largestPolygon = structurePlaneContours.get(maxContourIndex);
-            double area = largestPolygon.getArea();
-            for (int i = 0; i < structurePlaneContours.size(); i++) {
-                DicomRtContour polygon = structurePlaneContours.get(i);
-                if (i != maxContourIndex) {
-                    // If the contour is inside = ring -> subtract it from the total area
-                    if (largestPolygon.containsContour(polygon)) {
-                        area -= polygon.getArea();
-                    }
-                    // Otherwise it is outside, so add it to the total area
-                    else {
-                        area += polygon.getArea();
-                    }
+            double area = 0.0;
+            for (int i = start; i < end; i++) {
+                // If the contour is inside of other contour = ring -> subtract it from the total area
+                if (this.contourData.isHole(i)) {
+                    area -= this.contourData.getArea(i);
+                }
+                // Otherwise it is outer contour or island inside of a ring, so add it to the total area
+                else {
+                    area += this.contourData.getArea(i);
                 }
             }
 
             // For first and last plane calculate with half of thickness
-            if ((n == 0) || (n == this.planes.size() -1)) {
+            if ((n == 0) || (n == planeCount - 1)) {
                 structureVolume += area * this.thickness * 0.5;
             }
             // For rest use full slice thickness
             else {
                 structureVolume += area * this.thickness;
             }
-
-            n++;
         }
 
         // DICOM uses millimeters -> convert from mm^3 to cm^3
@@ -31,6 +31,16 @@ public class DicomRtStructureLayer extends DicomRtLayer {
         this.setName(structure.getRoiName());
     }
 
+    /**
+     * Initialise layer as copy of another layer with copy of its structure
+     *
+     * @param other layer to copy
+     */
+    public DicomRtStructureLayer(DicomRtStructureLayer other) {
+        super(other);
+        this.structure = new DicomRtStructure(other.structure);
+    }
+
     public DicomRtStructure getStructure() {
         return structure;
     }
@@ -30,13 +30,46 @@ public class DicomRtStructureSet extends HashMap<Integer, DicomRtStructureLayer>
 
     //region Members
 
+    private String sopInstanceUid;
     private String label;
     private Date date;
 
     //endregion
 
+    //region Constructors
+
+    public DicomRtStructureSet() {
+        // NOOP
+    }
+
+    /**
+     * Initialise structure set as copy of another structure set (layers and structures are copied)
+     *
+     * @param other structure set to copy
+     */
+    public DicomRtStructureSet(DicomRtStructureSet other) {
+        super(other.size() * 2);
+
+        this.sopInstanceUid = other.sopInstanceUid;
+        this.label = other.label;
+        this.date = other.date != null ? new Date(other.date.getTime()) : null;
+        for (Entry<Integer, DicomRtStructureLayer> entry : other.entrySet()) {
+            this.put(entry.getKey(), new DicomRtStructureLayer(entry.getValue()));
+        }
+    }
+
+    //endregion
+
     //region Properties
 
+    public String getSopInstanceUid() {
+        return this.sopInstanceUid;
+    }
+
+    public void setSopInstanceUid(String sopInstanceUid) {
+        this.sopInstanceUid = sopInstanceUid;
+    }
+
     public String getLabel() {
         return this.label;
     }
@@ -79,6 +79,23 @@ public class DicomSeries implements Identifiable<Integer>, Serializable {
         // NOOP
     }
 
+    /**
+     * Initialise series as copy of another series (images list is copied, images are shared)
+     *
+     * @param other series to copy
+     */
+    public DicomSeries(DicomSeries other) {
+        this.id = other.id;
+        this.seriesInstanceUID = other.seriesInstanceUID;
+        this.frameOfReferenceUid = other.frameOfReferenceUid;
+        this.seriesDescription = other.seriesDescription;
+        this.seriesModality = other.seriesModality;
+        this.seriesTime = other.seriesTime;
+        this.seriesDate = other.seriesDate;
+        this.seriesNumber = other.seriesNumber;
+        this.seriesImages = other.seriesImages != null ? new ArrayList<>(other.seriesImages) : null;
+    }
+
     //endregion
 
     //region Properties
@@ -29,6 +29,7 @@ import javax.xml.bind.annotation.XmlTransient;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -48,6 +49,7 @@ public class DicomSeriesRtDose extends DicomSeries {
     //region Members
 
     private String sopInstanceUid;
+    private String referencedRtPlanUid;
     private String doseUnits = "";
     private String doseType = "";
     private String doseComment = "";
@@ -62,6 +64,41 @@ public class DicomSeriesRtDose extends DicomSeries {
 
     //endregion
 
+    //region Constructors
+
+    public DicomSeriesRtDose() {
+        // NOOP
+    }
+
+    /**
+     * Initialise dose as deep copy of another dose (referenced plan and DVHs are copied)
+     *
+     * @param other dose to copy
+     */
+    public DicomSeriesRtDose(DicomSeriesRtDose other) {
+        super(other);
+
+        this.sopInstanceUid = other.sopInstanceUid;
+        this.referencedRtPlanUid = other.referencedRtPlanUid;
+        this.doseUnits = other.doseUnits;
+        this.doseType = other.doseType;
+        this.doseComment = other.doseComment;
+        this.doseSummationType = other.doseSummationType;
+        this.instanceCreationDate = other.instanceCreationDate;
+        this.doseGridScaling = other.doseGridScaling;
+        this.doseMax = other.doseMax;
+        this.rtPlan = other.rtPlan != null ? new DicomSeriesRtPlan(other.rtPlan) : null;
+
+        if (other.rtDvhs != null) {
+            this.rtDvhs = new ArrayList<>();
+            for (DicomRtDvh dvh : other.rtDvhs) {
+                this.rtDvhs.add(new DicomRtDvh(dvh));
+            }
+        }
+    }
+
+    //endregion
+
     //region Properties
 
     @XmlTransient
@@ -74,6 +111,19 @@ public class DicomSeriesRtDose extends DicomSeries {
         this.sopInstanceUid = sopInstanceUid;
     }
 
+    /**
+     * SOP instance UID of the plan the dose was calculated for (Referenced RT Plan Sequence)
+     */
+    @XmlTransient
+    public String getReferencedRtPlanUid() {
+        return this.referencedRtPlanUid;
+    }
+
+    @Transient
+    public void setReferencedRtPlanUid(String referencedRtPlanUid) {
+        this.referencedRtPlanUid = referencedRtPlanUid;
+    }
+
     @XmlTransient
     public String getDoseUnits() {
         return doseUnits;
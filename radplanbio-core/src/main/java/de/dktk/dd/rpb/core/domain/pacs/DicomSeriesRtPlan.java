@@ -47,6 +47,8 @@ public class DicomSeriesRtPlan extends DicomSeries {
 
     //region Members
 
+    private String sopInstanceUid;
+    private String referencedStructureSetUid;
     private String rtPlanLabel;
     private String rtPlanManufacturerModelName;
     private String rtPlanName;
@@ -64,10 +66,53 @@ public class DicomSeriesRtPlan extends DicomSeries {
         this.rxDose = 0;
     }
 
+    /**
+     * Initialise plan as copy of another plan
+     *
+     * @param other plan to copy
+     */
+    public DicomSeriesRtPlan(DicomSeriesRtPlan other) {
+        super(other);
+
+        this.sopInstanceUid = other.sopInstanceUid;
+        this.referencedStructureSetUid = other.referencedStructureSetUid;
+        this.rtPlanLabel = other.rtPlanLabel;
+        this.rtPlanManufacturerModelName = other.rtPlanManufacturerModelName;
+        this.rtPlanName = other.rtPlanName;
+        this.rtPlanDate = other.rtPlanDate;
+        this.manufacturer = other.manufacturer;
+        this.rtPlanDescription = other.rtPlanDescription;
+        this.rtPlanGeometry = other.rtPlanGeometry;
+        this.rxDose = other.rxDose;
+    }
+
     //endregion
 
     //region Properties
 
+    @XmlTransient
+    public String getSopInstanceUid() {
+        return this.sopInstanceUid;
+    }
+
+    @Transient
+    public void setSopInstanceUid(String sopInstanceUid) {
+        this.sopInstanceUid = sopInstanceUid;
+    }
+
+    /**
+     * SOP instance UID of the structure set the plan is based on (Referenced Structure Set Sequence)
+     */
+    @XmlTransient
+    public String getReferencedStructureSetUid() {
+        return this.referencedStructureSetUid;
+    }
+
+    @Transient
+    public void setReferencedStructureSetUid(String referencedStructureSetUid) {
+        this.referencedStructureSetUid = referencedStructureSetUid;
+    }
+
     @XmlTransient
     public String getRtPlanLabel() {
         return this.rtPlanLabel;
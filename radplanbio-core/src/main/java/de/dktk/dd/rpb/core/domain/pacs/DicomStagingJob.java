@@ -0,0 +1,182 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * DICOM staging job, C-MOVE requests of selected series and SOP instances from one PACS to the CTP pipeline
+ * of a study, executed in background by the staging service
+ *
+ * @since 18 Oct 2026
+ */
+public class DicomStagingJob implements Serializable {
+
+    //region Finals
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final String owner;
+    private final String pacsBaseUrl;
+    private final String destinationAet;
+    private final Date created;
+    private final List<DicomStagingTask> tasks = new ArrayList<>();
+
+    //endregion
+
+    //region Members
+
+    private volatile Date finished;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Create new staging job
+     *
+     * @param owner          username of the user who submitted the job
+     * @param pacsBaseUrl    web location of conquest dgate the data is moved from
+     * @param destinationAet DICOM application entity of the CTP pipeline
+     */
+    public DicomStagingJob(String owner, String pacsBaseUrl, String destinationAet) {
+        this.id = UUID.randomUUID().toString();
+        this.owner = owner;
+        this.pacsBaseUrl = pacsBaseUrl;
+        this.destinationAet = destinationAet;
+        this.created = new Date();
+    }
+
+    //endregion
+
+    //region Properties
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getOwner() {
+        return this.owner;
+    }
+
+    public String getPacsBaseUrl() {
+        return this.pacsBaseUrl;
+    }
+
+    public String getDestinationAet() {
+        return this.destinationAet;
+    }
+
+    public Date getCreated() {
+        return this.created;
+    }
+
+    public Date getFinished() {
+        return this.finished;
+    }
+
+    public void setFinished(Date finished) {
+        this.finished = finished;
+    }
+
+    public List<DicomStagingTask> getTasks() {
+        return Collections.unmodifiableList(this.tasks);
+    }
+
+    public int getTotalCount() {
+        return this.tasks.size();
+    }
+
+    public int getDoneCount() {
+        return this.countTasks(DicomStagingTask.State.DONE);
+    }
+
+    public int getFailedCount() {
+        return this.countTasks(DicomStagingTask.State.FAILED);
+    }
+
+    public int getPendingCount() {
+        return this.countTasks(DicomStagingTask.State.PENDING);
+    }
+
+    /**
+     * @return percentage of processed (done or failed) tasks
+     */
+    public int getProgress() {
+        if (this.tasks.isEmpty()) {
+            return 100;
+        }
+
+        return (int) ((this.tasks.size() - this.getPendingCount()) * 100L / this.tasks.size());
+    }
+
+    public boolean isCompleted() {
+        return this.getPendingCount() == 0;
+    }
+
+    /**
+     * @return tasks which could not be staged
+     */
+    public List<DicomStagingTask> getFailedTasks() {
+        List<DicomStagingTask> result = new ArrayList<>();
+        for (DicomStagingTask task : this.tasks) {
+            if (task.getState() == DicomStagingTask.State.FAILED) {
+                result.add(task);
+            }
+        }
+
+        return result;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Add task to the job (only before the job is submitted)
+     */
+    public void addTask(DicomStagingTask task) {
+        this.tasks.add(task);
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private int countTasks(DicomStagingTask.State state) {
+        int count = 0;
+        for (DicomStagingTask task : this.tasks) {
+            if (task.getState() == state) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import java.io.Serializable;
+
+/**
+ * Single C-MOVE request of a DICOM staging job (complete series or one SOP instance of a series)
+ *
+ * @since 18 Oct 2026
+ */
+public class DicomStagingTask implements Serializable {
+
+    //region Finals
+
+    private static final long serialVersionUID = 1L;
+
+    //endregion
+
+    //region Enums
+
+    public enum State {
+        PENDING,
+        DONE,
+        FAILED
+    }
+
+    //endregion
+
+    //region Members
+
+    private final String dicomPatientId;
+    private final String dicomStudyUid;
+    private final String dicomSeriesUid;
+    private final String dicomSopInstanceUid;
+
+    private volatile State state = State.PENDING;
+    private volatile int attempts;
+
+    //endregion
+
+    //region Constructors
+
+    private DicomStagingTask(String dicomPatientId, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceUid) {
+        this.dicomPatientId = dicomPatientId;
+        this.dicomStudyUid = dicomStudyUid;
+        this.dicomSeriesUid = dicomSeriesUid;
+        this.dicomSopInstanceUid = dicomSopInstanceUid;
+    }
+
+    /**
+     * Task moving the complete DICOM series
+     */
+    public static DicomStagingTask series(String dicomPatientId, String dicomStudyUid, String dicomSeriesUid) {
+        return new DicomStagingTask(dicomPatientId, dicomStudyUid, dicomSeriesUid, null);
+    }
+
+    /**
+     * Task moving one SOP instance of a DICOM series
+     */
+    public static DicomStagingTask instance(String dicomPatientId, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceUid) {
+        return new DicomStagingTask(dicomPatientId, dicomStudyUid, dicomSeriesUid, dicomSopInstanceUid);
+    }
+
+    //endregion
+
+    //region Properties
+
+    public String getDicomPatientId() {
+        return this.dicomPatientId;
+    }
+
+    public String getDicomStudyUid() {
+        return this.dicomStudyUid;
+    }
+
+    public String getDicomSeriesUid() {
+        return this.dicomSeriesUid;
+    }
+
+    public String getDicomSopInstanceUid() {
+        return this.dicomSopInstanceUid;
+    }
+
+    public boolean isSopInstanceMove() {
+        return this.dicomSopInstanceUid != null;
+    }
+
+    public State getState() {
+        return this.state;
+    }
+
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    //endregion
+
+    //region Overrides
+
+    @Override
+    public String toString() {
+        return this.isSopInstanceMove() ?
+                "SOP instance " + this.dicomSopInstanceUid + " of series " + this.dicomSeriesUid :
+                "series " + this.dicomSeriesUid;
+    }
+
+    //endregion
+
+}
@@ -20,6 +20,7 @@
 package de.dktk.dd.rpb.core.domain.pacs;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,6 +41,8 @@ public class RtTreatmentCase {
 
     private Map<String, ArrayList<DicomRtContour>> contourMap = new HashMap<>();
 
+    private final List<String> failedUids = new ArrayList<>();
+
     //endregion
 
     //region Properties
@@ -76,10 +79,52 @@ public class RtTreatmentCase {
         this.contourMap = map;
     }
 
+    /**
+     * UIDs of series or SOP instances which could not be loaded from PACS
+     */
+    public List<String> getFailedUids() {
+        return Collections.unmodifiableList(this.failedUids);
+    }
+
+    /**
+     * @return true when some of the DICOM-RT objects could not be loaded and the treatment case is incomplete
+     */
+    public boolean isPartial() {
+        return !this.failedUids.isEmpty();
+    }
+
     //endregion
 
     //region Methods
 
+    public void addFailedUid(String uid) {
+        this.failedUids.add(uid);
+    }
+
+    /**
+     * Find structure set of the treatment case referenced by the plan which is referenced by the dose
+     *
+     * @param rtDose RTDOSE of the treatment case
+     * @return referenced structure set or null when the references cannot be resolved within the treatment case
+     */
+    public DicomRtStructureSet findReferencedStructureSet(DicomSeriesRtDose rtDose) {
+        if (rtDose == null || rtDose.getReferencedRtPlanUid() == null || this.rtPlans == null || this.rtStructureSets == null) {
+            return null;
+        }
+
+        for (DicomSeriesRtPlan rtPlan : this.rtPlans) {
+            if (rtDose.getReferencedRtPlanUid().equals(rtPlan.getSopInstanceUid()) && rtPlan.getReferencedStructureSetUid() != null) {
+                for (DicomRtStructureSet structureSet : this.rtStructureSets) {
+                    if (rtPlan.getReferencedStructureSetUid().equals(structureSet.getSopInstanceUid())) {
+                        return structureSet;
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
     //TODO: sum DVH across multiple rtDoses
 
     //endregion
@@ -54,6 +54,14 @@ public class ParallelConquestRequestsFacade {
 
     public void addDicomImagesToDicomSeriesList(List<StagedDicomSeries> seriesListWithoutImages) throws ExecutionException, InterruptedException, JSONException {
         ExecutorService service = Executors.newFixedThreadPool(8);
+        try {
+            this.collectDicomImages(seriesListWithoutImages, service);
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private void collectDicomImages(List<StagedDicomSeries> seriesListWithoutImages, ExecutorService service) throws ExecutionException, InterruptedException, JSONException {
         Map<String, Future<String>> clinicalSeriesResults = new HashMap<>();
         Map<String, Future<String>> stageOneSeriesResults = new HashMap<>();
         Map<String, Future<String>> stageTwoSeriesResults = new HashMap<>();
@@ -2,6 +2,7 @@ package de.dktk.dd.rpb.core.handler.lab;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Date;
 
 public interface ILabKeyWebdavHandler {
@@ -36,5 +37,22 @@ public interface ILabKeyWebdavHandler {
 
     public void uploadDataSet(String datasetId, byte[] fileContent) throws IOException;
 
+    /**
+     * Upload dataset file, the content is written by the writer directly to the upload request
+     * (the writer can be called more than once, e.g. when the request is repeated after authentication challenge)
+     *
+     * @param datasetId dataset id
+     * @param writer    writer of the dataset file content
+     * @throws IOException when the content cannot be written or uploaded
+     */
+    public void uploadDataSet(String datasetId, DataSetWriter writer) throws IOException;
+
     public void createStudyLoadFile() throws IOException;
+
+    /**
+     * Writes content of a dataset file to output stream
+     */
+    interface DataSetWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
 }
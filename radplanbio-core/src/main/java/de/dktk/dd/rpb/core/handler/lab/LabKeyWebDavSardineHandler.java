@@ -3,14 +3,19 @@ package de.dktk.dd.rpb.core.handler.lab;
 import com.github.sardine.DavResource;
 import com.github.sardine.Sardine;
 import com.github.sardine.SardineFactory;
+import com.github.sardine.impl.SardineImpl;
 import de.dktk.dd.rpb.core.context.UserContext;
 import de.dktk.dd.rpb.core.domain.edc.Study;
 import de.dktk.dd.rpb.core.service.LabKeyService;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
@@ -182,6 +187,19 @@ public class LabKeyWebDavSardineHandler implements ILabKeyWebdavHandler {
         sardine.put(this.getBasicWebDavUrl() + this.pipelineUrlPart + "study/datasets/dataset" + datasetId + ".tsv", fileContent);
     }
 
+    public void uploadDataSet(String datasetId, DataSetWriter writer) throws IOException {
+        String url = this.getBasicWebDavUrl() + this.pipelineUrlPart + "study/datasets/dataset" + datasetId + ".tsv";
+
+        if (sardine instanceof SardineImpl) {
+            // Content is written straight to the request body (chunked transfer)
+            ((SardineImpl) sardine).put(url, new DataSetEntity(writer), null, true);
+        } else {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            writer.write(byteArrayOutputStream);
+            sardine.put(url, byteArrayOutputStream.toByteArray());
+        }
+    }
+
     public void createStudyLoadFile() throws IOException {
         String updateMessage = this.getBasicWebDavUrl() + this.pipelineUrlPart + " updated by RadplanBio";
         byte[] data = updateMessage.getBytes(StandardCharsets.UTF_8);
@@ -193,4 +211,49 @@ public class LabKeyWebDavSardineHandler implements ILabKeyWebdavHandler {
             sardine.delete(this.getBasicWebDavUrl() + this.pipelineUrlPart + "study");
         }
     }
+
+    // region DataSetEntity
+
+    /**
+     * Request entity which writes the dataset content on demand, so the content is not buffered in memory.
+     * The entity is repeatable because the writer produces the same content when called again.
+     */
+    private static class DataSetEntity extends AbstractHttpEntity {
+
+        private final DataSetWriter writer;
+
+        DataSetEntity(DataSetWriter writer) {
+            this.writer = writer;
+            this.setChunked(true);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            this.writer.write(byteArrayOutputStream);
+            return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            this.writer.write(outputStream);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    // endregion
 }
@@ -356,10 +356,10 @@ public class OCConnector {
 	}
 
 	/**
-	 * Clears messages
+	 * Clears messages (the list is shared with the SOAP message handlers of the bindings)
 	 */
 	public void clearMessages() {
-		this.messages = new ArrayList<>();
+		this.messages.clear();
 	}
 
     //endregion
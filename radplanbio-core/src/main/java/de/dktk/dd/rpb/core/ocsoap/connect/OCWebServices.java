@@ -154,6 +154,22 @@ public class OCWebServices extends OCConnector {
 		}
 		return instance;
 	}
+
+	/**
+	 * Create a new OCWebServices instance with its own bindings and message handlers, the singleton instance
+	 * is not replaced (used when web services are called from several threads at once)
+     *
+	 * @param connectInfo credentials
+	 * @param logging logging yes or no
+	 * @return OCWebServices instance
+	 * @throws MalformedURLException MalformedURLException
+	 * @throws ParserConfigurationException ParserConfigurationException
+	 * @throws DatatypeConfigurationException DatatypeConfigurationException
+	 */
+	public static OCWebServices newInstance(ConnectInfo connectInfo, boolean logging)
+			throws MalformedURLException, ParserConfigurationException, DatatypeConfigurationException {
+		return new OCWebServices(connectInfo, logging);
+	}
     //endregion
 
     //region Methods - facade methods for OC web service functionality
@@ -625,6 +641,9 @@ public class OCWebServices extends OCConnector {
         // TODO: See OC manual on limitations which are the main motivation for this code in the first place
         ImportResponse response;
 
+        // Messages of the import request handler belong to this import only
+        clearMessages();
+
         try {
             response = dataBinding.dataImport(odm);
         }
@@ -0,0 +1,114 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.ocsoap.odm;
+
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.util.JAXBContextRegistry;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * ODM clinical data stream reader
+ *
+ * Reads ClinicalData/SubjectData of an ODM document incrementally (StAX), each subject is unmarshalled on its
+ * own and handed to the callback before the next one is read. Only one subject graph is held in memory at a time,
+ * so casebooks of whole studies can be processed without loading the complete document.
+ *
+ * @since 18 Oct 2026
+ */
+public final class ClinicalDataStreamReader {
+
+    //region Finals
+
+    private static final String subjectDataElement = "SubjectData";
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    //endregion
+
+    //region Constructors
+
+    private ClinicalDataStreamReader() {
+        // NOOP
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Read subjects with their clinical data from ODM XML stream
+     *
+     * @param in       ODM XML stream (not closed by the reader)
+     * @param callback receives each subject as soon as it is parsed
+     * @return number of read subjects
+     * @throws JAXBException when a subject cannot be unmarshalled
+     */
+    public static int readSubjects(InputStream in, Consumer<StudySubject> callback) throws JAXBException {
+        return JAXBContextRegistry.unmarshal(Odm.class, unmarshaller -> {
+            int count = 0;
+            XMLStreamReader reader = null;
+            try {
+                reader = inputFactory.createXMLStreamReader(in);
+                while (reader.hasNext()) {
+                    if (reader.isStartElement() && subjectDataElement.equals(reader.getLocalName())) {
+                        // Unmarshal subject sub tree, reader is positioned after SubjectData end element
+                        callback.accept(unmarshaller.unmarshal(reader, StudySubject.class).getValue());
+                        count++;
+                    } else {
+                        reader.next();
+                    }
+                }
+            } catch (XMLStreamException err) {
+                throw new JAXBException(err.getMessage(), err);
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (XMLStreamException err) {
+                        // NOOP
+                    }
+                }
+            }
+
+            return count;
+        });
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+
+    //endregion
+
+}
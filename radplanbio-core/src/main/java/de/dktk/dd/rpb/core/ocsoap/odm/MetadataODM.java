@@ -22,14 +22,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 
 import de.dktk.dd.rpb.core.domain.edc.*;
+import de.dktk.dd.rpb.core.util.JAXBContextRegistry;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -172,9 +171,7 @@ public class MetadataODM extends AbstractODM {
         Odm result = null;
 
         try {
-            JAXBContext context = JAXBContext.newInstance(Odm.class);
-            Unmarshaller un = context.createUnmarshaller();
-            result = (Odm) un.unmarshal(this.odm);
+            result = JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(this.odm));
         }
         catch (JAXBException e) {
             e.printStackTrace();
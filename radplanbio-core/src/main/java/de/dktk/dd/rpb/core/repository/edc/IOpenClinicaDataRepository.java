@@ -77,6 +77,24 @@ public interface IOpenClinicaDataRepository {
 
     int setSecondaryIdOnExistingStudySubject(StudySubject studySubject, String ocUserName) throws DataBaseItemNotFoundException;
 
+    /**
+     * Hits and misses of the study subjects cache for study
+     *
+     * @param studyIdentifier identifier of study
+     * @return cache statistics of the study
+     */
+    StudySubjectsCacheStatistics getStudySubjectsCacheStatistics(String studyIdentifier);
+
+    /**
+     * @return cache statistics of all studies queried so far
+     */
+    List<StudySubjectsCacheStatistics> getStudySubjectsCacheStatistics();
+
+    /**
+     * Remove all cached study subject lists
+     */
+    void evictStudySubjectsCache();
+
     //endregion
 
     //region EventData
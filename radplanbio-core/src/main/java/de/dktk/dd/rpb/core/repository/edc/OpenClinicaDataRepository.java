@@ -27,20 +27,33 @@ import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
 import de.dktk.dd.rpb.core.domain.edc.Study;
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 import de.dktk.dd.rpb.core.exception.DataBaseItemNotFoundException;
+import de.dktk.dd.rpb.core.util.CacheUtil;
+import net.sf.ehcache.Element;
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
 import org.openclinica.ws.beans.StudyType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Default implementation of the {@link IOpenClinicaDataRepository} interface.
  * @see IOpenClinicaDataRepository
  *
+ * Study subject lists of a study are cached (read-through), before a cached list is used the cheap change
+ * fingerprint of the study is compared with the fingerprint the list was loaded with. Lists are cached serialized,
+ * so that each caller gets its own copy of the subjects it can modify.
+ *
  * OpenClinicaDataRepository
  *
  * @author tomas@skripcak.net
@@ -52,7 +65,6 @@ public class OpenClinicaDataRepository implements IOpenClinicaDataRepository {
 
     //region Logging
 
-    @SuppressWarnings("unused")
     private static final Logger log = LoggerFactory.getLogger(OpenClinicaDataRepository.class);
 
     //endregion
@@ -66,6 +78,26 @@ public class OpenClinicaDataRepository implements IOpenClinicaDataRepository {
         this.dao = dao;
     }
 
+    private CacheUtil cacheUtil;
+
+    public CacheUtil getCacheUtil() {
+        if (this.cacheUtil == null) {
+            this.cacheUtil = CacheUtil.getInstance();
+        }
+
+        return this.cacheUtil;
+    }
+
+    public void setCacheUtil(CacheUtil cacheUtil) {
+        this.cacheUtil = cacheUtil;
+    }
+
+    //endregion
+
+    //region Members
+
+    private final Map<String, StudySubjectsCacheStatistics> cacheStatistics = new ConcurrentHashMap<>();
+
     //endregion
 
     //region Overrides
@@ -127,39 +159,58 @@ public class OpenClinicaDataRepository implements IOpenClinicaDataRepository {
 
     @Transactional
     public List<StudySubject> findStudySubjectsByStudy(String studyIdentifier) {
-        return this.dao.findStudySubjects(studyIdentifier);
+        return this.findCachedStudySubjects("subjects", studyIdentifier, this.dao::findStudySubjects);
     }
 
     @Transactional
     public List<StudySubject> findStudySubjectsWithEvents(String studyIdentifier) {
-        return this.dao.findStudySubjectsWithEventsAndTreatmentGroups(studyIdentifier);
+        return this.findCachedStudySubjects("subjectsWithEventsAndGroups", studyIdentifier, this.dao::findStudySubjectsWithEventsAndTreatmentGroups);
     }
 
-
-
     @Transactional
     public List<StudySubject> findStudySubjectsOfChildrenStudiesWithEvents(String studyIdentifier) {
-        return this.dao.findStudySubjectsOfChildrenStudiesWithEvents(studyIdentifier);
+        return this.findCachedStudySubjects("childrenSubjectsWithEvents", studyIdentifier, this.dao::findStudySubjectsOfChildrenStudiesWithEvents);
     }
 
     @Transactional
     public List<StudySubject> findStudySubjectsWithEventsAndTreatmentGroups(String studyIdentifier) {
-        return this.dao.findStudySubjectsWithEventsAndTreatmentGroups(studyIdentifier);
+        return this.findCachedStudySubjects("subjectsWithEventsAndGroups", studyIdentifier, this.dao::findStudySubjectsWithEventsAndTreatmentGroups);
     }
 
     @Transactional
     public List<StudySubject> findStudySubjectsOfChildrenStudiesWithEventsAndTreatmentGroups(String studyIdentifier) {
-        return this.dao.findStudySubjectsOfChildrenStudiesWithEventsAndTreatmentGroups(studyIdentifier);
+        return this.findCachedStudySubjects("childrenSubjectsWithEventsAndGroups", studyIdentifier, this.dao::findStudySubjectsOfChildrenStudiesWithEventsAndTreatmentGroups);
     }
 
     @Transactional
     public int setPidOnExistingStudySubject(StudySubject studySubject, String ocUserName) throws DataBaseItemNotFoundException {
-        return this.dao.setPidOnExistingStudySubject(studySubject, ocUserName);
+        int result = this.dao.setPidOnExistingStudySubject(studySubject, ocUserName);
+        this.evictStudySubjectsCache();
+
+        return result;
     }
 
     @Transactional
     public int setSecondaryIdOnExistingStudySubject(StudySubject studySubject, String ocUserName) throws DataBaseItemNotFoundException {
-        return this.dao.setSecondaryIdOnExistingStudySubject(studySubject, ocUserName);
+        int result = this.dao.setSecondaryIdOnExistingStudySubject(studySubject, ocUserName);
+        this.evictStudySubjectsCache();
+
+        return result;
+    }
+
+    public StudySubjectsCacheStatistics getStudySubjectsCacheStatistics(String studyIdentifier) {
+        return this.getCacheStatistics(studyIdentifier);
+    }
+
+    public List<StudySubjectsCacheStatistics> getStudySubjectsCacheStatistics() {
+        return new ArrayList<>(this.cacheStatistics.values());
+    }
+
+    public void evictStudySubjectsCache() {
+        CacheUtil cache = this.getCacheUtil();
+        if (cache != null) {
+            cache.removeEdcStudySubjectsCacheElements();
+        }
     }
 
 
@@ -204,6 +255,7 @@ public class OpenClinicaDataRepository implements IOpenClinicaDataRepository {
             result = this.dao.changeStudyEventRepeatKey(eventData1, max);
             result &= this.dao.changeStudyEventRepeatKey(eventData2, eventData1.getStudyEventRepeatKeyInteger());
             result &= this.dao.changeStudyEventRepeatKey(eventData1, eventData2.getStudyEventRepeatKeyInteger());
+            this.evictStudySubjectsCache();
         }
 
         return result;
@@ -235,4 +287,77 @@ public class OpenClinicaDataRepository implements IOpenClinicaDataRepository {
 
     //endregion
 
+    //region Private methods
+
+    /**
+     * Read-through study subjects cache, the heavy query is executed only when the study subject data of the study
+     * changed since the cached result was loaded
+     */
+    private List<StudySubject> findCachedStudySubjects(String query, String studyIdentifier, Function<String, List<StudySubject>> loader) {
+        CacheUtil cache = this.getCacheUtil();
+        if (cache == null || cache.getEdcStudySubjectsCache() == null || studyIdentifier == null) {
+            return loader.apply(studyIdentifier);
+        }
+
+        StudySubjectsCacheStatistics statistics = this.getCacheStatistics(studyIdentifier);
+
+        String fingerprint;
+        try {
+            fingerprint = this.dao.getStudySubjectsFingerprint(studyIdentifier);
+        } catch (DataAccessException err) {
+            log.error("Could not load study subjects fingerprint of study " + studyIdentifier, err);
+            statistics.recordMiss();
+            return loader.apply(studyIdentifier);
+        }
+
+        String key = query + ":" + studyIdentifier;
+        Element element = cache.getEdcStudySubjectsCacheElement(key);
+        if (element != null) {
+            CachedStudySubjects cached = (CachedStudySubjects) element.getObjectValue();
+            if (cached.fingerprint.equals(fingerprint)) {
+                statistics.recordHit();
+                return cached.getSubjects();
+            }
+
+            statistics.recordInvalidation();
+        } else {
+            statistics.recordMiss();
+        }
+
+        List<StudySubject> subjects = loader.apply(studyIdentifier);
+        try {
+            cache.setEdcStudySubjectsCacheElement(new Element(key, new CachedStudySubjects(fingerprint, subjects)));
+        } catch (SerializationException err) {
+            log.error("Could not cache study subjects of study " + studyIdentifier, err);
+        }
+
+        return subjects;
+    }
+
+    private StudySubjectsCacheStatistics getCacheStatistics(String studyIdentifier) {
+        return this.cacheStatistics.computeIfAbsent(studyIdentifier, StudySubjectsCacheStatistics::new);
+    }
+
+    //endregion
+
+    //region Classes
+
+    private static class CachedStudySubjects {
+
+        private final String fingerprint;
+        private final byte[] subjects;
+
+        private CachedStudySubjects(String fingerprint, List<StudySubject> subjects) {
+            this.fingerprint = fingerprint;
+            this.subjects = SerializationUtils.serialize(new ArrayList<>(subjects));
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<StudySubject> getSubjects() {
+            return (List<StudySubject>) SerializationUtils.deserialize(this.subjects);
+        }
+    }
+
+    //endregion
+
 }
@@ -0,0 +1,112 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.repository.edc;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per study statistics of the study subjects cache of {@link OpenClinicaDataRepository}
+ *
+ * @since 18 Oct 2026
+ */
+public class StudySubjectsCacheStatistics {
+
+    //region Members
+
+    private final String studyIdentifier;
+
+    // Cached result was still fresh
+    private final AtomicLong hits = new AtomicLong();
+    // Result was not cached (or expired)
+    private final AtomicLong misses = new AtomicLong();
+    // Result was cached but study subject data changed in the meantime
+    private final AtomicLong invalidations = new AtomicLong();
+
+    //endregion
+
+    //region Constructors
+
+    public StudySubjectsCacheStatistics(String studyIdentifier) {
+        this.studyIdentifier = studyIdentifier;
+    }
+
+    //endregion
+
+    //region Properties
+
+    public String getStudyIdentifier() {
+        return this.studyIdentifier;
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getInvalidations() {
+        return this.invalidations.get();
+    }
+
+    public long getRequests() {
+        return this.getHits() + this.getMisses() + this.getInvalidations();
+    }
+
+    /**
+     * @return ratio of requests answered from cache (0 when there were no requests)
+     */
+    public double getHitRatio() {
+        long requests = this.getRequests();
+        return requests > 0 ? (double) this.getHits() / requests : 0;
+    }
+
+    //endregion
+
+    //region Methods
+
+    void recordHit() {
+        this.hits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        this.misses.incrementAndGet();
+    }
+
+    void recordInvalidation() {
+        this.invalidations.incrementAndGet();
+    }
+
+    //endregion
+
+    //region Overrides
+
+    @Override
+    public String toString() {
+        return "StudySubjectsCacheStatistics[" + this.studyIdentifier +
+                ": hits=" + this.getHits() +
+                ", misses=" + this.getMisses() +
+                ", invalidations=" + this.getInvalidations() + "]";
+    }
+
+    //endregion
+
+}
@@ -26,16 +26,32 @@ import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Scheduled;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.collect.Lists.newArrayList;
 
@@ -46,6 +62,14 @@ import static com.google.common.collect.Lists.newArrayList;
  * It is implemented as singleton and this also means that there is just one instance of this service which is used in portal
  * as well as wepApi (new webApi is part of portal)
  *
+ * Audit logs are persisted asynchronously: events are queued and a background writer inserts them in JDBC batches
+ * as soon as a batch is full or the flush interval elapsed. When the queue is full the configured overflow policy
+ * decides whether the caller blocks, the event is spilled to a local journal file (replayed when the writer is idle)
+ * or the event is dropped. Batches which cannot be inserted are journaled with every policy.
+ *
+ * Each service instance (there can be more of them, see above) owns its own journal slot guarded by a file lock
+ * (journal file, journal file.1, ...). Journals of slots which are not owned by a running instance are replayed too.
+ *
  * @author tomas@skripcak.net
  * @since 27 January 2015
  */
@@ -57,7 +81,28 @@ public class AuditLogService {
     //region Finals
 
     private static final Logger log = LoggerFactory.getLogger(AuditLogService.class);
-    private static final int DEFAULT_BATCH_INSERT_SIZE = 50;
+    private static final int DEFAULT_BATCH_INSERT_SIZE = 500;
+    private static final String journalNull = "-";
+    private static final String journalSeparator = "\t";
+    private static final int journalSlots = 8;
+    // Insert failures are reported at most once per interval, journal replay is retried with the same interval
+    private static final long failureInterval = 60000;
+
+    //endregion
+
+    //region Enums
+
+    /**
+     * What happens with audit log when the queue is full
+     */
+    public enum OverflowPolicy {
+        // Caller waits until there is space in the queue (bounded by block timeout)
+        BLOCK,
+        // Audit log is appended to local journal file and persisted later
+        SPILL,
+        // Audit log is discarded (only counted)
+        DROP
+    }
 
     //endregion
 
@@ -70,10 +115,41 @@ public class AuditLogService {
 
     //region Members
 
-    protected BlockingQueue<AuditLog> queue = new LinkedBlockingQueue<>(1000);
+    @Value("${audit.queueCapacity:10000}")
+    protected int queueCapacity = 10000;
+    @Value("${audit.batchSize:500}")
     protected int batchInsertSize = DEFAULT_BATCH_INSERT_SIZE;
+    @Value("${audit.flushInterval:1000}")
+    protected long flushInterval = 1000;
+    @Value("${audit.overflowPolicy:SPILL}")
+    protected OverflowPolicy overflowPolicy = OverflowPolicy.SPILL;
+    @Value("${audit.blockTimeout:5000}")
+    protected long blockTimeout = 5000;
+    @Value("${audit.journalFile:${java.io.tmpdir}/rpb-audit-journal.log}")
+    protected String journalFile;
+    @Value("${hibernate.jdbc.batch_size:50}")
+    protected int jdbcBatchSize = 50;
+
+    protected BlockingQueue<AuditLog> queue = new LinkedBlockingQueue<>(10000);
     protected String username;
 
+    private final Object journalLock = new Object();
+    private File journal;
+    private FileLock journalFileLock;
+    private volatile boolean running;
+    private Thread writer;
+    private volatile long insertFailedAt;
+    private volatile long failureLoggedAt;
+
+    // Metrics
+    private final AtomicLong insertedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+    private final AtomicLong insertBatchCount = new AtomicLong();
+    private final AtomicLong insertTime = new AtomicLong();
+    private final AtomicLong suppressedFailureCount = new AtomicLong();
+    private volatile long lastInsertLatency;
+
     //endregion
 
     //region Properties
@@ -82,19 +158,105 @@ public class AuditLogService {
         this.username = username;
     }
 
+    /**
+     * @return number of audit logs waiting for insert
+     */
+    public int getQueueDepth() {
+        return this.queue.size();
+    }
+
+    public long getInsertedCount() {
+        return this.insertedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return this.droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return this.spilledCount.get();
+    }
+
+    /**
+     * @return duration of the last batch insert in ms
+     */
+    public long getLastInsertLatency() {
+        return this.lastInsertLatency;
+    }
+
+    /**
+     * @return average duration of batch insert in ms
+     */
+    public long getAverageInsertLatency() {
+        long batches = this.insertBatchCount.get();
+        return batches > 0 ? this.insertTime.get() / batches : 0;
+    }
+
+    //endregion
+
+    //region Init
+
+    /**
+     * Create the queue and start background writer
+     */
+    @PostConstruct
+    public void init() {
+        // Keep audit logs which were queued before initialisation
+        BlockingQueue<AuditLog> previous = this.queue;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, this.queueCapacity));
+        previous.drainTo(this.queue);
+        this.running = true;
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "audit-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        log.info("Audit log pipeline started: queueCapacity=" + this.queueCapacity + ", batchSize=" +
+                this.batchInsertSize + ", flushInterval=" + this.flushInterval + "ms, overflowPolicy=" + this.overflowPolicy);
+    }
+
+    /**
+     * Stop background writer and persist everything what is queued
+     */
+    @PreDestroy
+    public void destroy() {
+        this.running = false;
+
+        if (this.writer != null) {
+            try {
+                this.writer.join(this.flushInterval + 10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.writer = null;
+        }
+
+        // Writer did not finish in time (or was not started)
+        this.flush();
+        this.releaseJournal();
+
+        log.info("Audit log pipeline stopped: inserted=" + this.getInsertedCount() + ", spilled=" +
+                this.getSpilledCount() + ", dropped=" + this.getDroppedCount() + ", averageInsertLatency=" +
+                this.getAverageInsertLatency() + "ms");
+    }
+
     //endregion
 
     //region Methods
 
     /**
-     * Batch insert of collected audit logs (in ms)
+     * Insert all queued audit logs now (in batches)
      */
-    @Scheduled(fixedDelay = 5000)
-    public void batchInsert() {
-        List<AuditLog> httpEvents = newArrayList();
-        int size = this.queue.drainTo(httpEvents, batchInsertSize);
-        if (size != 0) {
-            this.batchInsert(httpEvents);
+    public void flush() {
+        List<AuditLog> auditLogs = newArrayList();
+        while (this.queue.drainTo(auditLogs, this.batchInsertSize) > 0) {
+            this.persist(auditLogs);
+            auditLogs.clear();
         }
     }
 
@@ -160,7 +322,33 @@ public class AuditLogService {
      */
     public void log(AuditLog auditLog) {
         this.setupDefaults(auditLog);
-        this.queue.add(auditLog);
+        if (this.queue.offer(auditLog)) {
+            return;
+        }
+
+        // Queue is full
+        switch (this.overflowPolicy) {
+            case BLOCK:
+                try {
+                    if (this.queue.offer(auditLog, this.blockTimeout, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                break;
+            case SPILL:
+                if (this.journal(Collections.singletonList(auditLog))) {
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        if (this.droppedCount.incrementAndGet() % 1000 == 1) {
+            log.warn("Audit log queue is full, dropped audit logs: " + this.droppedCount.get());
+        }
     }
 
     //endregion
@@ -187,24 +375,104 @@ public class AuditLogService {
         }
     }
 
+    /**
+     * Background writer, flushes when the batch is full or when the flush interval elapsed
+     */
+    private void writeLoop() {
+        this.replayJournal();
+
+        List<AuditLog> auditLogs = newArrayList();
+        while (this.running || !this.queue.isEmpty()) {
+            try {
+                AuditLog first = this.queue.poll(this.flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Idle
+                    this.replayJournal();
+                    continue;
+                }
+
+                auditLogs.add(first);
+                long deadline = System.currentTimeMillis() + this.flushInterval;
+                while (auditLogs.size() < this.batchInsertSize) {
+                    if (this.queue.drainTo(auditLogs, this.batchInsertSize - auditLogs.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    AuditLog next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    auditLogs.add(next);
+                }
+
+                this.persist(auditLogs);
+                auditLogs.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Audit log writer failed", e);
+                auditLogs.clear();
+            }
+        }
+
+        this.persist(auditLogs);
+    }
+
+    /**
+     * Persist audit logs, the batch is written to journal when the insert fails (regardless of overflow policy)
+     * @param auditLogs auditLogs
+     */
+    private void persist(List<AuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+
+        if (!this.batchInsert(auditLogs) && !this.journal(auditLogs)) {
+            this.droppedCount.addAndGet(auditLogs.size());
+        }
+    }
+
     /**
      * Persist audit logs in a batch
      * @param auditLogs auditLogs
+     * @return true when the audit logs were inserted
      */
-    private void batchInsert(List<AuditLog> auditLogs) {
+    private boolean batchInsert(List<AuditLog> auditLogs) {
+        long start = System.nanoTime();
+
         Session session = null;
         try {
             session = this.sessionFactory.openSession();
             Transaction transaction = session.beginTransaction();
+            int count = 0;
             for (AuditLog auditLog : auditLogs) {
                 session.save(auditLog);
+                // Flush in JDBC batch size chunks and keep session small
+                if (++count % this.jdbcBatchSize == 0) {
+                    session.flush();
+                    session.clear();
+                }
             }
             session.flush();
             transaction.commit();
-            log.debug("Added " + auditLogs.size() + " AuditLog in database");
+
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            this.lastInsertLatency = latency;
+            this.insertTime.addAndGet(latency);
+            this.insertBatchCount.incrementAndGet();
+            this.insertedCount.addAndGet(auditLogs.size());
+
+            if (this.insertFailedAt > 0) {
+                this.insertFailedAt = 0;
+                log.info("AuditLog insert works again");
+            }
+            log.debug("Added " + auditLogs.size() + " AuditLog in database (" + latency + "ms)");
+            return true;
         }
         catch (Exception e) {
-            log.error("Error while inserting AuditLog", e);
+            this.logInsertFailure(e);
+            return false;
         }
         finally {
             if (session != null) {
@@ -213,6 +481,246 @@ public class AuditLogService {
         }
     }
 
+    /**
+     * Report failed insert (with stack trace at most once per failure interval, e.g. while the database is down)
+     * @param e cause
+     */
+    private void logInsertFailure(Exception e) {
+        long now = System.currentTimeMillis();
+        this.insertFailedAt = now;
+
+        if (now - this.failureLoggedAt >= failureInterval) {
+            this.failureLoggedAt = now;
+            log.error("Error while inserting AuditLog, audit logs are journaled (" +
+                    this.suppressedFailureCount.getAndSet(0) + " further failures since last report)", e);
+        } else {
+            this.suppressedFailureCount.incrementAndGet();
+            log.debug("Error while inserting AuditLog: " + e.getMessage());
+        }
+    }
+
+    //endregion
+
+    //region Journal
+
+    /**
+     * Append audit logs to journal file of this instance
+     * @param auditLogs auditLogs
+     * @return true when the audit logs were written
+     */
+    private boolean journal(List<AuditLog> auditLogs) {
+        synchronized (this.journalLock) {
+            File journal = this.claimJournal();
+            if (journal == null) {
+                return false;
+            }
+
+            try (BufferedWriter writer = Files.newBufferedWriter(journal.toPath(), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (AuditLog auditLog : auditLogs) {
+                    writer.write(toJournalLine(auditLog));
+                    writer.newLine();
+                }
+                this.spilledCount.addAndGet(auditLogs.size());
+                return true;
+            } catch (IOException e) {
+                log.error("Error while writing AuditLog journal", e);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Journal slot owned by this instance (the first slot which is not locked by another instance is claimed)
+     * @return journal file or null when journal is not configured or no slot is free
+     */
+    private File claimJournal() {
+        synchronized (this.journalLock) {
+            if (this.journal == null && this.journalFile != null && !this.journalFile.isEmpty()) {
+                for (int slot = 0; slot < journalSlots; slot++) {
+                    File journal = journalSlot(this.journalFile, slot);
+                    FileLock lock = tryLockJournal(journal);
+                    if (lock != null) {
+                        this.journal = journal;
+                        this.journalFileLock = lock;
+                        break;
+                    }
+                }
+                if (this.journal == null) {
+                    log.error("No free AuditLog journal slot for " + this.journalFile);
+                }
+            }
+
+            return this.journal;
+        }
+    }
+
+    private void releaseJournal() {
+        synchronized (this.journalLock) {
+            if (this.journalFileLock != null) {
+                releaseJournalLock(this.journalFileLock);
+                this.journalFileLock = null;
+                this.journal = null;
+            }
+        }
+    }
+
+    /**
+     * Persist audit logs from journal of this instance and from journals of slots without running instance
+     */
+    private void replayJournal() {
+        // Database is not available, retry later
+        if (this.insertFailedAt > 0 && System.currentTimeMillis() - this.insertFailedAt < failureInterval) {
+            return;
+        }
+
+        File own = this.claimJournal();
+        if (own == null) {
+            return;
+        }
+        this.replayJournal(own);
+
+        for (int slot = 0; slot < journalSlots; slot++) {
+            File journal = journalSlot(this.journalFile, slot);
+            if (journal.equals(own) || (!journal.exists() && !new File(journal.getPath() + ".replay").exists())) {
+                continue;
+            }
+
+            FileLock lock = tryLockJournal(journal);
+            if (lock != null) {
+                try {
+                    this.replayJournal(journal);
+                } finally {
+                    releaseJournalLock(lock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Persist audit logs of journal file (the journal is taken over so new spills go to a fresh file)
+     * @param journal journal file locked by this instance
+     */
+    private void replayJournal(File journal) {
+        File replay = new File(journal.getPath() + ".replay");
+        synchronized (this.journalLock) {
+            // Leftover of interrupted replay is processed first
+            if (!replay.exists()) {
+                if (!journal.exists() || journal.length() == 0 || !journal.renameTo(replay)) {
+                    return;
+                }
+            }
+        }
+
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replay.toPath(), StandardCharsets.UTF_8)) {
+            List<AuditLog> auditLogs = newArrayList();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                AuditLog auditLog = fromJournalLine(line);
+                if (auditLog != null) {
+                    auditLogs.add(auditLog);
+                    replayed++;
+                }
+                if (auditLogs.size() == this.batchInsertSize) {
+                    this.persist(auditLogs);
+                    auditLogs.clear();
+                }
+            }
+            this.persist(auditLogs);
+        } catch (IOException e) {
+            log.error("Error while reading AuditLog journal", e);
+            return;
+        }
+
+        if (!replay.delete()) {
+            log.warn("AuditLog journal cannot be deleted: " + replay.getAbsolutePath());
+        }
+        log.info("Replayed " + replayed + " AuditLog from journal " + journal.getName());
+    }
+
+    private static File journalSlot(String journalFile, int slot) {
+        return new File(slot == 0 ? journalFile : journalFile + "." + slot);
+    }
+
+    /**
+     * Lock journal slot for this instance
+     * @param journal journal file
+     * @return lock or null when the slot is locked by another instance (of this or other JVM)
+     */
+    private static FileLock tryLockJournal(File journal) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(new File(journal.getPath() + ".lock").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+        } catch (OverlappingFileLockException e) {
+            // Locked by other instance within this JVM
+        } catch (IOException e) {
+            log.error("Error while locking AuditLog journal " + journal.getAbsolutePath(), e);
+        }
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            }
+        }
+        return null;
+    }
+
+    private static void releaseJournalLock(FileLock lock) {
+        try {
+            lock.release();
+            lock.channel().close();
+        } catch (IOException e) {
+            log.error("Error while unlocking AuditLog journal", e);
+        }
+    }
+
+    private static String toJournalLine(AuditLog auditLog) {
+        return encode(auditLog.getUsername()) + journalSeparator +
+                encode(auditLog.getEvent()) + journalSeparator +
+                (auditLog.getEventDate() != null ? String.valueOf(auditLog.getEventDate().getTime()) : journalNull) + journalSeparator +
+                encode(auditLog.getStringAttribute1()) + journalSeparator +
+                encode(auditLog.getStringAttribute2()) + journalSeparator +
+                encode(auditLog.getStringAttribute3());
+    }
+
+    private static AuditLog fromJournalLine(String line) {
+        String[] fields = line.split(journalSeparator, -1);
+        if (fields.length != 6) {
+            log.warn("Skipping invalid AuditLog journal line");
+            return null;
+        }
+
+        try {
+            AuditLog auditLog = new AuditLog();
+            auditLog.setUsername(decode(fields[0]));
+            auditLog.setEvent(decode(fields[1]));
+            auditLog.setEventDate(journalNull.equals(fields[2]) ? null : new Date(Long.parseLong(fields[2])));
+            auditLog.setStringAttribute1(decode(fields[3]));
+            auditLog.setStringAttribute2(decode(fields[4]));
+            auditLog.setStringAttribute3(decode(fields[5]));
+            return auditLog;
+        } catch (IllegalArgumentException e) {
+            log.warn("Skipping invalid AuditLog journal line");
+            return null;
+        }
+    }
+
+    private static String encode(String value) {
+        return value == null ? journalNull : Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String value) {
+        return journalNull.equals(value) ? null : new String(Base64.getDecoder().decode(value), StandardCharsets.UTF_8);
+    }
+
     //endregion
 
 }
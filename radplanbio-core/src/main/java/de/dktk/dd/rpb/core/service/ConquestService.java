@@ -22,16 +22,21 @@ package de.dktk.dd.rpb.core.service;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import de.dktk.dd.rpb.core.DicomImageFactory;
 import de.dktk.dd.rpb.core.domain.edc.ItemData;
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 import de.dktk.dd.rpb.core.domain.edc.Subject;
 import de.dktk.dd.rpb.core.domain.pacs.*;
+import de.dktk.dd.rpb.core.service.support.PacsClientPool;
+import de.dktk.dd.rpb.core.service.support.PacsInstanceFileCache;
+import de.dktk.dd.rpb.core.service.support.PacsPatientLookupResult;
 import de.dktk.dd.rpb.core.service.support.PacsPatientResponseUnmashaller;
+import de.dktk.dd.rpb.core.service.support.RtTreatmentCaseLoader;
+import de.dktk.dd.rpb.core.util.CacheUtil;
 import de.dktk.dd.rpb.core.util.CallableJerseyClient;
 import de.dktk.dd.rpb.core.util.Constants;
 import de.dktk.dd.rpb.core.util.JsonStringUtil;
+import net.sf.ehcache.Element;
 import org.apache.commons.lang.StringUtils;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Sequence;
@@ -50,14 +55,15 @@ import java.awt.color.ICC_ColorSpace;
 import java.awt.color.ICC_Profile;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static de.dktk.dd.rpb.core.util.Constants.*;
 
@@ -101,6 +107,9 @@ public class ConquestService implements IConquestService {
     private int structureFillTransparency = 115;
     private int isoFillTransparency = 70;
     private boolean forceRecalculateDvh = false;
+    private long rtTreatmentCaseTimeout = 60000;
+
+    private CacheUtil cacheUtil;
 
     //endregion
 
@@ -115,6 +124,33 @@ public class ConquestService implements IConquestService {
 
     //endregion
 
+    //region Properties
+
+    public CacheUtil getCacheUtil() {
+        if (this.cacheUtil == null) {
+            this.cacheUtil = CacheUtil.getInstance();
+        }
+
+        return this.cacheUtil;
+    }
+
+    public void setCacheUtil(CacheUtil cacheUtil) {
+        this.cacheUtil = cacheUtil;
+    }
+
+    /**
+     * Maximal time in milliseconds to wait for all series listings and DICOM-RT instances of treatment case
+     */
+    public long getRtTreatmentCaseTimeout() {
+        return this.rtTreatmentCaseTimeout;
+    }
+
+    public void setRtTreatmentCaseTimeout(long rtTreatmentCaseTimeout) {
+        this.rtTreatmentCaseTimeout = rtTreatmentCaseTimeout;
+    }
+
+    //endregion
+
     //region Methods
 
     //region Setup
@@ -137,99 +173,54 @@ public class ConquestService implements IConquestService {
         this.password = password;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public int getThreadPoolSize() {
+        return this.threadPoolSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getBaseUrl() {
+        return this.baseUrl;
+    }
+
     //endregion
 
     //region RT Treatment Case
 
+    /**
+     * {@inheritDoc}
+     *
+     * Series listings and instances are loaded concurrently on a pool bounded by the configured thread pool size.
+     */
     public RtTreatmentCase loadRtTreatmentCase(String dicomPatientId, DicomStudy dicomStudy) {
-        RtTreatmentCase tc = new RtTreatmentCase();
-
-        if (dicomStudy != null) {
-
-            // RTSTRUCT list
-            List<DicomSeries> rtStructSeries = dicomStudy.getSeriesByModality("RTSTRUCT");
-            if (rtStructSeries != null) {
-                for (DicomSeries rtStructSerie : rtStructSeries) {
-                    DicomSeries dicomSeriesWithImages = this.loadStudySeries(
-                            dicomPatientId,
-                            dicomStudy.getStudyInstanceUID(),
-                            rtStructSerie.getSeriesInstanceUID()
-                    );
-
-                    if (dicomSeriesWithImages != null && dicomSeriesWithImages.getSeriesImages() != null && dicomSeriesWithImages.getSeriesImages().size() > 0) {
-
-                        List<DicomRtStructureSet> structureSets = new ArrayList<>();
-                        for (DicomImage instance : dicomSeriesWithImages.getSeriesImages()) {
-                            structureSets.add(
-                                    this.loadDicomRtStructureSet(
-                                            dicomStudy.getStudyInstanceUID(),
-                                            rtStructSerie.getSeriesInstanceUID(),
-                                            dicomSeriesWithImages.getSeriesImages().get(0).getSopInstanceUID(),
-                                            tc
-                                    )
-                            );
-                        }
-
-                        tc.setRtStructureSets(structureSets);
-                    }
-                }
-            }
-
-            // RTPLAN list
-            List<DicomSeries> rtPlanSeries = dicomStudy.getSeriesByModality("RTPLAN");
-            for (DicomSeries planSerie : rtPlanSeries) {
-                DicomSeries dicomSeriesWithImages = this.loadStudySeries(
-                        dicomPatientId,
-                        dicomStudy.getStudyInstanceUID(),
-                        planSerie.getSeriesInstanceUID()
-                );
-
-                if (dicomSeriesWithImages != null && dicomSeriesWithImages.getSeriesImages() != null) {
-
-                    List<DicomSeriesRtPlan> plans = new ArrayList<>();
-                    for (DicomImage instance : dicomSeriesWithImages.getSeriesImages()) {
-                        plans.add(
-                                this.loadDicomRtPlan(
-                                        dicomStudy.getStudyInstanceUID(),
-                                        planSerie.getSeriesInstanceUID(),
-                                        instance.getSopInstanceUID()
-                                )
-                        );
-                    }
-
-                    tc.setRtPlans(plans);
-                }
-            }
-
-            // RTDOSE list
-            List<DicomSeries> rtDoseSeries = dicomStudy.getSeriesByModality("RTDOSE");
-            for (DicomSeries doseSerie : rtDoseSeries) {
-                DicomSeries dicomSeriesWithImages = this.loadStudySeries(
-                        dicomPatientId,
-                        dicomStudy.getStudyInstanceUID(),
-                        doseSerie.getSeriesInstanceUID()
-                );
-
-                if (dicomSeriesWithImages != null && dicomSeriesWithImages.getSeriesImages() != null) {
+        return new RtTreatmentCaseLoader(this, this.threadPoolSize, this.rtTreatmentCaseTimeout).load(dicomPatientId, dicomStudy);
+    }
 
-                    List<DicomSeriesRtDose> doses = new ArrayList<>();
-                    for (DicomImage instance : dicomSeriesWithImages.getSeriesImages()) {
-                        doses.add(
-                                this.loadDicomRtDose(
-                                        dicomStudy.getStudyInstanceUID(),
-                                        doseSerie.getSeriesInstanceUID(),
-                                        instance.getSopInstanceUID()
-                                )
-                        );
-                    }
+    /**
+     * {@inheritDoc}
+     */
+    public boolean calculateRtDoseDvhs(String studyInstanceUid, RtTreatmentCase tc, DicomSeriesRtDose rtDose) {
+        if (tc == null || rtDose == null || (!this.forceRecalculateDvh && rtDose.getRtDvhsCount() > 0)) {
+            return false;
+        }
 
-                    tc.setRtDoses(doses);
-                }
+        DicomRtStructureSet structureSet = tc.findReferencedStructureSet(rtDose);
+        if (structureSet == null) {
+            log.warn("RTDOSE " + rtDose.getSopInstanceUid() + " does not reference a structure set of the treatment case via its RTPLAN");
+            return false;
+        }
 
-            }
+        List<DicomRtDvh> dvhs = this.calculateDicomRtDvhs(studyInstanceUid, rtDose, structureSet);
+        if (dvhs.isEmpty()) {
+            return false;
         }
 
-        return tc;
+        rtDose.setRtDvhs(dvhs);
+        return true;
     }
 
     //endregion
@@ -252,6 +243,8 @@ public class ConquestService implements IConquestService {
             queryResultString = JsonStringUtil.trimJsonString(queryResultString);
             results = handlePacsPatientResponse(queryResultString);
         } else {
+            response.close();
+
             String errorMessage = "There was a problem with your request, because the response had no entity.";
             String errorDetails = "Status: 200 " + "URL: " + compositeQueryUrl;
             String userAdvice = "Please try again or contact your administrator";
@@ -276,6 +269,49 @@ public class ConquestService implements IConquestService {
         return loadedSubjects;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public PacsPatientLookupResult loadPatientsInParallel(List<StudySubject> studySubjectList) {
+        PacsPatientLookupResult result = new PacsPatientLookupResult();
+
+        List<List<StudySubject>> listOfStudySubjectLists = splitIntoSubLists(studySubjectList);
+        if (listOfStudySubjectLists.isEmpty()) {
+            return result;
+        }
+
+        int threads = Math.max(1, Math.min(this.threadPoolSize, listOfStudySubjectLists.size()));
+        ExecutorService service = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Subject>>> futures = new ArrayList<>();
+            for (final List<StudySubject> studySubjectSubList : listOfStudySubjectLists) {
+                futures.add(service.submit(() -> loadPatientsForSublist(studySubjectSubList)));
+            }
+
+            // Merge in order of chunks, a failed chunk is reported and does not abort the others
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    result.addSubjects(futures.get(i).get());
+                } catch (ExecutionException err) {
+                    Throwable cause = err.getCause() != null ? err.getCause() : err;
+                    log.error("PACS patient lookup failed for chunk " + (i + 1) + " of " + futures.size(), cause);
+                    result.addFailedChunk(getPids(listOfStudySubjectLists.get(i)), cause.getMessage());
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    log.error("PACS patient lookup was interrupted", err);
+                    for (int j = i; j < futures.size(); j++) {
+                        result.addFailedChunk(getPids(listOfStudySubjectLists.get(j)), "Lookup was interrupted");
+                    }
+                    break;
+                }
+            }
+        } finally {
+            service.shutdownNow();
+        }
+
+        return result;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -296,6 +332,7 @@ public class ConquestService implements IConquestService {
         if (response.getStatus() == 200) {
             result = Boolean.TRUE;
         }
+        response.close();
 
         return result;
     }
@@ -315,18 +352,16 @@ public class ConquestService implements IConquestService {
             compositeQueryUrl += patientId + dicomPatientId;
             compositeQueryUrl += studyUid + dicomStudyUid;
 
-            ClientResponse response = queryConquest(compositeQueryUrl);
-            throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
+            String jsonString = queryConquestMetadata(compositeQueryUrl);
 
-            if (response.hasEntity()) {
-                JSONArray jsonStudies = getJsonEntityFromString(response, "Studies");
+            if (jsonString != null) {
+                JSONArray jsonStudies = getJsonEntityFromString(jsonString, "Studies");
                 if (jsonStudies.length() > 0) {
                     JSONObject jsonStudy = jsonStudies.getJSONObject(0);
                     unmarshalStudyProperties(result, jsonStudy);
                 }
             } else {
                 log.error("The response on the request with query: " + compositeQueryUrl + "had no entity");
-                log.debug(response.toString());
             }
         } catch (Exception err) {
             String message = "Loading the DICOM series failed!\nThere appears to be a problem with the server connection.";
@@ -348,11 +383,10 @@ public class ConquestService implements IConquestService {
                 compositeQueryUrl += patientId + dicomPatientId;
             }
 
-            ClientResponse response = queryConquest(compositeQueryUrl);
-            throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
+            String jsonString = queryConquestMetadata(compositeQueryUrl);
 
-            if (response.hasEntity()) {
-                JSONArray jsonStudies = getJsonEntityFromString(response, "Studies");
+            if (jsonString != null) {
+                JSONArray jsonStudies = getJsonEntityFromString(jsonString, "Studies");
 
                 for (int i = 0; i < jsonStudies.length(); i++) {
                     DicomStudy study = new DicomStudy();
@@ -396,47 +430,30 @@ public class ConquestService implements IConquestService {
                     compositeQueryUrl += studyUid + dicomStudyUidList.get(0).getValue();
                 }
 
-                ClientResponse response = queryConquest(compositeQueryUrl);
-
-                throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
-
-                if (response.hasEntity()) {
-                    String jsonstring = response.getEntity(String.class);
-                    jsonstring = JsonStringUtil.trimJsonString(jsonstring);
-
-                    if (!"".equals(jsonstring)) {
-                        JSONObject json = new JSONObject(jsonstring);
-                        JSONArray jsonStudies = json.getJSONArray("Studies");
+                String jsonString = queryConquestMetadata(compositeQueryUrl);
 
-                        for (int i = 0; i < jsonStudies.length(); i++) {
+                if (jsonString != null && !"".equals(jsonString)) {
+                    JSONArray jsonStudies = getJsonEntityFromString(jsonString, "Studies");
 
-                            JSONObject jsonStudy = jsonStudies.getJSONObject(i);
-                            DicomStudy study = new DicomStudy();
+                    for (int i = 0; i < jsonStudies.length(); i++) {
+                        JSONObject jsonStudy = jsonStudies.getJSONObject(i);
+                        String jsonStudyUid = jsonStudy.getString("StudyInstanceUID");
 
-                            study.setStudyInstanceUID(jsonStudy.getString("StudyInstanceUID"));
-
-                            // filter to return only studies listed in parameter
-                            boolean studyFound = false;
-                            for (ItemData itemData : dicomStudyUidList) {
-                                if (itemData.getValue() != null && itemData.getValue().equals(study.getStudyInstanceUID())) {
-                                    studyFound = true;
-                                    break;
-                                }
-                            }
-                            if (!studyFound) {
-                                continue;
+                        // filter to return only studies listed in parameter
+                        boolean studyFound = false;
+                        for (ItemData itemData : dicomStudyUidList) {
+                            if (itemData.getValue() != null && itemData.getValue().equals(jsonStudyUid)) {
+                                studyFound = true;
+                                break;
                             }
-
-                            study.setStudyDate(jsonStudy.optString("StudyDate"));
-                            study.setStudyDescription(jsonStudy.optString("StudyDescription"));
-
-                            JSONArray jsonSeries = jsonStudy.getJSONArray("Series");
-                            study.setStudySeries(
-                                    this.unmarshalDicomSeries(jsonSeries)
-                            );
-
-                            resultStudies.add(study);
                         }
+                        if (!studyFound) {
+                            continue;
+                        }
+
+                        DicomStudy study = new DicomStudy();
+                        unmarshalStudyProperties(study, jsonStudy);
+                        resultStudies.add(study);
                     }
                 }
             } catch (Exception err) {
@@ -488,6 +505,8 @@ public class ConquestService implements IConquestService {
             log.error("Failed to process query: " + compositeQueryUrl);
             log.debug(e.getMessage(), e);
             return false;
+        } finally {
+            response.close();
         }
 
         return true;
@@ -521,6 +540,8 @@ public class ConquestService implements IConquestService {
 
             if (response.hasEntity()) {
                 result = response;
+            } else {
+                response.close();
             }
         } catch (Exception err) {
             String message = "Loading the DICOM images failed!\nThere appears to be a problem with the server connection.";
@@ -548,12 +569,10 @@ public class ConquestService implements IConquestService {
                 compositeQueryUrl += seriesUid + dicomSeriesUid;
             }
 
-            ClientResponse response = queryConquest(compositeQueryUrl);
+            String jsonString = queryConquestMetadata(compositeQueryUrl);
 
-            throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
-
-            if (response.hasEntity()) {
-                JSONArray jsonSeries = getJsonEntityFromString(response, "Series");
+            if (jsonString != null) {
+                JSONArray jsonSeries = getJsonEntityFromString(jsonString, "Series");
 
                 for (int i = 0; i < jsonSeries.length(); i++) {
 
@@ -621,6 +640,8 @@ public class ConquestService implements IConquestService {
             log.error("Failed to process query: " + compositeQueryUrl);
             log.debug(e.getMessage(), e);
             return false;
+        } finally {
+            response.close();
         }
         return true;
     }
@@ -639,6 +660,8 @@ public class ConquestService implements IConquestService {
             log.error("Failed to process query: " + compositeQueryUrl);
             log.debug(e.getMessage(), e);
             return false;
+        } finally {
+            response.close();
         }
         return true;
     }
@@ -663,7 +686,7 @@ public class ConquestService implements IConquestService {
             compositeQueryUrl += seriesUid + dicomSeriesUid;
         }
 
-        return service.submit(new CallableJerseyClient(compositeQueryUrl, this.username, this.password));
+        return service.submit(new CallableJerseyClient(this.getClient(), compositeQueryUrl));
     }
 
     // endregion
@@ -685,11 +708,13 @@ public class ConquestService implements IConquestService {
                 compositeQueryUrl += seriesUid + dicomSeriesUid;
             }
             if (!"".equals(dicomInstanceUid)) {
-                compositeQueryUrl += sopUid + dicomSeriesUid;
+                compositeQueryUrl += sopUid + dicomInstanceUid;
             }
 
             ClientResponse response = queryConquest(compositeQueryUrl);
 
+            response.close();
+
             if (response.getStatus() != 200) {
                 throw new RuntimeException("Failed : HTTP error code : " + response.getStatus());
             } else {
@@ -717,12 +742,10 @@ public class ConquestService implements IConquestService {
                 compositeQueryUrl += seriesUid + dicomSeriesUid;
             }
 
-            ClientResponse response = queryConquest(compositeQueryUrl);
+            String jsonString = queryConquestMetadata(compositeQueryUrl);
 
-            throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
-
-            if (response.hasEntity()) {
-                JSONArray jsonSeries = getJsonEntityFromString(response, "Series");
+            if (jsonString != null) {
+                JSONArray jsonSeries = getJsonEntityFromString(jsonString, "Series");
 
                 for (int i = 0; i < jsonSeries.length(); i++) {
 
@@ -758,10 +781,15 @@ public class ConquestService implements IConquestService {
     //region DICOM RTSTRUCT
 
     public DicomRtStructureSet loadDicomRtStructureSet(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid, RtTreatmentCase tc) {
+        DicomRtStructureSet cached = this.getCachedRtObject(sopInstanceUid, DicomRtStructureSet.class);
+        if (cached != null) {
+            return cached;
+        }
+
         DicomRtStructureSet structureSet = new DicomRtStructureSet();
 
-        // Load DICOM data
-        Attributes dcmAttributes = this.loadWadoDicomInstance(
+        // Load DICOM header (RT objects are read from attributes, dose grid pixel data is not needed)
+        Attributes dcmAttributes = this.loadWadoDicomInstanceHeader(
                 studyInstanceUid,
                 seriesInstanceUid,
                 sopInstanceUid
@@ -771,6 +799,7 @@ public class ConquestService implements IConquestService {
         if (dcmAttributes != null) {
 
             // Construct StructureSet object
+            structureSet.setSopInstanceUid(dcmAttributes.getString(Tag.SOPInstanceUID));
             structureSet.setLabel(dcmAttributes.getString(Tag.StructureSetLabel));
             structureSet.setDate(dcmAttributes.getDate(Tag.StructureSetDateAndTime));
 
@@ -807,70 +836,37 @@ public class ConquestService implements IConquestService {
                     rgb = new int[]{Integer.parseInt(valColors[0]), Integer.parseInt(valColors[1]),
                             Integer.parseInt(valColors[2])};
                 } else {
-                    Random rand = new Random();
+                    ThreadLocalRandom rand = ThreadLocalRandom.current();
                     rgb = new int[]{rand.nextInt(255), rand.nextInt(255), rand.nextInt(255)};
                 }
 
-                Color color1 = getRGBColor(255, null, rgb);
-                Color color2 = new Color(color1.getRed(), color1.getGreen(), color1.getBlue(), this.structureFillTransparency);
-                layer.getStructure().setColor(color2);
+                int rgbColor = getRGB(255, null, rgb);
+                layer.getStructure().setColor(
+                        new Color((rgbColor >> 16) & 0xFF, (rgbColor >> 8) & 0xFF, rgbColor & 0xFF, this.structureFillTransparency)
+                );
 
-                // Contour planes
-                Map<Double, ArrayList<DicomRtContour>> planes = new HashMap<>();
+                // Contour planes (packed into primitive arrays and sorted by z)
+                DicomRtContourData.Builder contourDataBuilder = new DicomRtContourData.Builder();
                 Sequence cseq = roiContourSeq.getSequence(Tag.ContourSequence);
                 if (cseq != null) {
                     // Locate the contour sequence for each referenced ROI
                     for (Attributes contour : cseq) {
-                        // For each plane, initialize a new plane dictionary
-                        DicomRtContour plane = new DicomRtContour(layer);
-
-                        // Determine all the plane properties
-                        plane.setGeometricType(contour.getString(Tag.ContourGeometricType));
-                        plane.setContourSlabThickness(contour.getDouble(Tag.ContourSlabThickness, -1));
-                        plane.setContourOffsetVector(contour.getDoubles(Tag.ContourOffsetVector));
-                        plane.setContourPoints(contour.getInt(Tag.NumberOfContourPoints, -1));
-
-                        double[] points = contour.getDoubles(Tag.ContourData);
-                        if (points != null && points.length % 3 == 0) {
-                            plane.setPoints(points);
-                            if (plane.getContourPoints() == -1) {
-                                plane.setContourPoints(points.length / 3);
-                            }
-                        }
-
-                        // Each plane which coincides with a image slice will have a unique ID
-                        // take the first one
-                        for (Attributes images : contour.getSequence(Tag.ContourImageSequence)) {
-                            String sopUID = images.getString(Tag.ReferencedSOPInstanceUID);
-                            if (sopUID != null && !sopUID.equals("")) {
-                                ArrayList<DicomRtContour> pls;
-                                if (tc.getContourMap() == null || tc.getContourMap().get(sopUID) == null) {
-                                    pls = new ArrayList<>();
-                                } else {
-                                    pls = tc.getContourMap().get(sopUID);
-                                }
-                                pls.add(plane);
-                            }
-                        }
-
-                        // Add each plane to the planes dictionary of the current ROI
-                        double z = plane.getCoordinateZ();
-
-                        // If there are no contour on specific z position
-                        if (!planes.containsKey(z)) {
-                            planes.put(z, new ArrayList<DicomRtContour>());
-                            planes.get(z).add(plane);
-                        }
-
+                        contourDataBuilder.addContour(
+                                contour.getString(Tag.ContourGeometricType),
+                                contour.getDoubles(Tag.ContourData)
+                        );
                     }
                 }
+                DicomRtContourData contourData = contourDataBuilder.build();
 
                 // Calculate the plane thickness for the current ROI
-                layer.getStructure().setThickness(calculatePlaneThickness(planes));
+                layer.getStructure().setThickness(contourData.getThickness());
 
-                // Add the planes dictionary to the current ROI
-                layer.getStructure().setPlanes(planes);
+                // Add the planes to the current ROI
+                layer.getStructure().setContourData(contourData);
             }
+
+            this.cacheRtObject(sopInstanceUid, structureSet);
         }
 
         return structureSet;
@@ -881,18 +877,27 @@ public class ConquestService implements IConquestService {
     //region DICOM RTDOSE
 
     public DicomSeriesRtDose loadDicomRtDose(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
+        DicomSeriesRtDose cached = this.getCachedRtObject(sopInstanceUid, DicomSeriesRtDose.class);
+        if (cached != null) {
+            return cached;
+        }
+
         DicomSeriesRtDose rtDose = new DicomSeriesRtDose();
 
-        // Load DICOM data
-        Attributes dcmAttributes = this.loadWadoDicomInstance(
+        // Load DICOM header (RT objects are read from attributes, dose grid pixel data is not needed)
+        Attributes dcmAttributes = this.loadWadoDicomInstanceHeader(
                 studyInstanceUid,
                 seriesInstanceUid,
                 sopInstanceUid
         );
 
+        rtDose.setSeriesInstanceUID(seriesInstanceUid);
         rtDose.setSopInstanceUid(
                 dcmAttributes.getString(Tag.SOPInstanceUID)
         );
+        rtDose.setReferencedRtPlanUid(
+                getReferencedSopInstanceUid(dcmAttributes, Tag.ReferencedRTPlanSequence)
+        );
         rtDose.setDoseUnits(
                 dcmAttributes.getString(Tag.DoseUnits)
         );
@@ -929,52 +934,13 @@ public class ConquestService implements IConquestService {
 
                 if (rtDvh != null) {
                     // Convert Differential DVH to Cumulative
-                    if (dvhSeq.get(0).getString(Tag.DVHType).equals("DIFFERENTIAL")) {
-                        log.info("Not supported: converting differential DVH to cumulative");
-
-                        //TODO: implement
-                        double[] data = dvhAttributes.getDoubles(Tag.DVHData);
-
-//                        dDVH = np.array(data)
-//                        # Separate the dose and volume values into distinct arrays
-//                        dose = data[0::2]
-//                        volume = data[1::2]
-//
-//                        # Get the min and max dose and volume values
-//                        mindose = int(dose[0]*100)
-//                        maxdose = int(sum(dose)*100)
-//                        maxvol = sum(volume)
-//
-//                        # Determine the dose values that are missing from the original data
-//                        missingdose = np.ones(mindose) * maxvol
-//
-//                        # Generate the cumulative dose and cumulative volume data
-//                        k = 0
-//                        cumvol = []
-//                        cumdose = []
-//                        while k < len(dose):
-//                            cumvol += [sum(volume[k:])]
-//                            cumdose += [sum(dose[:k])]
-//                            k += 1
-//
-//                        cumvol = np.array(cumvol)
-//                        cumdose = np.array(cumdose)*100
-//
-//                        # Interpolate the dDVH data for 1 cGy bins
-//                        interpdose = np.arange(mindose, maxdose+1)
-//                        interpcumvol = np.interp(interpdose, cumdose, cumvol)
-//
-//                        # Append the interpolated values to the missing dose values
-//                        cumDVH = np.append(missingdose, interpcumvol)
-
-                        double[] cumDvhData;
-                        //rtDvh.setDvhData(cumDvhData);
-                        //rtDvh.setDvhNumberOfBins(cumDvhData.length);
+                    if ("DIFFERENTIAL".equals(dvhAttributes.getString(Tag.DVHType))) {
+                        double[] cumDvhData = DicomRtDvh.toCumulative(dvhAttributes.getDoubles(Tag.DVHData));
+                        rtDvh.setDvhData(cumDvhData);
+                        rtDvh.setDvhNumberOfBins(cumDvhData != null ? cumDvhData.length / 2 : 0);
                     }
                     // Cumulative
                     else {
-                        //TODO Remove "filer" values from DVH data array (even values are DVH values) odd are filter
-                        //dvhitem['data'] = np.array(item.DVHData[1::2])
                         rtDvh.setDvhData(
                                 dvhAttributes.getDoubles(Tag.DVHData)
                         );
@@ -1016,23 +982,148 @@ public class ConquestService implements IConquestService {
             rtDose.setRtDvhs(dvhs);
         }
 
+        this.cacheRtObject(sopInstanceUid, rtDose);
+
         return rtDose;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public DicomRtDoseGrid loadDicomRtDoseGrid(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
+        // Complete instance including dose grid pixel data
+        Attributes dcmAttributes = this.loadWadoDicomInstance(
+                studyInstanceUid,
+                seriesInstanceUid,
+                sopInstanceUid
+        );
+        if (dcmAttributes == null) {
+            return null;
+        }
+
+        // DVHs are calculated and labelled in Gy, relative dose grids (normalised to a reference point) are not supported
+        String doseUnits = dcmAttributes.getString(Tag.DoseUnits);
+        if (!"GY".equalsIgnoreCase(doseUnits != null ? doseUnits.trim() : null)) {
+            log.error("Not supported: RTDOSE " + sopInstanceUid + " dose grid is in " + doseUnits + " dose units, only GY is supported");
+            return null;
+        }
+
+        double[] orientation = dcmAttributes.getDoubles(Tag.ImageOrientationPatient);
+        if (orientation != null && orientation.length == 6 &&
+                (Math.abs(orientation[0] - 1.0) > 0.001 || Math.abs(orientation[4] - 1.0) > 0.001)) {
+            log.error("Not supported: RTDOSE " + sopInstanceUid + " dose grid is not in axial orientation");
+            return null;
+        }
+
+        int rows = dcmAttributes.getInt(Tag.Rows, 0);
+        int columns = dcmAttributes.getInt(Tag.Columns, 0);
+        int frames = dcmAttributes.getInt(Tag.NumberOfFrames, 1);
+        double[] position = dcmAttributes.getDoubles(Tag.ImagePositionPatient);
+        double[] spacing = dcmAttributes.getDoubles(Tag.PixelSpacing);
+        double[] offsets = dcmAttributes.getDoubles(Tag.GridFrameOffsetVector);
+        if (position == null || position.length != 3 || spacing == null || spacing.length != 2) {
+            log.error("RTDOSE " + sopInstanceUid + " does not define dose grid geometry");
+            return null;
+        }
+
+        try {
+            byte[] pixelData = dcmAttributes.getBytes(Tag.PixelData);
+            int bitsAllocated = dcmAttributes.getInt(Tag.BitsAllocated, 32);
+            boolean signed = dcmAttributes.getInt(Tag.PixelRepresentation, 0) == 1;
+            double doseGridScaling = dcmAttributes.getDouble(Tag.DoseGridScaling, 1.0);
+
+            int frameSize = rows * columns;
+            if (pixelData == null || pixelData.length < frameSize * frames * (bitsAllocated / 8)) {
+                log.error("RTDOSE " + sopInstanceUid + " pixel data do not match the dose grid size");
+                return null;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(pixelData)
+                    .order(dcmAttributes.bigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+            // Grid frame offsets are relative to the image position when the first offset is 0, otherwise absolute z
+            double[] frameZ = new double[frames];
+            for (int f = 0; f < frames; f++) {
+                double offset = offsets != null && offsets.length == frames ? offsets[f] : 0.0;
+                frameZ[f] = offsets != null && offsets.length > 0 && offsets[0] == 0.0 ? position[2] + offset : offset;
+            }
+            boolean descending = frames > 1 && frameZ[frames - 1] < frameZ[0];
+
+            float[] dose = new float[frameSize * frames];
+            for (int f = 0; f < frames; f++) {
+                int target = (descending ? frames - 1 - f : f) * frameSize;
+                for (int i = 0; i < frameSize; i++) {
+                    long value;
+                    if (bitsAllocated == 16) {
+                        value = signed ? buffer.getShort() : buffer.getShort() & 0xFFFF;
+                    } else {
+                        value = signed ? buffer.getInt() : buffer.getInt() & 0xFFFFFFFFL;
+                    }
+                    dose[target + i] = (float) (value * doseGridScaling);
+                }
+            }
+            if (descending) {
+                for (int f = 0; f < frames / 2; f++) {
+                    double z = frameZ[f];
+                    frameZ[f] = frameZ[frames - 1 - f];
+                    frameZ[frames - 1 - f] = z;
+                }
+            }
+
+            // Pixel spacing is row spacing (y) followed by column spacing (x)
+            return new DicomRtDoseGrid(columns, rows, position[0], position[1], spacing[1], spacing[0], frameZ, dose);
+        } catch (IOException | IllegalArgumentException err) {
+            log.error("RTDOSE " + sopInstanceUid + " dose grid cannot be read", err);
+            return null;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public List<DicomRtDvh> calculateDicomRtDvhs(String studyInstanceUid, DicomSeriesRtDose rtDose, DicomRtStructureSet structureSet) {
+        DicomRtDoseGrid grid = this.loadDicomRtDoseGrid(
+                studyInstanceUid,
+                rtDose.getSeriesInstanceUID(),
+                rtDose.getSopInstanceUid()
+        );
+        if (grid == null) {
+            return new ArrayList<>();
+        }
+
+        List<DicomRtDvh> dvhs = new DicomRtDvhCalculator().calculate(structureSet, grid);
+        for (DicomRtDvh dvh : dvhs) {
+            dvh.setDoseType(rtDose.getDoseType());
+        }
+
+        return dvhs;
+    }
+
     //endregion
 
     //region DICOM RTPLAN
 
     public DicomSeriesRtPlan loadDicomRtPlan(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
+        DicomSeriesRtPlan cached = this.getCachedRtObject(sopInstanceUid, DicomSeriesRtPlan.class);
+        if (cached != null) {
+            return cached;
+        }
+
         DicomSeriesRtPlan rtPlan = new DicomSeriesRtPlan();
 
-        // Load DICOM data
-        Attributes dcmAttributes = this.loadWadoDicomInstance(
+        // Load DICOM header (RT objects are read from attributes, dose grid pixel data is not needed)
+        Attributes dcmAttributes = this.loadWadoDicomInstanceHeader(
                 studyInstanceUid,
                 seriesInstanceUid,
                 sopInstanceUid
         );
 
+        rtPlan.setSopInstanceUid(
+                dcmAttributes.getString(Tag.SOPInstanceUID)
+        );
+        rtPlan.setReferencedStructureSetUid(
+                getReferencedSopInstanceUid(dcmAttributes, Tag.ReferencedStructureSetSequence)
+        );
         rtPlan.setRtPlanLabel(
                 dcmAttributes.getString(Tag.RTPlanLabel)
         );
@@ -1103,6 +1194,8 @@ public class ConquestService implements IConquestService {
             }
         }
 
+        this.cacheRtObject(sopInstanceUid, rtPlan);
+
         return rtPlan;
     }
 
@@ -1110,8 +1203,29 @@ public class ConquestService implements IConquestService {
 
     //region WADO
 
+    /**
+     * {@inheritDoc}
+     *
+     * Instances available in the local instance file cache are served from disk (as FileInputStream) once PACS
+     * confirmed that the instance is accessible with the credentials of this service, otherwise the WADO response
+     * is written to the cache while it is consumed. Cached instances are kept per PACS and account.
+     */
     public InputStream loadWadoDicomStream(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
-        InputStream in = null;
+        String cacheScope = PacsInstanceFileCache.createScope(this.baseUrl, this.username);
+
+        InputStream in = PacsInstanceFileCache.openFile(cacheScope, sopInstanceUid);
+        if (in != null) {
+            // Cheap existence query authorizes the request without transferring the instance
+            if (this.instanceExists("", studyInstanceUid, seriesInstanceUid, sopInstanceUid)) {
+                return in;
+            }
+            try {
+                in.close();
+            } catch (IOException err) {
+                log.error(err.getMessage(), err);
+            }
+            in = null;
+        }
 
         try {
             String compositeQueryUrl = this.baseUrl + wado;
@@ -1124,9 +1238,12 @@ public class ConquestService implements IConquestService {
 
             if (response.getStatus() == 200) {
                 if (response.hasEntity()) {
-                    in = response.getEntityInputStream();
+                    in = PacsInstanceFileCache.cachingStream(cacheScope, sopInstanceUid, response.getEntityInputStream());
+                } else {
+                    response.close();
                 }
             } else {
+                response.close();
                 log.warn("WADO HTTP response code: " + response.getStatus());
             }
         } catch (Exception err) {
@@ -1137,64 +1254,68 @@ public class ConquestService implements IConquestService {
     }
 
     public Attributes loadWadoDicomInstance(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
-        Attributes dcmAttributes = null;
+        return this.readWadoDicomInstance(studyInstanceUid, seriesInstanceUid, sopInstanceUid, -1);
+    }
 
-        try {
-            String compositeQueryUrl = this.baseUrl + wado;
-            compositeQueryUrl += "&contentType=" + "application/dicom" +
-                    "&studyUID=" + studyInstanceUid +
-                    "&seriesUID=" + seriesInstanceUid +
-                    "&objectUID=" + sopInstanceUid;
+    /**
+     * {@inheritDoc}
+     *
+     * Reading stops at PixelData and the WADO response is closed before its end, which closes the pooled PACS
+     * connection instead of reading the rest of the response (see PacsHttpClientHandler). Only data already
+     * buffered by the connection is transferred beyond PixelData. The instance is only taken into the local
+     * instance file cache when it is read completely by another request.
+     */
+    public Attributes loadWadoDicomInstanceHeader(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid) {
+        return this.readWadoDicomInstance(studyInstanceUid, seriesInstanceUid, sopInstanceUid, Tag.PixelData);
+    }
 
-            ClientResponse response = queryConquest(compositeQueryUrl);
+    //endregion
 
-            throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
+    //endregion
 
-            if (response.hasEntity()) {
-                DicomInputStream din = null;
+    //region Private methods
+
+    private Attributes readWadoDicomInstance(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid, int stopTag) {
+        Attributes dcmAttributes = null;
+
+        InputStream in = this.loadWadoDicomStream(studyInstanceUid, seriesInstanceUid, sopInstanceUid);
+        if (in != null) {
+            DicomInputStream din = null;
+            try {
+                din = new DicomInputStream(in);
+                dcmAttributes = din.readDataset(-1, stopTag);
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+            } finally {
+                // Closing before the end of WADO response aborts its transfer instead of draining it
                 try {
-                    din = new DicomInputStream(
-                            response.getEntityInputStream()
-                    );
-                    dcmAttributes = din.readDataset(-1, -1);
-                } catch (IOException e) {
-                    log.error(e.getMessage(), e);
-                } finally {
-                    try {
-                        if (din != null) {
-                            din.close();
-                        }
-                    } catch (IOException ignore) {
-                        log.error(ignore.getMessage(), ignore);
+                    if (din != null) {
+                        din.close();
+                    } else {
+                        in.close();
                     }
+                } catch (IOException ignore) {
+                    log.error(ignore.getMessage(), ignore);
                 }
             }
-        } catch (Exception err) {
-            String message = "WADO loading the DICOM instance failed!";
-            log.error(message, err);
         }
 
         return dcmAttributes;
     }
 
-    //endregion
-
-    //endregion
-
-    //region Private methods
+    private Client getClient() {
+        return PacsClientPool.getClient(this.baseUrl, this.username, this.password);
+    }
 
     private ClientResponse queryConquest(String compositeQueryUrl) {
-        Client client = Client.create();
-        if (this.username != null && !this.username.isEmpty()) {
-            client.addFilter(new HTTPBasicAuthFilter(this.username, this.password));
-        }
-        WebResource webResource = client.resource(compositeQueryUrl);
+        WebResource webResource = this.getClient().resource(compositeQueryUrl);
         return webResource.get(ClientResponse.class);
     }
 
     private void throwIfResponseStatusIsNotTwoHundred(String compositeQueryUrl, ClientResponse response) throws Exception {
 
         if (response.getStatus() != 200) {
+            response.close();
 
             String errorMessage = "There was a problem with your request. ";
             throw new Exception(
@@ -1205,10 +1326,96 @@ public class ConquestService implements IConquestService {
         }
     }
 
-    private JSONArray getJsonEntityFromString(ClientResponse response, String entityName) throws JSONException {
+    /**
+     * Query Conquest JSON metadata endpoint, the trimmed JSON response is cached per query URL
+     * (URL is composed from PatientID, StudyUID and SeriesUID) because DICOM data is effectively immutable once stored
+     *
+     * @param compositeQueryUrl JSON query URL
+     * @return JSON string or null if the response had no entity
+     * @throws Exception if the response status is not 200
+     */
+    private String queryConquestMetadata(String compositeQueryUrl) throws Exception {
+        CacheUtil cache = this.getCacheUtil();
+
+        if (cache != null) {
+            Element element = cache.getPacsMetadataCacheElement(compositeQueryUrl);
+            if (element != null) {
+                return (String) element.getObjectValue();
+            }
+        }
+
+        ClientResponse response = queryConquest(compositeQueryUrl);
+        throwIfResponseStatusIsNotTwoHundred(compositeQueryUrl, response);
+
+        String result = null;
+        if (response.hasEntity()) {
+            result = JsonStringUtil.trimJsonString(response.getEntity(String.class));
+
+            if (cache != null) {
+                cache.setPacsMetadataCacheElement(new Element(compositeQueryUrl, result));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Lookup parsed DICOM-RT object (structure set, dose, plan) in cache, DICOM instances are immutable so the
+     * SOP instance UID identifies the parsed object within the PACS and account scope
+     *
+     * The cache holds a private snapshot and each caller gets its own copy, so request specific changes (e.g.
+     * calculated DVHs) never leak into the cache or into concurrent requests.
+     */
+    private <T> T getCachedRtObject(String sopInstanceUid, Class<T> type) {
+        CacheUtil cache = this.getCacheUtil();
+        if (cache == null || sopInstanceUid == null) {
+            return null;
+        }
+
+        Element element = cache.getPacsRtObjectCacheElement(this.createRtObjectCacheKey(sopInstanceUid));
+        if (element != null && type.isInstance(element.getObjectValue())) {
+            return type.cast(copyRtObject(element.getObjectValue()));
+        }
+
+        return null;
+    }
+
+    private void cacheRtObject(String sopInstanceUid, Object rtObject) {
+        CacheUtil cache = this.getCacheUtil();
+        if (cache != null && sopInstanceUid != null) {
+            cache.setPacsRtObjectCacheElement(new Element(this.createRtObjectCacheKey(sopInstanceUid), copyRtObject(rtObject)));
+        }
+    }
+
+    private String createRtObjectCacheKey(String sopInstanceUid) {
+        return PacsInstanceFileCache.createScope(this.baseUrl, this.username) + "/" + sopInstanceUid;
+    }
+
+    private static Object copyRtObject(Object rtObject) {
+        if (rtObject instanceof DicomSeriesRtDose) {
+            return new DicomSeriesRtDose((DicomSeriesRtDose) rtObject);
+        } else if (rtObject instanceof DicomSeriesRtPlan) {
+            return new DicomSeriesRtPlan((DicomSeriesRtPlan) rtObject);
+        } else if (rtObject instanceof DicomRtStructureSet) {
+            return new DicomRtStructureSet((DicomRtStructureSet) rtObject);
+        }
+
+        return rtObject;
+    }
+
+    /**
+     * SOP instance UID of the first item of a referenced object sequence (e.g. Referenced RT Plan Sequence)
+     */
+    private static String getReferencedSopInstanceUid(Attributes dcmAttributes, int sequenceTag) {
+        Sequence sequence = dcmAttributes.getSequence(sequenceTag);
+        if (sequence == null || sequence.isEmpty()) {
+            return null;
+        }
+
+        return sequence.get(0).getString(Tag.ReferencedSOPInstanceUID);
+    }
 
-        String queryResultString = response.getEntity(String.class);
-        queryResultString = JsonStringUtil.trimJsonString(queryResultString);
+    private JSONArray getJsonEntityFromString(String queryResultString, String entityName) throws JSONException {
         JSONObject json = new JSONObject(queryResultString);
 
         return json.getJSONArray(entityName);
@@ -1256,6 +1463,14 @@ public class ConquestService implements IConquestService {
         return this.loadPatient(concatenatedPatients);
     }
 
+    private List<String> getPids(List<StudySubject> studySubjectList) {
+        List<String> pids = new ArrayList<>();
+        for (StudySubject subject : studySubjectList) {
+            pids.add(subject.getPid());
+        }
+        return pids;
+    }
+
 
     private void unmarshalStudyProperties(DicomStudy result, JSONObject jsonStudy) throws JSONException {
         result.setStudyInstanceUID(jsonStudy.getString("StudyInstanceUID"));
@@ -1419,6 +1634,7 @@ public class ConquestService implements IConquestService {
 
             // No caching endpoint, no proxy or something failed
             if (response.getStatus() != 200) {
+                response.close();
                 log.info("Configured PACS is not DICOM caching proxy, caching is not required.");
             } else { // Otherwise, wait for response regarding what was cached
                 String result = response.getEntity(String.class);
@@ -1439,12 +1655,15 @@ public class ConquestService implements IConquestService {
 
         InputStream inputStream = null;
         try {
-            Client client = Client.create();
-            if (this.username != null && !this.username.isEmpty()) {
-                client.addFilter(new HTTPBasicAuthFilter(this.username, this.password));
+            ClientResponse response = queryConquest(url);
+            throwIfResponseStatusIsNotTwoHundred(url, response);
+
+            if (response.hasEntity()) {
+                // Closing the stream before its end releases the connection without transferring the rest
+                inputStream = response.getEntityInputStream();
+            } else {
+                response.close();
             }
-            WebResource webResource = client.resource(url);
-            inputStream = webResource.get(InputStream.class);
         } catch (Exception err) {
             log.error(err.getMessage(), err);
         }
@@ -1458,7 +1677,7 @@ public class ConquestService implements IConquestService {
 
     private static final ICC_ColorSpace LAB = new ICC_ColorSpace(ICC_Profile.getInstance(ICC_ColorSpace.CS_sRGB));
 
-    private static Color getRGBColor(int pGray, float[] labColour, int[] rgbColour) {
+    private static int getRGB(int pGray, float[] labColour, int[] rgbColour) {
         int r, g, b;
         if (labColour != null) {
             if (LAB == null) {
@@ -1484,37 +1703,7 @@ public class ConquestService implements IConquestService {
         r &= 0xFF;
         g &= 0xFF;
         b &= 0xFF;
-        int conv = (r << 16) | (g << 8) | b | 0x1000000;
-        return new Color(conv);
-    }
-
-    /**
-     * Calculates the structure plane thickness
-     *
-     * @return structure plane thickness
-     */
-    private static double calculatePlaneThickness(Map<Double, ArrayList<DicomRtContour>> planesMap) {
-        // Sort the list of z coordinates
-        List<Double> planes = new ArrayList<>(planesMap.keySet());
-        Collections.sort(planes);
-
-        // Set maximum thickness as initial value
-        double thickness = 10000;
-
-        // Compare z of each two next to each other planes in order to find the minimal shift in z
-        for (int i = 1; i < planes.size(); i++) {
-            double newThickness = planes.get(i) - planes.get(i - 1);
-            if (newThickness < thickness) {
-                thickness = newThickness;
-            }
-        }
-
-        // When no other then initial thickness was detected, set 0
-        if (thickness > 9999) {
-            thickness = 0.0;
-        }
-
-        return thickness;
+        return (r << 16) | (g << 8) | b;
     }
 
     //endregion
@@ -20,6 +20,7 @@
 package de.dktk.dd.rpb.core.service;
 
 import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
@@ -29,7 +30,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Named;
+import java.io.File;
 import java.io.InputStream;
 
 import static de.dktk.dd.rpb.core.util.Constants.study0EdcCode;
@@ -67,6 +70,15 @@ public class CtpService implements ICtpService {
     private String dicomUidPrefix;
     @Value("${ctp.baseAetName}")
     private String baseAetName;
+    @Value("${ctp.httpImportThreads:1}")
+    private int httpImportThreads;
+    @Value("${ctp.httpImportRetries:0}")
+    private int httpImportRetries;
+    @Value("${ctp.httpImportRetryDelay:500}")
+    private long httpImportRetryDelay;
+
+    // Shared client (thread safe), connections to CTP are kept alive between requests
+    private volatile Client client;
 
     //endregion
 
@@ -100,6 +112,10 @@ public class CtpService implements ICtpService {
         return this.httpImportPacsVerificationTimeout;
     }
 
+    public int getHttpImportThreads() {
+        return Math.max(1, this.httpImportThreads);
+    }
+
     //endregion
 
     //region Methods
@@ -108,6 +124,18 @@ public class CtpService implements ICtpService {
         this.url = url;
         this.user = user;
         this.password = password;
+
+        // Credentials changed, the shared client is recreated with next request
+        this.client = null;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        Client shared = this.client;
+        this.client = null;
+        if (shared != null) {
+            shared.destroy();
+        }
     }
 
     //endregion
@@ -195,7 +223,56 @@ public class CtpService implements ICtpService {
     //region DICOM
 
     public boolean httpImportDicom(InputStream is) {
-        boolean result = false;
+        return this.postDicom(is) == null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean httpImportDicom(File file) {
+        int attempts = 1 + Math.max(0, this.httpImportRetries);
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                // File entity is sent with known content length and streamed from disk
+                Integer status = this.postDicom(file);
+                if (status == null) {
+                    return true;
+                } else if (status < 500) {
+                    // Rejected by CTP, retry would not help
+                    return false;
+                }
+            } catch (ClientHandlerException err) {
+                log.error("CTP post failed: " + err.getMessage());
+            }
+
+            if (attempt < attempts) {
+                try {
+                    // Exponential backoff
+                    Thread.sleep(this.httpImportRetryDelay << (attempt - 1));
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    //endregion
+
+    //region Private Methods
+
+    //region Communication
+
+    /**
+     * Post DICOM entity to CTP HTTP import
+     *
+     * @param entity DICOM content
+     * @return null on success otherwise the HTTP status of the failed request
+     */
+    private Integer postDicom(Object entity) {
+        Integer result = null;
 
         // No method string, direct to CTP import Url
         String method = "";
@@ -205,32 +282,42 @@ public class CtpService implements ICtpService {
         ClientResponse response = this.createCtpWebResource(this.importUrl, method)
                 .accept(cptContentType)
                 .type(cptContentType)
-                .post(ClientResponse.class, is);
-
-        int status = response.getStatus();
-        if (status == 200 || status == 201) {
-            result = true;
-        } else {
-            log.error("CTP post status: " + status);
+                .post(ClientResponse.class, entity);
+
+        try {
+            int status = response.getStatus();
+            if (status != 200 && status != 201) {
+                log.error("CTP post status: " + status);
+                result = status;
+            }
+        } finally {
+            response.close();
         }
 
         return result;
     }
 
-    //endregion
-
-    //region Private Methods
-
-    //region Communication
-
     private WebResource createCtpWebResource(String url, String method) {
 
         this.normaliseUrl();
 
-        Client client = Client.create();
-        client.addFilter(new HTTPBasicAuthFilter(this.user, this.password));
+        return this.getClient().resource(url + method);
+    }
+
+    private Client getClient() {
+        Client shared = this.client;
+        if (shared == null) {
+            synchronized (this) {
+                shared = this.client;
+                if (shared == null) {
+                    shared = Client.create();
+                    shared.addFilter(new HTTPBasicAuthFilter(this.user, this.password));
+                    this.client = shared;
+                }
+            }
+        }
 
-        return client.resource(url + method);
+        return shared;
     }
 
     private void normaliseUrl() {
@@ -25,8 +25,10 @@ import de.dktk.dd.rpb.core.domain.edc.mapping.MappedCsvItem;
 import de.dktk.dd.rpb.core.domain.edc.mapping.MappedOdmItem;
 import de.dktk.dd.rpb.core.domain.edc.mapping.Mapping;
 import de.dktk.dd.rpb.core.domain.edc.mapping.MappingRecord;
+import de.dktk.dd.rpb.core.service.support.CsvMappingPlan;
 import de.dktk.dd.rpb.core.util.Constants;
 import de.dktk.dd.rpb.core.util.FileUtil;
+import de.dktk.dd.rpb.core.util.JAXBContextRegistry;
 import de.dktk.dd.rpb.core.util.JAXBHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,23 +38,18 @@ import org.supercsv.prefs.CsvPreference;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static de.dktk.dd.rpb.core.util.Constants.PSEUDO_DATE;
 
@@ -74,7 +71,6 @@ public class DataTransformationService {
     //region Members
 
     protected FileUtil fileUtil;
-    private ICsvListReader reader;
 
     //endregion
 
@@ -84,7 +80,6 @@ public class DataTransformationService {
     public DataTransformationService(FileUtil fileUtil) {
 
         this.fileUtil = fileUtil;
-        this.reader = null;
     }
 
     //endregion
@@ -135,6 +130,20 @@ public class DataTransformationService {
         return result;
     }
 
+    /**
+     * Transforms csv data row by row to study subjects without building the complete ODM in memory.
+     * Mapping rules are resolved once for the csv header, each mapped subject is handed over to the consumer.
+     *
+     * @param metadata Odm meta data that describe the target
+     * @param map      Mapping mapping rules
+     * @param input    InputStream with csv data (header in the first line)
+     * @param consumer Consumer of mapped study subjects
+     * @return number of transformed subjects or -1 when the transformation failed
+     */
+    public int transformCsvToSubjects(Odm metadata, Mapping map, InputStream input, Consumer<StudySubject> consumer) {
+        return this.transformCsvToSubjects(metadata, input, map.getMappingRecords(), consumer);
+    }
+
     /**
      * Adds artificial events if there is a gap in the flow of RepeatKeys. Otherwise the OpenClinicaService will schedule
      * the events with a wrong RepeatKey, because Openclinica simply increases a counter when a new events is scheduled.
@@ -181,10 +190,10 @@ public class DataTransformationService {
         String result = "";
         try {
             StringWriter sw = new StringWriter();
-            JAXBContext context = JAXBContext.newInstance(Odm.class);
-            Marshaller m = context.createMarshaller();
-            m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-            m.marshal(odm, sw);
+            JAXBContextRegistry.marshal(Odm.class, m -> {
+                m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+                m.marshal(odm, sw);
+            });
             result = sw.toString();
         } catch (Exception err) {
             // NOOP
@@ -197,11 +206,12 @@ public class DataTransformationService {
         File odmFile = null;
 
         try {
-            odmFile = new File(fileName);
-            JAXBContext context = JAXBContext.newInstance(Odm.class);
-            Marshaller m = context.createMarshaller();
-            m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
-            m.marshal(odm, odmFile);
+            File file = new File(fileName);
+            odmFile = file;
+            JAXBContextRegistry.marshal(Odm.class, m -> {
+                m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+                m.marshal(odm, file);
+            });
         } catch (Exception err) {
             // NOOP
         }
@@ -250,9 +260,7 @@ public class DataTransformationService {
         Odm result = null;
 
         try {
-            JAXBContext context = JAXBContext.newInstance(Odm.class);
-            Unmarshaller un = context.createUnmarshaller();
-            result = (Odm) un.unmarshal(input);
+            result = JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(input));
         } catch (Exception err) {
             log.error(err.getMessage(),err);
         }
@@ -361,202 +369,55 @@ public class DataTransformationService {
 
     private Odm transformCsvToOdm(Odm metadata, InputStream input, List<MappingRecord> mappingRecords) {
         // The resulting odm has to be formed according to the metadata
-        Odm odmResult = null;
-
-        try {
-            odmResult = new Odm(metadata);
-            List<StudySubject> subjects = new ArrayList<>();
-
-            // Depending on header
-            reader = new CsvListReader(new InputStreamReader(input), CsvPreference.STANDARD_PREFERENCE);
-            String[] sourceHeader = this.reader.getHeader(true); // Ignore the header (first line)
-
-            List<String> resultList;
-            while ((resultList = reader.read()) != null) {
-
-                // Prepare fresh new study subject (conforming the SSID generation strategy)
-                StudySubject subject = new StudySubject(
-                        metadata.getStudyDetails().getStudyParameterConfiguration().getStudySubjectIdGeneration()
-                );
+        Odm odmResult = new Odm(metadata);
 
-                String eventStartDate = null;
-                int i = 0;
-                for (String item : sourceHeader) {
-
-                    // Get rid of starting and trailing spaces from column name
-                    item = item.trim();
-
-                    // Find appropriate mapping record for each header item element
-                    List<MappingRecord> applicableMappings = new ArrayList<>();
-                    for (MappingRecord mr : mappingRecords) {
-                        if (((MappedCsvItem) mr.getSource()).getHeader().equals(item) && resultList.get(i) != null) {
-                            applicableMappings.add(mr);
-                        }
-                    }
-
-                    // Sort according the priority (if multiple mrs have the same target try to execute all according priority)
-                    if (applicableMappings.size() > 1) {
-                        Collections.sort(applicableMappings, new Comparator<MappingRecord>() {
-                            public int compare(MappingRecord o1, MappingRecord o2) {
-                                return o2.getPriority().compareTo(o1.getPriority());
-                            }
-                        });
-                    }
-
-                    // Apply mappings, continue to next applicable mapping when this one was mapping applied
-                    for (MappingRecord mr : applicableMappings) {
-                        // Mapped target
-                        MappedOdmItem odmTarget = (MappedOdmItem) mr.getTarget();
-
-                        // Subject specific attributes
-                        if (odmTarget.getItemOid().equals(Constants.SS_PERSONID)) {
-                            subject.setPid(resultList.get(i));
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setPid(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_STUDYSUBJECTID)) {
-                            subject.setStudySubjectId(resultList.get(i));
-                            continue;
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_SECONDARYID)) {
-                            subject.setSecondaryId(resultList.get(i));
-                            continue;
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_GENDER)) {
-                            String sourceValue = resultList.get(i);
-                            String result;
-                            if (mr.getMapping() != null) {
-                                result = mr.getMapping().get(sourceValue.trim());
-                            }
-                            // Otherwise use the codes directly (they should match) = no mapping specified
-                            else {
-                                result = sourceValue.trim();
-                            }
-                            subject.setSex(result);
-                            continue;
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_DATEOFBIRTH)) {
-                            String sourceValue = resultList.get(i);
-                            SimpleDateFormat sourceFormat = new SimpleDateFormat(mr.getDateFormatString());
-                            SimpleDateFormat ocFormat = new SimpleDateFormat(Constants.OC_DATEFORMAT);
-                            String result = "";
-                            try {
-                                result = ocFormat.format(sourceFormat.parse(sourceValue));
-                            } catch (ParseException e) {
-                                //result = this.parseDate(sourceValue);
-                            }
+        List<StudySubject> subjects = new ArrayList<>();
+        if (this.transformCsvToSubjects(metadata, input, mappingRecords, subjects::add) < 0) {
+            return null;
+        }
+        odmResult.populateSubjects(subjects);
 
-                            subject.setDateOfBirth(result);
+        return odmResult;
+    }
 
-                            if (subject.getPerson() != null) {
-                                if (!result.equals("")) {
-                                    subject.getPerson().setBirthdate(ocFormat.parse(result));
-                                    continue;
-                                }
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_YEAROFBIRTH)) {
-                            subject.setYearOfBirth(Integer.parseInt(resultList.get(i)));
-                            continue;
-                        }
-                        // In case we are automating PID generation these can come handy
-                        else if (odmTarget.getItemOid().equals(Constants.SS_FIRSTNAME)) {
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setFirstname(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_LASTNAME)) {
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setSurname(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_BIRTHNAME)) {
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setBirthname(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_CITY)) {
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setCity(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().equals(Constants.SS_ZIP)) {
-                            if (subject.getPerson() != null) {
-                                subject.getPerson().setZipcode(resultList.get(i));
-                                continue;
-                            }
-                        } else if (odmTarget.getItemOid().startsWith(Constants.SE_STARTDATE + "_SE")) {
-                            String sourceValue = resultList.get(i);
-                            SimpleDateFormat sourceFormat = new SimpleDateFormat(mr.getDateFormatString());
-                            SimpleDateFormat ocFormat = new SimpleDateFormat(Constants.OC_DATEFORMAT);
-                            String result = "";
-                            try {
-                                result = ocFormat.format(sourceFormat.parse(sourceValue));
-                            } catch (ParseException e) {
-                                //result = this.parseDate(sourceValue);
-                            }
+    private int transformCsvToSubjects(Odm metadata, InputStream input, List<MappingRecord> mappingRecords, Consumer<StudySubject> consumer) {
+        int count = 0;
 
-                            eventStartDate = result;
-                        }
-                        // The other study items (data fields)
-                        else {
-                            String sourceValue = resultList.get(i);
-                            String targetValue = mr.process(sourceValue, metadata.getItemDefinition((MappedOdmItem) mr.getTarget()));
-
-                            // Target value is empty string and this is not the default value
-                            if ("".equals(targetValue) && !targetValue.equals(mr.getDefaultValue())) {
-                                log.info("Mapping not be applied, going to next mapping record based on priority");
-                            }
-                            // According to target mapping result create the appropriate structure in ODM
-                            else {
-                                subject.populateDataField(mr, targetValue, eventStartDate);
-                                continue;
-                            }
-                        }
-                    }
+        try (ICsvListReader reader = new CsvListReader(new InputStreamReader(input), CsvPreference.STANDARD_PREFERENCE)) {
+            String[] sourceHeader = reader.getHeader(true); // Ignore the header (first line)
+            if (sourceHeader == null) {
+                return count;
+            }
 
-                    // Take next value
-                    i++;
-                }
+            // Mapping records are resolved against header and metadata only once
+            CsvMappingPlan plan = new CsvMappingPlan(metadata, sourceHeader, mappingRecords);
 
-                subjects.add(subject);
+            List<String> resultList;
+            while ((resultList = reader.read()) != null) {
+                consumer.accept(plan.mapRow(resultList));
+                count++;
             }
-
-            odmResult.populateSubjects(subjects);
         } catch (Exception err) {
-            log.error(err.getMessage(),err);
-        } finally {
-            if (this.reader != null) {
-                try {
-                    this.reader.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+            log.error(err.getMessage(), err);
+            return -1;
         }
 
-        return odmResult;
+        return count;
     }
 
     private List<AbstractMappedItem> extractMappedDataItemDefinitionsFromCsv(InputStream input) {
         List<AbstractMappedItem> result = new ArrayList<>();
 
-        try {
-            // Depending on header
-            reader = new CsvListReader(new InputStreamReader(input), CsvPreference.STANDARD_PREFERENCE);
-            String[] sourceHeader = this.reader.getHeader(true); // Ignore the header (first line)
+        // Depending on header
+        try (ICsvListReader reader = new CsvListReader(new InputStreamReader(input), CsvPreference.STANDARD_PREFERENCE)) {
+            String[] sourceHeader = reader.getHeader(true); // Ignore the header (first line)
 
             for (String sh : sourceHeader) {
                 AbstractMappedItem mdi = new MappedCsvItem(sh);
                 result.add(mdi);
             }
         } catch (Exception err) {
-            err.printStackTrace();
-        } finally {
-            if (this.reader != null) {
-                try {
-                    this.reader.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+            log.error(err.getMessage(), err);
         }
 
         return result;
@@ -0,0 +1,410 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service;
+
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingJob;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DICOM staging service
+ *
+ * Staging jobs (C-MOVE of selected series or single SOP instances to the CTP pipeline of a study) are executed in
+ * background so that the web request which submits the job returns immediately and the client polls the progress.
+ * Each PACS has its own bounded pool of move workers, failed moves are retried with exponential backoff.
+ * Job state is written to the job directory while the job runs, unfinished jobs are resumed after restart.
+ *
+ * @since 18 Oct 2026
+ */
+@Named
+@Singleton
+public class DicomStagingService {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(DicomStagingService.class);
+
+    private static final String jobFileExtension = ".job";
+
+    // Finished jobs are kept for polling clients
+    private static final long finishedJobRetention = TimeUnit.HOURS.toMillis(24);
+
+    // Minimal interval between two job state writes while the job runs
+    private static final long persistInterval = 1000;
+
+    //endregion
+
+    //region Injects
+
+    @Inject
+    private IPacsConfigService pacsConfigService;
+
+    //endregion
+
+    //region Members
+
+    @Value("${pacs.stagingThreads:4}")
+    protected int stagingThreads = 4;
+    @Value("${pacs.stagingRetries:2}")
+    protected int stagingRetries = 2;
+    @Value("${pacs.stagingRetryDelay:1000}")
+    protected long stagingRetryDelay = 1000;
+    @Value("${pacs.stagingJobDir:}")
+    protected String stagingJobDir;
+
+    private final Map<String, DicomStagingJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorService> executors = new ConcurrentHashMap<>();
+    private final Map<String, IConquestService> pacsServices = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastPersisted = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+
+    //endregion
+
+    //region Init
+
+    /**
+     * Resume unfinished jobs persisted before the last shutdown
+     */
+    @PostConstruct
+    public void init() {
+        this.running = true;
+
+        File directory = this.getJobDirectory();
+        if (directory == null || !directory.isDirectory()) {
+            return;
+        }
+
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(jobFileExtension));
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            DicomStagingJob job = this.readJob(file);
+            if (job == null) {
+                continue;
+            }
+
+            log.info("Resuming DICOM staging job " + job.getId() + " with " + job.getPendingCount() + " pending moves");
+            this.jobs.put(job.getId(), job);
+            this.schedule(job);
+        }
+    }
+
+    /**
+     * Stop move workers, state of unfinished jobs stays persisted and the jobs are resumed with next start
+     */
+    @PreDestroy
+    public void destroy() {
+        this.running = false;
+
+        for (ExecutorService executor : this.executors.values()) {
+            executor.shutdownNow();
+        }
+        for (ExecutorService executor : this.executors.values()) {
+            try {
+                executor.awaitTermination(this.stagingRetryDelay + 5000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.executors.clear();
+
+        for (DicomStagingJob job : this.jobs.values()) {
+            if (!job.isCompleted()) {
+                this.persist(job);
+            }
+        }
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Submit staging job, moves are executed in background
+     *
+     * @param job staging job with all tasks
+     * @return submitted job
+     */
+    public DicomStagingJob submit(DicomStagingJob job) {
+        this.purgeFinishedJobs();
+
+        this.jobs.put(job.getId(), job);
+        this.persist(job);
+        this.schedule(job);
+
+        return job;
+    }
+
+    /**
+     * Get job for polling its progress
+     *
+     * @param jobId job identifier
+     * @return job or null when the job does not exist (anymore)
+     */
+    public DicomStagingJob getJob(String jobId) {
+        return jobId != null ? this.jobs.get(jobId) : null;
+    }
+
+    /**
+     * Get jobs submitted by user
+     *
+     * @param owner username
+     * @return list of running and recently finished jobs
+     */
+    public List<DicomStagingJob> getJobs(String owner) {
+        List<DicomStagingJob> result = new ArrayList<>();
+        for (DicomStagingJob job : this.jobs.values()) {
+            if (owner != null && owner.equals(job.getOwner())) {
+                result.add(job);
+            }
+        }
+
+        return result;
+    }
+
+    //endregion
+
+    //region Protected methods
+
+    /**
+     * Create PACS service for base URL the job is moving data from
+     */
+    protected IConquestService createPacsService(String pacsBaseUrl) {
+        IConquestService pacsService = new ConquestService();
+
+        if (this.pacsConfigService.isAuth()) {
+            pacsService.setupConnection(
+                    pacsBaseUrl,
+                    this.pacsConfigService.getThreadPoolSize(),
+                    this.pacsConfigService.getPacsUser(),
+                    this.pacsConfigService.getPacsPassword()
+            );
+        } else {
+            pacsService.setupConnection(pacsBaseUrl, this.pacsConfigService.getThreadPoolSize());
+        }
+
+        return pacsService;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private void schedule(final DicomStagingJob job) {
+        if (job.isCompleted()) {
+            this.finish(job);
+            return;
+        }
+
+        ExecutorService executor = this.getExecutor(job.getPacsBaseUrl());
+        for (final DicomStagingTask task : job.getTasks()) {
+            if (task.getState() == DicomStagingTask.State.PENDING) {
+                executor.execute(() -> execute(job, task));
+            }
+        }
+    }
+
+    private void execute(DicomStagingJob job, DicomStagingTask task) {
+        IConquestService pacsService = this.getPacsService(job.getPacsBaseUrl());
+
+        // Each move is retried with exponential backoff
+        long delay = this.stagingRetryDelay;
+        while (this.running && task.getState() == DicomStagingTask.State.PENDING) {
+            task.setAttempts(task.getAttempts() + 1);
+
+            boolean moveSuccess = false;
+            try {
+                moveSuccess = this.move(pacsService, job, task);
+            } catch (Exception err) {
+                log.error("Staging of " + task.toString() + " failed", err);
+            }
+
+            if (moveSuccess) {
+                task.setState(DicomStagingTask.State.DONE);
+            } else if (task.getAttempts() > this.stagingRetries) {
+                log.error("Staging of " + task.toString() + " failed after " + task.getAttempts() + " attempts");
+                task.setState(DicomStagingTask.State.FAILED);
+            } else {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException err) {
+                    // Shutdown, task stays pending and is resumed after restart
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                delay *= 2;
+            }
+        }
+
+        if (job.isCompleted()) {
+            this.finish(job);
+        } else {
+            this.persistIfDue(job);
+        }
+    }
+
+    private boolean move(IConquestService pacsService, DicomStagingJob job, DicomStagingTask task) {
+        if (task.isSopInstanceMove()) {
+            return pacsService.moveDicomSopInstance(
+                    task.getDicomPatientId(),
+                    task.getDicomStudyUid(),
+                    task.getDicomSeriesUid(),
+                    task.getDicomSopInstanceUid(),
+                    job.getDestinationAet()
+            );
+        }
+
+        return pacsService.moveDicomSeries(
+                task.getDicomPatientId(),
+                task.getDicomStudyUid(),
+                task.getDicomSeriesUid(),
+                job.getDestinationAet()
+        );
+    }
+
+    private synchronized void finish(DicomStagingJob job) {
+        if (job.getFinished() != null) {
+            return;
+        }
+
+        job.setFinished(new Date());
+        log.info("DICOM staging job " + job.getId() + " finished: " + job.getDoneCount() + " moved, " +
+                job.getFailedCount() + " failed");
+
+        // Nothing to resume
+        File file = this.getJobFile(job);
+        if (file != null && file.exists() && !file.delete()) {
+            log.error("Could not delete DICOM staging job file " + file.getAbsolutePath());
+        }
+        this.lastPersisted.remove(job.getId());
+    }
+
+    private void purgeFinishedJobs() {
+        long now = System.currentTimeMillis();
+        for (DicomStagingJob job : new ArrayList<>(this.jobs.values())) {
+            if (job.getFinished() != null && now - job.getFinished().getTime() > finishedJobRetention) {
+                this.jobs.remove(job.getId());
+            }
+        }
+    }
+
+    private ExecutorService getExecutor(final String pacsBaseUrl) {
+        return this.executors.computeIfAbsent(pacsBaseUrl, url -> {
+            final AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(1, this.stagingThreads), runnable -> {
+                Thread thread = new Thread(runnable, "dicom-staging-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        });
+    }
+
+    private IConquestService getPacsService(String pacsBaseUrl) {
+        return this.pacsServices.computeIfAbsent(pacsBaseUrl, this::createPacsService);
+    }
+
+    //endregion
+
+    //region Persistence
+
+    private File getJobDirectory() {
+        if (this.stagingJobDir == null || this.stagingJobDir.isEmpty()) {
+            return null;
+        }
+
+        return new File(this.stagingJobDir);
+    }
+
+    private File getJobFile(DicomStagingJob job) {
+        File directory = this.getJobDirectory();
+        return directory != null ? new File(directory, job.getId() + jobFileExtension) : null;
+    }
+
+    private void persistIfDue(DicomStagingJob job) {
+        long now = System.currentTimeMillis();
+        Long last = this.lastPersisted.get(job.getId());
+        if (last == null || now - last >= persistInterval) {
+            this.persist(job);
+        }
+    }
+
+    private synchronized void persist(DicomStagingJob job) {
+        File file = this.getJobFile(job);
+        if (file == null || job.getFinished() != null) {
+            return;
+        }
+
+        this.lastPersisted.put(job.getId(), System.currentTimeMillis());
+
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            // Write complete state to temporary file first, so that a crash does not leave a corrupted job file
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(temp.toPath());
+                 ObjectOutputStream oos = new ObjectOutputStream(os)) {
+                oos.writeObject(job);
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException err) {
+            log.error("Could not persist DICOM staging job " + job.getId(), err);
+        }
+    }
+
+    private DicomStagingJob readJob(File file) {
+        try (InputStream is = Files.newInputStream(file.toPath());
+             ObjectInputStream ois = new ObjectInputStream(is)) {
+            return (DicomStagingJob) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException err) {
+            log.error("Could not read DICOM staging job " + file.getAbsolutePath(), err);
+            return null;
+        }
+    }
+
+    //endregion
+
+}
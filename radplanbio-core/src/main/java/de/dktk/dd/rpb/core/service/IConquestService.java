@@ -24,12 +24,15 @@ import de.dktk.dd.rpb.core.domain.edc.ItemData;
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 import de.dktk.dd.rpb.core.domain.edc.Subject;
 import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
+import de.dktk.dd.rpb.core.domain.pacs.DicomRtDoseGrid;
+import de.dktk.dd.rpb.core.domain.pacs.DicomRtDvh;
 import de.dktk.dd.rpb.core.domain.pacs.DicomRtStructureSet;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtDose;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtPlan;
 import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
 import de.dktk.dd.rpb.core.domain.pacs.RtTreatmentCase;
+import de.dktk.dd.rpb.core.service.support.PacsPatientLookupResult;
 import org.dcm4che3.data.Attributes;
 
 import java.io.InputStream;
@@ -65,13 +68,45 @@ public interface IConquestService {
      * @param password password for authentication
      */
     void setupConnection(String baseUrl, int threadPoolSize, String user, String password);
+
+    /**
+     * Number of parallel requests the PACS connection is configured for
+     *
+     * @return thread pool size
+     */
+    int getThreadPoolSize();
+
+    /**
+     * Web location of conquest dgate the service is connected to
+     *
+     * @return base URL
+     */
+    String getBaseUrl();
     
     //endregion
 
     //region RT Treatment Case
 
+    /**
+     * Load DICOM-RT structure sets, plans and doses of the study
+     *
+     * @param dicomPatientId DICOM patient ID
+     * @param dicomStudy     DICOM study with RT series
+     * @return treatment case, objects which could not be loaded are reported as failed UIDs
+     */
     RtTreatmentCase loadRtTreatmentCase(String dicomPatientId, DicomStudy dicomStudy);
 
+    /**
+     * Calculate DVHs of RTDOSE which does not provide them, from its dose grid and the structure set referenced by
+     * its RTPLAN. The complete RTDOSE instance with pixel data is retrieved, so the calculation is done only on request.
+     *
+     * @param studyInstanceUid DICOM study instance UID
+     * @param tc               treatment case with the referenced plan and structure set
+     * @param rtDose           RTDOSE of the treatment case, calculated DVHs are assigned to it
+     * @return true when DVHs were calculated
+     */
+    boolean calculateRtDoseDvhs(String studyInstanceUid, RtTreatmentCase tc, DicomSeriesRtDose rtDose);
+
     //endregion
 
     //region DICOM Patient
@@ -92,6 +127,15 @@ public interface IConquestService {
      */
     List<Subject> loadPatients(List<StudySubject> studySubjectList) throws Exception;
 
+    /**
+     * Loads patient information for a bulk of study subjects, chunks of patient IDs are queried in parallel
+     * (bounded by configured thread pool size) and a failing chunk does not abort the lookup of the others
+     *
+     * @param studySubjectList List of StudySubjects
+     * @return merged subjects and failed chunks
+     */
+    PacsPatientLookupResult loadPatientsInParallel(List<StudySubject> studySubjectList);
+
     /**
      * C-MOVE specified patient to specified destination AET
      *
@@ -250,6 +294,26 @@ public interface IConquestService {
 
     DicomSeriesRtDose loadDicomRtDose(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid);
 
+    /**
+     * Load dose grid of RTDOSE instance (complete instance with pixel data is retrieved)
+     *
+     * @param studyInstanceUid  DICOM study instance UID
+     * @param seriesInstanceUid DICOM series instance UID
+     * @param sopInstanceUid    DICOM SOP instance UID
+     * @return dose grid in Gy or null when the instance cannot be loaded or its grid is not supported (e.g. RELATIVE dose units)
+     */
+    DicomRtDoseGrid loadDicomRtDoseGrid(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid);
+
+    /**
+     * Calculate cumulative DVHs of all structures of structure set from dose grid of RTDOSE
+     *
+     * @param studyInstanceUid DICOM study instance UID
+     * @param rtDose           RTDOSE (series and SOP instance UID identify the dose grid)
+     * @param structureSet     structure set with contour data
+     * @return calculated DVHs, empty when the dose grid cannot be loaded
+     */
+    List<DicomRtDvh> calculateDicomRtDvhs(String studyInstanceUid, DicomSeriesRtDose rtDose, DicomRtStructureSet structureSet);
+
     //endregion
 
     //region DICOM RTPLAN
@@ -264,6 +328,16 @@ public interface IConquestService {
 
     Attributes loadWadoDicomInstance(String studyIntanceUid, String seriesInstanceUid, String sopInstanceUid);
 
+    /**
+     * Load DICOM attributes of instance without pixel data (and anything stored after it)
+     *
+     * @param studyInstanceUid  DICOM study instance UID
+     * @param seriesInstanceUid DICOM series instance UID
+     * @param sopInstanceUid    DICOM SOP instance UID
+     * @return DICOM header attributes or null when the instance cannot be loaded
+     */
+    Attributes loadWadoDicomInstanceHeader(String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid);
+
     //endregion
 
     //endregion
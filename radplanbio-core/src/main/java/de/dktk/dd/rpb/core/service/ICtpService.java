@@ -21,6 +21,7 @@ package de.dktk.dd.rpb.core.service;
 
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 
+import java.io.File;
 import java.io.InputStream;
 
 /**
@@ -41,6 +42,8 @@ public interface ICtpService {
 
     int getHttpImportPacsVerificationTimeout();
 
+    int getHttpImportThreads();
+
     void setupConnection(String url, String user, String password);
 
     /**
@@ -80,4 +83,13 @@ public interface ICtpService {
 
     boolean httpImportDicom(InputStream is);
 
+    /**
+     * Import DICOM file via CTP HTTP import, the file content is streamed without buffering it in memory
+     * Connection failures and server errors are retried with exponential backoff (ctp.httpImportRetries)
+     *
+     * @param file DICOM file
+     * @return boolean success of the import
+     */
+    boolean httpImportDicom(File file);
+
 }
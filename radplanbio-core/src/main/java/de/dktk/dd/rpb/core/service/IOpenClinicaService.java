@@ -31,8 +31,10 @@ import de.dktk.dd.rpb.core.ocsoap.types.Study;
 import de.dktk.dd.rpb.core.ocsoap.types.StudySubject;
 import org.openclinica.ws.beans.StudySubjectWithEventsType;
 import org.openclinica.ws.beans.StudyType;
+import org.openclinica.ws.data.v1.ImportResponse;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * OpenClinica service helps to access SOAP and REST based web-services provided by EDC system
@@ -72,6 +74,14 @@ public interface IOpenClinicaService {
      */
     void connectWithHash(String username, String passwordHash, String wsBaseUrl, String restBaseUrl);
 
+    /**
+     * Create a new service connected with the same connection information, it has its own SOAP ports so it can
+     * be used by another thread concurrently with this one
+     * @return connected service
+     * @throws OCConnectorException when the service is not connected or SOAP ports cannot be created
+     */
+    IOpenClinicaService createConnection() throws OCConnectorException;
+
     //endregion
 
     //region SOAP
@@ -133,7 +143,14 @@ public interface IOpenClinicaService {
 
     List<StudySubject> getSubjectsByStudy(de.dktk.dd.rpb.core.domain.ctms.Study rpbStudy) throws OCConnectorException;
 
-    void importData(String odmXmlData) throws OCConnectorException;
+    /**
+     * Import ODM clinical data via SOAP
+     *
+     * @param odmXmlData ODM XML with clinical data
+     * @return OpenClinica import response (null when the service is not connected)
+     * @throws OCConnectorException when OpenClinica rejects the import
+     */
+    ImportResponse importData(String odmXmlData) throws OCConnectorException;
 
     //endregion
 
@@ -182,6 +199,17 @@ public interface IOpenClinicaService {
 
     List<de.dktk.dd.rpb.core.domain.edc.StudySubject> getStudyCasebookSubjects(OpenClinicaService.CasebookFormat format, OpenClinicaService.CasebookMethod method, String queryOdmXmlPath);
 
+    /**
+     * Stream subjects with clinical data of XML casebook, each subject is handed to the callback as soon as it
+     * is parsed from the response (the casebook is never loaded as a whole)
+     *
+     * @param method          casebook method
+     * @param queryOdmXmlPath casebook query (e.g. studyOid/&#42;/&#42;/&#42;)
+     * @param callback        receives subjects in document order
+     * @return number of streamed subjects
+     */
+    int streamStudyCasebookSubjects(OpenClinicaService.CasebookMethod method, String queryOdmXmlPath, Consumer<de.dktk.dd.rpb.core.domain.edc.StudySubject> callback);
+
     //endregion
 
     //region ePRO
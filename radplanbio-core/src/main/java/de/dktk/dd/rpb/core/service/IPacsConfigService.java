@@ -37,4 +37,16 @@ public interface IPacsConfigService {
     public String getPacsPassword();
 
     public int getThreadPoolSize();
+
+    public int getMaxConnections();
+
+    public boolean isKeepAlive();
+
+    public int getConnectTimeout();
+
+    public int getReadTimeout();
+
+    public String getInstanceCacheDir();
+
+    public long getInstanceCacheSize();
 }
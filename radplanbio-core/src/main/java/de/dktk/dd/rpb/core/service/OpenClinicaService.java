@@ -31,6 +31,7 @@ import de.dktk.dd.rpb.core.domain.edc.UserAccount;
 import de.dktk.dd.rpb.core.ocsoap.connect.ConnectInfo;
 import de.dktk.dd.rpb.core.ocsoap.connect.OCConnectorException;
 import de.dktk.dd.rpb.core.ocsoap.connect.OCWebServices;
+import de.dktk.dd.rpb.core.ocsoap.odm.ClinicalDataStreamReader;
 import de.dktk.dd.rpb.core.ocsoap.odm.MetadataODM;
 import de.dktk.dd.rpb.core.ocsoap.types.Event;
 import de.dktk.dd.rpb.core.ocsoap.types.ScheduledEvent;
@@ -38,6 +39,7 @@ import de.dktk.dd.rpb.core.ocsoap.types.Study;
 import de.dktk.dd.rpb.core.ocsoap.types.StudySubject;
 import de.dktk.dd.rpb.core.util.CacheUtil;
 import de.dktk.dd.rpb.core.util.Constants;
+import de.dktk.dd.rpb.core.util.JAXBContextRegistry;
 import net.sf.ehcache.Element;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -60,8 +62,6 @@ import javax.inject.Named;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
@@ -70,6 +70,7 @@ import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * OpenClinica service implements client calls to SOAP and REST based web-service endpoints provided by the EDC system
@@ -138,6 +139,7 @@ public class OpenClinicaService implements IOpenClinicaService {
     private String ocUsername;
     private String ocPassword;
     private String restBaseUrl;
+    private ConnectInfo connectInfo;
 
     private OCWebServices ocws;
 
@@ -192,6 +194,7 @@ public class OpenClinicaService implements IOpenClinicaService {
                     false, // logging
                     true // forceInstantiation, I am forcing because otherwise it is holding the old one
             );
+            this.connectInfo = ci;
             this.restBaseUrl = restBaseUrl;
         }
         catch (MalformedURLException | ParserConfigurationException | DatatypeConfigurationException err) {
@@ -214,6 +217,7 @@ public class OpenClinicaService implements IOpenClinicaService {
                     false, // logging
                     true // forceInstantiation, I am forcing because otherwise it is holding the old one
             );
+            this.connectInfo = ci;
             this.restBaseUrl = restBaseUrl;
         }
         catch (MalformedURLException | ParserConfigurationException | DatatypeConfigurationException err) {
@@ -221,6 +225,31 @@ public class OpenClinicaService implements IOpenClinicaService {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public IOpenClinicaService createConnection() throws OCConnectorException {
+        if (!this.isConnected() || this.connectInfo == null) {
+            throw new OCConnectorException("EDC web services are not connected.");
+        }
+
+        OpenClinicaService result = new OpenClinicaService();
+        result.cacheIsEnabled = Boolean.FALSE;
+        result.ocUsername = this.ocUsername;
+        result.ocPassword = this.ocPassword;
+        result.restBaseUrl = this.restBaseUrl;
+        result.connectInfo = this.connectInfo;
+        try {
+            result.ocws = OCWebServices.newInstance(this.connectInfo, this.ocws.isLogging());
+        }
+        catch (MalformedURLException | ParserConfigurationException | DatatypeConfigurationException err) {
+            throw new OCConnectorException("EDC web services connection could not be created.", err);
+        }
+
+        return result;
+    }
+
     //endregion
 
     //region SOAP
@@ -530,7 +559,9 @@ public class OpenClinicaService implements IOpenClinicaService {
 
     //region Data
 
-    public void importData(String odmXmlData) throws OCConnectorException {
+    public ImportResponse importData(String odmXmlData) throws OCConnectorException {
+        ImportResponse response = null;
+
         if (this.isConnected()) {
 
             // When using OC SOAP ws the xml should start with ODM element as root
@@ -539,9 +570,11 @@ public class OpenClinicaService implements IOpenClinicaService {
             cleanOdmXmlData = cleanOdmXmlData.replace(" xmlns=\"http://www.cdisc.org/ns/odm/v1.3\"", "");
 
             // Import
-            ImportResponse response = this.ocws.importODM(cleanOdmXmlData);
+            response = this.ocws.importODM(cleanOdmXmlData);
             log.info(response.getResult());
         }
+
+        return response;
     }
 
     //endregion
@@ -663,15 +696,11 @@ public class OpenClinicaService implements IOpenClinicaService {
 
         // Success
         if (response.getStatus() == 200) {
-            String output = response.getEntity(String.class);
-
             try {
-                // Unmarshall XML
+                // Unmarshall XML (directly from response stream)
                 if (format == CasebookFormat.XML) {
-                    JAXBContext context = JAXBContext.newInstance(Odm.class);
-                    Unmarshaller un = context.createUnmarshaller();
-                    StringReader reader = new StringReader(output);
-                    odm = (Odm) un.unmarshal(reader);
+                    InputStream input = response.getEntityInputStream();
+                    odm = JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(input));
                 }
                 else if (format == CasebookFormat.JSON) {
                     // TODO: how to fast unmarshall JSON
@@ -681,6 +710,7 @@ public class OpenClinicaService implements IOpenClinicaService {
                 log.error(err.getMessage(),err);
             }
         }
+        response.close();
 
         return odm;
     }
@@ -804,7 +834,25 @@ public class OpenClinicaService implements IOpenClinicaService {
     @Override
     public List<de.dktk.dd.rpb.core.domain.edc.StudySubject> getStudyCasebookSubjects(CasebookFormat format, CasebookMethod method, String queryOdmXmlPath) {
 
-        List<de.dktk.dd.rpb.core.domain.edc.StudySubject> results = new ArrayList<>();
+        final List<de.dktk.dd.rpb.core.domain.edc.StudySubject> results = new ArrayList<>();
+
+        // Unmarshall XML
+        if (format == CasebookFormat.XML) {
+            this.streamStudyCasebookSubjects(method, queryOdmXmlPath, results::add);
+        }
+        else if (format == CasebookFormat.JSON) {
+            // TODO: how to fast unmarshall JSON
+        }
+
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int streamStudyCasebookSubjects(CasebookMethod method, String queryOdmXmlPath, Consumer<de.dktk.dd.rpb.core.domain.edc.StudySubject> callback) {
+        int result = 0;
 
         if (!this.restBaseUrl.endsWith("/")) {
             this.restBaseUrl += "/";
@@ -813,45 +861,22 @@ public class OpenClinicaService implements IOpenClinicaService {
         ClientResponse response = this.getOcRestfulUrl(
                 this.ocUsername,
                 this.ocPassword,
-                format.value,
+                CasebookFormat.XML.value,
                 queryOdmXmlPath
         );
 
         // Success
         if (response.getStatus() == 200) {
-            String output = response.getEntity(String.class);
-
-            Odm result;
             try {
-                // Unmarshall XML
-                if (format == CasebookFormat.XML) {
-                    JAXBContext context = JAXBContext.newInstance(Odm.class);
-                    Unmarshaller un = context.createUnmarshaller();
-                    StringReader reader = new StringReader(output);
-                    result = (Odm) un.unmarshal(reader);
-
-                    if (result != null) {
-
-                        if (result.getClinicalDataList() != null) {
-                            for (ClinicalData cd : result.getClinicalDataList()) {
-                                if (cd.getStudySubjects() != null) {
-                                    results = cd.getStudySubjects();
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                }
-                else if (format == CasebookFormat.JSON) {
-                    // TODO: how to fast unmarshall JSON
-                }
+                result = ClinicalDataStreamReader.readSubjects(response.getEntityInputStream(), callback);
             }
             catch (Exception err) {
                 log.error(err.getMessage(),err);
             }
         }
+        response.close();
 
-        return results;
+        return result;
     }
 
     //endregion
@@ -888,10 +913,8 @@ public class OpenClinicaService implements IOpenClinicaService {
 
             Odm odm = null;
             try {
-                JAXBContext context = JAXBContext.newInstance(Odm.class);
-                Unmarshaller un = context.createUnmarshaller();
                 StringReader reader = new StringReader(output);
-                odm = (Odm) un.unmarshal(reader);
+                odm = JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(reader));
             }
             catch (Exception err) {
                 log.error(err.getMessage(),err);
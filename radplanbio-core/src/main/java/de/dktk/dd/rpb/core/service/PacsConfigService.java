@@ -19,9 +19,14 @@
 
 package de.dktk.dd.rpb.core.service;
 
+import de.dktk.dd.rpb.core.service.support.PacsClientPool;
+import de.dktk.dd.rpb.core.service.support.PacsInstanceFileCache;
 import org.springframework.beans.factory.annotation.Value;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.inject.Named;
+import java.io.File;
 
 /**
  * {@inheritDoc}
@@ -46,6 +51,40 @@ public class PacsConfigService implements IPacsConfigService {
     @Value("${pacs.threadPoolSize:1}")
     private int threadPoolSize;
 
+    @Value("${pacs.maxConnections:8}")
+    private int maxConnections;
+
+    @Value("${pacs.keepAlive:true}")
+    private boolean keepAlive;
+
+    @Value("${pacs.connectTimeout:0}")
+    private int connectTimeout;
+
+    @Value("${pacs.readTimeout:0}")
+    private int readTimeout;
+
+    @Value("${pacs.instanceCacheDir:}")
+    private String instanceCacheDir;
+
+    @Value("${pacs.instanceCacheSize:0}")
+    private long instanceCacheSize;
+
+    @PostConstruct
+    public void init() {
+        PacsClientPool.configure(this.maxConnections, this.keepAlive, this.connectTimeout, this.readTimeout);
+
+        // Cache size is configured in MB
+        File cacheDirectory = this.instanceCacheDir != null && !this.instanceCacheDir.isEmpty() ?
+                new File(this.instanceCacheDir) :
+                null;
+        PacsInstanceFileCache.configure(cacheDirectory, this.instanceCacheSize * 1024 * 1024);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        PacsClientPool.shutdown();
+    }
+
     public String getClinicalUrl() {
         return clinicalUrl;
     }
@@ -69,4 +108,28 @@ public class PacsConfigService implements IPacsConfigService {
     public int getThreadPoolSize() {
         return threadPoolSize;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public String getInstanceCacheDir() {
+        return instanceCacheDir;
+    }
+
+    public long getInstanceCacheSize() {
+        return instanceCacheSize;
+    }
 }
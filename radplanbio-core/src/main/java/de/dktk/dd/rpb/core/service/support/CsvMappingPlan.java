@@ -0,0 +1,372 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import de.dktk.dd.rpb.core.domain.edc.EnumStudySubjectIdGeneration;
+import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappedCsvItem;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappedOdmItem;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappingDateFormat;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappingExpression;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappingRecord;
+import de.dktk.dd.rpb.core.util.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapping plan for transformation of CSV rows to study subjects
+ *
+ * The plan is compiled once for the CSV header: for each column it holds the applicable mapping records ordered
+ * by priority together with their resolved target (subject attribute or item definition) and date format,
+ * so that mapping of a row does not search mapping records or metadata. A plan is used by one transformation
+ * at a time (it is not thread safe).
+ *
+ * @since 18 Oct 2026
+ */
+public class CsvMappingPlan {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(CsvMappingPlan.class);
+
+    //endregion
+
+    //region Enums
+
+    private enum TargetType {
+        PERSON_ID,
+        STUDY_SUBJECT_ID,
+        SECONDARY_ID,
+        GENDER,
+        DATE_OF_BIRTH,
+        YEAR_OF_BIRTH,
+        FIRST_NAME,
+        LAST_NAME,
+        BIRTH_NAME,
+        CITY,
+        ZIP,
+        EVENT_START_DATE,
+        ITEM
+    }
+
+    //endregion
+
+    //region Members
+
+    private final EnumStudySubjectIdGeneration idGeneration;
+    private final List<List<Step>> columns = new ArrayList<>();
+    private final RowColumns rowColumns;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Compile mapping plan
+     *
+     * @param metadata       ODM metadata of the target study
+     * @param sourceHeader   header of the source CSV
+     * @param mappingRecords mapping records with CSV source and ODM target
+     */
+    public CsvMappingPlan(Odm metadata, String[] sourceHeader, List<MappingRecord> mappingRecords) {
+        this.idGeneration = metadata.getStudyDetails().getStudyParameterConfiguration().getStudySubjectIdGeneration();
+
+        // Mapping records by source column, ordered according to the priority
+        Map<String, List<MappingRecord>> recordsByHeader = new HashMap<>();
+        for (MappingRecord mr : mappingRecords) {
+            if (mr.getSource() instanceof MappedCsvItem && mr.getTarget() instanceof MappedOdmItem) {
+                String header = ((MappedCsvItem) mr.getSource()).getHeader();
+                recordsByHeader.computeIfAbsent(header, key -> new ArrayList<>()).add(mr);
+            }
+        }
+        for (List<MappingRecord> records : recordsByHeader.values()) {
+            Collections.sort(records, (o1, o2) -> o2.getPriority().compareTo(o1.getPriority()));
+        }
+
+        // Source columns referenced in calculations by header
+        Map<String, Integer> headerIndex = new HashMap<>();
+        for (int i = 0; i < sourceHeader.length; i++) {
+            if (sourceHeader[i] != null) {
+                headerIndex.putIfAbsent(sourceHeader[i].trim(), i);
+            }
+        }
+        this.rowColumns = new RowColumns(headerIndex);
+
+        for (String header : sourceHeader) {
+            List<Step> steps = new ArrayList<>();
+
+            // Get rid of starting and trailing spaces from column name
+            List<MappingRecord> records = header != null ? recordsByHeader.get(header.trim()) : null;
+            if (records != null) {
+                for (MappingRecord mr : records) {
+                    Step step = compile(metadata, mr);
+                    if (step != null) {
+                        steps.add(step);
+                    }
+                }
+            }
+
+            this.columns.add(steps);
+        }
+    }
+
+    //endregion
+
+    //region Properties
+
+    /**
+     * @return number of source columns which have at least one applicable mapping record
+     */
+    public int getMappedColumnCount() {
+        int count = 0;
+        for (List<Step> steps : this.columns) {
+            if (!steps.isEmpty()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Map one CSV row to new study subject
+     *
+     * @param row values of the row in order of the header
+     * @return study subject with mapped attributes and data fields
+     * @throws ParseException when mapped date of birth cannot be converted
+     */
+    public StudySubject mapRow(List<String> row) throws ParseException {
+        // Prepare fresh new study subject (conforming the SSID generation strategy)
+        StudySubject subject = new StudySubject(this.idGeneration);
+
+        this.rowColumns.row = row;
+
+        String eventStartDate = null;
+        for (int i = 0; i < this.columns.size() && i < row.size(); i++) {
+            String value = row.get(i);
+            if (value == null) {
+                continue;
+            }
+
+            // Apply all applicable mappings according to priority
+            for (Step step : this.columns.get(i)) {
+                eventStartDate = step.apply(subject, value, eventStartDate, this.rowColumns);
+            }
+        }
+
+        return subject;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static Step compile(Odm metadata, MappingRecord mr) {
+        String itemOid = ((MappedOdmItem) mr.getTarget()).getItemOid();
+
+        TargetType type;
+        if (Constants.SS_PERSONID.equals(itemOid)) {
+            type = TargetType.PERSON_ID;
+        } else if (Constants.SS_STUDYSUBJECTID.equals(itemOid)) {
+            type = TargetType.STUDY_SUBJECT_ID;
+        } else if (Constants.SS_SECONDARYID.equals(itemOid)) {
+            type = TargetType.SECONDARY_ID;
+        } else if (Constants.SS_GENDER.equals(itemOid)) {
+            type = TargetType.GENDER;
+        } else if (Constants.SS_DATEOFBIRTH.equals(itemOid)) {
+            type = TargetType.DATE_OF_BIRTH;
+        } else if (Constants.SS_YEAROFBIRTH.equals(itemOid)) {
+            type = TargetType.YEAR_OF_BIRTH;
+        } else if (Constants.SS_FIRSTNAME.equals(itemOid)) {
+            type = TargetType.FIRST_NAME;
+        } else if (Constants.SS_LASTNAME.equals(itemOid)) {
+            type = TargetType.LAST_NAME;
+        } else if (Constants.SS_BIRTHNAME.equals(itemOid)) {
+            type = TargetType.BIRTH_NAME;
+        } else if (Constants.SS_CITY.equals(itemOid)) {
+            type = TargetType.CITY;
+        } else if (Constants.SS_ZIP.equals(itemOid)) {
+            type = TargetType.ZIP;
+        } else if (itemOid != null && itemOid.startsWith(Constants.SE_STARTDATE + "_SE")) {
+            type = TargetType.EVENT_START_DATE;
+        } else {
+            type = TargetType.ITEM;
+        }
+
+        ItemDefinition itemDefinition = null;
+        if (type == TargetType.ITEM) {
+            itemDefinition = metadata.getItemDefinition((MappedOdmItem) mr.getTarget());
+            if (itemDefinition == null) {
+                log.error("Target item " + itemOid + " of mapping record " + mr.getId() + " does not exist in study metadata, mapping is not applied");
+                return null;
+            }
+        }
+
+        return new Step(mr, type, itemDefinition);
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Values of currently mapped row accessible by column header
+     */
+    private static class RowColumns implements MappingExpression.Columns {
+
+        private final Map<String, Integer> headerIndex;
+        private List<String> row;
+
+        RowColumns(Map<String, Integer> headerIndex) {
+            this.headerIndex = headerIndex;
+        }
+
+        @Override
+        public String getValue(String column) {
+            Integer index = this.headerIndex.get(column);
+            if (index == null || this.row == null || index >= this.row.size()) {
+                return null;
+            }
+
+            return this.row.get(index);
+        }
+    }
+
+    /**
+     * Compiled mapping record
+     */
+    private static class Step {
+
+        private final MappingRecord mappingRecord;
+        private final TargetType type;
+        private final ItemDefinition itemDefinition;
+        private final MappingDateFormat dateFormat;
+
+        Step(MappingRecord mappingRecord, TargetType type, ItemDefinition itemDefinition) {
+            this.mappingRecord = mappingRecord;
+            this.type = type;
+            this.itemDefinition = itemDefinition;
+            this.dateFormat = new MappingDateFormat(mappingRecord.getDateFormatString());
+        }
+
+        /**
+         * Apply mapping of source value to study subject
+         *
+         * @return event start date used for following event data
+         */
+        String apply(StudySubject subject, String value, String eventStartDate, MappingExpression.Columns columns) throws ParseException {
+            switch (this.type) {
+                case PERSON_ID:
+                    subject.setPid(value);
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setPid(value);
+                    }
+                    break;
+                case STUDY_SUBJECT_ID:
+                    subject.setStudySubjectId(value);
+                    break;
+                case SECONDARY_ID:
+                    subject.setSecondaryId(value);
+                    break;
+                case GENDER:
+                    // Without mapping use the codes directly (they should match)
+                    subject.setSex(this.mappingRecord.getMapping() != null ?
+                            this.mappingRecord.getMapping().get(value.trim()) :
+                            value.trim());
+                    break;
+                case DATE_OF_BIRTH:
+                    String dateOfBirth = this.toOcDate(value);
+                    subject.setDateOfBirth(dateOfBirth);
+                    if (subject.getPerson() != null && !dateOfBirth.equals("")) {
+                        subject.getPerson().setBirthdate(this.dateFormat.parseOcDate(dateOfBirth));
+                    }
+                    break;
+                case YEAR_OF_BIRTH:
+                    subject.setYearOfBirth(Integer.parseInt(value));
+                    break;
+                case FIRST_NAME:
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setFirstname(value);
+                    }
+                    break;
+                case LAST_NAME:
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setSurname(value);
+                    }
+                    break;
+                case BIRTH_NAME:
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setBirthname(value);
+                    }
+                    break;
+                case CITY:
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setCity(value);
+                    }
+                    break;
+                case ZIP:
+                    if (subject.getPerson() != null) {
+                        subject.getPerson().setZipcode(value);
+                    }
+                    break;
+                case EVENT_START_DATE:
+                    return this.toOcDate(value);
+                case ITEM:
+                    String targetValue = this.mappingRecord.process(value, this.itemDefinition, this.dateFormat, columns);
+
+                    // Target value is empty string and this is not the default value
+                    if ("".equals(targetValue) && !targetValue.equals(this.mappingRecord.getDefaultValue())) {
+                        log.debug("Mapping not be applied, going to next mapping record based on priority");
+                    }
+                    // According to target mapping result create the appropriate structure in ODM
+                    else {
+                        subject.populateDataField(this.mappingRecord, targetValue, eventStartDate);
+                    }
+                    break;
+            }
+
+            return eventStartDate;
+        }
+
+        private String toOcDate(String value) {
+            try {
+                return this.dateFormat.toOcDate(value);
+            } catch (ParseException e) {
+                return "";
+            }
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import org.openclinica.ws.data.v1.ImportResponse;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a chunked ODM clinical data import into OpenClinica
+ *
+ * Import data are split into chunks of study subjects, each chunk is imported with its own SOAP request.
+ * The result contains one entry per chunk (in order of the chunks), so that failed chunks can be reported
+ * with their subject keys and the import can be resumed with the chunks which were not imported.
+ *
+ * @since 18 Oct 2026
+ */
+public class OdmImportResult implements Serializable {
+
+    //region Finals
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    //endregion
+
+    //region Properties
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(this.chunks);
+    }
+
+    public int getImportedCount() {
+        int count = 0;
+        for (Chunk chunk : this.chunks) {
+            if (chunk.isImported()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @return true when at least one chunk was not imported
+     */
+    public boolean hasFailures() {
+        return this.getFirstFailedChunk() != null;
+    }
+
+    /**
+     * @return first chunk which was not imported (where a resumed import continues) or null
+     */
+    public Chunk getFirstFailedChunk() {
+        for (Chunk chunk : this.chunks) {
+            if (!chunk.isImported()) {
+                return chunk;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Subject keys of all chunks which were not imported
+     */
+    public List<String> getFailedSubjectKeys() {
+        List<String> result = new ArrayList<>();
+        for (Chunk chunk : this.chunks) {
+            if (!chunk.isImported()) {
+                result.addAll(chunk.getSubjectKeys());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Find imported chunk with the same subjects (when resuming an import)
+     *
+     * @param index       chunk index
+     * @param subjectKeys subject keys of the chunk
+     * @return imported chunk or null when the chunk has to be imported (again)
+     */
+    public Chunk findImportedChunk(int index, List<String> subjectKeys) {
+        for (Chunk chunk : this.chunks) {
+            if (chunk.getIndex() == index) {
+                return chunk.isImported() && chunk.getSubjectKeys().equals(subjectKeys) ? chunk : null;
+            }
+        }
+
+        return null;
+    }
+
+    //endregion
+
+    //region Methods
+
+    public void addChunk(Chunk chunk) {
+        this.chunks.add(chunk);
+    }
+
+    public void addImportedChunk(int index, List<String> subjectKeys, ImportResponse response) {
+        String message = response != null ? response.getResult() : null;
+        List<String> warnings = response != null ? response.getWarning() : null;
+        this.chunks.add(new Chunk(index, subjectKeys, true, message, warnings));
+    }
+
+    public void addFailedChunk(int index, List<String> subjectKeys, String message) {
+        this.chunks.add(new Chunk(index, subjectKeys, false, message, null));
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Chunk of study subjects imported with one SOAP request
+     */
+    public static class Chunk implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final List<String> subjectKeys;
+        private final boolean imported;
+        private final String message;
+        private final List<String> warnings;
+
+        Chunk(int index, List<String> subjectKeys, boolean imported, String message, List<String> warnings) {
+            this.index = index;
+            this.subjectKeys = new ArrayList<>(subjectKeys);
+            this.imported = imported;
+            this.message = message;
+            this.warnings = warnings != null ? new ArrayList<>(warnings) : new ArrayList<String>();
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public List<String> getSubjectKeys() {
+            return Collections.unmodifiableList(this.subjectKeys);
+        }
+
+        public boolean isImported() {
+            return this.imported;
+        }
+
+        /**
+         * @return OpenClinica import result or error message when the chunk was not imported
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        public List<String> getWarnings() {
+            return Collections.unmodifiableList(this.warnings);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.NoConnectionReuseStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of shared Jersey clients for PACS communication
+ *
+ * Creating a Jersey client is expensive (provider scanning) and a fresh client per request does not reuse
+ * any connection. The pool keeps one thread safe client per PACS base URL and credentials, so all
+ * requests against the same PACS share the keep-alive connections of the client's own connection manager.
+ *
+ * @since 18 Oct 2026
+ */
+public final class PacsClientPool {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(PacsClientPool.class);
+
+    private static final Map<String, Client> clients = new ConcurrentHashMap<>();
+    private static final Map<String, CloseableHttpClient> httpClients = new ConcurrentHashMap<>();
+
+    //endregion
+
+    //region Members
+
+    private static volatile int maxConnections = 8;
+    private static volatile boolean keepAlive = true;
+    private static volatile int connectTimeout = 0;
+    private static volatile int readTimeout = 0;
+
+    //endregion
+
+    //region Constructors
+
+    private PacsClientPool() {
+        // NOOP
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Configure connection handling of PACS clients, clients created with previous settings are destroyed
+     *
+     * @param maxConnections maximal number of connections per PACS client
+     * @param keepAlive      whether HTTP keep-alive should be used
+     * @param connectTimeout connect timeout in milliseconds (0 means infinite)
+     * @param readTimeout    read timeout in milliseconds (0 means infinite)
+     */
+    public static void configure(int maxConnections, boolean keepAlive, int connectTimeout, int readTimeout) {
+        shutdown();
+
+        if (maxConnections > 0) {
+            PacsClientPool.maxConnections = maxConnections;
+        }
+        PacsClientPool.keepAlive = keepAlive;
+        PacsClientPool.connectTimeout = connectTimeout;
+        PacsClientPool.readTimeout = readTimeout;
+
+        log.info("PACS client pool configured: keepAlive=" + keepAlive + ", maxConnections=" + maxConnections +
+                ", connectTimeout=" + connectTimeout + "ms, readTimeout=" + readTimeout + "ms");
+    }
+
+    /**
+     * Get shared client for PACS base URL (basic authentication filter is registered when username is provided)
+     *
+     * @param baseUrl  web location of conquest dgate
+     * @param username username for authentication (optional)
+     * @param password password for authentication
+     * @return shared Jersey client
+     */
+    public static Client getClient(String baseUrl, String username, String password) {
+        String key = createKey(baseUrl, username, password);
+
+        Client client = clients.get(key);
+        if (client == null) {
+            synchronized (clients) {
+                client = clients.get(key);
+                if (client == null) {
+                    CloseableHttpClient httpClient = createHttpClient();
+                    client = createClient(httpClient, username, password);
+                    httpClients.put(key, httpClient);
+                    clients.put(key, client);
+                }
+            }
+        }
+
+        return client;
+    }
+
+    /**
+     * Destroy all shared clients and release their resources
+     */
+    public static void shutdown() {
+        synchronized (clients) {
+            for (Client client : clients.values()) {
+                try {
+                    client.destroy();
+                } catch (Exception err) {
+                    log.error(err.getMessage(), err);
+                }
+            }
+            for (CloseableHttpClient httpClient : httpClients.values()) {
+                try {
+                    httpClient.close();
+                } catch (Exception err) {
+                    log.error(err.getMessage(), err);
+                }
+            }
+            clients.clear();
+            httpClients.clear();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setMaxTotal(maxConnections);
+
+        return HttpClientBuilder.create()
+                .useSystemProperties()
+                .setConnectionManager(connectionManager)
+                .setConnectionReuseStrategy(keepAlive ?
+                        DefaultConnectionReuseStrategy.INSTANCE :
+                        NoConnectionReuseStrategy.INSTANCE)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .disableCookieManagement()
+                .disableContentCompression()
+                .build();
+    }
+
+    private static Client createClient(CloseableHttpClient httpClient, String username, String password) {
+        Client client = new Client(new PacsHttpClientHandler(httpClient), new DefaultClientConfig());
+
+        if (connectTimeout > 0) {
+            client.setConnectTimeout(connectTimeout);
+        }
+        if (readTimeout > 0) {
+            client.setReadTimeout(readTimeout);
+        }
+        if (username != null && !username.isEmpty()) {
+            client.addFilter(new HTTPBasicAuthFilter(username, password));
+        }
+
+        return client;
+    }
+
+    private static String createKey(String baseUrl, String username, String password) {
+        // Credentials are part of the key so a changed password never reuses a client with the old filter
+        return (username != null ? username : "") + ":" + hash(password) + "@" + baseUrl;
+    }
+
+    private static String hash(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,250 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.TerminatingClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jersey client handler executing requests with pooled Apache HttpClient connections
+ *
+ * Keep-alive and connection limits belong to the HttpClient connection manager of the handler, so they do not
+ * touch the JVM wide HttpURLConnection settings used by the other HTTP clients of the application (e.g. OC SOAP).
+ * The response entity stream returns its connection to the pool when it is read to the end and closed, a stream
+ * closed before its end closes the connection instead of transferring the rest of the response.
+ * Waiting for a free pooled connection is limited by the connect timeout of the client.
+ *
+ * @since 18 Oct 2026
+ */
+public class PacsHttpClientHandler extends TerminatingClientHandler {
+
+    //region Finals
+
+    private final CloseableHttpClient httpClient;
+
+    //endregion
+
+    //region Constructors
+
+    public PacsHttpClientHandler(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    //endregion
+
+    //region Properties
+
+    public CloseableHttpClient getHttpClient() {
+        return this.httpClient;
+    }
+
+    //endregion
+
+    //region Methods
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        RequestBuilder builder = RequestBuilder
+                .create(cr.getMethod())
+                .setUri(cr.getURI())
+                .setConfig(this.createRequestConfig(cr.getProperties()));
+
+        for (Map.Entry<String, List<Object>> header : cr.getHeaders().entrySet()) {
+            // Length and transfer encoding are derived from the entity by HttpClient
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey()) ||
+                HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header.getKey())) {
+                continue;
+            }
+            for (Object value : header.getValue()) {
+                builder.addHeader(header.getKey(), ClientRequest.getHeaderValue(value));
+            }
+        }
+
+        if (cr.getEntity() != null) {
+            RequestEntityWriter writer = this.getRequestEntityWriter(cr);
+            RequestEntity entity = new RequestEntity(writer);
+            if (builder.getFirstHeader(HttpHeaders.CONTENT_TYPE) == null && writer.getMediaType() != null) {
+                entity.setContentType(writer.getMediaType().toString());
+            }
+            builder.setEntity(entity);
+        }
+
+        try {
+            CloseableHttpResponse response = this.httpClient.execute(builder.build());
+
+            InBoundHeaders headers = new InBoundHeaders();
+            for (Header header : response.getAllHeaders()) {
+                headers.add(header.getName(), header.getValue());
+            }
+
+            HttpEntity entity = response.getEntity();
+            InputStream entityStream;
+            if (entity != null) {
+                entityStream = new ResponseEntityStream(entity.getContent(), response);
+            } else {
+                response.close();
+                entityStream = new ByteArrayInputStream(new byte[0]);
+            }
+
+            return new ClientResponse(
+                    response.getStatusLine().getStatusCode(),
+                    headers,
+                    entityStream,
+                    this.getMessageBodyWorkers()
+            );
+        } catch (IOException err) {
+            throw new ClientHandlerException(err);
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private RequestConfig createRequestConfig(Map<String, Object> properties) {
+        RequestConfig.Builder builder = RequestConfig.copy(RequestConfig.DEFAULT);
+
+        Object connectTimeout = properties.get(ClientConfig.PROPERTY_CONNECT_TIMEOUT);
+        if (connectTimeout instanceof Integer) {
+            builder.setConnectTimeout((Integer) connectTimeout);
+            // Otherwise a request waits forever for a connection when all pooled connections are leased
+            builder.setConnectionRequestTimeout((Integer) connectTimeout);
+        }
+        Object readTimeout = properties.get(ClientConfig.PROPERTY_READ_TIMEOUT);
+        if (readTimeout instanceof Integer) {
+            builder.setSocketTimeout((Integer) readTimeout);
+        }
+
+        return builder.build();
+    }
+
+    //endregion
+
+    //region RequestEntity
+
+    /**
+     * Request entity written by Jersey entity writer when the request is sent
+     */
+    private static class RequestEntity extends AbstractHttpEntity {
+
+        private final RequestEntityWriter writer;
+
+        RequestEntity(RequestEntityWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        @Override
+        public long getContentLength() {
+            return this.writer.getSize();
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            this.writer.writeRequestEntity(byteArrayOutputStream);
+            return new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            this.writer.writeRequestEntity(outputStream);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
+
+    //endregion
+
+    //region ResponseEntityStream
+
+    /**
+     * Response entity stream which closes the response (and its connection) when it is closed before its end,
+     * closing the HttpClient entity stream would read the rest of the response to reuse the connection
+     */
+    private static class ResponseEntityStream extends FilterInputStream {
+
+        private final CloseableHttpResponse response;
+        private boolean eof;
+
+        ResponseEntityStream(InputStream in, CloseableHttpResponse response) {
+            super(in);
+            this.response = response;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                this.eof = true;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                this.eof = true;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.eof) {
+                super.close();
+            } else {
+                this.response.close();
+            }
+        }
+    }
+
+    //endregion
+
+}
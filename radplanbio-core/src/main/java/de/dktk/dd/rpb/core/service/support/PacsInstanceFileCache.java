@@ -0,0 +1,456 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Local on-disk cache of DICOM instances retrieved from PACS via WADO
+ *
+ * Files are addressed by scope and SOP instance UID (DICOM instances are immutable once stored in PACS). The scope
+ * identifies the PACS and the account the instance was retrieved with, so an instance is never served for another
+ * PACS or user, callers still have to authorize the request before a cached file is served. The cache is filled
+ * while the WADO response is streamed to the consumer, so the first request is not delayed. The total size of
+ * cached files is bound and the least recently used instances are evicted first.
+ *
+ * @since 18 Oct 2026
+ */
+public final class PacsInstanceFileCache {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(PacsInstanceFileCache.class);
+
+    private static final String fileExtension = ".dcm";
+    private static final String partialFileExtension = ".part";
+
+    private static final Pattern uidPattern = Pattern.compile("[0-9]+(\\.[0-9]+)*");
+    private static final Pattern scopePattern = Pattern.compile("[0-9a-f]{64}");
+
+    private static final Object lock = new Object();
+
+    // scope/SOP instance UID -> file size, iteration order is from least to most recently used
+    private static final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(1024, 0.75f, true);
+
+    //endregion
+
+    //region Members
+
+    private static File directory;
+    private static long maxSize;
+    private static long size;
+
+    //endregion
+
+    //region Constructors
+
+    private PacsInstanceFileCache() {
+        // NOOP
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Configure the cache location and size, files already present in the directory are taken over
+     *
+     * @param directory cache directory (created when it does not exist)
+     * @param maxSize   maximal size of cached files in bytes (0 disables the cache)
+     */
+    public static void configure(File directory, long maxSize) {
+        synchronized (lock) {
+            entries.clear();
+            PacsInstanceFileCache.size = 0;
+            PacsInstanceFileCache.directory = null;
+            PacsInstanceFileCache.maxSize = maxSize;
+
+            if (directory == null || maxSize <= 0) {
+                log.info("PACS instance file cache is disabled");
+                return;
+            }
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                log.error("PACS instance file cache directory cannot be created: " + directory.getAbsolutePath());
+                return;
+            }
+
+            PacsInstanceFileCache.directory = directory;
+            loadExistingFiles();
+            evict();
+
+            log.info("PACS instance file cache configured: directory=" + directory.getAbsolutePath() +
+                    ", maxSize=" + maxSize + "B, cached=" + entries.size() + " instances (" + size + "B)");
+        }
+    }
+
+    /**
+     * @return true when the cache is configured and usable
+     */
+    public static boolean isEnabled() {
+        synchronized (lock) {
+            return directory != null;
+        }
+    }
+
+    /**
+     * Create cache scope of PACS and account
+     *
+     * @param baseUrl  web location of PACS
+     * @param username account used for retrieving (optional)
+     * @return scope of cached instances
+     */
+    public static String createScope(String baseUrl, String username) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            String value = (username != null ? username : "") + "@" + baseUrl;
+
+            StringBuilder result = new StringBuilder();
+            for (byte b : digest.digest(value.getBytes(StandardCharsets.UTF_8))) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException err) {
+            throw new IllegalStateException(err);
+        }
+    }
+
+    /**
+     * Open the cached file of DICOM instance
+     *
+     * The file is opened while holding the cache lock, so an opened instance can be read completely even when
+     * it is evicted in the meantime.
+     *
+     * @param scope          scope of PACS and account (see createScope)
+     * @param sopInstanceUid SOP instance UID
+     * @return opened cached file (caller is responsible for closing) or null when the instance is not cached
+     */
+    public static FileInputStream openFile(String scope, String sopInstanceUid) {
+        synchronized (lock) {
+            // Lookup by get marks the entry as recently used
+            if (directory == null || !isValidKey(scope, sopInstanceUid) || entries.get(createKey(scope, sopInstanceUid)) == null) {
+                return null;
+            }
+
+            File file = createFile(scope, sopInstanceUid);
+            try {
+                return new FileInputStream(file);
+            } catch (FileNotFoundException err) {
+                // Removed from outside
+                size -= entries.remove(createKey(scope, sopInstanceUid));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Wrap a WADO response stream, the instance is written to the cache while the stream is consumed
+     *
+     * The cached file is published only when the source stream has been read until its end, a stream which is
+     * closed earlier (e.g. aborted download) leaves no trace in the cache.
+     *
+     * @param scope          scope of PACS and account (see createScope)
+     * @param sopInstanceUid SOP instance UID
+     * @param in             WADO response stream
+     * @return stream to be consumed instead of the original one
+     */
+    public static InputStream cachingStream(String scope, String sopInstanceUid, InputStream in) {
+        File target;
+        synchronized (lock) {
+            if (in == null || directory == null || !isValidKey(scope, sopInstanceUid)) {
+                return in;
+            }
+            target = createFile(scope, sopInstanceUid);
+            if (!target.getParentFile().isDirectory() && !target.getParentFile().mkdirs()) {
+                log.error("PACS instance file cache directory cannot be created: " + target.getParentFile().getAbsolutePath());
+                return in;
+            }
+        }
+
+        File part = new File(target.getParentFile(), sopInstanceUid + "." + UUID.randomUUID() + partialFileExtension);
+        try {
+            return new CachingInputStream(in, new FileOutputStream(part), createKey(scope, sopInstanceUid), part, target);
+        } catch (IOException err) {
+            log.error("PACS instance file cache cannot write: " + part.getAbsolutePath(), err);
+            return in;
+        }
+    }
+
+    /**
+     * Remove all cached instances
+     */
+    public static void clear() {
+        synchronized (lock) {
+            if (directory != null) {
+                for (String key : entries.keySet()) {
+                    deleteFile(new File(directory, key + fileExtension));
+                }
+            }
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * @return number of cached instances
+     */
+    public static int getCount() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return size of cached instances in bytes
+     */
+    public static long getSize() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static boolean isValidUid(String uid) {
+        return uid != null && !uid.isEmpty() && uid.length() <= 64 && uidPattern.matcher(uid).matches();
+    }
+
+    private static boolean isValidKey(String scope, String uid) {
+        return scope != null && scopePattern.matcher(scope).matches() && isValidUid(uid);
+    }
+
+    private static String createKey(String scope, String sopInstanceUid) {
+        return scope + "/" + sopInstanceUid;
+    }
+
+    private static File createFile(String scope, String sopInstanceUid) {
+        return new File(new File(directory, scope), sopInstanceUid + fileExtension);
+    }
+
+    private static void loadExistingFiles() {
+        File[] scopeDirectories = directory.listFiles();
+        if (scopeDirectories == null) {
+            return;
+        }
+
+        List<File> files = new ArrayList<>();
+        for (File scopeDirectory : scopeDirectories) {
+            File[] scopeFiles = scopeDirectory.listFiles();
+            if (scopeDirectory.isDirectory() && scopePattern.matcher(scopeDirectory.getName()).matches() && scopeFiles != null) {
+                files.addAll(Arrays.asList(scopeFiles));
+            } else if (scopeDirectory.isFile()) {
+                // Instances cached without scope cannot be authorized
+                deleteFile(scopeDirectory);
+            }
+        }
+
+        // Approximate the recency by modification time
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(partialFileExtension)) {
+                deleteFile(file);
+            } else if (name.endsWith(fileExtension)) {
+                String uid = name.substring(0, name.length() - fileExtension.length());
+                if (isValidUid(uid)) {
+                    entries.put(createKey(file.getParentFile().getName(), uid), file.length());
+                    size += file.length();
+                }
+            }
+        }
+    }
+
+    private static void publish(String key, File part, File target) {
+        synchronized (lock) {
+            // Cache was reconfigured in the meantime
+            if (directory == null || !directory.equals(target.getParentFile().getParentFile())) {
+                deleteFile(part);
+                return;
+            }
+
+            try {
+                Files.move(part.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException err) {
+                log.error("PACS instance file cache cannot store: " + target.getAbsolutePath(), err);
+                deleteFile(part);
+                return;
+            }
+
+            Long previous = entries.put(key, target.length());
+            if (previous != null) {
+                size -= previous;
+            }
+            size += target.length();
+
+            evict();
+        }
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            deleteFile(new File(directory, eldest.getKey() + fileExtension));
+            size -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            log.warn("PACS instance file cache cannot delete: " + file.getAbsolutePath());
+        }
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Input stream copying everything what is read to the partial cache file
+     */
+    private static class CachingInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+        private final String key;
+        private final File part;
+        private final File target;
+
+        private boolean failed = false;
+        private boolean completed = false;
+        private boolean closed = false;
+
+        CachingInputStream(InputStream in, OutputStream out, String key, File part, File target) {
+            super(in);
+            this.out = out;
+            this.key = key;
+            this.part = part;
+            this.target = target;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                this.completed = true;
+            } else {
+                this.write(new byte[] { (byte) b }, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count == -1) {
+                this.completed = true;
+            } else {
+                this.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped content would be missing in the cached file
+            this.failed = true;
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+
+            try {
+                super.close();
+            } finally {
+                try {
+                    this.out.close();
+                } catch (IOException err) {
+                    this.failed = true;
+                }
+
+                if (this.completed && !this.failed) {
+                    publish(this.key, this.part, this.target);
+                } else {
+                    deleteFile(this.part);
+                }
+            }
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (this.failed) {
+                return;
+            }
+
+            try {
+                this.out.write(b, off, len);
+            } catch (IOException err) {
+                // Caching problem must not break the client stream
+                log.error("PACS instance file cache cannot write: " + this.part.getAbsolutePath(), err);
+                this.failed = true;
+            }
+        }
+    }
+
+    //endregion
+
+}
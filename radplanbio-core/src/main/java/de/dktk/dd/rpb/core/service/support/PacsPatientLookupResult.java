@@ -0,0 +1,122 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import de.dktk.dd.rpb.core.domain.edc.Subject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Result of a bulk PACS patient lookup
+ *
+ * Bulk lookup is executed in chunks of patient IDs, subjects of all successful chunks are merged and
+ * chunks which could not be queried are reported with their patient IDs instead of failing the whole lookup.
+ *
+ * @since 18 Oct 2026
+ */
+public class PacsPatientLookupResult {
+
+    //region Finals
+
+    private final List<Subject> subjects = new ArrayList<>();
+    private final List<FailedChunk> failedChunks = new ArrayList<>();
+
+    //endregion
+
+    //region Properties
+
+    /**
+     * Subjects loaded from all successful chunks (in order of the requested chunks)
+     */
+    public List<Subject> getSubjects() {
+        return this.subjects;
+    }
+
+    /**
+     * Chunks which could not be loaded
+     */
+    public List<FailedChunk> getFailedChunks() {
+        return Collections.unmodifiableList(this.failedChunks);
+    }
+
+    /**
+     * @return true when at least one chunk could not be loaded
+     */
+    public boolean hasFailures() {
+        return !this.failedChunks.isEmpty();
+    }
+
+    /**
+     * Patient IDs of all chunks which could not be loaded
+     */
+    public List<String> getFailedPatientIds() {
+        List<String> result = new ArrayList<>();
+        for (FailedChunk chunk : this.failedChunks) {
+            result.addAll(chunk.getPatientIds());
+        }
+
+        return result;
+    }
+
+    //endregion
+
+    //region Methods
+
+    public void addSubjects(List<Subject> subjects) {
+        if (subjects != null) {
+            this.subjects.addAll(subjects);
+        }
+    }
+
+    public void addFailedChunk(List<String> patientIds, String message) {
+        this.failedChunks.add(new FailedChunk(patientIds, message));
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Chunk of patient IDs which could not be loaded from PACS
+     */
+    public static class FailedChunk {
+
+        private final List<String> patientIds;
+        private final String message;
+
+        FailedChunk(List<String> patientIds, String message) {
+            this.patientIds = new ArrayList<>(patientIds);
+            this.message = message;
+        }
+
+        public List<String> getPatientIds() {
+            return Collections.unmodifiableList(this.patientIds);
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
+import de.dktk.dd.rpb.core.domain.pacs.DicomRtStructureSet;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtDose;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtPlan;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
+import de.dktk.dd.rpb.core.domain.pacs.RtTreatmentCase;
+import de.dktk.dd.rpb.core.service.IConquestService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Concurrent loader of DICOM-RT treatment case
+ *
+ * Series listings of all RTSTRUCT, RTPLAN and RTDOSE series of the study are requested in parallel, each SOP instance
+ * is retrieved (WADO) and parsed only once even when it is listed in more series. All requests run on a bounded pool
+ * and the treatment case is assembled in order of series and instances when all requests are finished.
+ * Instances which fail or do not arrive in time are reported on the treatment case and the rest is still returned,
+ * the timeout bounds loading of the whole treatment case.
+ *
+ * @since 18 Oct 2026
+ */
+public class RtTreatmentCaseLoader {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(RtTreatmentCaseLoader.class);
+
+    private static final String rtStructModality = "RTSTRUCT";
+    private static final String rtPlanModality = "RTPLAN";
+    private static final String rtDoseModality = "RTDOSE";
+
+    private final IConquestService pacsService;
+    private final int threads;
+    private final long timeout;
+
+    //endregion
+
+    //region Constructors
+
+    /**
+     * Create loader
+     *
+     * @param pacsService     PACS service used for series listings and instance retrieval
+     * @param threads         maximal number of concurrent PACS requests
+     * @param timeout         maximal time in milliseconds to wait for all series listings and instances of the case
+     */
+    public RtTreatmentCaseLoader(IConquestService pacsService, int threads, long timeout) {
+        this.pacsService = pacsService;
+        this.threads = Math.max(1, threads);
+        this.timeout = timeout;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Load treatment case with all structure sets, plans and doses of the study
+     *
+     * @param dicomPatientId DICOM patient ID
+     * @param dicomStudy     DICOM study with RT series
+     * @return treatment case, instances which could not be loaded are listed as failed
+     */
+    public RtTreatmentCase load(String dicomPatientId, DicomStudy dicomStudy) {
+        RtTreatmentCase tc = new RtTreatmentCase();
+        if (dicomStudy == null) {
+            return tc;
+        }
+
+        Map<String, DicomSeries> series = new LinkedHashMap<>();
+        for (String modality : new String[]{rtStructModality, rtPlanModality, rtDoseModality}) {
+            for (DicomSeries dicomSeries : dicomStudy.getSeriesByModality(modality)) {
+                if (dicomSeries.getSeriesInstanceUID() != null) {
+                    series.putIfAbsent(dicomSeries.getSeriesInstanceUID(), dicomSeries);
+                }
+            }
+        }
+        if (series.isEmpty()) {
+            return tc;
+        }
+
+        String studyInstanceUid = dicomStudy.getStudyInstanceUID();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeout);
+        ExecutorService service = Executors.newFixedThreadPool(this.threads);
+        try {
+            // Series listings
+            Map<String, Future<DicomSeries>> listings = new LinkedHashMap<>();
+            for (String seriesInstanceUid : series.keySet()) {
+                listings.put(seriesInstanceUid, service.submit(
+                        () -> this.pacsService.loadStudySeries(dicomPatientId, studyInstanceUid, seriesInstanceUid)
+                ));
+            }
+
+            // Instance retrieval, scheduled as soon as the listing of series is available
+            List<InstanceRequest> requests = new ArrayList<>();
+            Set<String> requestedInstances = new HashSet<>();
+            for (Map.Entry<String, Future<DicomSeries>> listing : listings.entrySet()) {
+                String seriesInstanceUid = listing.getKey();
+                String modality = series.get(seriesInstanceUid).getSeriesModality().trim();
+
+                DicomSeries seriesWithImages = this.await(listing.getValue(), seriesInstanceUid, tc, deadline);
+                if (seriesWithImages == null || seriesWithImages.getSeriesImages() == null) {
+                    continue;
+                }
+
+                initRtObjectList(tc, modality);
+                for (DicomImage instance : seriesWithImages.getSeriesImages()) {
+                    String sopInstanceUid = instance.getSopInstanceUID();
+                    if (sopInstanceUid == null || !requestedInstances.add(sopInstanceUid)) {
+                        continue;
+                    }
+
+                    Callable<Object> task = this.createInstanceTask(modality, studyInstanceUid, seriesInstanceUid, sopInstanceUid, tc);
+                    requests.add(new InstanceRequest(sopInstanceUid, service.submit(task)));
+                }
+            }
+
+            // Assemble in order of series and instances
+            for (InstanceRequest request : requests) {
+                Object rtObject = this.await(request.future, request.sopInstanceUid, tc, deadline);
+                if (rtObject instanceof DicomRtStructureSet) {
+                    tc.getRtStructureSets().add((DicomRtStructureSet) rtObject);
+                } else if (rtObject instanceof DicomSeriesRtPlan) {
+                    tc.getRtPlans().add((DicomSeriesRtPlan) rtObject);
+                } else if (rtObject instanceof DicomSeriesRtDose) {
+                    tc.getRtDoses().add((DicomSeriesRtDose) rtObject);
+                }
+            }
+        } finally {
+            service.shutdownNow();
+        }
+
+        return tc;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private Callable<Object> createInstanceTask(String modality, String studyInstanceUid, String seriesInstanceUid, String sopInstanceUid, RtTreatmentCase tc) {
+        switch (modality) {
+            case rtStructModality:
+                return () -> this.pacsService.loadDicomRtStructureSet(studyInstanceUid, seriesInstanceUid, sopInstanceUid, tc);
+            case rtPlanModality:
+                return () -> this.pacsService.loadDicomRtPlan(studyInstanceUid, seriesInstanceUid, sopInstanceUid);
+            default:
+                return () -> this.pacsService.loadDicomRtDose(studyInstanceUid, seriesInstanceUid, sopInstanceUid);
+        }
+    }
+
+    /**
+     * RT object list of modality is only present when at least one series of the modality could be listed
+     */
+    private static void initRtObjectList(RtTreatmentCase tc, String modality) {
+        if (rtStructModality.equals(modality) && tc.getRtStructureSets() == null) {
+            tc.setRtStructureSets(new ArrayList<>());
+        } else if (rtPlanModality.equals(modality) && tc.getRtPlans() == null) {
+            tc.setRtPlans(new ArrayList<>());
+        } else if (rtDoseModality.equals(modality) && tc.getRtDoses() == null) {
+            tc.setRtDoses(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Wait for request until the deadline of the treatment case (requests still queued at the deadline fail too)
+     */
+    private <T> T await(Future<T> future, String uid, RtTreatmentCase tc, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException err) {
+            future.cancel(true);
+            log.error("Loading of DICOM-RT object " + uid + " did not finish within treatment case timeout of " + this.timeout + " ms");
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause() != null ? err.getCause() : err;
+            log.error("Loading of DICOM-RT object " + uid + " failed", cause);
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            log.error("Loading of DICOM-RT object " + uid + " was interrupted", err);
+        }
+
+        tc.addFailedUid(uid);
+        return null;
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    private static class InstanceRequest {
+
+        private final String sopInstanceUid;
+        private final Future<Object> future;
+
+        InstanceRequest(String sopInstanceUid, Future<Object> future) {
+            this.sopInstanceUid = sopInstanceUid;
+            this.future = future;
+        }
+    }
+
+    //endregion
+
+}
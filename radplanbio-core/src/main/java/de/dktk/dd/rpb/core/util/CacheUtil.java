@@ -45,6 +45,9 @@ public class CacheUtil {
     private Cache subjectsCache;
     private Cache metadataCache;
     private Cache patientsIdatCache;
+    private Cache pacsMetadataCache;
+    private Cache pacsRtObjectCache;
+    private Cache edcStudySubjectsCache;
 
     @Inject
     public CacheUtil(CacheManager cacheManager) {
@@ -53,6 +56,12 @@ public class CacheUtil {
         this.subjectsCache = this.cacheManager.getCache("wsClientStudySubjectsCache");
         this.metadataCache = this.cacheManager.getCache("wsClientStudyMetadataCache");
         this.patientsIdatCache = this.cacheManager.getCache("restClientPatientsIdatCache");
+        this.pacsMetadataCache = this.cacheManager.getCache("restClientPacsMetadataCache");
+        if (this.pacsMetadataCache != null) {
+            this.pacsMetadataCache.setStatisticsEnabled(true);
+        }
+        this.pacsRtObjectCache = this.cacheManager.getCache("restClientPacsRtObjectCache");
+        this.edcStudySubjectsCache = this.cacheManager.getCache("dbEdcStudySubjectsCache");
 
         instance = this;
     }
@@ -121,4 +130,129 @@ public class CacheUtil {
             this.patientsIdatCache.put(element);
         }
     }
+
+    public Cache getPacsMetadataCache() {
+        return this.pacsMetadataCache;
+    }
+
+    public Element getPacsMetadataCacheElement(String key) {
+        if (this.pacsMetadataCache != null && key != null && !key.isEmpty()) {
+            return this.pacsMetadataCache.get(key);
+        }
+
+        return null;
+    }
+
+    public void setPacsMetadataCacheElement(Element element) {
+        if (this.pacsMetadataCache != null && element != null) {
+            this.pacsMetadataCache.put(element);
+        }
+    }
+
+    /**
+     * Invalidate cached PACS metadata of one patient (e.g. after new DICOM data was imported)
+     *
+     * Keys are PACS query URLs, all entries which query the patient (with or without site prefix) or
+     * query without patient restriction are removed
+     *
+     * @param dicomPatientId DICOM PatientID, when empty the whole PACS metadata cache is cleared
+     */
+    public void removePacsMetadataCacheElements(String dicomPatientId) {
+        if (this.pacsMetadataCache == null) {
+            return;
+        }
+
+        if (dicomPatientId == null || dicomPatientId.isEmpty()) {
+            this.pacsMetadataCache.removeAll();
+            return;
+        }
+
+        for (Object key : this.pacsMetadataCache.getKeys()) {
+            String queryPatientId = getQueryParameter(key.toString(), "PatientID");
+            if (queryPatientId == null ||
+                queryPatientId.isEmpty() ||
+                isSamePatient(queryPatientId, dicomPatientId)) {
+
+                this.pacsMetadataCache.remove(key);
+            }
+        }
+    }
+
+    public long getPacsMetadataCacheHits() {
+        if (this.pacsMetadataCache != null) {
+            return this.pacsMetadataCache.getStatistics().getCacheHits();
+        }
+
+        return 0;
+    }
+
+    public long getPacsMetadataCacheMisses() {
+        if (this.pacsMetadataCache != null) {
+            return this.pacsMetadataCache.getStatistics().getCacheMisses();
+        }
+
+        return 0;
+    }
+
+    public Cache getPacsRtObjectCache() {
+        return this.pacsRtObjectCache;
+    }
+
+    public Element getPacsRtObjectCacheElement(String key) {
+        if (this.pacsRtObjectCache != null && key != null && !key.isEmpty()) {
+            return this.pacsRtObjectCache.get(key);
+        }
+
+        return null;
+    }
+
+    public void setPacsRtObjectCacheElement(Element element) {
+        if (this.pacsRtObjectCache != null && element != null) {
+            this.pacsRtObjectCache.put(element);
+        }
+    }
+
+    public Cache getEdcStudySubjectsCache() {
+        return this.edcStudySubjectsCache;
+    }
+
+    public Element getEdcStudySubjectsCacheElement(String key) {
+        if (this.edcStudySubjectsCache != null && key != null && !key.isEmpty()) {
+            return this.edcStudySubjectsCache.get(key);
+        }
+
+        return null;
+    }
+
+    public void setEdcStudySubjectsCacheElement(Element element) {
+        if (this.edcStudySubjectsCache != null && element != null) {
+            this.edcStudySubjectsCache.put(element);
+        }
+    }
+
+    /**
+     * Invalidate all cached study subject query results (e.g. after study subject data was changed in EDC database)
+     */
+    public void removeEdcStudySubjectsCacheElements() {
+        if (this.edcStudySubjectsCache != null) {
+            this.edcStudySubjectsCache.removeAll();
+        }
+    }
+
+    private static boolean isSamePatient(String patientId, String otherPatientId) {
+        return patientId.equals(otherPatientId) ||
+               patientId.endsWith(Constants.RPB_IDENTIFIERSEP + otherPatientId) ||
+               otherPatientId.endsWith(Constants.RPB_IDENTIFIERSEP + patientId);
+    }
+
+    private static String getQueryParameter(String url, String name) {
+        int start = url.indexOf("&" + name + "=");
+        if (start < 0) {
+            return null;
+        }
+        start += name.length() + 2;
+
+        int end = url.indexOf("&", start);
+        return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
 }
@@ -22,7 +22,6 @@ package de.dktk.dd.rpb.core.util;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
-import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 
 import java.util.concurrent.Callable;
 
@@ -32,21 +31,18 @@ import java.util.concurrent.Callable;
  * @since 07 May 2021
  */
 public class CallableJerseyClient implements Callable<String> {
+    private final Client client;
     private final String url;
-    private final String userName;
-    private final String password;
 
     /**
      * Constructor for CallableJerseyClient
      *
+     * @param client shared (thread safe) Jersey client, authentication filter is expected to be already registered
      * @param url URl for the GET request
-     * @param userName user name will be used for authentication if provided
-     * @param password password will be used for authentication if provided
      */
-    public CallableJerseyClient(String url, String userName, String password) {
+    public CallableJerseyClient(Client client, String url) {
+        this.client = client;
         this.url = url;
-        this.userName = userName;
-        this.password = password;
     }
 
     /**
@@ -57,10 +53,6 @@ public class CallableJerseyClient implements Callable<String> {
      */
     @Override
     public String call() throws Exception {
-        Client client = Client.create();
-
-        addAuthenticationFilterIfUsernameIsProvided(client);
-
         WebResource webResource = client.resource(url);
         ClientResponse response = webResource.get(ClientResponse.class);
 
@@ -76,14 +68,9 @@ public class CallableJerseyClient implements Callable<String> {
 
     }
 
-    private void addAuthenticationFilterIfUsernameIsProvided(Client client) {
-        if (userName != null && !userName.isEmpty()) {
-            client.addFilter(new HTTPBasicAuthFilter(userName, password));
-        }
-    }
-
     private void throwIfResponseStatusIsNotTwoHundred(ClientResponse response) throws Exception {
         if (response.getStatus() != 200) {
+            response.close();
             String errorMessage = "There was a problem with your request. ";
             throw new Exception(errorMessage + " URL: " + url +
                     " Status code: " + response.getStatus() + " " + response.getStatusInfo().toString());
@@ -0,0 +1,210 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.util;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Registry of shared JAXB contexts with pooled marshallers and unmarshallers
+ *
+ * Creating JAXBContext for large object graphs (e.g. CDISC ODM) is expensive, the context is thread safe so one
+ * context per root class is created and kept. Marshallers and unmarshallers are not thread safe, they are borrowed
+ * from a small pool for the duration of one operation.
+ *
+ * @since 18 Oct 2026
+ */
+public final class JAXBContextRegistry {
+
+    //region Finals
+
+    // Maximal number of idle (un)marshallers kept per root class
+    private static final int maxIdle = 16;
+
+    private static final Map<Class<?>, Entry> entries = new ConcurrentHashMap<>();
+
+    //endregion
+
+    //region Constructors
+
+    private JAXBContextRegistry() {
+        // NOOP
+    }
+
+    //endregion
+
+    //region Interfaces
+
+    /**
+     * Operation executed with borrowed unmarshaller
+     */
+    public interface UnmarshallerCallback<R> {
+        R doWithUnmarshaller(Unmarshaller unmarshaller) throws JAXBException;
+    }
+
+    /**
+     * Operation executed with borrowed marshaller
+     */
+    public interface MarshallerCallback {
+        void doWithMarshaller(Marshaller marshaller) throws JAXBException;
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Get shared context for root class (created with first request)
+     *
+     * @param rootClass JAXB root class
+     * @return thread safe JAXB context
+     * @throws JAXBException when the context cannot be created
+     */
+    public static JAXBContext getContext(Class<?> rootClass) throws JAXBException {
+        return getEntry(rootClass).context;
+    }
+
+    /**
+     * Execute operation with pooled unmarshaller of root class
+     *
+     * @param rootClass JAXB root class
+     * @param callback  operation (the unmarshaller must not escape it)
+     * @param <R>       result type
+     * @return result of the operation
+     * @throws JAXBException when the context cannot be created or unmarshalling fails
+     */
+    public static <R> R unmarshal(Class<?> rootClass, UnmarshallerCallback<R> callback) throws JAXBException {
+        Entry entry = getEntry(rootClass);
+
+        Unmarshaller unmarshaller = entry.unmarshallers.poll();
+        if (unmarshaller == null) {
+            unmarshaller = entry.context.createUnmarshaller();
+        } else {
+            entry.idleUnmarshallers.decrementAndGet();
+        }
+
+        try {
+            return callback.doWithUnmarshaller(unmarshaller);
+        } finally {
+            release(entry.unmarshallers, entry.idleUnmarshallers, resetUnmarshaller(unmarshaller));
+        }
+    }
+
+    /**
+     * Execute operation with pooled marshaller of root class
+     *
+     * Borrowed marshaller has default properties (UTF-8 encoding, not formatted output)
+     *
+     * @param rootClass JAXB root class
+     * @param callback  operation (the marshaller must not escape it)
+     * @throws JAXBException when the context cannot be created or marshalling fails
+     */
+    public static void marshal(Class<?> rootClass, MarshallerCallback callback) throws JAXBException {
+        Entry entry = getEntry(rootClass);
+
+        Marshaller marshaller = entry.marshallers.poll();
+        if (marshaller == null) {
+            marshaller = entry.context.createMarshaller();
+        } else {
+            entry.idleMarshallers.decrementAndGet();
+        }
+
+        try {
+            callback.doWithMarshaller(marshaller);
+        } finally {
+            release(entry.marshallers, entry.idleMarshallers, resetMarshaller(marshaller));
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private static Entry getEntry(Class<?> rootClass) throws JAXBException {
+        Entry entry = entries.get(rootClass);
+        if (entry == null) {
+            synchronized (entries) {
+                entry = entries.get(rootClass);
+                if (entry == null) {
+                    entry = new Entry(JAXBContext.newInstance(rootClass));
+                    entries.put(rootClass, entry);
+                }
+            }
+        }
+
+        return entry;
+    }
+
+    private static <T> void release(Queue<T> pool, AtomicInteger idle, T instance) {
+        // Instance which cannot be reset is not returned to the pool
+        if (instance != null && idle.incrementAndGet() <= maxIdle) {
+            pool.offer(instance);
+        } else if (instance != null) {
+            idle.decrementAndGet();
+        }
+    }
+
+    private static Unmarshaller resetUnmarshaller(Unmarshaller unmarshaller) {
+        // Event handler is kept, null would replace the lenient default handler with a strict one
+        unmarshaller.setSchema(null);
+        unmarshaller.setListener(null);
+        return unmarshaller;
+    }
+
+    private static Marshaller resetMarshaller(Marshaller marshaller) {
+        try {
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+            marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.FALSE);
+            marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.FALSE);
+            marshaller.setSchema(null);
+            marshaller.setListener(null);
+            return marshaller;
+        } catch (JAXBException err) {
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    private static class Entry {
+
+        private final JAXBContext context;
+        private final Queue<Unmarshaller> unmarshallers = new ConcurrentLinkedQueue<>();
+        private final Queue<Marshaller> marshallers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleUnmarshallers = new AtomicInteger();
+        private final AtomicInteger idleMarshallers = new AtomicInteger();
+
+        Entry(JAXBContext context) {
+            this.context = context;
+        }
+    }
+
+    //endregion
+
+}
@@ -28,6 +28,8 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Helper class that provides common methods in context with JAXB
+ *
+ * JAXB contexts and (un)marshallers are shared via JAXBContextRegistry
  */
 public class JAXBHelper {
     /**
@@ -40,10 +42,7 @@ public class JAXBHelper {
      * @throws JAXBException
      */
     public static <T> T unmashalFile(Class<T> objectClass, File file) throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(objectClass);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-
-        JAXBElement element = (JAXBElement) unmarshaller.unmarshal(file);
+        JAXBElement element = JAXBContextRegistry.unmarshal(objectClass, unmarshaller -> (JAXBElement) unmarshaller.unmarshal(file));
 
         return (T) element.getValue();
     }
@@ -66,16 +65,11 @@ public class JAXBHelper {
     }
 
     public static <T> JAXBElement unmarshalInputstream(Class<T> objectClass, InputStream inputStream) throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(objectClass);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-
-        return (JAXBElement) unmarshaller.unmarshal(inputStream);
+        return JAXBContextRegistry.unmarshal(objectClass, unmarshaller -> (JAXBElement) unmarshaller.unmarshal(inputStream));
     }
 
     public static <T> T unmarshalInputstream2(Class<T> objectClass, InputStream inputStream) throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(objectClass);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-        return (T) unmarshaller.unmarshal(inputStream);
+        return JAXBContextRegistry.unmarshal(objectClass, unmarshaller -> (T) unmarshaller.unmarshal(inputStream));
     }
 
     /**
@@ -89,12 +83,11 @@ public class JAXBHelper {
      */
     public static <T> String jaxbObjectToXML(Class<T> objectClass, T obj) throws JAXBException {
 
-        JAXBContext jaxbContext = JAXBContext.newInstance(objectClass);
-        Marshaller jaxbMarshaller = jaxbContext.createMarshaller();
-        jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-
         StringWriter sw = new StringWriter();
-        jaxbMarshaller.marshal(obj, sw);
+        JAXBContextRegistry.marshal(objectClass, jaxbMarshaller -> {
+            jaxbMarshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+            jaxbMarshaller.marshal(obj, sw);
+        });
         String xmlContent = sw.toString();
 
         return xmlContent;
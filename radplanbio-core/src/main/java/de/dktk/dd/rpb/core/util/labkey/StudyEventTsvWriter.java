@@ -12,6 +12,7 @@ import org.supercsv.prefs.CsvPreference;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -19,14 +20,23 @@ import java.util.List;
 public class StudyEventTsvWriter {
 
     public static ByteArrayOutputStream getByteArrayOutputstream(List<StudySubject> studySubjectList, String subjectColumnName) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        write(byteArrayOutputStream, studySubjectList, subjectColumnName);
+
+        return byteArrayOutputStream;
+    }
+
+    /**
+     * Writes the tsv content row by row to the output stream, the stream is closed afterwards
+     */
+    public static void write(OutputStream outputStream, List<StudySubject> studySubjectList, String subjectColumnName) throws IOException {
 
         String[] headerArray = EventAttributes.getHeaders(subjectColumnName);
         CellProcessor[] cellProcessors = EventAttributes.getCellProcessors();
 
         ICsvListWriter listWriter = null;
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
-        listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
+        listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
                 CsvPreference.TAB_PREFERENCE);
 
         try {
@@ -54,8 +64,6 @@ public class StudyEventTsvWriter {
                 listWriter.close();
             }
         }
-
-        return byteArrayOutputStream;
     }
 
 }
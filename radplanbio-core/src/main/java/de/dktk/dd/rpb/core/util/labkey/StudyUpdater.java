@@ -30,6 +30,7 @@ import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 import de.dktk.dd.rpb.core.domain.lab.*;
 import de.dktk.dd.rpb.core.exception.MissingPropertyException;
 import de.dktk.dd.rpb.core.handler.lab.ILabKeyWebdavHandler;
+import de.dktk.dd.rpb.core.util.JAXBContextRegistry;
 import org.labkey.study.xml.Study;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,17 +38,20 @@ import org.supercsv.io.CsvListWriter;
 import org.supercsv.io.ICsvListWriter;
 import org.supercsv.prefs.CsvPreference;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static de.dktk.dd.rpb.core.util.Constants.*;
 
@@ -72,6 +76,9 @@ public class StudyUpdater {
 
     private String subjectColumnName;
 
+    private ExecutorService uploadExecutor;
+    private final List<Future<Void>> pendingUploads = new ArrayList<>();
+
     /**
      * Upload files to the Labkey server in order to reload the study with the updated data.
      *
@@ -127,9 +134,7 @@ public class StudyUpdater {
 
     private Study getStudyConfiguration(ILabKeyWebdavHandler webdavHandler) throws IOException, JAXBException {
         InputStream studyStream = webdavHandler.getStudyFile();
-        JAXBContext studyContext = JAXBContext.newInstance(Study.class);
-        Unmarshaller studyUnmarshaller = studyContext.createUnmarshaller();
-        Study studyConfiguration = (Study) studyUnmarshaller.unmarshal(studyStream);
+        Study studyConfiguration = JAXBContextRegistry.unmarshal(Study.class, studyUnmarshaller -> (Study) studyUnmarshaller.unmarshal(studyStream));
         return studyConfiguration;
     }
 
@@ -140,13 +145,29 @@ public class StudyUpdater {
      * @throws JAXBException Exceptions that will be propagated to upper layers.
      */
     public void runUpdate() throws IOException, JAXBException, MissingPropertyException, ParseException {
-        this.uploadSubjectAttributeTable();
-        this.uploadSubjectGroupAttributeTable();
-        this.uploadEventAttributesTable();
-        this.uploadFormAttributesTable();
+        int uploadThreads = this.labKeyExportConfiguration.getUploadThreads();
+        if (uploadThreads > 1) {
+            this.uploadExecutor = Executors.newFixedThreadPool(uploadThreads);
+        }
+
+        try {
+            this.uploadSubjectAttributeTable();
+            this.uploadSubjectGroupAttributeTable();
+            this.uploadEventAttributesTable();
+            this.uploadFormAttributesTable();
+
+            this.uploadCrfAttributesPerFormTables();
+            this.uploadCrfAttributesPerItemGroupTables();
 
-        this.uploadCrfAttributesPerFormTables();
-        this.uploadCrfAttributesPerItemGroupTables();
+            // All datasets have to be uploaded before the study is reloaded
+            this.awaitDataSetUploads();
+        } finally {
+            if (this.uploadExecutor != null) {
+                this.uploadExecutor.shutdownNow();
+                this.uploadExecutor = null;
+            }
+            this.pendingUploads.clear();
+        }
 
         buildUploadDatasetsMetadataFile();
         buildUploadDatasetsManifestFile();
@@ -171,39 +192,33 @@ public class StudyUpdater {
     }
 
     private void uploadSubjectAttributeTable() throws IOException {
-        ByteArrayOutputStream labkeySubjectTsvFileContent = SubjectTsvWriter.getByteArrayOutputStream(this.studySubjectList, this.subjectColumnName, this.labKeyExportConfiguration);
-        byte[] fileContent = labkeySubjectTsvFileContent.toByteArray();
         Integer subjectAttributesId = this.datasetsManifestBuilder.findOrCreateDataset("SubjectAttributes", LABKEY_EDC_ATTRIBUTES);
-        this.webdavHandler.uploadDataSet(subjectAttributesId.toString(), fileContent);
+        this.uploadDataSet(subjectAttributesId.toString(), outputStream ->
+                SubjectTsvWriter.write(outputStream, this.studySubjectList, this.subjectColumnName, this.labKeyExportConfiguration)
+        );
     }
 
     private void uploadSubjectGroupAttributeTable() throws IOException {
-        ByteArrayOutputStream labkeySubjectTsvFileContent = SubjectGroupTsvWriter.getByteArrayOutputStream(this.studySubjectList, this.subjectColumnName);
-        byte[] fileContent = labkeySubjectTsvFileContent.toByteArray();
         Integer subjectAttributesId = this.datasetsManifestBuilder.findOrCreateDataset(LABKEY_SUBJECT_GROUP_ATTRIBUTES, LABKEY_EDC_ATTRIBUTES);
-        this.webdavHandler.uploadDataSet(subjectAttributesId.toString(), fileContent);
+        this.uploadDataSet(subjectAttributesId.toString(), outputStream ->
+                SubjectGroupTsvWriter.write(outputStream, this.studySubjectList, this.subjectColumnName)
+        );
     }
 
-
-
     private void uploadEventAttributesTable() throws IOException {
-        ByteArrayOutputStream labkeyEventTsvFileContent = StudyEventTsvWriter.getByteArrayOutputstream(this.studySubjectList, this.subjectColumnName);
-        byte[] eventFileContent = labkeyEventTsvFileContent.toByteArray();
         Integer eventAttributesId = this.datasetsManifestBuilder.findOrCreateDataset("EventAttributes", LABKEY_EDC_ATTRIBUTES);
-        this.webdavHandler.uploadDataSet(eventAttributesId.toString(), eventFileContent);
+        this.uploadDataSet(eventAttributesId.toString(), outputStream ->
+                StudyEventTsvWriter.write(outputStream, this.studySubjectList, this.subjectColumnName)
+        );
     }
 
-    private void uploadFormAttributesTable() throws IOException, MissingPropertyException, ParseException {
-        List<FormAttributes> formAttributesList = getFormAttributesList();
-        byte[] formAttributesFileContent = writeFormAttributesFileContent(formAttributesList);
+    private void uploadFormAttributesTable() throws IOException {
         Integer formAttributesId = this.datasetsManifestBuilder.findOrCreateDataset("FormAttributes", LABKEY_EDC_ATTRIBUTES);
-        this.webdavHandler.uploadDataSet(formAttributesId.toString(), formAttributesFileContent);
-
+        this.uploadDataSet(formAttributesId.toString(), this::writeFormAttributesFileContent);
     }
 
-    private byte[] writeFormAttributesFileContent(List<FormAttributes> formAttributesList) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        ICsvListWriter listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
+    private void writeFormAttributesFileContent(OutputStream outputStream) throws IOException {
+        ICsvListWriter listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
                 CsvPreference.TAB_PREFERENCE);
 
         String[] headerArray = FormAttributes.getHeaders(subjectColumnName);
@@ -211,11 +226,15 @@ public class StudyUpdater {
         try {
             listWriter.writeHeader(headerArray);
 
-            for (FormAttributes formAttributes : formAttributesList) {
-                listWriter.write(formAttributes.getValues(), formAttributes.getCellProcessors());
+            // Form attributes are converted and written row by row
+            List<StudySubject> studySubjectList = odmFileContent.getStudySubjects();
+            if (studySubjectList != null) {
+                for (StudySubject studySubject : studySubjectList) {
+                    this.writeFormAttributes(listWriter, studySubject);
+                }
             }
 
-        } catch (IOException e) {
+        } catch (IOException | MissingPropertyException | ParseException e) {
             String errorDescription = "There was a problem during writing form attributes table";
             this.log.error(errorDescription, e);
             throw new IOException(errorDescription, e);
@@ -224,46 +243,36 @@ public class StudyUpdater {
                 listWriter.close();
             }
         }
-
-        byte[] formAttributesFileContent = byteArrayOutputStream.toByteArray();
-        return formAttributesFileContent;
     }
 
-    private List<FormAttributes> getFormAttributesList() throws MissingPropertyException, ParseException {
-        List<StudySubject> studySubjectList = odmFileContent.getStudySubjects();
-        List<FormAttributes> formAttributesList = new ArrayList<>();
-
-        if (studySubjectList != null) {
-            for (StudySubject studySubject : studySubjectList) {
-                String studySubjectId = studySubject.getStudySubjectId();
-                List<EventData> eventDataList = studySubject.getStudyEventDataList();
-                if (eventDataList != null) {
-
-                    for (EventData eventData : eventDataList) {
-                        FormDataConverter formDataConverter = new FormDataConverter(studySubjectId, eventData, this.odmEventMetaDataLookup);
-                        List<FormData> formDataList = eventData.getFormDataList();
-
-                        if (formDataList != null) {
-                            for (FormData formData : formDataList) {
-
-                                if (formData.getItemGroupDataList() != null) {
-                                    formAttributesList.add(formDataConverter.convertToFormAttributes(formData));
-                                }
-                            }
-                        } else {
-                            log.debug("FormData list is null on object: " + eventData.toString());
+    private void writeFormAttributes(ICsvListWriter listWriter, StudySubject studySubject) throws IOException, MissingPropertyException, ParseException {
+        String studySubjectId = studySubject.getStudySubjectId();
+        List<EventData> eventDataList = studySubject.getStudyEventDataList();
+        if (eventDataList != null) {
+
+            for (EventData eventData : eventDataList) {
+                FormDataConverter formDataConverter = new FormDataConverter(studySubjectId, eventData, this.odmEventMetaDataLookup);
+                List<FormData> formDataList = eventData.getFormDataList();
+
+                if (formDataList != null) {
+                    for (FormData formData : formDataList) {
+
+                        if (formData.getItemGroupDataList() != null) {
+                            FormAttributes formAttributes = formDataConverter.convertToFormAttributes(formData);
+                            listWriter.write(formAttributes.getValues(), formAttributes.getCellProcessors());
                         }
                     }
-
                 } else {
-                    log.debug("EventData list is null on object: " + studySubject.toString());
+                    log.debug("FormData list is null on object: " + eventData.toString());
                 }
             }
+
+        } else {
+            log.debug("EventData list is null on object: " + studySubject.toString());
         }
-        return formAttributesList;
     }
 
-    private void uploadCrfAttributesPerFormTables() throws IOException, MissingPropertyException {
+    private void uploadCrfAttributesPerFormTables() throws IOException {
         for (FormBasedCrfAttributeTable attributeTable : this.formBasedCrfAttributeTableList) {
 
             String name = attributeTable.getName();
@@ -273,32 +282,28 @@ public class StudyUpdater {
             Integer eventAttributesFileId = this.datasetsManifestBuilder.findOrCreateDataset(oid, LABKEY_EDC_FORM_VERSIONS);
             this.datasetsMetadataBuilder.createFormBasedCrfAttributeTableItems(oid);
 
-            OdmEventMetaDataLookup odmEventMetaDataLookup = getOdmEventMetaDataLookup(odmFileContent);
-
-            ICsvListWriter listWriter = null;
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            this.uploadDataSet(eventAttributesFileId.toString(), outputStream -> {
+                ICsvListWriter listWriter = null;
 
-            try {
-                listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
-                        CsvPreference.TAB_PREFERENCE);
+                try {
+                    listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                            CsvPreference.TAB_PREFERENCE);
 
-                listWriter.writeHeader(attributeTable.getHeaderNames());
-                for (FormBasedCrfAttributeTableItem item : attributeTable.getOrderedAttributeList()) {
-                    listWriter.write(item.getValues(), attributeTable.getCellProcessors());
-                }
+                    listWriter.writeHeader(attributeTable.getHeaderNames());
+                    for (FormBasedCrfAttributeTableItem item : attributeTable.getOrderedAttributeList()) {
+                        listWriter.write(item.getValues(), attributeTable.getCellProcessors());
+                    }
 
-            } catch (IOException e) {
-                String errorDescription = "There was a problem during writing attribute table \" " + name + "\".";
-                this.log.error(errorDescription, e);
-                throw new IOException(errorDescription, e);
-            } finally {
-                if (listWriter != null) {
-                    listWriter.close();
+                } catch (IOException e) {
+                    String errorDescription = "There was a problem during writing attribute table \" " + name + "\".";
+                    this.log.error(errorDescription, e);
+                    throw new IOException(errorDescription, e);
+                } finally {
+                    if (listWriter != null) {
+                        listWriter.close();
+                    }
                 }
-            }
-
-            byte[] eventFileContent = byteArrayOutputStream.toByteArray();
-            this.webdavHandler.uploadDataSet(eventAttributesFileId.toString(), eventFileContent);
+            });
         }
     }
 
@@ -312,31 +317,69 @@ public class StudyUpdater {
 
             this.datasetsMetadataBuilder.createItemGroupBasedCrfTableItems(oid);
 
-            ICsvListWriter listWriter = null;
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            this.uploadDataSet(eventAttributesFileId.toString(), outputStream -> {
+                ICsvListWriter listWriter = null;
 
-            try {
-                listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
-                        CsvPreference.TAB_PREFERENCE);
+                try {
+                    listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
+                            CsvPreference.TAB_PREFERENCE);
 
-                listWriter.writeHeader(attributeTable.getHeaderNames());
-                for (ItemGroupBasedCrfAttributeTableItem item : attributeTable.getOrderedAttributeList()) {
-                    listWriter.write(item.getValues(), attributeTable.getCellProcessors());
-                }
+                    listWriter.writeHeader(attributeTable.getHeaderNames());
+                    for (ItemGroupBasedCrfAttributeTableItem item : attributeTable.getOrderedAttributeList()) {
+                        listWriter.write(item.getValues(), attributeTable.getCellProcessors());
+                    }
 
-            } catch (IOException | MissingPropertyException e) {
-                String errorDescription = "There was a problem during writing attribute table \" " + name + "\".";
-                this.log.error(errorDescription, e);
-                throw new IOException(errorDescription, e);
-            } finally {
-                if (listWriter != null) {
-                    listWriter.close();
+                } catch (IOException | MissingPropertyException e) {
+                    String errorDescription = "There was a problem during writing attribute table \" " + name + "\".";
+                    this.log.error(errorDescription, e);
+                    throw new IOException(errorDescription, e);
+                } finally {
+                    if (listWriter != null) {
+                        listWriter.close();
+                    }
                 }
-            }
+            });
+        }
+    }
 
-            byte[] eventFileContent = byteArrayOutputStream.toByteArray();
-            this.webdavHandler.uploadDataSet(eventAttributesFileId.toString(), eventFileContent);
+    /**
+     * Upload dataset table, either streamed directly to the upload request or buffered in memory first.
+     * With more upload threads configured the upload is only scheduled here and awaited in the update flow.
+     */
+    private void uploadDataSet(String datasetId, ILabKeyWebdavHandler.DataSetWriter writer) throws IOException {
+        if (this.uploadExecutor != null) {
+            this.pendingUploads.add(this.uploadExecutor.submit(() -> {
+                this.executeDataSetUpload(datasetId, writer);
+                return null;
+            }));
+        } else {
+            this.executeDataSetUpload(datasetId, writer);
+        }
+    }
 
+    private void executeDataSetUpload(String datasetId, ILabKeyWebdavHandler.DataSetWriter writer) throws IOException {
+        if (this.labKeyExportConfiguration.isStreamingUpload()) {
+            this.webdavHandler.uploadDataSet(datasetId, writer);
+        } else {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            writer.write(byteArrayOutputStream);
+            this.webdavHandler.uploadDataSet(datasetId, byteArrayOutputStream.toByteArray());
+        }
+    }
+
+    private void awaitDataSetUploads() throws IOException {
+        try {
+            for (Future<Void> upload : this.pendingUploads) {
+                upload.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload of datasets was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("There was a problem during upload of datasets", e.getCause());
         }
     }
 
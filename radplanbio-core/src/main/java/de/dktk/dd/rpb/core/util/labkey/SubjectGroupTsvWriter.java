@@ -10,6 +10,7 @@ import org.supercsv.prefs.CsvPreference;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -25,13 +26,25 @@ import static java.lang.String.valueOf;
 public class SubjectGroupTsvWriter {
 
     public static ByteArrayOutputStream getByteArrayOutputStream(List<StudySubject> studySubjects, String subjectColumnName) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        write(byteArrayOutputStream, studySubjects, subjectColumnName);
+
+        return byteArrayOutputStream;
+    }
+
+    /**
+     * Writes the tsv content row by row to the output stream, the stream is closed afterwards
+     * @param outputStream target of the tsv content
+     * @param studySubjects subjects with subject group assignments
+     * @param subjectColumnName name of the subject column configured for the study in LabKey
+     */
+    public static void write(OutputStream outputStream, List<StudySubject> studySubjects, String subjectColumnName) throws IOException {
         String[] headerArray = getHeaderArray(subjectColumnName);
 
         ICsvListWriter listWriter = null;
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
         try {
-            listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
+            listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
                     CsvPreference.TAB_PREFERENCE);
 
             listWriter.writeHeader(headerArray);
@@ -66,8 +79,6 @@ public class SubjectGroupTsvWriter {
                 listWriter.close();
             }
         }
-
-        return byteArrayOutputStream;
     }
 
     /**
@@ -29,6 +29,7 @@ import org.supercsv.prefs.CsvPreference;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -42,13 +43,22 @@ import static de.dktk.dd.rpb.core.util.Constants.*;
 public class SubjectTsvWriter {
 
     public static ByteArrayOutputStream getByteArrayOutputStream(List<StudySubject> studySubjects, String subjectColumnName, LabKeyExportConfiguration exportConfiguration) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        write(byteArrayOutputStream, studySubjects, subjectColumnName, exportConfiguration);
+
+        return byteArrayOutputStream;
+    }
+
+    /**
+     * Writes the tsv content row by row to the output stream, the stream is closed afterwards
+     */
+    public static void write(OutputStream outputStream, List<StudySubject> studySubjects, String subjectColumnName, LabKeyExportConfiguration exportConfiguration) throws IOException {
         String[] headerArray = getHeaderArray(subjectColumnName, exportConfiguration);
 
         ICsvListWriter listWriter = null;
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
         try {
-            listWriter = new CsvListWriter(new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8),
+            listWriter = new CsvListWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8),
                     CsvPreference.TAB_PREFERENCE);
 
             listWriter.writeHeader(headerArray);
@@ -69,8 +79,6 @@ public class SubjectTsvWriter {
                 listWriter.close();
             }
         }
-
-        return byteArrayOutputStream;
     }
 
     private static String[] getHeaderArray(String subjectColumnName, LabKeyExportConfiguration exportConfiguration) {
@@ -0,0 +1,210 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.dao.edc;
+
+import de.dktk.dd.rpb.core.domain.edc.DataQueryResult;
+import de.dktk.dd.rpb.core.domain.edc.EventData;
+import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.domain.edc.SubjectGroupData;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import javax.sql.DataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OpenClinicaDataDaoTest {
+
+    // region date conversion
+
+    @Test
+    public void convertDbDateToString_uses_oc_date_format() {
+        java.sql.Date date = java.sql.Date.valueOf(LocalDate.of(2021, 3, 7));
+
+        assertEquals("2021-03-07", OpenClinicaDataDao.convertDbDateToString(date));
+        assertEquals("", OpenClinicaDataDao.convertDbDateToString(null));
+    }
+
+    @Test
+    public void convertTimestampToString_uses_oc_timestamp_format() {
+        Timestamp timestamp = Timestamp.valueOf(LocalDateTime.of(2021, 3, 7, 14, 5, 9));
+
+        assertEquals("2021-03-07 14:05:09.0", OpenClinicaDataDao.convertTimestampToString(timestamp));
+        assertEquals("", OpenClinicaDataDao.convertTimestampToString(null));
+    }
+
+    // endregion
+
+    // region row mapping
+
+    @Test
+    public void studySubjectRowMapper_maps_typed_columns() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id")).thenReturn(12);
+        when(rs.getString("studySubjectId")).thenReturn("SS-1");
+        when(rs.getString("pid")).thenReturn("PID1");
+        when(rs.getString("studySubjectStatus")).thenReturn("available");
+        when(rs.getDate("dateOfBirth")).thenReturn(java.sql.Date.valueOf(LocalDate.of(1970, 1, 2)));
+
+        StudySubject subject = new OpenClinicaDataDao.StudySubjectRowMapper().mapRow(rs, 0);
+
+        assertEquals(Integer.valueOf(12), subject.getId());
+        assertEquals("SS-1", subject.getStudySubjectId());
+        assertEquals("PID1", subject.getPid());
+        assertEquals("PID1", subject.getPerson().getPid());
+        assertEquals("1970-01-02", subject.getDateOfBirth());
+        assertEquals("", subject.getEnrollmentDate());
+    }
+
+    @Test
+    public void studyEventCallbackHandler_groups_events_by_study_subject() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(anyString())).thenReturn(null);
+        when(rs.getString("studySubjectId")).thenReturn("SS-1", "SS-1", "SS-2");
+        when(rs.getInt("studyEventRepeatKey")).thenReturn(1, 2, 1);
+
+        OpenClinicaDataDao.StudyEventCallbackHandler handler = new OpenClinicaDataDao.StudyEventCallbackHandler();
+        handler.processRow(rs);
+        handler.processRow(rs);
+        handler.processRow(rs);
+
+        Map<String, List<EventData>> results = handler.getResults();
+        assertEquals(2, results.size());
+        assertEquals(2, results.get("SS-1").size());
+        assertEquals("2", results.get("SS-1").get(1).getStudyEventRepeatKey());
+        assertEquals(1, results.get("SS-2").size());
+    }
+
+    @Test
+    public void subjectGroupDataCallbackHandler_groups_treatment_groups_by_study_subject() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString("studySubjectId")).thenReturn("SS-1", "SS-1");
+        when(rs.getInt("studyGroupClassId")).thenReturn(3, 4);
+        when(rs.getString("studyGroupName")).thenReturn("Arm A", "Female");
+
+        OpenClinicaDataDao.SubjectGroupDataCallbackHandler handler = new OpenClinicaDataDao.SubjectGroupDataCallbackHandler();
+        handler.processRow(rs);
+        handler.processRow(rs);
+
+        List<SubjectGroupData> groups = handler.getResults().get("SS-1");
+        assertEquals(2, groups.size());
+        assertEquals("SGC_3", groups.get(0).getStudyGroupClassID());
+        assertEquals("Female", groups.get(1).getStudyGroupName());
+    }
+
+    @Test
+    public void dataQueryResultCallbackHandler_groups_items_by_study_subject_in_row_order() throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(anyString())).thenReturn(null);
+        when(rs.getInt("Id")).thenReturn(7, 7, 3, 7);
+        when(rs.getString("StudySubjectLabel")).thenReturn("SS-7", "SS-3");
+        when(rs.getString("ItemOID")).thenReturn("I_A", "I_B", "I_C", "I_D");
+        when(rs.getString("ItemValue")).thenReturn("1", "2", "3", "4");
+
+        OpenClinicaDataDao.DataQueryResultCallbackHandler handler = new OpenClinicaDataDao.DataQueryResultCallbackHandler(false);
+        handler.processRow(rs);
+        handler.processRow(rs);
+        handler.processRow(rs);
+        handler.processRow(rs);
+
+        List<DataQueryResult> results = handler.getResults();
+        assertEquals(2, results.size());
+        assertEquals(Integer.valueOf(7), results.get(0).getStudySubject().getId());
+        assertEquals("SS-7", results.get(0).getStudySubject().getStudySubjectId());
+        assertEquals(Integer.valueOf(3), results.get(1).getStudySubject().getId());
+        assertEquals("SS-3", results.get(1).getStudySubject().getStudySubjectId());
+
+        List<String> oids = new ArrayList<>();
+        for (ItemDefinition item : results.get(0).getDataItems()) {
+            oids.add(item.getOid());
+        }
+        assertEquals(Arrays.asList("I_A", "I_B", "I_D"), oids);
+        assertEquals("4", results.get(0).getDataItems().get(2).getValue());
+        assertEquals(1, results.get(1).getDataItems().size());
+        assertEquals("I_C", results.get(1).getDataItems().get(0).getOid());
+    }
+
+    // endregion
+
+    // region streaming
+
+    @Test
+    public void findStudySubjects_fetches_rows_in_read_only_transaction() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+        when(statement.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(false);
+
+        OpenClinicaDataDao dao = new OpenClinicaDataDao();
+        dao.setDataSource(dataSource);
+        List<StudySubject> subjects = dao.findStudySubjects("S_TEST");
+
+        assertTrue(subjects.isEmpty());
+        InOrder inOrder = inOrder(connection, statement);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(statement).setFetchSize(1000);
+        inOrder.verify(statement).executeQuery();
+        inOrder.verify(connection).commit();
+        inOrder.verify(connection).setAutoCommit(true);
+        verify(connection).setReadOnly(true);
+    }
+
+    // endregion
+
+    // region in statement
+
+    @Test
+    public void generateInStatement_has_placeholder_per_element() {
+        assertEquals("(?,?,?)", OpenClinicaDataDao.generateInStatement(Arrays.asList(1, 2, 3)));
+        assertEquals("(?)", OpenClinicaDataDao.generateInStatement(Arrays.asList("A")));
+    }
+
+    @Test
+    public void generateInStatement_empty_list_matches_no_rows() {
+        assertEquals("(NULL)", OpenClinicaDataDao.generateInStatement(new ArrayList<Integer>()));
+    }
+
+    // endregion
+
+}
@@ -0,0 +1,151 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc;
+
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappedOdmItem;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OdmTest {
+
+    private Odm odm;
+    private ItemGroupDefinition itemGroupDefinition;
+
+    @Before
+    public void setUp() {
+        ItemDefinition weight = itemDefinition("I_WEIGHT");
+        this.itemGroupDefinition = new ItemGroupDefinition();
+        this.itemGroupDefinition.setOid("IG_VITALS");
+        this.itemGroupDefinition.setItemDefs(new ArrayList<>(Collections.singletonList(weight)));
+
+        FormDefinition formDefinition = new FormDefinition();
+        formDefinition.setOid("F_VITALS");
+        formDefinition.setItemGroupDefs(new ArrayList<>(Collections.singletonList(this.itemGroupDefinition)));
+
+        EventDefinition eventDefinition = new EventDefinition();
+        eventDefinition.setOid("SE_BASELINE");
+        eventDefinition.setFormDefs(new ArrayList<>(Collections.singletonList(formDefinition)));
+
+        MetaDataVersion metaDataVersion = new MetaDataVersion();
+        metaDataVersion.setOid("v1.0.0");
+        metaDataVersion.setStudyEventDefinitions(new ArrayList<>(Collections.singletonList(eventDefinition)));
+
+        Study study = new Study();
+        study.setOid("S_TEST");
+        study.setMetaDataVersion(metaDataVersion);
+
+        this.odm = new Odm();
+        this.odm.getStudies().add(study);
+
+        List<ClinicalData> clinicalDataList = new ArrayList<>();
+        clinicalDataList.add(new ClinicalData("S_TEST", "v1.0.0"));
+        this.odm.setClinicalDataList(clinicalDataList);
+        this.odm.addStudySubject(studySubject("SS_1", "SS-001"));
+        this.odm.addStudySubject(studySubject("SS_2", "SS-002"));
+    }
+
+    // region metadata index
+
+    @Test
+    public void definitions_are_found_by_oid() {
+        assertEquals("SE_BASELINE", this.odm.findUniqueEventDefinitionOrNone("SE_BASELINE").getOid());
+        assertEquals("F_VITALS", this.odm.findUniqueFormDefinitionOrNone("F_VITALS").getOid());
+        assertSame(this.itemGroupDefinition, this.odm.findUniqueItemGroupDefinitionOrNone("IG_VITALS"));
+        assertEquals("I_WEIGHT", this.odm.findUniqueItemDefinitionOrNone("I_WEIGHT").getOid());
+        assertNull(this.odm.findUniqueItemDefinitionOrNone("I_UNKNOWN"));
+    }
+
+    @Test
+    public void item_definition_is_found_by_mapping_target() {
+        MappedOdmItem target = new MappedOdmItem("I_WEIGHT");
+        target.setStudyEventOid("SE_BASELINE");
+        target.setFormOid("F_VITALS");
+        target.setItemGroupOid("IG_VITALS");
+
+        assertEquals("I_WEIGHT", this.odm.getItemDefinition(target).getOid());
+
+        target.setFormOid("F_OTHER");
+        assertNull(this.odm.getItemDefinition(target));
+    }
+
+    @Test
+    public void metadata_index_is_rebuilt_after_hierarchy_change() {
+        assertNull(this.odm.findUniqueItemDefinitionOrNone("I_HEIGHT"));
+
+        this.itemGroupDefinition.getItemDefs().add(itemDefinition("I_HEIGHT"));
+        this.odm.invalidateIndex();
+
+        assertEquals("I_HEIGHT", this.odm.findUniqueItemDefinitionOrNone("I_HEIGHT").getOid());
+    }
+
+    // endregion
+
+    // region subject index
+
+    @Test
+    public void subject_odm_is_found_by_subject_key_or_study_subject_id() {
+        Odm subjectOdm = this.odm.findUniqueOdmOrNoneForSubject("SS-002");
+        assertEquals("SS_2", subjectOdm.getClinicalDataList().get(0).getStudySubjects().get(0).getSubjectKey());
+
+        subjectOdm = this.odm.findUniqueOdmOrNoneForSubject("SS_1");
+        assertEquals("SS-001", subjectOdm.getClinicalDataList().get(0).getStudySubjects().get(0).getStudySubjectId());
+
+        assertNull(this.odm.findUniqueOdmOrNoneForSubject("SS_3"));
+    }
+
+    @Test
+    public void subject_index_follows_changes_of_subjects() {
+        assertNull(this.odm.findUniqueOdmOrNoneForSubject("SS_3"));
+
+        // Added directly to the list
+        this.odm.getClinicalDataList().get(0).getStudySubjects().add(studySubject("SS_3", "SS-003"));
+        assertEquals(1, this.odm.findUniqueOdmOrNoneForSubject("SS_3").getClinicalDataList().get(0).getStudySubjects().size());
+
+        // Identifier changed in place
+        this.odm.getClinicalDataList().get(0).getStudySubjects().get(0).setStudySubjectId("SS-010");
+        assertNull(this.odm.findUniqueOdmOrNoneForSubject("SS-001"));
+    }
+
+    // endregion
+
+    private static ItemDefinition itemDefinition(String oid) {
+        ItemDefinition itemDefinition = new ItemDefinition();
+        itemDefinition.setOid(oid);
+
+        return itemDefinition;
+    }
+
+    private static StudySubject studySubject(String subjectKey, String studySubjectId) {
+        StudySubject studySubject = new StudySubject();
+        studySubject.setSubjectKey(subjectKey);
+        studySubject.setStudySubjectId(studySubjectId);
+
+        return studySubject;
+    }
+
+}
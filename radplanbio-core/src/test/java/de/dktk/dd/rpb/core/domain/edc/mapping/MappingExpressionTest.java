@@ -0,0 +1,127 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc.mapping;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappingExpressionTest {
+
+    // region compile
+
+    @Test
+    public void legacy_calculation_string_is_applied_to_source_value() throws ParseException {
+        assertEquals("25.4", MappingExpression.compile("* 2.54").evaluate("10", null));
+        assertEquals("7", MappingExpression.compile("- 3").evaluate("10", null));
+        assertEquals("10", MappingExpression.compile("+ 0").evaluate("10", null));
+    }
+
+    @Test
+    public void leading_minus_with_operand_is_negation() throws ParseException {
+        assertEquals("-4", MappingExpression.compile("-2 ^ 2").evaluate("5", null));
+        assertEquals("-3", MappingExpression.compile("-3").evaluate("10", null));
+        assertEquals("-5", MappingExpression.compile("-x").evaluate("5", null));
+        assertEquals("-6", MappingExpression.compile("-(value + 1)").evaluate("5", null));
+        assertEquals("-10", MappingExpression.compile("- 2 * x").evaluate("5", null));
+    }
+
+    @Test(expected = ParseException.class)
+    public void leading_operator_of_longer_expression_is_rejected() throws ParseException {
+        MappingExpression.compile("* 2 + 1");
+    }
+
+    @Test
+    public void operators_follow_precedence_and_parentheses() throws ParseException {
+        assertEquals("14", MappingExpression.compile("2 + 3 * 4").evaluate("0", null));
+        assertEquals("20", MappingExpression.compile("(2 + 3) * 4").evaluate("0", null));
+        assertEquals("1", MappingExpression.compile("10 - 5 - 4").evaluate("0", null));
+        assertEquals("512", MappingExpression.compile("2 ^ 3 ^ 2").evaluate("0", null));
+        assertEquals("-4", MappingExpression.compile("-2 ^ 2").evaluate("0", null));
+        assertEquals("0.5", MappingExpression.compile("2 ^ -1").evaluate("0", null));
+        assertEquals("-5", MappingExpression.compile("x * -1").evaluate("5", null));
+    }
+
+    @Test(expected = ParseException.class)
+    public void missing_parenthesis_is_rejected() throws ParseException {
+        MappingExpression.compile("(value + 1");
+    }
+
+    @Test(expected = ParseException.class)
+    public void unknown_identifier_is_rejected() throws ParseException {
+        MappingExpression.compile("value * factor");
+    }
+
+    @Test(expected = ParseException.class)
+    public void incompatible_units_are_rejected() throws ParseException {
+        MappingExpression.compile("convert(value, 'kg', 'cm')");
+    }
+
+    // endregion
+
+    // region evaluate
+
+    @Test
+    public void division_with_non_terminating_result_is_rounded() throws ParseException {
+        assertEquals("3.333333333333333", MappingExpression.compile("/ 3").evaluate("10", null));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void division_by_zero_fails() throws ParseException {
+        MappingExpression.compile("/ 0").evaluate("10", null);
+    }
+
+    @Test
+    public void functions_are_evaluated() throws ParseException {
+        assertEquals("3.14", MappingExpression.compile("round(value, 2)").evaluate("3.14159", null));
+        assertEquals("2", MappingExpression.compile("max(abs(value), 1, min(2, 3))").evaluate("-1.5", null));
+    }
+
+    @Test
+    public void units_are_converted() throws ParseException {
+        assertEquals("100", MappingExpression.compile("convert(value, 'F', 'C')").evaluate("212", null));
+        assertEquals("254", MappingExpression.compile("convert(value, 'in', 'mm')").evaluate("10", null));
+        assertEquals("1.5", MappingExpression.compile("convert(value, 'g', 'kg')").evaluate("1500", null));
+    }
+
+    @Test
+    public void other_source_columns_are_referenced_by_header() throws ParseException {
+        Map<String, String> row = new HashMap<>();
+        row.put("Height cm", "180");
+
+        MappingExpression bmi = MappingExpression.compile("round(value / ([Height cm] / 100) ^ 2, 1)");
+
+        assertEquals("24.7", bmi.evaluate("80", row::get));
+        assertEquals(new BigDecimal("24.7"), bmi.evaluate(new BigDecimal("80"), row::get));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missing_column_value_fails() throws ParseException {
+        MappingExpression.compile("value + [Other]").evaluate("1", new HashMap<String, String>()::get);
+    }
+
+    // endregion
+
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.edc.mapping;
+
+import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
+import de.dktk.dd.rpb.core.util.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappingRecordTest {
+
+    private MappingRecord mappingRecord;
+    private ItemDefinition textDefinition;
+
+    @Before
+    public void setUp() {
+        this.mappingRecord = new MappingRecord();
+        this.mappingRecord.setDefaultValue("default");
+
+        this.textDefinition = new ItemDefinition();
+        this.textDefinition.setDataType(Constants.OC_STRING);
+    }
+
+    //region process
+
+    @Test
+    public void invalid_calculation_string_leaves_source_value_unchanged() {
+        this.mappingRecord.setCalculationString("2 +");
+
+        assertEquals("not a number", this.mappingRecord.process("not a number", this.textDefinition, null));
+        assertEquals("1.50", this.mappingRecord.process("1.50", this.textDefinition, null));
+    }
+
+    @Test
+    public void valid_calculation_string_is_applied_after_invalid_one_was_replaced() {
+        this.mappingRecord.setCalculationString("2 +");
+        this.mappingRecord.process("1.50", this.textDefinition, null);
+
+        this.mappingRecord.setCalculationString("value * 2");
+
+        assertEquals("3", this.mappingRecord.process("1.50", this.textDefinition, null));
+    }
+
+    @Test
+    public void failed_calculation_results_in_default_value() {
+        this.mappingRecord.setCalculationString("value * 2");
+
+        assertEquals("default", this.mappingRecord.process("not a number", this.textDefinition, null));
+    }
+
+    //endregion
+
+}
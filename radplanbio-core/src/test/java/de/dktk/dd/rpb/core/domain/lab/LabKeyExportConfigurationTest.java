@@ -0,0 +1,67 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.lab;
+
+import de.dktk.dd.rpb.core.domain.edc.EnumCollectSubjectDob;
+import de.dktk.dd.rpb.core.domain.edc.StudyParameterConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LabKeyExportConfigurationTest {
+
+    private StudyParameterConfiguration studyConfiguration;
+
+    @Before
+    public void setUp() {
+        this.studyConfiguration = new StudyParameterConfiguration();
+        this.studyConfiguration.setCollectSubjectDob(EnumCollectSubjectDob.NO);
+    }
+
+    @Test
+    public void upload_is_streamed_in_parallel_by_default() {
+        LabKeyExportConfiguration configuration = new LabKeyExportConfiguration(this.studyConfiguration);
+
+        assertTrue(configuration.isStreamingUpload());
+        assertEquals(4, configuration.getUploadThreads());
+    }
+
+    @Test
+    public void upload_settings_are_taken_from_study_configuration() {
+        this.studyConfiguration.setLabKeyStreamingUpload(Boolean.FALSE);
+        this.studyConfiguration.setLabKeyUploadThreads(1);
+
+        LabKeyExportConfiguration configuration = new LabKeyExportConfiguration(this.studyConfiguration);
+
+        assertFalse(configuration.isStreamingUpload());
+        assertEquals(1, configuration.getUploadThreads());
+    }
+
+    @Test
+    public void invalid_number_of_upload_threads_keeps_default() {
+        this.studyConfiguration.setLabKeyUploadThreads(0);
+
+        assertEquals(4, new LabKeyExportConfiguration(this.studyConfiguration).getUploadThreads());
+    }
+
+}
@@ -0,0 +1,258 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DicomRtContourDataTest {
+
+    private static final double delta = 0.000001;
+
+    //region Builder
+
+    @Test
+    public void contours_are_grouped_into_planes_sorted_by_z() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 6.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 3.0))
+                .addContour("CLOSED_PLANAR", square(20, 20, 5, 6.0))
+                .build();
+
+        assertEquals(3, data.getContourCount());
+        assertEquals(2, data.getPlaneCount());
+        assertEquals(3.0, data.getPlaneZ(0), delta);
+        assertEquals(6.0, data.getPlaneZ(1), delta);
+        assertEquals(2, data.getPlaneContourEnd(1) - data.getPlaneContourStart(1));
+        assertEquals(1, data.findPlane(6.0));
+        assertEquals(-1, data.findPlane(4.5));
+    }
+
+    @Test
+    public void contours_keep_dicom_order_within_plane() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 3.0))
+                .addContour("CLOSED_PLANAR", square(20, 20, 5, 3.0))
+                .build();
+
+        assertEquals(0.0, data.getX(0, 0), delta);
+        assertEquals(20.0, data.getX(1, 0), delta);
+        assertEquals(4, data.getPointCount(1));
+    }
+
+    @Test
+    public void invalid_contour_data_is_skipped() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("POINT", null)
+                .addContour("POINT", new double[] { 1.0, 2.0 })
+                .build();
+
+        assertEquals(0, data.getContourCount());
+        assertEquals(0, data.getPlaneCount());
+        assertEquals(0.0, data.getThickness(), delta);
+    }
+
+    //endregion
+
+    //region Geometry
+
+    @Test
+    public void thickness_is_minimal_plane_distance() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 3.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 5.0))
+                .build();
+
+        assertEquals(2.0, data.getThickness(), delta);
+    }
+
+    @Test
+    public void area_of_square_contour() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .build();
+
+        assertEquals(100.0, data.getArea(0), delta);
+    }
+
+    @Test
+    public void contour_inside_of_other_contour_is_detected() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(2, 2, 2, 0.0))
+                .addContour("CLOSED_PLANAR", square(20, 20, 2, 0.0))
+                .build();
+
+        assertTrue(data.containsContour(0, 1));
+        assertFalse(data.containsContour(0, 2));
+    }
+
+    @Test
+    public void structure_volume_is_calculated_from_packed_planes() {
+        DicomRtStructure structure = new DicomRtStructure();
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 2.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 4.0))
+                .build();
+        structure.setContourData(data);
+        structure.setThickness(data.getThickness());
+
+        // (0.5 + 1 + 0.5) * 100 mm^2 * 2 mm = 400 mm^3
+        assertEquals(0.4, structure.getVolume(), delta);
+        assertEquals(3, structure.getPlanes().size());
+    }
+
+    @Test
+    public void structure_volume_subtracts_holes_and_adds_islands_inside_of_holes() {
+        DicomRtStructure structure = new DicomRtStructure();
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(4, 4, 2, 0.0))
+                .addContour("CLOSED_PLANAR", square(2, 2, 6, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 2.0))
+                .build();
+        structure.setContourData(data);
+        structure.setThickness(data.getThickness());
+
+        // Plane 0: (100 - 36 + 4) mm^2, plane 2: 100 mm^2, both with half of 2 mm thickness
+        assertEquals(0.168, structure.getVolume(), delta);
+    }
+
+    //endregion
+
+    //region Spatial queries
+
+    @Test
+    public void bounding_boxes_of_contours_and_planes_are_precomputed() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(20, -5, 2, 0.0))
+                .build();
+
+        assertEquals(20.0, data.getMinX(1), delta);
+        assertEquals(-5.0, data.getMinY(1), delta);
+        assertEquals(22.0, data.getMaxX(1), delta);
+        assertEquals(-3.0, data.getMaxY(1), delta);
+        assertEquals(0.0, data.getPlaneMinX(0), delta);
+        assertEquals(-5.0, data.getPlaneMinY(0), delta);
+        assertEquals(22.0, data.getPlaneMaxX(0), delta);
+        assertEquals(10.0, data.getPlaneMaxY(0), delta);
+    }
+
+    @Test
+    public void nesting_depth_distinguishes_holes_and_islands() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(2, 2, 6, 0.0))
+                .addContour("CLOSED_PLANAR", square(4, 4, 2, 0.0))
+                .addContour("CLOSED_PLANAR", square(20, 20, 2, 0.0))
+                .build();
+
+        assertEquals(0, data.getNestingDepth(0));
+        assertEquals(1, data.getNestingDepth(1));
+        assertEquals(2, data.getNestingDepth(2));
+        assertEquals(0, data.getNestingDepth(3));
+        assertTrue(data.isHole(1));
+        assertFalse(data.isHole(2));
+        assertFalse(data.isHole(3));
+    }
+
+    @Test
+    public void contour_with_point_inside_but_larger_bounds_is_not_contained() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(5, 5, 10, 0.0))
+                .build();
+
+        assertFalse(data.containsContour(0, 1));
+        assertFalse(data.containsContour(1, 0));
+    }
+
+    @Test
+    public void point_query_uses_plane_and_respects_holes() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(2, 2, 6, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 2.0))
+                .build();
+
+        assertTrue(data.containsPoint(1.0, 1.0, 0.0));
+        assertFalse(data.containsPoint(5.0, 5.0, 0.0));
+        assertTrue(data.containsPoint(5.0, 5.0, 2.0));
+        assertFalse(data.containsPoint(5.0, 5.0, 1.0));
+        assertFalse(data.containsPoint(15.0, 5.0, 2.0));
+    }
+
+    @Test
+    public void structures_overlap_only_on_common_planes() {
+        DicomRtContourData data = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(0, 0, 10, 2.0))
+                .build();
+        DicomRtContourData overlapping = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(5, 5, 10, 2.0))
+                .addContour("CLOSED_PLANAR", square(5, 5, 10, 4.0))
+                .addContour("CLOSED_PLANAR", square(5, 5, 10, 6.0))
+                .build();
+        DicomRtContourData shifted = new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(5, 5, 10, 1.0))
+                .addContour("CLOSED_PLANAR", square(20, 20, 10, 2.0))
+                .build();
+
+        assertTrue(data.boundsOverlap(overlapping));
+        assertTrue(overlapping.boundsOverlap(data));
+        assertFalse(data.boundsOverlap(shifted));
+    }
+
+    @Test
+    public void legacy_contour_uses_its_bounding_box() {
+        DicomRtStructure structure = new DicomRtStructure();
+        structure.setContourData(new DicomRtContourData.Builder()
+                .addContour("CLOSED_PLANAR", square(10, 10, 10, 0.0))
+                .addContour("CLOSED_PLANAR", square(12, 12, 2, 0.0))
+                .addContour("CLOSED_PLANAR", square(30, 12, 2, 0.0))
+                .build());
+        List<DicomRtContour> contours = structure.getPlanes().get(0.0);
+
+        assertArrayEquals(new double[] { 10.0, 10.0, 20.0, 20.0 }, contours.get(0).getBounds(), delta);
+        assertTrue(contours.get(0).containsContour(contours.get(1)));
+        assertFalse(contours.get(0).containsContour(contours.get(2)));
+    }
+
+    //endregion
+
+    private static double[] square(double x, double y, double size, double z) {
+        return new double[] {
+                x, y, z,
+                x + size, y, z,
+                x + size, y + size, z,
+                x, y + size, z
+        };
+    }
+
+}
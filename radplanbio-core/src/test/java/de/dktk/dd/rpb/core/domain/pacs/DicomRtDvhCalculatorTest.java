@@ -0,0 +1,206 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DicomRtDvhCalculatorTest {
+
+    private static final double delta = 0.000001;
+
+    //region Calculation
+
+    @Test
+    public void uniform_dose_inside_square_structure() {
+        DicomRtDoseGrid grid = grid(20, 11, (frame, row, column) -> 2.0f);
+        DicomRtStructure structure = structure(1, 2.0, 5.0, square(0, 0, 10));
+
+        DicomRtDvh dvh = new DicomRtDvhCalculator().calculate(structure, grid);
+
+        // 10 x 10 voxels of 1 mm^2, 4 planes of 1 mm with half thickness for the first and last plane
+        assertEquals(0.3, dvh.getTotalVolume(), delta);
+        assertEquals(2.0, dvh.getDvhMinimumDose(), delta);
+        assertEquals(2.0, dvh.getDvhMaximumDose(), delta);
+        assertEquals(2.0, dvh.getDvhMeanDose(), delta);
+        assertEquals(1, dvh.getReferencedRoiNumber());
+        assertEquals("CUMULATIVE", dvh.getType());
+        assertEquals(DicomRtDvh.DVHSOURCE.RPB_CALCUALTED, dvh.getSource());
+    }
+
+    @Test
+    public void inner_contour_of_plane_is_a_hole() {
+        DicomRtDoseGrid grid = grid(20, 11, (frame, row, column) -> 1.0f);
+        DicomRtStructure structure = structure(1, 2.0, 3.0, square(0, 0, 10), square(2, 2, 4));
+
+        DicomRtDvh dvh = new DicomRtDvhCalculator().calculate(structure, grid);
+
+        assertEquals((100 - 16) * 2 * 0.5 / 1000.0, dvh.getTotalVolume(), delta);
+    }
+
+    @Test
+    public void dose_gradient_gives_dose_and_volume_metrics() {
+        DicomRtDoseGrid grid = grid(20, 11, (frame, row, column) -> column * 0.1f);
+        DicomRtStructure structure = structure(1, 2.0, 5.0, square(0, 0, 10));
+
+        DicomRtDvh dvh = new DicomRtDvhCalculator().calculate(structure, grid);
+
+        assertEquals(0.0, dvh.getDvhMinimumDose(), delta);
+        assertEquals(0.9, dvh.getDvhMaximumDose(), 0.0001);
+        assertEquals(0.45, dvh.getDvhMeanDose(), 0.0001);
+        assertEquals(100.0, dvh.getVolumePercentAtDose(0.0), delta);
+        assertEquals(50.0, dvh.getVolumePercentAtDose(0.5), 1.0);
+        assertEquals(0.5, dvh.getDoseAtVolumePercent(50.0), 0.02);
+        assertEquals(0.9, dvh.getDoseAtVolumePercent(10.0), 0.02);
+    }
+
+    @Test
+    public void plane_dose_is_interpolated_between_frames() {
+        // Frames at z = 0, 1, 2, ... the plane at z = 2.5 lies between two frames
+        DicomRtDoseGrid grid = grid(20, 11, (frame, row, column) -> frame * 1.0f);
+        DicomRtStructure structure = structure(1, 2.5, 2.5, square(0, 0, 10));
+
+        DicomRtDvh dvh = new DicomRtDvhCalculator().calculate(structure, grid);
+
+        assertEquals(2.5, dvh.getDvhMeanDose(), 0.0001);
+    }
+
+    @Test
+    public void structure_outside_of_dose_grid_has_no_dvh() {
+        DicomRtDoseGrid grid = grid(20, 11, (frame, row, column) -> 1.0f);
+        DicomRtStructure structure = structure(1, 20.0, 22.0, square(0, 0, 10));
+
+        assertNull(new DicomRtDvhCalculator().calculate(structure, grid));
+    }
+
+    @Test
+    public void parallel_calculation_of_structure_set_matches_sequential() {
+        DicomRtDoseGrid grid = grid(64, 40, (frame, row, column) -> (frame + row + column) * 0.05f);
+
+        DicomRtStructureSet structureSet = new DicomRtStructureSet();
+        structureSet.put(3, new DicomRtStructureLayer(structure(3, 1.0, 38.0, square(10, 10, 30))));
+        structureSet.put(1, new DicomRtStructureLayer(structure(1, 5.0, 20.0, square(0, 0, 64), square(20, 20, 10))));
+        structureSet.put(2, new DicomRtStructureLayer(structure(2, 50.0, 60.0, square(0, 0, 10))));
+
+        List<DicomRtDvh> sequential = new DicomRtDvhCalculator(new ForkJoinPool(1), 0.01).calculate(structureSet, grid);
+        List<DicomRtDvh> parallel = new DicomRtDvhCalculator(new ForkJoinPool(4), 0.01).calculate(structureSet, grid);
+
+        // Structure 2 lies outside of the grid
+        assertEquals(2, parallel.size());
+        assertEquals(1, parallel.get(0).getReferencedRoiNumber());
+        assertEquals(3, parallel.get(1).getReferencedRoiNumber());
+        for (int i = 0; i < parallel.size(); i++) {
+            assertArrayEquals(sequential.get(i).getDvhData(), parallel.get(i).getDvhData(), 0.0000001);
+            assertEquals(sequential.get(i).getDvhMeanDose(), parallel.get(i).getDvhMeanDose(), 0.0000001);
+        }
+    }
+
+    //endregion
+
+    //region DVH data
+
+    @Test
+    public void differential_dvh_is_converted_to_cumulative() {
+        double[] differential = {1.0, 2.0, 1.0, 3.0, 1.0, 5.0};
+
+        assertArrayEquals(new double[]{1.0, 10.0, 1.0, 8.0, 1.0, 5.0}, DicomRtDvh.toCumulative(differential), delta);
+    }
+
+    @Test
+    public void metrics_of_provided_cumulative_dvh_use_dose_scaling() {
+        DicomRtDvh dvh = new DicomRtDvh();
+        dvh.setDvhDoseScaling(2.0);
+        dvh.setDvhData(new double[]{1.0, 10.0, 1.0, 8.0, 1.0, 5.0});
+
+        assertEquals(10.0, dvh.getTotalVolume(), delta);
+        assertEquals(8.0, dvh.getVolumeAtDose(2.0), delta);
+        assertEquals(50.0, dvh.getVolumePercentAtDose(4.0), delta);
+        assertEquals(4.0, dvh.getDoseAtVolumePercent(50.0), delta);
+        assertEquals(0.0, dvh.getVolumeAtDose(7.0), delta);
+    }
+
+    //endregion
+
+    //region Helpers
+
+    private interface DoseFunction {
+        float dose(int frame, int row, int column);
+    }
+
+    /**
+     * Grid of 1 mm voxels with first voxel centre in origin and frames at z = 0, 1, 2, ...
+     */
+    private static DicomRtDoseGrid grid(int size, int frames, DoseFunction function) {
+        double[] frameZ = new double[frames];
+        float[] dose = new float[size * size * frames];
+        for (int f = 0; f < frames; f++) {
+            frameZ[f] = f;
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < size; c++) {
+                    dose[(f * size + r) * size + c] = function.dose(f, r, c);
+                }
+            }
+        }
+
+        return new DicomRtDoseGrid(size, size, 0.0, 0.0, 1.0, 1.0, frameZ, dose);
+    }
+
+    /**
+     * Structure with the same contours on planes from z to z (1 mm apart)
+     */
+    private static DicomRtStructure structure(int roiNumber, double fromZ, double toZ, double[]... contours) {
+        DicomRtContourData.Builder builder = new DicomRtContourData.Builder();
+        for (double z = fromZ; z <= toZ; z += 1.0) {
+            for (double[] contour : contours) {
+                double[] points = Arrays.copyOf(contour, contour.length);
+                for (int i = 2; i < points.length; i += 3) {
+                    points[i] = z;
+                }
+                builder.addContour("CLOSED_PLANAR", points);
+            }
+        }
+
+        DicomRtStructure structure = new DicomRtStructure();
+        structure.setRoiNumber(roiNumber);
+        structure.setContourData(builder.build());
+        structure.setThickness(structure.getContourData().getThickness());
+
+        return structure;
+    }
+
+    private static double[] square(double x, double y, double size) {
+        return new double[]{
+                x, y, 0,
+                x + size, y, 0,
+                x + size, y + size, 0,
+                x, y + size, 0
+        };
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.domain.pacs;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RtTreatmentCaseTest {
+
+    private RtTreatmentCase tc;
+    private DicomRtStructureSet firstStructureSet;
+    private DicomRtStructureSet secondStructureSet;
+
+    @Before
+    public void setUp() {
+        this.firstStructureSet = structureSet("1.2.3.1");
+        this.secondStructureSet = structureSet("1.2.3.2");
+
+        this.tc = new RtTreatmentCase();
+        this.tc.setRtStructureSets(new ArrayList<>(Arrays.asList(this.firstStructureSet, this.secondStructureSet)));
+        this.tc.setRtPlans(new ArrayList<>(Arrays.asList(plan("1.2.4.1", "1.2.3.2"), plan("1.2.4.2", "1.2.3.1"))));
+    }
+
+    //region findReferencedStructureSet
+
+    @Test
+    public void findReferencedStructureSet_follows_plan_reference_of_dose() {
+        assertSame(this.secondStructureSet, this.tc.findReferencedStructureSet(dose("1.2.4.1")));
+        assertSame(this.firstStructureSet, this.tc.findReferencedStructureSet(dose("1.2.4.2")));
+    }
+
+    @Test
+    public void findReferencedStructureSet_returns_null_when_plan_is_not_in_treatment_case() {
+        assertNull(this.tc.findReferencedStructureSet(dose("1.2.4.9")));
+        assertNull(this.tc.findReferencedStructureSet(dose(null)));
+    }
+
+    @Test
+    public void findReferencedStructureSet_returns_null_when_structure_set_is_not_in_treatment_case() {
+        this.tc.getRtPlans().add(plan("1.2.4.3", "1.2.3.9"));
+
+        assertNull(this.tc.findReferencedStructureSet(dose("1.2.4.3")));
+    }
+
+    //endregion
+
+    //region Private
+
+    private static DicomRtStructureSet structureSet(String sopInstanceUid) {
+        DicomRtStructureSet structureSet = new DicomRtStructureSet();
+        structureSet.setSopInstanceUid(sopInstanceUid);
+        return structureSet;
+    }
+
+    private static DicomSeriesRtPlan plan(String sopInstanceUid, String structureSetUid) {
+        DicomSeriesRtPlan plan = new DicomSeriesRtPlan();
+        plan.setSopInstanceUid(sopInstanceUid);
+        plan.setReferencedStructureSetUid(structureSetUid);
+        return plan;
+    }
+
+    private static DicomSeriesRtDose dose(String planUid) {
+        DicomSeriesRtDose dose = new DicomSeriesRtDose();
+        dose.setReferencedRtPlanUid(planUid);
+        return dose;
+    }
+
+    //endregion
+
+}
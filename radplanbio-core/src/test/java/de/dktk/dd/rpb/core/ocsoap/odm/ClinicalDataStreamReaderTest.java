@@ -0,0 +1,84 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.ocsoap.odm;
+
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ClinicalDataStreamReaderTest {
+
+    private static final String odm =
+            "<ODM xmlns=\"http://www.cdisc.org/ns/odm/v1.3\" xmlns:OpenClinica=\"http://www.openclinica.org/ns/odm_ext_v130/v3.1\">" +
+            "<Study OID=\"S_TEST\"><MetaDataVersion OID=\"v1.0.0\"/></Study>" +
+            "<ClinicalData StudyOID=\"S_TEST\" MetaDataVersionOID=\"v1.0.0\">" +
+            "<SubjectData SubjectKey=\"SS_1\" OpenClinica:StudySubjectID=\"TEST-1\" OpenClinica:UniqueIdentifier=\"PID1\">" +
+            "<StudyEventData StudyEventOID=\"SE_BASELINE\"/>" +
+            "</SubjectData>" +
+            "<SubjectData SubjectKey=\"SS_2\" OpenClinica:StudySubjectID=\"TEST-2\"/>" +
+            "</ClinicalData>" +
+            "</ODM>";
+
+    @Test
+    public void subjects_are_handed_to_callback_in_document_order() throws JAXBException {
+        List<StudySubject> subjects = new ArrayList<>();
+
+        int count = ClinicalDataStreamReader.readSubjects(stream(odm), subjects::add);
+
+        assertEquals(2, count);
+        assertEquals("SS_1", subjects.get(0).getSubjectKey());
+        assertEquals("TEST-1", subjects.get(0).getStudySubjectId());
+        assertEquals("PID1", subjects.get(0).getPid());
+        assertEquals(1, subjects.get(0).getStudyEventDataList().size());
+        assertEquals("SE_BASELINE", subjects.get(0).getStudyEventDataList().get(0).getStudyEventOid());
+        assertEquals("SS_2", subjects.get(1).getSubjectKey());
+    }
+
+    @Test
+    public void document_without_clinical_data_has_no_subjects() throws JAXBException {
+        List<StudySubject> subjects = new ArrayList<>();
+
+        int count = ClinicalDataStreamReader.readSubjects(
+                stream("<ODM xmlns=\"http://www.cdisc.org/ns/odm/v1.3\"/>"),
+                subjects::add
+        );
+
+        assertEquals(0, count);
+        assertEquals(0, subjects.size());
+    }
+
+    @Test(expected = JAXBException.class)
+    public void malformed_document_throws() throws JAXBException {
+        ClinicalDataStreamReader.readSubjects(stream("<ODM><ClinicalData>"), subject -> { });
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
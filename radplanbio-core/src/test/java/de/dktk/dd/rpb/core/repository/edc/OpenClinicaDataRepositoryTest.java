@@ -0,0 +1,119 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.repository.edc;
+
+import de.dktk.dd.rpb.core.dao.edc.OpenClinicaDataDao;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.util.CacheUtil;
+import net.sf.ehcache.CacheManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class OpenClinicaDataRepositoryTest {
+
+    private static final String studyIdentifier = "S_TEST";
+
+    private CacheManager cacheManager;
+    private OpenClinicaDataDao daoMock;
+    private OpenClinicaDataRepository repository;
+
+    @Before
+    public void setUp() {
+        this.cacheManager = new CacheManager();
+        this.daoMock = mock(OpenClinicaDataDao.class);
+
+        this.repository = new OpenClinicaDataRepository();
+        this.repository.setOpenClinicaDataDao(this.daoMock);
+        this.repository.setCacheUtil(new CacheUtil(this.cacheManager));
+
+        when(this.daoMock.findStudySubjects(studyIdentifier)).thenReturn(subjects("SS-1", "SS-2"));
+    }
+
+    @After
+    public void tearDown() {
+        this.cacheManager.shutdown();
+    }
+
+    @Test
+    public void unchanged_study_is_answered_from_cache() {
+        when(this.daoMock.getStudySubjectsFingerprint(studyIdentifier)).thenReturn("2:2021-03-07:100|2:::0|0:::0|0:::0");
+
+        this.repository.findStudySubjectsByStudy(studyIdentifier);
+        List<StudySubject> result = this.repository.findStudySubjectsByStudy(studyIdentifier);
+
+        verify(this.daoMock, times(1)).findStudySubjects(studyIdentifier);
+        assertEquals(2, result.size());
+        assertEquals("SS-2", result.get(1).getStudySubjectId());
+
+        StudySubjectsCacheStatistics statistics = this.repository.getStudySubjectsCacheStatistics(studyIdentifier);
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(0.5, statistics.getHitRatio(), 0.001);
+    }
+
+    @Test
+    public void changed_study_is_reloaded() {
+        when(this.daoMock.getStudySubjectsFingerprint(studyIdentifier)).thenReturn("2:2021-03-07:100|2:::0|0:::0|0:::0", "3:2021-03-07:150|3:::0|0:::0|0:::0");
+
+        this.repository.findStudySubjectsByStudy(studyIdentifier);
+        this.repository.findStudySubjectsByStudy(studyIdentifier);
+
+        verify(this.daoMock, times(2)).findStudySubjects(studyIdentifier);
+        assertEquals(1, this.repository.getStudySubjectsCacheStatistics(studyIdentifier).getInvalidations());
+        assertEquals(0, this.repository.getStudySubjectsCacheStatistics(studyIdentifier).getHits());
+    }
+
+    @Test
+    public void cached_subjects_are_copied_for_each_caller() {
+        when(this.daoMock.getStudySubjectsFingerprint(studyIdentifier)).thenReturn("2:2021-03-07:100|2:::0|0:::0|0:::0");
+
+        List<StudySubject> first = this.repository.findStudySubjectsByStudy(studyIdentifier);
+        first.get(0).setPid("CHANGED");
+        first.clear();
+
+        List<StudySubject> second = this.repository.findStudySubjectsByStudy(studyIdentifier);
+
+        assertEquals(2, second.size());
+        assertEquals("PID-SS-1", second.get(0).getPid());
+    }
+
+    private static List<StudySubject> subjects(String... studySubjectIds) {
+        List<StudySubject> result = new ArrayList<>();
+        for (String studySubjectId : studySubjectIds) {
+            StudySubject subject = new StudySubject();
+            subject.setStudySubjectId(studySubjectId);
+            subject.setPid("PID-" + studySubjectId);
+            result.add(subject);
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service;
+
+import de.dktk.dd.rpb.core.domain.admin.AuditLog;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.powermock.reflect.Whitebox;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuditLogServiceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SessionFactory sessionFactoryMock;
+    private AuditLogService auditLogService;
+    private Session sessionMock;
+    private File journal;
+
+    @Before
+    public void setUp() throws IOException {
+        this.sessionFactoryMock = mock(SessionFactory.class);
+        this.sessionMock = mock(Session.class);
+        when(this.sessionFactoryMock.openSession()).thenReturn(this.sessionMock);
+        when(this.sessionMock.beginTransaction()).thenReturn(mock(Transaction.class));
+
+        this.journal = new File(this.folder.getRoot(), "audit-journal.log");
+        this.auditLogService = this.createAuditLogService();
+    }
+
+    private AuditLogService createAuditLogService() {
+        AuditLogService auditLogService = new AuditLogService();
+        Whitebox.setInternalState(auditLogService, "sessionFactory", this.sessionFactoryMock);
+        auditLogService.queueCapacity = 2;
+        auditLogService.flushInterval = 50;
+        auditLogService.journalFile = this.journal.getAbsolutePath();
+        return auditLogService;
+    }
+
+    //region Overflow
+
+    @Test
+    public void full_queue_drops_audit_log_with_drop_policy() {
+        this.auditLogService.overflowPolicy = AuditLogService.OverflowPolicy.DROP;
+        this.auditLogService.queue = new LinkedBlockingQueue<>(2);
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "3");
+
+        assertEquals(2, this.auditLogService.getQueueDepth());
+        assertEquals(1, this.auditLogService.getDroppedCount());
+        assertFalse(this.journal.exists());
+    }
+
+    @Test
+    public void full_queue_spills_audit_log_to_journal() throws IOException {
+        this.auditLogService.queue = new LinkedBlockingQueue<>(2);
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "3\twith tab");
+
+        assertEquals(0, this.auditLogService.getDroppedCount());
+        assertEquals(1, this.auditLogService.getSpilledCount());
+        assertEquals(1, Files.readAllLines(this.journal.toPath()).size());
+    }
+
+    //endregion
+
+    //region Persist
+
+    @Test
+    public void queued_audit_logs_are_inserted_in_batches_on_flush() {
+        this.auditLogService.queue = new LinkedBlockingQueue<>(10);
+        this.auditLogService.batchInsertSize = 2;
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "3");
+        this.auditLogService.flush();
+
+        verify(this.sessionMock, times(3)).save(any(AuditLog.class));
+        verify(this.sessionMock, times(2)).close();
+        assertEquals(3, this.auditLogService.getInsertedCount());
+        assertEquals(0, this.auditLogService.getQueueDepth());
+    }
+
+    @Test
+    public void spilled_audit_logs_are_replayed_on_start() throws IOException {
+        this.auditLogService.queue = new LinkedBlockingQueue<>(1);
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2\twith tab", "second");
+
+        this.auditLogService.init();
+        this.auditLogService.destroy();
+
+        ArgumentCaptor<AuditLog> captor = ArgumentCaptor.forClass(AuditLog.class);
+        verify(this.sessionMock, times(2)).save(captor.capture());
+        List<AuditLog> saved = captor.getAllValues();
+
+        assertEquals(2, this.auditLogService.getInsertedCount());
+        assertEquals("2\twith tab", saved.get(0).getStringAttribute1());
+        assertEquals("second", saved.get(0).getStringAttribute2());
+        assertEquals(AuditEvent.PACSDataDownload.name(), saved.get(0).getEvent());
+        assertFalse(this.journal.exists());
+    }
+
+    @Test
+    public void failed_insert_is_spilled_to_journal() throws IOException {
+        when(this.sessionMock.save(any(AuditLog.class))).thenThrow(new RuntimeException("database down"));
+        this.auditLogService.queue = new LinkedBlockingQueue<>(10);
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.flush();
+
+        assertEquals(0, this.auditLogService.getInsertedCount());
+        assertEquals(1, Files.readAllLines(this.journal.toPath()).size());
+    }
+
+    @Test
+    public void failed_insert_is_journaled_with_every_overflow_policy() throws IOException {
+        when(this.sessionMock.save(any(AuditLog.class))).thenThrow(new RuntimeException("database down"));
+        this.auditLogService.queue = new LinkedBlockingQueue<>(10);
+        this.auditLogService.overflowPolicy = AuditLogService.OverflowPolicy.DROP;
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2");
+        this.auditLogService.flush();
+
+        assertEquals(0, this.auditLogService.getDroppedCount());
+        assertEquals(2, Files.readAllLines(this.journal.toPath()).size());
+    }
+
+    //endregion
+
+    //region Journal
+
+    @Test
+    public void each_instance_spills_to_its_own_journal() throws IOException {
+        AuditLogService other = this.createAuditLogService();
+        this.auditLogService.queue = new LinkedBlockingQueue<>(1);
+        other.queue = new LinkedBlockingQueue<>(1);
+
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "1");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "2");
+        other.event(AuditEvent.PACSDataDownload, "3");
+        other.event(AuditEvent.PACSDataDownload, "4");
+        other.event(AuditEvent.PACSDataDownload, "5");
+
+        assertEquals(1, Files.readAllLines(this.journal.toPath()).size());
+        assertEquals(2, Files.readAllLines(new File(this.journal.getPath() + ".1").toPath()).size());
+    }
+
+    @Test
+    public void journal_of_stopped_instance_is_replayed_once_by_running_instance() throws IOException {
+        AuditLogService other = this.createAuditLogService();
+        other.queue = new LinkedBlockingQueue<>(1);
+        other.event(AuditEvent.PACSDataDownload, "1");
+        other.event(AuditEvent.PACSDataDownload, "2");
+        this.auditLogService.queue = new LinkedBlockingQueue<>(1);
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "3");
+        this.auditLogService.event(AuditEvent.PACSDataDownload, "4");
+
+        // Running instance does not replay journal which is owned by other running instance
+        this.auditLogService.init();
+        this.auditLogService.destroy();
+        verify(this.sessionMock, times(2)).save(any(AuditLog.class));
+
+        other.destroy();
+        AuditLogService restarted = this.createAuditLogService();
+        restarted.init();
+        restarted.destroy();
+
+        ArgumentCaptor<AuditLog> captor = ArgumentCaptor.forClass(AuditLog.class);
+        verify(this.sessionMock, times(4)).save(captor.capture());
+        assertEquals("2", captor.getAllValues().get(3).getStringAttribute1());
+        assertFalse(this.journal.exists());
+        assertFalse(new File(this.journal.getPath() + ".1").exists());
+    }
+
+    //endregion
+
+}
@@ -23,33 +23,50 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import de.dktk.dd.rpb.core.domain.edc.ItemData;
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
 import de.dktk.dd.rpb.core.domain.edc.Subject;
+import de.dktk.dd.rpb.core.domain.pacs.DicomRtDvh;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtDose;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtImage;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtPlan;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtStruct;
 import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
+import de.dktk.dd.rpb.core.service.support.PacsClientPool;
+import de.dktk.dd.rpb.core.service.support.PacsInstanceFileCache;
+import de.dktk.dd.rpb.core.service.support.PacsPatientLookupResult;
+import de.dktk.dd.rpb.core.util.CacheUtil;
+import net.sf.ehcache.Element;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.json.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -57,11 +74,14 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyNew;
 import static org.powermock.api.mockito.PowerMockito.when;
+import static org.powermock.api.mockito.PowerMockito.whenNew;
 
 @SuppressWarnings({"unchecked"})
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({ConquestService.class, Logger.class, LoggerFactory.class, Client.class})
+@PowerMockIgnore("javax.net.ssl.*")
+@PrepareForTest({ConquestService.class, PacsClientPool.class, Logger.class, LoggerFactory.class, Client.class})
 public class ConquestServiceTest {
     private ConquestService conquestService;
     private Logger logger;
@@ -77,7 +97,7 @@ public class ConquestServiceTest {
     }
 
     @Before
-    public void executedBeforeEach() {
+    public void executedBeforeEach() throws Exception {
         mockStatic(Logger.class);
         mockStatic(LoggerFactory.class);
         logger = mock(Logger.class);
@@ -89,12 +109,15 @@ public class ConquestServiceTest {
         responseMock = mock(ClientResponse.class);
 
 
-        when(Client.create()).thenReturn(clientMock);
+        whenNew(Client.class).withAnyArguments().thenReturn(clientMock);
         when(clientMock.resource(anyString())).thenReturn(webResourceMock);
         when(webResourceMock.get(any(Class.class))).thenReturn(responseMock);
         when(responseMock.getStatus()).thenReturn(200);
         when(responseMock.hasEntity()).thenReturn(true);
 
+        // clients are shared per PACS, make sure that each test gets the client mock
+        PacsClientPool.shutdown();
+
         conquestService = getConquestService();
 
     }
@@ -126,6 +149,31 @@ public class ConquestServiceTest {
         verify(clientMock).addFilter(any(HTTPBasicAuthFilter.class));
     }
 
+    @Test
+    public void client_is_shared_between_requests_to_same_pacs() throws Exception {
+        conquestService = getConquestServiceWithBasicAuth();
+        when(responseMock.getEntity(String.class)).thenReturn("{}");
+        conquestService.loadPatient("1");
+        getConquestServiceWithBasicAuth().loadPatient("2");
+
+        verifyNew(Client.class, times(1)).withArguments(any(), any());
+        verify(clientMock, times(1)).addFilter(any(HTTPBasicAuthFilter.class));
+    }
+
+    @Test
+    public void changed_credentials_do_not_reuse_client() throws Exception {
+        conquestService = getConquestServiceWithBasicAuth();
+        when(responseMock.getEntity(String.class)).thenReturn("{}");
+        conquestService.loadPatient("1");
+
+        ConquestService changedPassword = new ConquestService();
+        changedPassword.setupConnection(baseUrl, 1, user, "changedPassword");
+        changedPassword.loadPatient("2");
+
+        verifyNew(Client.class, times(2)).withArguments(any(), any());
+        verify(clientMock, times(2)).addFilter(any(HTTPBasicAuthFilter.class));
+    }
+
     // region loadPatient
 
     @Test
@@ -259,6 +307,66 @@ public class ConquestServiceTest {
         conquestService.loadPatients(studySubjectList);
     }
 
+    // endregion
+
+    // region loadPatientsInParallel
+
+    @Test
+    public void loadPatientsInParallel_merges_subjects_of_all_chunks() throws Exception {
+        String fileName = "./src/test/resources/test-data/PacsPatientResponse.json";
+        when(responseMock.getEntity(String.class)).thenReturn(getJsonFromFile(fileName).toString());
+        conquestService.setupConnection(baseUrl, 4);
+
+        List<StudySubject> studySubjectList = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            studySubjectList.add(getDummyStudySubject(Integer.toString(i)));
+        }
+
+        PacsPatientLookupResult result = conquestService.loadPatientsInParallel(studySubjectList);
+
+        verify(clientMock, times(3)).resource(anyString());
+        verify(clientMock).resource(getDummyRequestUrl(1, 15));
+        verify(clientMock).resource(getDummyRequestUrl(16, 30));
+        verify(clientMock).resource(getDummyRequestUrl(31, 40));
+        assertFalse(result.hasFailures());
+        assertEquals(3, result.getSubjects().size());
+    }
+
+    @Test
+    public void loadPatientsInParallel_reports_failed_chunk_and_keeps_others() throws Exception {
+        String fileName = "./src/test/resources/test-data/PacsPatientResponse.json";
+        when(responseMock.getEntity(String.class)).thenReturn(getJsonFromFile(fileName).toString());
+        conquestService.setupConnection(baseUrl, 2);
+
+        WebResource failingResourceMock = mock(WebResource.class);
+        ClientResponse failingResponseMock = mock(ClientResponse.class);
+        when(clientMock.resource(getDummyRequestUrl(16, 20))).thenReturn(failingResourceMock);
+        when(failingResourceMock.get(any(Class.class))).thenReturn(failingResponseMock);
+        when(failingResponseMock.getStatus()).thenReturn(500);
+        when(failingResponseMock.getStatusInfo()).thenReturn(ClientResponse.Status.INTERNAL_SERVER_ERROR);
+
+        List<StudySubject> studySubjectList = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            studySubjectList.add(getDummyStudySubject(Integer.toString(i)));
+        }
+
+        PacsPatientLookupResult result = conquestService.loadPatientsInParallel(studySubjectList);
+
+        assertTrue(result.hasFailures());
+        assertEquals(1, result.getFailedChunks().size());
+        assertEquals(5, result.getFailedPatientIds().size());
+        assertEquals("16", result.getFailedPatientIds().get(0));
+        assertEquals(1, result.getSubjects().size());
+    }
+
+    @Test
+    public void loadPatientsInParallel_handles_empty_subject_list() {
+        PacsPatientLookupResult result = conquestService.loadPatientsInParallel(new ArrayList<>());
+
+        assertFalse(result.hasFailures());
+        assertTrue(result.getSubjects().isEmpty());
+    }
+
 
     // endregion
 
@@ -401,6 +509,105 @@ public class ConquestServiceTest {
         assertEquals("RTSTRUCT StructureSetDate", "20140821", ((DicomSeriesRtStruct) series).getStructureSetDate());
     }
 
+    @Test
+    public void loadPatientStudy_uses_cached_pacs_response() {
+        String fileName = "./src/test/resources/test-data/PacsStudiesResponse.json";
+        String dicomStudyUid = "1.2.826.0.1.3680043.9.7275.0.1";
+        String queryUrl = baseUrl + "?mode=rpbjsondicomstudies&PatientID=1&StudyUID=" + dicomStudyUid;
+
+        Element cachedResponse = new Element(queryUrl, getJsonFromFile(fileName).toString());
+        CacheUtil cacheUtilMock = mock(CacheUtil.class);
+        when(cacheUtilMock.getPacsMetadataCacheElement(queryUrl)).thenReturn(cachedResponse);
+        conquestService.setCacheUtil(cacheUtilMock);
+
+        DicomStudy study = conquestService.loadPatientStudy("1", dicomStudyUid);
+
+        verify(clientMock, times(0)).resource(anyString());
+        assertEquals("StudyInstanceUID is equal to DicomStudyUid", dicomStudyUid, study.getStudyInstanceUID());
+        assertEquals("Series count - based on file content", 5, study.getStudySeries().size());
+    }
+
+    @Test
+    public void loadPatientStudy_caches_pacs_response() {
+        String fileName = "./src/test/resources/test-data/PacsStudiesResponse.json";
+        String dicomStudyUid = "1.2.826.0.1.3680043.9.7275.0.1";
+
+        JSONObject jsonObject = getJsonFromFile(fileName);
+        when(responseMock.getEntity(String.class)).thenReturn(jsonObject.toString());
+        CacheUtil cacheUtilMock = mock(CacheUtil.class);
+        conquestService.setCacheUtil(cacheUtilMock);
+
+        conquestService.loadPatientStudy("1", dicomStudyUid);
+
+        verify(cacheUtilMock).setPacsMetadataCacheElement(any(Element.class));
+    }
+
+    @Test
+    public void loadPatientStudies_returns_only_referenced_studies() {
+        String fileName = "./src/test/resources/test-data/PacsStudiesResponse.json";
+        String dicomStudyUid = "1.2.826.0.1.3680043.9.7275.0.1";
+
+        JSONObject jsonObject = getJsonFromFile(fileName);
+        when(responseMock.getEntity(String.class)).thenReturn(jsonObject.toString());
+        conquestService.setCacheUtil(mock(CacheUtil.class));
+
+        List<ItemData> referencedStudies = new ArrayList<>();
+        ItemData referencedStudy = new ItemData();
+        referencedStudy.setValue(dicomStudyUid);
+        referencedStudies.add(referencedStudy);
+        ItemData missingStudy = new ItemData();
+        missingStudy.setValue("1.2.3");
+        referencedStudies.add(missingStudy);
+
+        List<DicomStudy> studies = conquestService.loadPatientStudies("1", referencedStudies);
+
+        verify(clientMock, times(1)).resource(anyString());
+        assertEquals(1, studies.size());
+        assertEquals(dicomStudyUid, studies.get(0).getStudyInstanceUID());
+        assertEquals("Series count - based on file content", 5, studies.get(0).getStudySeries().size());
+    }
+
+    @Test
+    public void loadDicomRtPlan_uses_cached_rt_object() {
+        String sopInstanceUid = "1.2.3.4";
+        String key = PacsInstanceFileCache.createScope(baseUrl, null) + "/" + sopInstanceUid;
+        DicomSeriesRtPlan rtPlan = new DicomSeriesRtPlan();
+        rtPlan.setRtPlanLabel("Plan");
+        rtPlan.setRxDose(60.0f);
+
+        Element cachedPlan = new Element(key, rtPlan);
+        CacheUtil cacheUtilMock = mock(CacheUtil.class);
+        when(cacheUtilMock.getPacsRtObjectCacheElement(key)).thenReturn(cachedPlan);
+        conquestService.setCacheUtil(cacheUtilMock);
+
+        DicomSeriesRtPlan result = conquestService.loadDicomRtPlan("1.2", "1.2.3", sopInstanceUid);
+
+        verify(clientMock, times(0)).resource(anyString());
+        assertEquals("Plan", result.getRtPlanLabel());
+        assertEquals(60.0f, result.getRxDose(), 0.0f);
+    }
+
+    @Test
+    public void loadDicomRtDose_returns_copy_of_cached_rt_object() {
+        String sopInstanceUid = "1.2.3.4";
+        String key = PacsInstanceFileCache.createScope(baseUrl, null) + "/" + sopInstanceUid;
+        DicomSeriesRtDose rtDose = new DicomSeriesRtDose();
+        rtDose.setRtDvhs(new ArrayList<>());
+
+        Element cachedDose = new Element(key, rtDose);
+        CacheUtil cacheUtilMock = mock(CacheUtil.class);
+        when(cacheUtilMock.getPacsRtObjectCacheElement(key)).thenReturn(cachedDose);
+        conquestService.setCacheUtil(cacheUtilMock);
+
+        DicomSeriesRtDose result = conquestService.loadDicomRtDose("1.2", "1.2.3", sopInstanceUid);
+        result.getRtDvhs().add(new DicomRtDvh());
+        result.setDoseUnits("RELATIVE");
+
+        assertNotSame(rtDose, result);
+        assertEquals(0, rtDose.getRtDvhsCount());
+        assertEquals("", rtDose.getDoseUnits());
+    }
+
 // endregion
 
     // region addStudySeriesImages
@@ -540,6 +747,50 @@ public class ConquestServiceTest {
 
 // endregion
 
+// region loadWadoDicomStream
+
+    @Test
+    public void loadWadoDicomStream_serves_cached_instance_when_pacs_authorizes_it() throws Exception {
+        File directory = Files.createTempDirectory("wado").toFile();
+        PacsInstanceFileCache.configure(directory, 1024);
+        try {
+            cacheInstance("1.2.3");
+
+            InputStream in = conquestService.loadWadoDicomStream("1", "2", "1.2.3");
+
+            assertTrue(in instanceof FileInputStream);
+            in.close();
+            verify(clientMock).resource(baseUrl + "?mode=rpbfileexists&StudyUID=1&SeriesUID=2&SopUID=1.2.3");
+        } finally {
+            PacsInstanceFileCache.configure(null, 0);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    public void loadWadoDicomStream_does_not_serve_cached_instance_without_authorization() throws Exception {
+        File directory = Files.createTempDirectory("wado").toFile();
+        PacsInstanceFileCache.configure(directory, 1024);
+        try {
+            cacheInstance("1.2.3");
+            when(responseMock.getStatus()).thenReturn(401);
+
+            assertNull(conquestService.loadWadoDicomStream("1", "2", "1.2.3"));
+        } finally {
+            PacsInstanceFileCache.configure(null, 0);
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+// endregion
+
+    private void cacheInstance(String sopInstanceUid) throws Exception {
+        String scope = PacsInstanceFileCache.createScope(baseUrl, null);
+        InputStream in = PacsInstanceFileCache.cachingStream(scope, sopInstanceUid, new ByteArrayInputStream("DICM".getBytes()));
+        IOUtils.toByteArray(in);
+        in.close();
+    }
+
     private JSONObject getDummyPatient(String patientID, String patientBirthDate, JSONArray fakeStudies) {
         JSONObject fakePatient = new JSONObject();
         fakePatient.put("PatientID", patientID);
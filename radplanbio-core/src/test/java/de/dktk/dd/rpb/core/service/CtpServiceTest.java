@@ -9,17 +9,23 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.powermock.reflect.Whitebox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+
 import static de.dktk.dd.rpb.core.util.Constants.study0EdcCode;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.mock;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @SuppressWarnings("ConstantConditions")
@@ -257,4 +263,54 @@ public class CtpServiceTest {
         verify(webResourceMock).queryParam("value", studySubjectId);
     }
     //endregion
+
+    //region httpImportDicom
+
+    @Test
+    public void httpImportDicom_retries_server_errors() {
+        WebResource.Builder builderMock = mockImportBuilder();
+        when(responseMock.getStatus()).thenReturn(503, 200);
+        Whitebox.setInternalState(ctpService, "httpImportRetries", 2);
+
+        ctpService.setupConnection("http://fake.url:8080", "ab", "ab");
+        boolean success = ctpService.httpImportDicom(new File("instance.dcm"));
+        assertTrue(success);
+
+        verify(builderMock, times(2)).post(eq(ClientResponse.class), any(File.class));
+    }
+
+    @Test
+    public void httpImportDicom_does_not_retry_rejected_instance() {
+        WebResource.Builder builderMock = mockImportBuilder();
+        when(responseMock.getStatus()).thenReturn(400);
+        Whitebox.setInternalState(ctpService, "httpImportRetries", 2);
+
+        ctpService.setupConnection("http://fake.url:8080", "ab", "ab");
+        boolean success = ctpService.httpImportDicom(new File("instance.dcm"));
+        assertFalse(success);
+
+        verify(builderMock, times(1)).post(eq(ClientResponse.class), any(File.class));
+    }
+
+    @Test
+    public void httpImportDicom_reuses_client() {
+        mockImportBuilder();
+
+        ctpService.setupConnection("http://fake.url:8080", "ab", "ab");
+        ctpService.httpImportDicom(new File("first.dcm"));
+        ctpService.httpImportDicom(new File("second.dcm"));
+
+        verifyStatic(Client.class, times(1));
+        Client.create();
+    }
+
+    private WebResource.Builder mockImportBuilder() {
+        WebResource.Builder builderMock = mock(WebResource.Builder.class);
+        when(webResourceMock.accept(anyString())).thenReturn(builderMock);
+        when(builderMock.type(anyString())).thenReturn(builderMock);
+        when(builderMock.post(eq(ClientResponse.class), any())).thenReturn(responseMock);
+        return builderMock;
+    }
+
+    //endregion
 }
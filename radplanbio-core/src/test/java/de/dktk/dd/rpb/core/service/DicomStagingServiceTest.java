@@ -0,0 +1,153 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service;
+
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingJob;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DicomStagingServiceTest {
+
+    private static final String pacsUrl = "http://pacs/cgi-bin/dgate";
+    private static final String aet = "RPBCTPS_TEST";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DicomStagingService stagingService;
+    private IConquestService pacsServiceMock;
+
+    @Before
+    public void setUp() {
+        this.pacsServiceMock = mock(IConquestService.class);
+        when(this.pacsServiceMock.moveDicomSeries(anyString(), anyString(), anyString(), anyString())).thenReturn(true);
+        when(this.pacsServiceMock.moveDicomSopInstance(anyString(), anyString(), anyString(), anyString(), anyString())).thenReturn(true);
+
+        this.stagingService = new DicomStagingService() {
+            @Override
+            protected IConquestService createPacsService(String pacsBaseUrl) {
+                return pacsServiceMock;
+            }
+        };
+        this.stagingService.stagingThreads = 2;
+        this.stagingService.stagingRetries = 2;
+        this.stagingService.stagingRetryDelay = 1;
+        this.stagingService.stagingJobDir = this.folder.getRoot().getAbsolutePath();
+    }
+
+    @After
+    public void tearDown() {
+        this.stagingService.destroy();
+    }
+
+    @Test
+    public void submitted_job_moves_series_and_instances_in_background() throws InterruptedException {
+        DicomStagingJob job = new DicomStagingJob("user", pacsUrl, aet);
+        job.addTask(DicomStagingTask.series("PID", "1.2", "1.2.1"));
+        for (int i = 0; i < 10; i++) {
+            job.addTask(DicomStagingTask.instance("PID", "1.2", "1.2.2", "1.2.2." + i));
+        }
+
+        this.stagingService.submit(job);
+        awaitFinished(job);
+
+        verify(this.pacsServiceMock).moveDicomSeries("PID", "1.2", "1.2.1", aet);
+        verify(this.pacsServiceMock, times(10)).moveDicomSopInstance(anyString(), anyString(), anyString(), anyString(), anyString());
+        assertEquals(11, job.getDoneCount());
+        assertEquals(100, job.getProgress());
+        assertEquals(0, jobFiles().length);
+    }
+
+    @Test
+    public void failed_move_is_retried_and_reported() throws InterruptedException {
+        when(this.pacsServiceMock.moveDicomSopInstance("PID", "1.2", "1.2.2", "1.2.2.0", aet)).thenReturn(false);
+
+        DicomStagingJob job = new DicomStagingJob("user", pacsUrl, aet);
+        job.addTask(DicomStagingTask.instance("PID", "1.2", "1.2.2", "1.2.2.0"));
+        job.addTask(DicomStagingTask.instance("PID", "1.2", "1.2.2", "1.2.2.1"));
+
+        this.stagingService.submit(job);
+        awaitFinished(job);
+
+        verify(this.pacsServiceMock, times(3)).moveDicomSopInstance("PID", "1.2", "1.2.2", "1.2.2.0", aet);
+        assertEquals(1, job.getFailedCount());
+        assertEquals(1, job.getDoneCount());
+        assertEquals("1.2.2.0", job.getFailedTasks().get(0).getDicomSopInstanceUid());
+    }
+
+    @Test
+    public void persisted_job_is_resumed_on_start() throws IOException, InterruptedException {
+        DicomStagingJob job = new DicomStagingJob("user", pacsUrl, aet);
+        DicomStagingTask done = DicomStagingTask.series("PID", "1.2", "1.2.1");
+        done.setState(DicomStagingTask.State.DONE);
+        job.addTask(done);
+        job.addTask(DicomStagingTask.series("PID", "1.2", "1.2.3"));
+
+        File file = new File(this.folder.getRoot(), job.getId() + ".job");
+        try (OutputStream os = Files.newOutputStream(file.toPath());
+             ObjectOutputStream oos = new ObjectOutputStream(os)) {
+            oos.writeObject(job);
+        }
+
+        this.stagingService.init();
+
+        DicomStagingJob resumed = this.stagingService.getJob(job.getId());
+        assertNotNull(resumed);
+        awaitFinished(resumed);
+
+        verify(this.pacsServiceMock, never()).moveDicomSeries("PID", "1.2", "1.2.1", aet);
+        verify(this.pacsServiceMock).moveDicomSeries("PID", "1.2", "1.2.3", aet);
+        assertEquals(2, resumed.getDoneCount());
+        assertFalse(file.exists());
+        assertEquals(1, this.stagingService.getJobs("user").size());
+    }
+
+    private File[] jobFiles() {
+        return this.folder.getRoot().listFiles((dir, name) -> name.endsWith(".job"));
+    }
+
+    private static void awaitFinished(DicomStagingJob job) throws InterruptedException {
+        for (int i = 0; i < 500 && job.getFinished() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertNotNull("Job did not finish in time", job.getFinished());
+    }
+
+}
@@ -11,6 +11,7 @@ import de.dktk.dd.rpb.core.handler.lab.ILabKeyWebdavHandler;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 import org.slf4j.Logger;
@@ -27,6 +28,9 @@ import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -172,6 +176,30 @@ public class LabKeyServiceTest {
         verify(this.handlerMock, times(1)).uploadDataSet(eq("5002"), any(byte[].class));
     }
 
+    @Test
+    public void handleUpdate_streams_datasets_to_the_handler() throws Exception {
+        List<StudySubject> studySubjectList = new ArrayList<>();
+        when(this.labKeyExportConfiguration.isStreamingUpload()).thenReturn(true);
+
+        this.labkeyService.handleUpdate(this.handlerMock, studySubjectList, odm, this.labKeyExportConfiguration);
+
+        verify(this.handlerMock, times(1)).uploadDataSet(eq("5001"), any(ILabKeyWebdavHandler.DataSetWriter.class));
+        verify(this.handlerMock, times(1)).uploadDataSet(eq("5002"), any(ILabKeyWebdavHandler.DataSetWriter.class));
+        verify(this.handlerMock, never()).uploadDataSet(eq("5001"), any(byte[].class));
+    }
+
+    @Test
+    public void handleUpdate_uploads_datasets_in_parallel_before_study_load_file() throws Exception {
+        List<StudySubject> studySubjectList = new ArrayList<>();
+        when(this.labKeyExportConfiguration.getUploadThreads()).thenReturn(4);
+
+        this.labkeyService.handleUpdate(this.handlerMock, studySubjectList, odm, this.labKeyExportConfiguration);
+
+        InOrder inOrder = inOrder(this.handlerMock);
+        inOrder.verify(this.handlerMock, times(4)).uploadDataSet(anyString(), any(byte[].class));
+        inOrder.verify(this.handlerMock, times(1)).createStudyLoadFile();
+    }
+
     @Test
     public void handleUpdate_uploads_dataset_metadata_file() throws Exception {
         List<StudySubject> studySubjectList = new ArrayList<>();
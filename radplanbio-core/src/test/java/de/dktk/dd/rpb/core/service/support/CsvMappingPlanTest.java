@@ -0,0 +1,146 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import de.dktk.dd.rpb.core.domain.edc.EnumStudySubjectIdGeneration;
+import de.dktk.dd.rpb.core.domain.edc.ItemData;
+import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudyDetails;
+import de.dktk.dd.rpb.core.domain.edc.StudyParameterConfiguration;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappedCsvItem;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappedOdmItem;
+import de.dktk.dd.rpb.core.domain.edc.mapping.MappingRecord;
+import de.dktk.dd.rpb.core.util.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CsvMappingPlanTest {
+
+    private static final String[] header = {"PID", "Visit", " Weight ", "Unmapped"};
+
+    private Odm metadata;
+    private ItemDefinition weightDefinition;
+    private List<MappingRecord> mappingRecords;
+
+    @Before
+    public void setUp() {
+        StudyParameterConfiguration configuration = new StudyParameterConfiguration();
+        configuration.setStudySubjectIdGeneration(EnumStudySubjectIdGeneration.MANUAL);
+        StudyDetails details = new StudyDetails();
+        details.setStudyParameterConfiguration(configuration);
+
+        this.weightDefinition = new ItemDefinition();
+        this.weightDefinition.setDataType(Constants.OC_DECIMAL);
+
+        this.metadata = mock(Odm.class);
+        when(this.metadata.getStudyDetails()).thenReturn(details);
+        when(this.metadata.getItemDefinition(any(MappedOdmItem.class))).thenReturn(this.weightDefinition);
+
+        this.mappingRecords = new ArrayList<>();
+        this.mappingRecords.add(createMappingRecord("PID", new MappedOdmItem(Constants.SS_PERSONID), 1));
+        this.mappingRecords.add(createMappingRecord("Visit", new MappedOdmItem(Constants.SE_STARTDATE + "_SE_BASELINE"), 1));
+
+        MappedOdmItem weight = new MappedOdmItem("I_WEIGHT");
+        weight.setStudyEventOid("SE_BASELINE");
+        weight.setFormOid("F_VITALS");
+        weight.setItemGroupOid("IG_VITALS");
+        this.mappingRecords.add(createMappingRecord("Weight", weight, 1));
+    }
+
+    @Test
+    public void plan_resolves_mapping_records_and_metadata_once() throws ParseException {
+        CsvMappingPlan plan = new CsvMappingPlan(this.metadata, header, this.mappingRecords);
+
+        plan.mapRow(Arrays.asList("PID1", "01.02.2021", "70.5", "x"));
+        plan.mapRow(Arrays.asList("PID2", "02.02.2021", "80", "y"));
+
+        assertEquals(3, plan.getMappedColumnCount());
+        verify(this.metadata, times(1)).getItemDefinition(any(MappedOdmItem.class));
+    }
+
+    @Test
+    public void mapRow_populates_subject_attributes_and_data_fields() throws ParseException {
+        CsvMappingPlan plan = new CsvMappingPlan(this.metadata, header, this.mappingRecords);
+
+        StudySubject subject = plan.mapRow(Arrays.asList("PID1", "01.02.2021", "70.5", "x"));
+
+        assertEquals("PID1", subject.getPid());
+        assertEquals("PID1", subject.getPerson().getPid());
+        assertEquals(1, subject.getStudyEventDataList().size());
+        assertEquals("2021-02-01", subject.getStudyEventDataList().get(0).getStartDate());
+
+        ItemData itemData = subject.getStudyEventDataList().get(0)
+                .getFormDataList().get(0)
+                .getItemGroupDataList().get(0)
+                .getItemDataList().get(0);
+        assertEquals("I_WEIGHT", itemData.getItemOid());
+        assertEquals("70.5", itemData.getValue());
+    }
+
+    @Test
+    public void mapRow_skips_null_and_missing_values() throws ParseException {
+        CsvMappingPlan plan = new CsvMappingPlan(this.metadata, header, this.mappingRecords);
+
+        StudySubject subject = plan.mapRow(Arrays.asList(null, null, "70.5"));
+
+        assertNull(subject.getPid());
+        assertNull(subject.getStudyEventDataList().get(0).getStartDate());
+    }
+
+    @Test
+    public void mapRow_evaluates_calculation_with_other_columns() throws ParseException {
+        this.mappingRecords.get(2).setCalculationString("value * 2 + [Unmapped]");
+        CsvMappingPlan plan = new CsvMappingPlan(this.metadata, header, this.mappingRecords);
+
+        StudySubject subject = plan.mapRow(Arrays.asList("PID1", "01.02.2021", "70.5", "1"));
+
+        ItemData itemData = subject.getStudyEventDataList().get(0)
+                .getFormDataList().get(0)
+                .getItemGroupDataList().get(0)
+                .getItemDataList().get(0);
+        assertEquals("142", itemData.getValue());
+    }
+
+    private static MappingRecord createMappingRecord(String header, MappedOdmItem target, int priority) {
+        MappingRecord mappingRecord = new MappingRecord();
+        mappingRecord.setSource(new MappedCsvItem(header));
+        mappingRecord.setTarget(target);
+        mappingRecord.setPriority(priority);
+        mappingRecord.setDateFormatString("dd.MM.yyyy");
+
+        return mappingRecord;
+    }
+
+}
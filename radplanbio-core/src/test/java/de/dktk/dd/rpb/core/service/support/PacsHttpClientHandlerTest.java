@@ -0,0 +1,131 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.Configurable;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PacsHttpClientHandlerTest {
+
+    private CloseableHttpClient httpClient;
+    private CloseableHttpResponse httpResponse;
+    private TrackedInputStream content;
+    private Client client;
+
+    @Before
+    public void setUp() throws Exception {
+        this.content = new TrackedInputStream("0123456789".getBytes(StandardCharsets.UTF_8));
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(this.content);
+
+        this.httpResponse = mock(CloseableHttpResponse.class);
+        when(this.httpResponse.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        when(this.httpResponse.getAllHeaders()).thenReturn(new Header[0]);
+        when(this.httpResponse.getEntity()).thenReturn(entity);
+
+        this.httpClient = mock(CloseableHttpClient.class);
+        when(this.httpClient.execute(any(HttpUriRequest.class))).thenReturn(this.httpResponse);
+
+        this.client = new Client(new PacsHttpClientHandler(this.httpClient));
+    }
+
+    @Test
+    public void waiting_for_pooled_connection_is_limited_by_connect_timeout() throws Exception {
+        this.client.setConnectTimeout(500);
+        this.client.resource("http://pacs/").get(ClientResponse.class).close();
+
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(this.httpClient).execute(request.capture());
+        assertEquals(500, ((Configurable) request.getValue()).getConfig().getConnectionRequestTimeout());
+    }
+
+    @Test
+    public void stream_read_to_the_end_releases_connection_for_reuse() throws Exception {
+        ClientResponse response = this.client.resource("http://pacs/").get(ClientResponse.class);
+        assertEquals("0123456789", IOUtils.toString(response.getEntityInputStream(), StandardCharsets.UTF_8));
+        response.close();
+
+        assertTrue(this.content.closed);
+        verify(this.httpResponse, never()).close();
+    }
+
+    @Test
+    public void stream_closed_before_its_end_closes_response_without_reading_the_rest() throws Exception {
+        ClientResponse response = this.client.resource("http://pacs/").get(ClientResponse.class);
+        InputStream in = response.getEntityInputStream();
+        assertEquals('0', in.read());
+        in.close();
+
+        assertFalse(this.content.closed);
+        assertEquals(9, this.content.available());
+        verify(this.httpResponse).close();
+    }
+
+    @Test
+    public void request_entity_content_is_available_for_retries() throws Exception {
+        this.client.resource("http://pacs/").post(ClientResponse.class, "dicom").close();
+
+        ArgumentCaptor<HttpUriRequest> request = ArgumentCaptor.forClass(HttpUriRequest.class);
+        verify(this.httpClient).execute(request.capture());
+        InputStream requestContent = ((HttpEntityEnclosingRequest) request.getValue()).getEntity().getContent();
+        assertEquals("dicom", IOUtils.toString(requestContent, StandardCharsets.UTF_8));
+    }
+
+    private static class TrackedInputStream extends ByteArrayInputStream {
+
+        private boolean closed;
+
+        TrackedInputStream(byte[] buf) {
+            super(buf);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PacsInstanceFileCacheTest {
+
+    private static final byte[] content = "DICM-CONTENT".getBytes();
+    private static final String scope = PacsInstanceFileCache.createScope("http://pacs/dgate", "user");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = this.folder.newFolder("wado");
+        PacsInstanceFileCache.configure(this.directory, 1024);
+    }
+
+    @After
+    public void tearDown() {
+        PacsInstanceFileCache.configure(null, 0);
+    }
+
+    @Test
+    public void instance_is_cached_after_stream_is_consumed() throws IOException {
+        InputStream in = PacsInstanceFileCache.cachingStream(scope, "1.2.3", new ByteArrayInputStream(content));
+
+        assertNull(PacsInstanceFileCache.openFile(scope, "1.2.3"));
+        assertArrayEquals(content, IOUtils.toByteArray(in));
+        in.close();
+
+        FileInputStream cached = PacsInstanceFileCache.openFile(scope, "1.2.3");
+        assertNotNull(cached);
+        assertArrayEquals(content, IOUtils.toByteArray(cached));
+        cached.close();
+    }
+
+    @Test
+    public void partially_consumed_stream_is_not_cached() throws IOException {
+        InputStream in = PacsInstanceFileCache.cachingStream(scope, "1.2.3", new ByteArrayInputStream(content));
+        assertEquals(content[0], in.read());
+        in.close();
+
+        assertNull(PacsInstanceFileCache.openFile(scope, "1.2.3"));
+        assertEquals(0, new File(this.directory, scope).list().length);
+    }
+
+    @Test
+    public void least_recently_used_instance_is_evicted() throws IOException {
+        PacsInstanceFileCache.configure(this.directory, content.length * 2);
+
+        this.cache("1.1");
+        this.cache("1.2");
+        PacsInstanceFileCache.openFile(scope, "1.1").close();
+        this.cache("1.3");
+
+        assertEquals(2, PacsInstanceFileCache.getCount());
+        assertNotNull(PacsInstanceFileCache.openFile(scope, "1.1"));
+        assertNull(PacsInstanceFileCache.openFile(scope, "1.2"));
+        assertNotNull(PacsInstanceFileCache.openFile(scope, "1.3"));
+    }
+
+    @Test
+    public void existing_files_are_taken_over_on_configure() throws IOException {
+        this.cache("1.2.3");
+
+        PacsInstanceFileCache.configure(this.directory, 1024);
+
+        assertEquals(content.length, PacsInstanceFileCache.getSize());
+        assertNotNull(PacsInstanceFileCache.openFile(scope, "1.2.3"));
+    }
+
+    @Test
+    public void instance_is_not_served_for_other_pacs_or_account() throws IOException {
+        this.cache("1.2.3");
+
+        assertNull(PacsInstanceFileCache.openFile(PacsInstanceFileCache.createScope("http://pacs/dgate", "other"), "1.2.3"));
+        assertNull(PacsInstanceFileCache.openFile(PacsInstanceFileCache.createScope("http://other/dgate", "user"), "1.2.3"));
+        assertNotNull(PacsInstanceFileCache.openFile(scope, "1.2.3"));
+    }
+
+    @Test
+    public void files_cached_without_scope_are_removed_on_configure() throws IOException {
+        File legacy = new File(this.directory, "1.2.3.dcm");
+        assertTrue(legacy.createNewFile());
+
+        PacsInstanceFileCache.configure(this.directory, 1024);
+
+        assertFalse(legacy.exists());
+        assertEquals(0, PacsInstanceFileCache.getCount());
+    }
+
+    @Test
+    public void invalid_uid_is_not_cached() {
+        InputStream source = new ByteArrayInputStream(content);
+
+        assertSame(source, PacsInstanceFileCache.cachingStream(scope, "../1.2.3", source));
+    }
+
+    @Test
+    public void disabled_cache_passes_stream_through() {
+        PacsInstanceFileCache.configure(null, 0);
+        InputStream source = new ByteArrayInputStream(content);
+
+        assertSame(source, PacsInstanceFileCache.cachingStream(scope, "1.2.3", source));
+        assertNull(PacsInstanceFileCache.openFile(scope, "1.2.3"));
+    }
+
+    private void cache(String sopInstanceUid) throws IOException {
+        InputStream in = PacsInstanceFileCache.cachingStream(scope, sopInstanceUid, new ByteArrayInputStream(content));
+        IOUtils.toByteArray(in);
+        in.close();
+    }
+
+}
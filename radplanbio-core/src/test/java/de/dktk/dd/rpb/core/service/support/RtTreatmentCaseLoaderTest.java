@@ -0,0 +1,185 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.service.support;
+
+import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
+import de.dktk.dd.rpb.core.domain.pacs.DicomRtStructureSet;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtDose;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtPlan;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
+import de.dktk.dd.rpb.core.domain.pacs.RtTreatmentCase;
+import de.dktk.dd.rpb.core.service.IConquestService;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RtTreatmentCaseLoaderTest {
+
+    private static final String pid = "PID";
+    private static final String studyUid = "1.2";
+
+    private IConquestService pacsServiceMock;
+    private DicomStudy dicomStudy;
+
+    @Before
+    public void setUp() {
+        this.pacsServiceMock = mock(IConquestService.class);
+        this.dicomStudy = new DicomStudy();
+        this.dicomStudy.setStudyInstanceUID(studyUid);
+        this.dicomStudy.setStudySeries(new ArrayList<>());
+    }
+
+    @Test
+    public void load_assembles_all_structure_sets_plans_and_doses() {
+        this.addSeries("RTSTRUCT", "1.2.1", "1.2.1.1", "1.2.1.2");
+        this.addSeries("RTPLAN", "1.2.2", "1.2.2.1");
+        this.addSeries("RTDOSE", "1.2.3", "1.2.3.1");
+        this.addSeries("RTDOSE", "1.2.4", "1.2.4.1");
+
+        DicomRtStructureSet first = new DicomRtStructureSet();
+        DicomRtStructureSet second = new DicomRtStructureSet();
+        when(this.pacsServiceMock.loadDicomRtStructureSet(eq(studyUid), eq("1.2.1"), eq("1.2.1.1"), any(RtTreatmentCase.class))).thenReturn(first);
+        when(this.pacsServiceMock.loadDicomRtStructureSet(eq(studyUid), eq("1.2.1"), eq("1.2.1.2"), any(RtTreatmentCase.class))).thenReturn(second);
+        when(this.pacsServiceMock.loadDicomRtPlan(anyString(), anyString(), anyString())).thenReturn(new DicomSeriesRtPlan());
+        when(this.pacsServiceMock.loadDicomRtDose(anyString(), anyString(), anyString())).thenReturn(new DicomSeriesRtDose());
+
+        RtTreatmentCase tc = this.load();
+
+        // Each instance of the structure set series is loaded (not only the first one)
+        assertEquals(2, tc.getRtStructureSets().size());
+        assertSame(first, tc.getRtStructureSets().get(0));
+        assertSame(second, tc.getRtStructureSets().get(1));
+        assertEquals(1, tc.getRtPlans().size());
+        // Doses of all series are kept
+        assertEquals(2, tc.getRtDoses().size());
+        assertFalse(tc.isPartial());
+    }
+
+    @Test
+    public void load_fetches_instance_listed_in_more_series_only_once() {
+        this.addSeries("RTDOSE", "1.2.3", "1.2.3.1");
+        this.addSeries("RTDOSE", "1.2.4", "1.2.3.1", "1.2.4.2");
+        when(this.pacsServiceMock.loadDicomRtDose(anyString(), anyString(), anyString())).thenReturn(new DicomSeriesRtDose());
+
+        RtTreatmentCase tc = this.load();
+
+        verify(this.pacsServiceMock, times(2)).loadDicomRtDose(anyString(), anyString(), anyString());
+        verify(this.pacsServiceMock, times(1)).loadDicomRtDose(anyString(), anyString(), eq("1.2.3.1"));
+        assertEquals(2, tc.getRtDoses().size());
+    }
+
+    @Test
+    public void load_returns_partial_result_when_instance_fails() {
+        this.addSeries("RTPLAN", "1.2.2", "1.2.2.1", "1.2.2.2");
+        when(this.pacsServiceMock.loadDicomRtPlan(studyUid, "1.2.2", "1.2.2.1")).thenThrow(new NullPointerException());
+        when(this.pacsServiceMock.loadDicomRtPlan(studyUid, "1.2.2", "1.2.2.2")).thenReturn(new DicomSeriesRtPlan());
+
+        RtTreatmentCase tc = this.load();
+
+        assertEquals(1, tc.getRtPlans().size());
+        assertTrue(tc.isPartial());
+        assertEquals(Collections.singletonList("1.2.2.1"), tc.getFailedUids());
+    }
+
+    @Test
+    public void load_reports_instance_which_times_out() {
+        this.addSeries("RTDOSE", "1.2.3", "1.2.3.1");
+        when(this.pacsServiceMock.loadDicomRtDose(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return new DicomSeriesRtDose();
+        });
+
+        RtTreatmentCase tc = new RtTreatmentCaseLoader(this.pacsServiceMock, 2, 50).load(pid, this.dicomStudy);
+
+        assertTrue(tc.getRtDoses().isEmpty());
+        assertEquals(Collections.singletonList("1.2.3.1"), tc.getFailedUids());
+    }
+
+    @Test
+    public void timeout_bounds_loading_of_whole_treatment_case() {
+        this.addSeries("RTDOSE", "1.2.3", "1.2.3.1", "1.2.3.2", "1.2.3.3", "1.2.3.4", "1.2.3.5",
+                "1.2.3.6", "1.2.3.7", "1.2.3.8", "1.2.3.9", "1.2.3.10");
+        when(this.pacsServiceMock.loadDicomRtDose(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5000);
+            return new DicomSeriesRtDose();
+        });
+
+        long start = System.currentTimeMillis();
+        RtTreatmentCase tc = new RtTreatmentCaseLoader(this.pacsServiceMock, 1, 200).load(pid, this.dicomStudy);
+
+        // Waiting for each instance separately would take 10 x 200 ms
+        assertTrue(System.currentTimeMillis() - start < 1500);
+        assertEquals(10, tc.getFailedUids().size());
+    }
+
+    @Test
+    public void load_without_rt_series_does_not_query_pacs() {
+        RtTreatmentCase tc = this.load();
+
+        verify(this.pacsServiceMock, times(0)).loadStudySeries(anyString(), anyString(), anyString());
+        verify(this.pacsServiceMock, times(0)).loadDicomRtStructureSet(anyString(), anyString(), anyString(), any(RtTreatmentCase.class));
+        assertNull(tc.getRtStructureSets());
+        assertNull(tc.getRtPlans());
+        assertNull(tc.getRtDoses());
+    }
+
+    private RtTreatmentCase load() {
+        return new RtTreatmentCaseLoader(this.pacsServiceMock, 4, 5000).load(pid, this.dicomStudy);
+    }
+
+    private void addSeries(String modality, String seriesUid, String... sopInstanceUids) {
+        DicomSeries series = new DicomSeries();
+        series.setSeriesModality(modality);
+        series.setSeriesInstanceUID(seriesUid);
+        this.dicomStudy.getStudySeries().add(series);
+
+        List<DicomImage> images = new ArrayList<>();
+        for (String sopInstanceUid : Arrays.asList(sopInstanceUids)) {
+            DicomImage image = new DicomImage();
+            image.setSopInstanceUID(sopInstanceUid);
+            images.add(image);
+        }
+
+        DicomSeries seriesWithImages = new DicomSeries();
+        seriesWithImages.setSeriesModality(modality);
+        seriesWithImages.setSeriesInstanceUID(seriesUid);
+        seriesWithImages.setSeriesImages(images);
+        when(this.pacsServiceMock.loadStudySeries(pid, studyUid, seriesUid)).thenReturn(seriesWithImages);
+    }
+
+}
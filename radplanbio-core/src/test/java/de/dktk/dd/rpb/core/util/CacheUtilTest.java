@@ -0,0 +1,102 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.util;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheUtilTest {
+
+    private static final String pacsUrl = "http://pacs/cgi-bin/dgate";
+
+    private CacheManager cacheManager;
+    private CacheUtil cacheUtil;
+
+    @Before
+    public void setUp() {
+        this.cacheManager = new CacheManager();
+        this.cacheUtil = new CacheUtil(this.cacheManager);
+    }
+
+    @After
+    public void tearDown() {
+        this.cacheManager.shutdown();
+    }
+
+    //region PACS metadata
+
+    @Test
+    public void pacs_metadata_cache_counts_hits_and_misses() {
+        String key = studiesQuery("DD-1");
+
+        assertNull(this.cacheUtil.getPacsMetadataCacheElement(key));
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(key, "{}"));
+        assertNotNull(this.cacheUtil.getPacsMetadataCacheElement(key));
+
+        assertEquals(1, this.cacheUtil.getPacsMetadataCacheHits());
+        assertEquals(1, this.cacheUtil.getPacsMetadataCacheMisses());
+    }
+
+    @Test
+    public void remove_pacs_metadata_removes_only_queries_of_the_patient() {
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("DD-1"), "{}"));
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("DD-1") + "&StudyUID=1.2.3", "{}"));
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("DD-2"), "{}"));
+
+        this.cacheUtil.removePacsMetadataCacheElements("DD-1");
+
+        assertNull(this.cacheUtil.getPacsMetadataCacheElement(studiesQuery("DD-1")));
+        assertNull(this.cacheUtil.getPacsMetadataCacheElement(studiesQuery("DD-1") + "&StudyUID=1.2.3"));
+        assertNotNull(this.cacheUtil.getPacsMetadataCacheElement(studiesQuery("DD-2")));
+    }
+
+    @Test
+    public void remove_pacs_metadata_ignores_patient_id_prefix() {
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("XX-DD-1"), "{}"));
+
+        this.cacheUtil.removePacsMetadataCacheElements("DD-1");
+
+        assertNull(this.cacheUtil.getPacsMetadataCacheElement(studiesQuery("XX-DD-1")));
+    }
+
+    @Test
+    public void remove_pacs_metadata_without_patient_clears_cache() {
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("DD-1"), "{}"));
+        this.cacheUtil.setPacsMetadataCacheElement(new Element(studiesQuery("DD-2"), "{}"));
+
+        this.cacheUtil.removePacsMetadataCacheElements("");
+
+        assertEquals(0, this.cacheUtil.getPacsMetadataCache().getSize());
+    }
+
+    //endregion
+
+    private static String studiesQuery(String patientId) {
+        return pacsUrl + "?mode=rpbjsondicomstudies&PatientID=" + patientId;
+    }
+
+}
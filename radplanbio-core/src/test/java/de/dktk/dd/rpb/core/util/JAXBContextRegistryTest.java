@@ -0,0 +1,77 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.core.util;
+
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class JAXBContextRegistryTest {
+
+    @Test
+    public void context_is_created_once_per_root_class() throws JAXBException {
+        assertSame(JAXBContextRegistry.getContext(Odm.class), JAXBContextRegistry.getContext(Odm.class));
+    }
+
+    @Test
+    public void unmarshaller_is_reused() throws JAXBException {
+        AtomicReference<Unmarshaller> first = new AtomicReference<>();
+        JAXBContextRegistry.unmarshal(Odm.class, un -> {
+            first.set(un);
+            return null;
+        });
+
+        Unmarshaller second = JAXBContextRegistry.unmarshal(Odm.class, un -> un);
+
+        assertSame(first.get(), second);
+    }
+
+    @Test
+    public void pooled_marshaller_has_default_properties() throws JAXBException {
+        JAXBContextRegistry.marshal(Odm.class, m -> m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE));
+
+        JAXBContextRegistry.marshal(Odm.class, m -> assertFalse((Boolean) m.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT)));
+    }
+
+    @Test
+    public void odm_round_trip() throws JAXBException {
+        Odm odm = new Odm();
+        odm.setDescription("round trip");
+
+        StringWriter sw = new StringWriter();
+        JAXBContextRegistry.marshal(Odm.class, m -> m.marshal(odm, sw));
+        Odm result = JAXBContextRegistry.unmarshal(Odm.class, un -> (Odm) un.unmarshal(new StringReader(sw.toString())));
+
+        assertNotNull(result);
+        assertEquals("round trip", result.getDescription());
+    }
+
+}
@@ -19,6 +19,7 @@
 
 package de.dktk.dd.rpb.api.support;
 
+import com.sun.jersey.core.header.ContentDisposition;
 import de.dktk.dd.rpb.core.domain.admin.DefaultAccount;
 import de.dktk.dd.rpb.core.repository.admin.IDefaultAccountRepository;
 import de.dktk.dd.rpb.core.repository.edc.IOpenClinicaDataRepository;
@@ -39,7 +40,16 @@ import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Date;
 
 /**
  * Base service
@@ -86,6 +96,8 @@ public class BaseService {
     protected AuditLogService auditLogService;
     @Inject
     protected IPacsConfigService pacsConfigService;
+    @Inject
+    protected WebDavTreeIndex webDavTreeIndex;
 
     //endregion
 
@@ -287,6 +299,61 @@ public class BaseService {
         return pacsService;
     }
 
+    /**
+     * Build WebDAV/REST response for a DICOM file download
+     *
+     * Instances served from the local PACS instance file cache are copied from the file channel to the response
+     * output stream with the known Content-Length, other streams are written by the JAX-RS runtime
+     *
+     * @param in             DICOM instance stream (see IConquestService.loadWadoDicomStream)
+     * @param fileIdentifier name of the downloaded file
+     * @return response
+     */
+    protected javax.ws.rs.core.Response createDicomFileResponse(final InputStream in, String fileIdentifier) {
+        ContentDisposition contentDisposition = ContentDisposition
+                .type("attachment")
+                .fileName(fileIdentifier)
+                .creationDate(new Date())
+                .build();
+
+        if (in instanceof FileInputStream) {
+            final FileChannel channel = ((FileInputStream) in).getChannel();
+
+            StreamingOutput output = new StreamingOutput() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    try {
+                        WritableByteChannel target = Channels.newChannel(out);
+                        long position = 0;
+                        long size = channel.size();
+                        while (position < size) {
+                            position += channel.transferTo(position, size - position, target);
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+            };
+
+            javax.ws.rs.core.Response.ResponseBuilder builder = javax.ws.rs.core.Response
+                    .ok(output)
+                    .header("Content-Disposition", contentDisposition);
+
+            try {
+                builder.header("Content-Length", channel.size());
+            } catch (IOException err) {
+                log.error(err.getMessage(), err);
+            }
+
+            return builder.build();
+        }
+
+        return javax.ws.rs.core.Response
+                .ok(in)
+                .header("Content-Disposition", contentDisposition)
+                .build();
+    }
+
     //endregion
 
     //endregion
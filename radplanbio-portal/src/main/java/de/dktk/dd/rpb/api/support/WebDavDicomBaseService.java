@@ -0,0 +1,352 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.api.support;
+
+import de.dktk.dd.rpb.core.domain.admin.DefaultAccount;
+import de.dktk.dd.rpb.core.domain.edc.CrfFieldAnnotation;
+import de.dktk.dd.rpb.core.domain.edc.EventData;
+import de.dktk.dd.rpb.core.domain.edc.EventDefinition;
+import de.dktk.dd.rpb.core.domain.edc.ItemData;
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
+import de.dktk.dd.rpb.core.ocsoap.types.Study;
+import de.dktk.dd.rpb.core.service.IConquestService;
+import de.dktk.dd.rpb.core.service.IOpenClinicaService;
+import de.dktk.dd.rpb.core.service.OpenClinicaService;
+import de.dktk.dd.rpb.core.util.Constants;
+import de.dktk.dd.rpb.portal.facade.StudyIntegrationFacade;
+import net.java.dev.webdav.jaxrs.xml.elements.MultiStatus;
+import net.java.dev.webdav.jaxrs.xml.elements.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+import static net.java.dev.webdav.jaxrs.ResponseStatus.MULTI_STATUS;
+
+/**
+ * Base of WebDAV services listing DICOM collections (DICOM studies, series and instances of study subject)
+ *
+ * Collections are answered from WebDavTreeIndex, the loaders below are only called when the collection is not indexed
+ * yet or its snapshot is outdated.
+ */
+public class WebDavDicomBaseService extends BaseService {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(WebDavDicomBaseService.class);
+
+    private static final String dicomAnnotationType = "DICOM_STUDY_INSTANCE_UID";
+
+    // 15 seconds - hardcoded for now
+    private static final int casebookRetryTimeout = 15000;
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * PROPFIND response with collection and its indexed children
+     *
+     * @param defaultAccount  authenticated user
+     * @param collection      response entry of requested collection
+     * @param collectionUrl   URL of requested collection ending with slash
+     * @param indexPath       path of requested collection (see WebDavUtils.buildIndexPath)
+     * @param studyIdentifier study the collection belongs to
+     * @param dicomPatientId  DICOM patient the collection belongs to
+     * @param loader          loads children of collection when they are not indexed
+     * @return multi status response, 401 for unknown user, 404 for not existing collection or 500 when loading failed
+     */
+    protected javax.ws.rs.core.Response createIndexedResponse(DefaultAccount defaultAccount, Response collection, String collectionUrl, String indexPath, String studyIdentifier, String dicomPatientId, WebDavTreeIndex.Loader loader) {
+        if (defaultAccount == null) {
+            return javax.ws.rs.core.Response.status(401).build();
+        }
+
+        try {
+            List<WebDavResource> children = this.webDavTreeIndex.getChildren(
+                    defaultAccount.getUsername(),
+                    indexPath,
+                    studyIdentifier,
+                    dicomPatientId,
+                    loader
+            );
+
+            if (children == null) {
+                log.warn("WebDAV: Requested collection " + indexPath + " does not exist.");
+                return javax.ws.rs.core.Response.status(404).build();
+            }
+
+            final Collection<Response> responses = new LinkedList<>(singletonList(collection));
+            for (WebDavResource child : children) {
+                responses.add(WebDavUtils.createResourceResponse(collectionUrl, child));
+            }
+
+            return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(responses.toArray(new Response[0]))).build();
+        }
+        catch (Exception err) {
+            log.error(err.getMessage(), err);
+            return javax.ws.rs.core.Response.status(500).build();
+        }
+    }
+
+    /**
+     * Load DICOM studies referenced in DICOM annotated CRF items of study subject
+     *
+     * @param defaultAccount         authenticated user (for PACS access)
+     * @param studyIdentifier        study identifier
+     * @param siteIdentifier         site identifier
+     * @param studySubjectIdentifier WebDAV study subject identifier
+     * @param eventIdentifier        WebDAV event identifier or null for DICOM studies of all events
+     * @return DICOM study collections or null when the study subject does not exist
+     * @throws IllegalStateException when the study could not be loaded from EDC
+     */
+    protected List<WebDavResource> loadDicomStudies(DefaultAccount defaultAccount, String studyIdentifier, String siteIdentifier, String studySubjectIdentifier, String eventIdentifier) {
+        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
+
+        // RPB integration engine service user
+        DefaultAccount iEngine = this.userRepository.getByUsername(this.engineService.getUsername());
+        IOpenClinicaService svcEdcEngine = this.createEdcConnection(iEngine, this.engineService.getPassword());
+
+        // Own facade with OC service with access to OC data (loaders run concurrently on index refresh threads)
+        StudyIntegrationFacade facade = new StudyIntegrationFacade(this.studyIntegrationFacade);
+        facade.init(svcEdcEngine);
+        // Load corresponding RPB study
+        de.dktk.dd.rpb.core.domain.ctms.Study rpbStudy = facade
+                .loadStudyWithMetadataByIdentifier(studyIdentifier, siteIdentifier);
+
+        if (rpbStudy == null || rpbStudy.getEdcStudy() == null) {
+            throw new IllegalStateException("WebDAV: OC SOAP failed, probably too many parallel requests, studyIdentifier: " + studyIdentifier);
+        }
+
+        // Load full ODM resource for study subject from EDC
+        String trimStudySubjectIdentifier = WebDavUtils.trimStudySubjectIdentifier(studySubjectIdentifier);
+        String queryOdmXmlPath = rpbStudy.getEdcStudy().getOid() + "/" + trimStudySubjectIdentifier + "/*/*";
+
+        // With too many parallel requests this can fail
+        Odm studySubjectOdm = svcEdcEngine.getStudyCasebookOdm(
+                OpenClinicaService.CasebookFormat.XML,
+                OpenClinicaService.CasebookMethod.VIEW,
+                queryOdmXmlPath // Url
+        );
+
+        long endTime = System.currentTimeMillis() + casebookRetryTimeout;
+        while (studySubjectOdm == null && System.currentTimeMillis() < endTime) {
+            this.sleepSecond();
+            studySubjectOdm = svcEdcEngine.getStudyCasebookOdm(
+                    OpenClinicaService.CasebookFormat.XML,
+                    OpenClinicaService.CasebookMethod.VIEW,
+                    queryOdmXmlPath // Url
+            );
+        }
+
+        // Study subject does not exist within requested study
+        if (studySubjectOdm == null) {
+            return null;
+        }
+
+        // Create Definitions from References in metadata
+        studySubjectOdm.updateHierarchy();
+        StudySubject selectedStudySubject = studySubjectOdm.findUniqueStudySubjectOrNone(trimStudySubjectIdentifier);
+        if (selectedStudySubject == null) {
+            return null;
+        }
+        selectedStudySubject.linkOdmDefinitions(studySubjectOdm);
+
+        // Metadata
+        List<EventDefinition> dicomEventDefinitions = rpbStudy.findAnnotatedEventDefinitions(dicomAnnotationType);
+
+        // Data
+        List<EventData> dicomEventDataList = selectedStudySubject.getEventOccurrencesForEvenDefs(dicomEventDefinitions);
+
+        // Load DICOM data for patient from PACS (all at once, later it will be filtered)
+        Map<String, DicomStudy> allPatientDicomStudies = new HashMap<>();
+        for (DicomStudy dicomStudy : svcPacs.loadPatientStudies(selectedStudySubject.getPid())) {
+            allPatientDicomStudies.putIfAbsent(dicomStudy.getStudyInstanceUID(), dicomStudy);
+        }
+
+        // DICOM studies referenced in item data of selected (or all) events
+        Set<DicomStudy> dicomStudies = new LinkedHashSet<>();
+        for (EventData eventData : dicomEventDataList) {
+            if (eventIdentifier != null && !WebDavUtils.buildEventIdentifier(eventData).equals(eventIdentifier)) {
+                continue;
+            }
+
+            // Just annotation concerning selected event
+            CrfFieldAnnotation eventExample = new CrfFieldAnnotation();
+            eventExample.setEventDefinitionOid(eventData.getStudyEventOid());
+
+            // Load CRF items referencing DICOM studies
+            List<ItemData> dicomCrfItemData = eventData.findAnnotatedItemData(
+                    rpbStudy.findAnnotations(dicomAnnotationType, eventExample)
+            );
+
+            for (ItemData id : dicomCrfItemData) {
+                DicomStudy dicomStudy = allPatientDicomStudies.get(id.getValue());
+                if (dicomStudy != null) {
+                    dicomStudies.add(dicomStudy);
+                }
+            }
+        }
+
+        List<WebDavResource> resources = new ArrayList<>();
+        for (DicomStudy dicomStudy : dicomStudies) {
+            String dicomStudyNameIdentifier = dicomStudy.getStudyType() +
+                    Constants.RPB_IDENTIFIERSEP +
+                    WebDavUtils.encodeDicomUid(dicomStudy.getStudyInstanceUID());
+
+            resources.add(WebDavResource.collection(dicomStudyNameIdentifier, dicomStudy.getDateStudy(), dicomStudy.getDateStudy()));
+        }
+
+        return resources;
+    }
+
+    /**
+     * Load DICOM series of DICOM study
+     *
+     * @param defaultAccount         authenticated user (for EDC access check and PACS access)
+     * @param studyIdentifier        study identifier
+     * @param siteIdentifier         site identifier
+     * @param studySubjectIdentifier WebDAV study subject identifier
+     * @param dicomStudyIdentifier   WebDAV DICOM study identifier
+     * @return DICOM series collections or null when the study subject or DICOM study does not exist
+     */
+    protected List<WebDavResource> loadDicomSeries(DefaultAccount defaultAccount, String studyIdentifier, String siteIdentifier, String studySubjectIdentifier, String dicomStudyIdentifier) {
+        if (!this.studySubjectExistsInStudy(defaultAccount, studyIdentifier, siteIdentifier, studySubjectIdentifier)) {
+            log.warn("WebDAV: Requested study subject does not exist within requested study.");
+            return null;
+        }
+
+        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
+
+        // Trim identifiers
+        String dicomPatientId = WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier);
+        String trimDicomStudyIdentifier = WebDavUtils.trimDicomStudyNameIdentifier(dicomStudyIdentifier);
+
+        // Decode identifier
+        String dicomStudyUid = WebDavUtils.decodeDicomUid(trimDicomStudyIdentifier);
+
+        // Load DICOM study from PACS
+        DicomStudy dicomStudy = svcPacs.loadPatientStudy(dicomPatientId, dicomStudyUid);
+        if (dicomStudy == null) {
+            log.warn("WebDAV: Requested DICOM study does not exist.");
+            return null;
+        }
+
+        List<WebDavResource> resources = new ArrayList<>();
+        for (DicomSeries dicomSeries : dicomStudy.getStudySeries()) {
+            String dicomSeriesNameIdentifier = dicomSeries.getSeriesModality() +
+                    Constants.RPB_IDENTIFIERSEP +
+                    WebDavUtils.encodeDicomUid(dicomSeries.getSeriesInstanceUID());
+
+            // Combine date and time of DICOM study and DICOM series
+            Date seriesCombineDate = WebDavUtils.combineDateTime(dicomStudy.getDateStudy(), dicomSeries.getTimeSeries());
+            resources.add(WebDavResource.collection(dicomSeriesNameIdentifier, seriesCombineDate, seriesCombineDate));
+        }
+
+        return resources;
+    }
+
+    /**
+     * Load DICOM instances of DICOM series
+     *
+     * @param defaultAccount         authenticated user (for EDC access check and PACS access)
+     * @param studyIdentifier        study identifier
+     * @param siteIdentifier         site identifier
+     * @param studySubjectIdentifier WebDAV study subject identifier
+     * @param dicomStudyIdentifier   WebDAV DICOM study identifier
+     * @param dicomSeriesIdentifier  WebDAV DICOM series identifier
+     * @return DICOM files or null when the study subject or DICOM series does not exist
+     */
+    protected List<WebDavResource> loadDicomFiles(DefaultAccount defaultAccount, String studyIdentifier, String siteIdentifier, String studySubjectIdentifier, String dicomStudyIdentifier, String dicomSeriesIdentifier) {
+        if (!this.studySubjectExistsInStudy(defaultAccount, studyIdentifier, siteIdentifier, studySubjectIdentifier)) {
+            log.warn("WebDAV: Requested study subject does not exist within requested study.");
+            return null;
+        }
+
+        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
+
+        // Trim identifiers
+        String dicomPatientId = WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier);
+        String trimDicomStudyIdentifier = WebDavUtils.trimDicomStudyNameIdentifier(dicomStudyIdentifier);
+        String trimDicomSeriesIdentifier = WebDavUtils.trimDicomSeriesNameIdentifier(dicomSeriesIdentifier);
+
+        // Decode identifier
+        String dicomStudyUid = WebDavUtils.decodeDicomUid(trimDicomStudyIdentifier);
+        String dicomSeriesUid = WebDavUtils.decodeDicomUid(trimDicomSeriesIdentifier);
+
+        // Load selected DICOM series from PACS
+        DicomSeries dicomSeries = svcPacs.loadStudySeries(dicomPatientId, dicomStudyUid, dicomSeriesUid);
+        if (dicomSeries == null) {
+            log.warn("WebDAV: Requested DICOM series does not exist.");
+            return null;
+        }
+
+        // Instances do not carry a date, the time of listing is used as before
+        Date listed = new Date();
+        List<WebDavResource> resources = new ArrayList<>();
+        for (DicomImage dicomImage : dicomSeries.getSeriesImages()) {
+            String dicomImageNameIdentifier = WebDavUtils.encodeDicomUid(dicomImage.getSopInstanceUID()) + ".dcm";
+            int size = dicomImage.getSize() != null ? dicomImage.getSize() : 1024;
+
+            resources.add(WebDavResource.file(dicomImageNameIdentifier, listed, listed, size));
+        }
+
+        return resources;
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private boolean studySubjectExistsInStudy(DefaultAccount defaultAccount, String studyIdentifier, String siteIdentifier, String studySubjectIdentifier) {
+        IOpenClinicaService svcEdc = this.createEdcConnection(defaultAccount);
+
+        // Create example to query parent study
+        Study selectedStudy = new Study();
+        selectedStudy.setStudyIdentifier(studyIdentifier);
+
+        // When study and site identifier are not the same it is multi-centre study
+        if (!studyIdentifier.equals(siteIdentifier)) {
+            // Define which site to study
+            selectedStudy.setSiteName(siteIdentifier);
+        }
+
+        // Create example to query the study subject
+        de.dktk.dd.rpb.core.ocsoap.types.StudySubject selectedSubject = new de.dktk.dd.rpb.core.ocsoap.types.StudySubject();
+        selectedSubject.setStudySubjectLabel(WebDavUtils.trimStudySubjectIdentifier(studySubjectIdentifier));
+
+        return svcEdc.studySubjectExistsInStudy(selectedSubject, selectedStudy);
+    }
+
+    //endregion
+
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.api.support;
+
+import java.util.Date;
+
+/**
+ * Immutable entry (collection or file) of the WebDAV virtual tree kept in WebDavTreeIndex
+ *
+ * @since 18 Oct 2026
+ */
+public class WebDavResource {
+
+    //region Members
+
+    private final String name;
+    private final Date creationDate;
+    private final Date lastModified;
+    // null for collections
+    private final Integer contentLength;
+
+    //endregion
+
+    //region Constructors
+
+    private WebDavResource(String name, Date creationDate, Date lastModified, Integer contentLength) {
+        this.name = name;
+        this.creationDate = creationDate != null ? new Date(creationDate.getTime()) : null;
+        this.lastModified = lastModified != null ? new Date(lastModified.getTime()) : null;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * @param name         display name and last path segment of collection
+     * @param creationDate creation date
+     * @param lastModified last modification date
+     * @return collection resource
+     */
+    public static WebDavResource collection(String name, Date creationDate, Date lastModified) {
+        return new WebDavResource(name, creationDate, lastModified, null);
+    }
+
+    /**
+     * @param name          display name and last path segment of file
+     * @param creationDate  creation date
+     * @param lastModified  last modification date
+     * @param contentLength file size in bytes
+     * @return file resource
+     */
+    public static WebDavResource file(String name, Date creationDate, Date lastModified, int contentLength) {
+        return new WebDavResource(name, creationDate, lastModified, contentLength);
+    }
+
+    //endregion
+
+    //region Properties
+
+    public String getName() {
+        return this.name;
+    }
+
+    public Date getCreationDate() {
+        return this.creationDate != null ? new Date(this.creationDate.getTime()) : null;
+    }
+
+    public Date getLastModified() {
+        return this.lastModified != null ? new Date(this.lastModified.getTime()) : null;
+    }
+
+    public Integer getContentLength() {
+        return this.contentLength;
+    }
+
+    public boolean isCollection() {
+        return this.contentLength == null;
+    }
+
+    //endregion
+
+}
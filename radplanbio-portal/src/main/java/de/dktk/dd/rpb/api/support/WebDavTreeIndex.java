@@ -0,0 +1,364 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.api.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * In memory snapshot of the WebDAV virtual tree (study - site - subject - event - DICOM study - series - instance)
+ *
+ * Each collection is indexed by its path with the list of its children, so repeated PROPFIND requests (desktop WebDAV
+ * clients list every folder many times) are answered from memory instead of EDC and PACS round-trips. The tree is
+ * built incrementally, a collection is loaded when it is listed for the first time. When the snapshot of collection
+ * gets older than refreshAfter it is still served and reloaded in the background, only snapshots older than expireAfter
+ * are reloaded while the client waits. Concurrent requests for the same collection share one load.
+ *
+ * Snapshots are kept per scope (authenticated user) because the loaders check access with user EDC account and query
+ * the PACS of user partner site. Collections of a DICOM patient are invalidated after a STOW-RS import, a load which
+ * was running during invalidation of its study or patient is not stored (loads of other studies and patients are).
+ *
+ * @since 18 Oct 2026
+ */
+@Named
+@Singleton
+public class WebDavTreeIndex {
+
+    //region Finals
+
+    private static final Logger log = LoggerFactory.getLogger(WebDavTreeIndex.class);
+
+    //endregion
+
+    //region Members
+
+    @Value("${webdav.indexRefreshAfter:60000}")
+    protected long refreshAfter = 60000;
+    @Value("${webdav.indexExpireAfter:900000}")
+    protected long expireAfter = 900000;
+    @Value("${webdav.indexMaxEntries:20000}")
+    protected int maxEntries = 20000;
+    @Value("${webdav.indexRefreshThreads:2}")
+    protected int refreshThreads = 2;
+    protected LongSupplier clock = System::currentTimeMillis;
+    protected volatile ExecutorService refreshExecutor;
+
+    private final Map<String, Node> nodes = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<List<WebDavResource>>> loading = new ConcurrentHashMap<>();
+    // Incremented by invalidation of all, study or patient collections, loads which started before are not stored
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<String, Long> studyGenerations = new ConcurrentHashMap<>();
+    private final Map<String, Long> patientGenerations = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+
+    //endregion
+
+    //region Loader
+
+    /**
+     * Loads children of collection from EDC and PACS
+     */
+    public interface Loader {
+
+        /**
+         * @return children of collection or null when the collection does not exist
+         * @throws Exception when the backend request fails
+         */
+        List<WebDavResource> load() throws Exception;
+    }
+
+    //endregion
+
+    //region Properties
+
+    public int getSize() {
+        return this.nodes.size();
+    }
+
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    public long getRefreshes() {
+        return this.refreshes.get();
+    }
+
+    //endregion
+
+    //region Methods
+
+    /**
+     * Children of collection from snapshot, collection is loaded when it is not indexed yet or its snapshot expired
+     *
+     * @param scope           user for whom the collection is listed
+     * @param path            path of collection (without trailing slash)
+     * @param studyIdentifier study the collection belongs to
+     * @param dicomPatientId  DICOM patient the collection belongs to (or null)
+     * @param loader          loads children of collection
+     * @return children of collection or null when the collection does not exist
+     * @throws Exception when the collection could not be loaded
+     */
+    public List<WebDavResource> getChildren(String scope, String path, String studyIdentifier, String dicomPatientId, Loader loader) throws Exception {
+        String key = scope + "|" + path;
+
+        Node node = this.nodes.get(key);
+        long now = this.clock.getAsLong();
+        if (node != null && now - node.loadedAt < this.expireAfter) {
+            if (now - node.loadedAt >= this.refreshAfter && node.refreshing.compareAndSet(false, true)) {
+                this.refreshInBackground(key, node, loader);
+            }
+
+            this.hits.incrementAndGet();
+            return node.children;
+        }
+
+        this.misses.incrementAndGet();
+        return this.load(key, studyIdentifier, dicomPatientId, loader);
+    }
+
+    /**
+     * Remove snapshots of all collections of DICOM patient (e.g. new DICOM data was imported)
+     *
+     * @param dicomPatientId DICOM patient ID
+     */
+    public void invalidatePatient(String dicomPatientId) {
+        if (dicomPatientId == null) {
+            return;
+        }
+
+        this.patientGenerations.merge(dicomPatientId, 1L, Long::sum);
+        this.nodes.values().removeIf(node -> dicomPatientId.equals(node.dicomPatientId));
+    }
+
+    /**
+     * Remove snapshots of all collections of study (e.g. subjects were enrolled)
+     *
+     * @param studyIdentifier study identifier
+     */
+    public void invalidateStudy(String studyIdentifier) {
+        if (studyIdentifier == null) {
+            return;
+        }
+
+        this.studyGenerations.merge(studyIdentifier, 1L, Long::sum);
+        this.nodes.values().removeIf(node -> studyIdentifier.equals(node.studyIdentifier));
+    }
+
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        this.nodes.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ExecutorService executor = this.refreshExecutor;
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private List<WebDavResource> load(String key, String studyIdentifier, String dicomPatientId, Loader loader) throws Exception {
+        Generation startGeneration = this.getGeneration(studyIdentifier, dicomPatientId);
+
+        FutureTask<List<WebDavResource>> task = new FutureTask<>(loader::load);
+        FutureTask<List<WebDavResource>> running = this.loading.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+                List<WebDavResource> children = task.get();
+                if (children != null) {
+                    this.store(key, new Node(children, studyIdentifier, dicomPatientId, this.clock.getAsLong()), startGeneration);
+                }
+            } catch (ExecutionException err) {
+                // Reported to the caller below
+            } finally {
+                this.loading.remove(key, task);
+            }
+        }
+
+        try {
+            return running.get();
+        } catch (ExecutionException err) {
+            Throwable cause = err.getCause();
+            throw cause instanceof Exception ? (Exception) cause : err;
+        }
+    }
+
+    private void refreshInBackground(String key, Node node, Loader loader) {
+        Generation startGeneration = this.getGeneration(node.studyIdentifier, node.dicomPatientId);
+
+        try {
+            this.getRefreshExecutor().execute(() -> {
+                try {
+                    List<WebDavResource> children = loader.load();
+                    if (children != null) {
+                        this.store(key, new Node(children, node.studyIdentifier, node.dicomPatientId, this.clock.getAsLong()), startGeneration);
+                    } else {
+                        this.nodes.remove(key, node);
+                    }
+                    this.refreshes.incrementAndGet();
+                } catch (Exception err) {
+                    log.error("WebDAV: refresh of " + key + " failed, snapshot is kept until it expires", err);
+                } finally {
+                    node.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException err) {
+            node.refreshing.set(false);
+        }
+    }
+
+    private void store(String key, Node node, Generation startGeneration) {
+        if (!startGeneration.equals(this.getGeneration(node.studyIdentifier, node.dicomPatientId))) {
+            return;
+        }
+
+        // Make room by dropping the oldest snapshot
+        if (this.nodes.size() >= this.maxEntries && !this.nodes.containsKey(key)) {
+            String oldestKey = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<String, Node> entry : this.nodes.entrySet()) {
+                if (entry.getValue().loadedAt < oldest) {
+                    oldest = entry.getValue().loadedAt;
+                    oldestKey = entry.getKey();
+                }
+            }
+            if (oldestKey != null) {
+                this.nodes.remove(oldestKey);
+            }
+        }
+
+        this.nodes.put(key, node);
+    }
+
+    private Generation getGeneration(String studyIdentifier, String dicomPatientId) {
+        return new Generation(
+                this.generation.get(),
+                studyIdentifier != null ? this.studyGenerations.getOrDefault(studyIdentifier, 0L) : 0L,
+                dicomPatientId != null ? this.patientGenerations.getOrDefault(dicomPatientId, 0L) : 0L
+        );
+    }
+
+    private ExecutorService getRefreshExecutor() {
+        ExecutorService executor = this.refreshExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = this.refreshExecutor;
+                if (executor == null) {
+                    final AtomicInteger counter = new AtomicInteger();
+                    executor = Executors.newFixedThreadPool(Math.max(1, this.refreshThreads), runnable -> {
+                        Thread thread = new Thread(runnable, "webdav-index-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    this.refreshExecutor = executor;
+                }
+            }
+        }
+
+        return executor;
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    private static class Node {
+
+        private final List<WebDavResource> children;
+        private final String studyIdentifier;
+        private final String dicomPatientId;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        Node(List<WebDavResource> children, String studyIdentifier, String dicomPatientId, long loadedAt) {
+            this.children = Collections.unmodifiableList(new ArrayList<>(children));
+            this.studyIdentifier = studyIdentifier;
+            this.dicomPatientId = dicomPatientId;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Invalidation counters of all collections, study and DICOM patient of a collection when its load started
+     */
+    private static class Generation {
+
+        private final long all;
+        private final long study;
+        private final long patient;
+
+        Generation(long all, long study, long patient) {
+            this.all = all;
+            this.study = study;
+            this.patient = patient;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Generation)) {
+                return false;
+            }
+
+            Generation generation = (Generation) other;
+            return this.all == generation.all && this.study == generation.study && this.patient == generation.patient;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.all, this.study, this.patient);
+        }
+    }
+
+    //endregion
+
+}
@@ -21,11 +21,23 @@ package de.dktk.dd.rpb.api.support;
 
 import de.dktk.dd.rpb.core.domain.edc.EventData;
 import de.dktk.dd.rpb.core.util.Constants;
+import net.java.dev.webdav.jaxrs.xml.elements.HRef;
+import net.java.dev.webdav.jaxrs.xml.elements.Prop;
+import net.java.dev.webdav.jaxrs.xml.elements.PropStat;
+import net.java.dev.webdav.jaxrs.xml.elements.Response;
+import net.java.dev.webdav.jaxrs.xml.elements.Status;
+import net.java.dev.webdav.jaxrs.xml.properties.CreationDate;
+import net.java.dev.webdav.jaxrs.xml.properties.DisplayName;
+import net.java.dev.webdav.jaxrs.xml.properties.GetContentLength;
+import net.java.dev.webdav.jaxrs.xml.properties.GetContentType;
+import net.java.dev.webdav.jaxrs.xml.properties.GetLastModified;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriInfo;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -33,6 +45,9 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
+import static javax.ws.rs.core.Response.Status.OK;
+import static net.java.dev.webdav.jaxrs.xml.properties.ResourceType.COLLECTION;
+
 public class WebDavUtils {
 
     //region Finals
@@ -197,6 +212,54 @@ public class WebDavUtils {
         return result.getTime();
     }
 
+    /**
+     * Path of requested collection used as key in WebDavTreeIndex (relative to API base, without trailing slash)
+     */
+    public static String buildIndexPath(UriInfo uriInfo) {
+        String path = uriInfo.getPath();
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+
+        return path;
+    }
+
+    /**
+     * Build PROPFIND response entry of indexed collection or file
+     *
+     * @param parentUrl URL of parent collection ending with slash
+     * @param resource  indexed resource
+     * @return WebDAV response entry
+     */
+    public static Response createResourceResponse(String parentUrl, WebDavResource resource) {
+        Prop prop;
+        if (resource.isCollection()) {
+            prop = new Prop(
+                new DisplayName(resource.getName()),
+                new CreationDate(resource.getCreationDate()),
+                new GetLastModified(resource.getLastModified()),
+                COLLECTION
+            );
+        }
+        else {
+            prop = new Prop(
+                new DisplayName(resource.getName()),
+                new CreationDate(resource.getCreationDate()),
+                new GetLastModified(resource.getLastModified()),
+                new GetContentLength(resource.getContentLength()),
+                new GetContentType(MediaType.APPLICATION_OCTET_STREAM)
+            );
+        }
+
+        return new Response(
+            new HRef(parentUrl + resource.getName()),
+            null,
+            null,
+            null,
+            new PropStat(prop, new Status((javax.ws.rs.core.Response.StatusType) OK))
+        );
+    }
+
     //endregion
 
 }
@@ -401,6 +401,10 @@ public class StudySubjectService extends BaseService {
                     ssid
             );
             log.info("StudySubject have been successfully enrolled into a specified study: " + ssid + " " + studyIdentifier);
+
+            // Indexed WebDAV subject lists of the study are outdated
+            this.webDavTreeIndex.invalidateStudy(studyIdentifier);
+
             return javax.ws.rs.core.Response.status(201).build();
         } else {
             log.error("Study subject enrollment failed.");
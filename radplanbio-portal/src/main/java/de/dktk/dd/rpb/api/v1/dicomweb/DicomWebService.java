@@ -21,16 +21,19 @@ package de.dktk.dd.rpb.api.v1.dicomweb;
 
 import de.dktk.dd.rpb.api.support.BaseService;
 import de.dktk.dd.rpb.core.service.CtpService;
+import de.dktk.dd.rpb.core.util.CacheUtil;
+import org.apache.commons.fileupload.MultipartStream;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.io.DicomInputStream;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
-import javax.mail.BodyPart;
-import javax.mail.internet.MimeMultipart;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.OPTIONS;
 import javax.ws.rs.POST;
@@ -39,10 +42,20 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Service handling DICOM Web Services aka DICOM web (PS3.18)
@@ -56,19 +69,38 @@ public class DicomWebService extends BaseService {
 
     private static final Logger log = LoggerFactory.getLogger(DicomWebService.class);
 
+    private static final String dicomJsonMediaType = "application/dicom+json";
+
+    // Buffer of multipart parser, parts are streamed through it to temporary files
+    private static final int multipartBufferSize = 64 * 1024;
+
+    // Failure reasons (PS3.18 / PS3.4 status codes)
+    private static final int processingFailure = 0x0110;
+    private static final int studyInstanceUidMismatch = 0xC409;
+
+    // STOW-RS response attributes
+    private static final int failureReasonTag = 0x00081197;
+    private static final int failedSopSequenceTag = 0x00081198;
+    private static final int referencedSopSequenceTag = 0x00081199;
+    private static final int referencedSopClassUidTag = 0x00081150;
+    private static final int referencedSopInstanceUidTag = 0x00081155;
+
     //endregion
 
     //region Members
 
     private CtpService svcCtp;
 
+    private CacheUtil cacheUtil;
+
     //endregion
 
     //region Constructors
 
     @Inject
-    public DicomWebService(CtpService svcCtp) {
+    public DicomWebService(CtpService svcCtp, CacheUtil cacheUtil) {
         this.svcCtp = svcCtp;
+        this.cacheUtil = cacheUtil;
     }
 
     //endregion
@@ -90,16 +122,19 @@ public class DicomWebService extends BaseService {
     @Path("/studies")
     @Consumes("multipart/related")
     public Response storeDicomStudy(@Context HttpHeaders headers,
-                                    MimeMultipart multi) {
-        return this.storeDicomStudy(headers, null, multi);
+                                    InputStream body) {
+        return this.storeDicomStudy(headers, null, body);
     }
 
     /**
      * Post request allows to send DICOM Study files to the PACS Backend
      *
+     * The multipart body is parsed incrementally, each part is streamed to a temporary file so the request is
+     * never held in memory as a whole.
+     *
      * @param headers              HTTP header
      * @param dicomStudyIdentifier DICOM Study UID
-     * @param multi                MimeMultipart Body with the DICOM file content
+     * @param body                 multipart/related body with the DICOM file content
      * @return
      */
     @POST
@@ -107,7 +142,7 @@ public class DicomWebService extends BaseService {
     @Consumes("multipart/related")
     public Response storeDicomStudy(@Context HttpHeaders headers,
                                     @PathParam("dicomStudyIdentifier") String dicomStudyIdentifier,
-                                    MimeMultipart multi) {
+                                    InputStream body) {
 
         // ApiKey for authentication
         String apiKey = headers.getRequestHeader("X-Api-Key").get(0);
@@ -143,6 +178,10 @@ public class DicomWebService extends BaseService {
                 } else if (param.startsWith("boundary=")) {
                     int index = param.indexOf("boundary=");
                     boundaryMessage = param.substring(index + 9);
+                    // Boundary may be quoted
+                    if (boundaryMessage.length() > 1 && boundaryMessage.startsWith("\"") && boundaryMessage.endsWith("\"")) {
+                        boundaryMessage = boundaryMessage.substring(1, boundaryMessage.length() - 1);
+                    }
                 }
             }
         } else {
@@ -164,106 +203,117 @@ public class DicomWebService extends BaseService {
         // Specifies that the post is PS3.10 binary instances
         switch (type) {
             case "application/dicom":
+                List<StowRsInstance> instances = new ArrayList<>();
                 try {
-                    // Read the parts from the multipart message
-                    int parts = multi.getCount();
-                    int importedParts = 0;
-                    for (int i = 0; i < parts; i++) {
-                        BodyPart part = multi.getBodyPart(i);
-                        String partType = part.getContentType();
-
-                        if (partType != null && partType.equals("application/dicom")) {
-
-                            // Read DICOM
-                            Attributes dcmAttributes = null;
-                            DicomInputStream din = null;
-                            InputStream is = part.getInputStream();
-
-                            // Make a deep copy of input stream so that it can be used multiple times
-                            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                            byte[] buffer = new byte[1024];
-                            int len;
-                            while ((len = is.read(buffer)) > -1) {
-                                baos.write(buffer, 0, len);
-                            }
-                            baos.flush();
-
-                            // One input for DICOM reader
-                            InputStream dis = new ByteArrayInputStream(baos.toByteArray());
-                            // One input for http import
-                            InputStream iis = new ByteArrayInputStream(baos.toByteArray());
-
-                            try {
-                                din = new DicomInputStream(dis);
-                                dcmAttributes = din.readDataset(-1, -1);
-                            } catch (IOException e) {
-                                log.error(e.getMessage(), e);
-                            } finally {
-                                try {
-                                    if (din != null) {
-                                        din.close();
-                                    }
-                                } catch (IOException err) {
-                                    log.error(err.getMessage(), err);
-                                }
+                    // Read the parts from the multipart message one by one
+                    MultipartStream multipartStream = new MultipartStream(
+                            body,
+                            boundaryMessage.getBytes(StandardCharsets.ISO_8859_1),
+                            multipartBufferSize,
+                            null
+                    );
+                    int parts = 0;
+                    boolean dicomStudyIdentifierProvided = dicomStudyIdentifier != null && !dicomStudyIdentifier.equals("");
+                    boolean nextPart = multipartStream.skipPreamble();
+                    while (nextPart) {
+                        int i = parts++;
+                        String partType = getPartContentType(multipartStream.readHeaders());
+
+                        if ("application/dicom".equals(partType)) {
+
+                            // Spool the part to disk once, it is parsed (header only) and streamed to CTP from there
+                            File dicomFile = File.createTempFile("stowrs-", ".dcm");
+                            StowRsInstance instance = new StowRsInstance(dicomFile);
+                            instances.add(instance);
+
+                            try (OutputStream os = Files.newOutputStream(dicomFile.toPath())) {
+                                multipartStream.readBodyData(os);
                             }
 
-                            String patientId = "";
+                            Attributes dcmAttributes = this.readDicomHeader(dicomFile);
+
                             String studyInstanceUid = "";
-                            String seriesInstanceUid = "";
-                            String instanceUid = "";
                             if (dcmAttributes != null) {
-                                patientId = dcmAttributes.getString(Tag.PatientID);
+                                instance.patientId = dcmAttributes.getString(Tag.PatientID);
+                                instance.sopClassUid = dcmAttributes.getString(Tag.SOPClassUID);
+                                instance.sopInstanceUid = dcmAttributes.getString(Tag.SOPInstanceUID);
                                 studyInstanceUid = dcmAttributes.getString(Tag.StudyInstanceUID);
-                                seriesInstanceUid = dcmAttributes.getString(Tag.SeriesInstanceUID);
-                                instanceUid = dcmAttributes.getString(Tag.SOPInstanceUID);
                             }
 
                             // Everything received in multipart has to have the specified dicom study instance UID
                             boolean dicomStudyIdentifierMatch = true;
-                            boolean dicomStudyIdentifierProvided = dicomStudyIdentifier != null && !dicomStudyIdentifier.equals("");
                             if (dicomStudyIdentifierProvided && studyInstanceUid != null && !studyInstanceUid.isEmpty()) {
                                 dicomStudyIdentifierMatch = dicomStudyIdentifier.equals(studyInstanceUid);
                             }
                             // Skip this part -> it will lead to partially stored response (202)
                             if (dicomStudyIdentifierProvided && !dicomStudyIdentifierMatch) {
-                                continue;
-                            }
-
-                            boolean importSuccessful;
-                            if (this.svcCtp != null) {
-                                importSuccessful = this.svcCtp.httpImportDicom(iis);
-                            } else {
-                                log.error("CTP service is not defined.");
-                                return Response.status(400).build();
-                            }
-
-                            // Part stored
-                            if (importSuccessful) {
-                                importedParts++;
+                                instance.failureReason = studyInstanceUidMismatch;
                             }
                         } else {
+                            multipartStream.discardBodyData();
                             log.info("STOWRS part " + i + ". unsupported media type");
                         }
+
+                        nextPart = multipartStream.readBoundary();
+                    }
+
+                    if (this.svcCtp == null) {
+                        log.error("CTP service is not defined.");
+                        return Response.status(400).build();
+                    }
+
+                    this.importInstances(instances);
+
+                    int importedParts = 0;
+                    Set<String> importedPatientIds = new HashSet<>();
+                    for (StowRsInstance instance : instances) {
+                        if (instance.failureReason == null) {
+                            importedParts++;
+                            importedPatientIds.add(instance.patientId);
+                        }
                     }
 
+                    // Cached PACS metadata and indexed WebDAV collections of patients with new DICOM data are outdated
+                    if (this.cacheUtil != null) {
+                        for (String importedPatientId : importedPatientIds) {
+                            this.cacheUtil.removePacsMetadataCacheElements(importedPatientId);
+                        }
+                    }
+                    if (this.webDavTreeIndex != null) {
+                        for (String importedPatientId : importedPatientIds) {
+                            this.webDavTreeIndex.invalidatePatient(importedPatientId);
+                        }
+                    }
+
+                    int status;
                     // All parts stored = OK
                     if (importedParts == parts) {
-                        return Response.status(200).build();
+                        status = 200;
                     }
                     // Nothing stored = Conflict
                     else if (importedParts == 0) {
-                        return Response.status(409).build();
+                        status = 409;
                     }
                     // Partially stored = Accepted
                     else if (importedParts < parts) {
-                        return Response.status(202).build();
+                        status = 202;
                     } else {
                         return Response.status(400).build();
                     }
+
+                    return Response.status(status)
+                            .type(dicomJsonMediaType)
+                            .entity(this.createStoreResponse(instances).toString())
+                            .build();
                 } catch (Exception err) {
                     log.error(err.getMessage(), err);
                     return Response.status(400).build();
+                } finally {
+                    for (StowRsInstance instance : instances) {
+                        if (!instance.file.delete()) {
+                            log.warn("STOWRS temporary file cannot be deleted: " + instance.file.getAbsolutePath());
+                        }
+                    }
                 }
                 // Specifies that the post is PS3.19 XML metadata and bulk data
             case "application/dicom+xml":
@@ -282,5 +332,164 @@ public class DicomWebService extends BaseService {
 
     //endregion
 
+    //endregion
+
+    //region Private methods
+
+    /**
+     * Forward spooled instances to CTP, in parallel when more than one CTP import thread is configured
+     *
+     * @param instances received instances, failure reason is set for instances which could not be imported
+     */
+    private void importInstances(List<StowRsInstance> instances) throws InterruptedException {
+        final List<StowRsInstance> pending = new ArrayList<>();
+        for (StowRsInstance instance : instances) {
+            if (instance.failureReason == null) {
+                pending.add(instance);
+            }
+        }
+
+        int threads = Math.min(this.svcCtp.getHttpImportThreads(), pending.size());
+        if (threads <= 1) {
+            for (StowRsInstance instance : pending) {
+                this.importInstance(instance);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (final StowRsInstance instance : pending) {
+                results.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        importInstance(instance);
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException err) {
+                    log.error(err.getMessage(), err);
+                    pending.get(i).failureReason = processingFailure;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void importInstance(StowRsInstance instance) {
+        if (!this.svcCtp.httpImportDicom(instance.file)) {
+            instance.failureReason = processingFailure;
+        }
+    }
+
+    /**
+     * Create STOW-RS response (DICOM JSON) listing stored and failed SOP instances
+     *
+     * @param instances received instances
+     * @return response dataset
+     */
+    private JSONObject createStoreResponse(List<StowRsInstance> instances) throws JSONException {
+        JSONArray referencedSops = new JSONArray();
+        JSONArray failedSops = new JSONArray();
+
+        for (StowRsInstance instance : instances) {
+            JSONObject item = new JSONObject();
+            putDicomJsonValue(item, referencedSopClassUidTag, "UI", instance.sopClassUid);
+            putDicomJsonValue(item, referencedSopInstanceUidTag, "UI", instance.sopInstanceUid);
+
+            if (instance.failureReason == null) {
+                referencedSops.put(item);
+            } else {
+                putDicomJsonValue(item, failureReasonTag, "US", instance.failureReason);
+                failedSops.put(item);
+            }
+        }
+
+        JSONObject response = new JSONObject();
+        if (failedSops.length() > 0) {
+            putDicomJsonValue(response, failedSopSequenceTag, "SQ", failedSops);
+        }
+        if (referencedSops.length() > 0) {
+            putDicomJsonValue(response, referencedSopSequenceTag, "SQ", referencedSops);
+        }
+
+        return response;
+    }
+
+    private static void putDicomJsonValue(JSONObject dataset, int tag, String vr, Object value) throws JSONException {
+        JSONObject attribute = new JSONObject();
+        attribute.put("vr", vr);
+
+        if (value instanceof JSONArray) {
+            attribute.put("Value", value);
+        } else if (value != null) {
+            attribute.put("Value", new JSONArray().put(value));
+        }
+
+        dataset.put(String.format("%08X", tag), attribute);
+    }
+
+    /**
+     * Content type (without parameters) from headers of multipart body part
+     *
+     * @param partHeaders raw headers of body part
+     * @return lower case content type or null when the part does not declare it
+     */
+    private static String getPartContentType(String partHeaders) {
+        for (String header : partHeaders.split("\r\n")) {
+            int colon = header.indexOf(':');
+            if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Content-Type")) {
+                String value = header.substring(colon + 1);
+                int semicolon = value.indexOf(';');
+                return (semicolon >= 0 ? value.substring(0, semicolon) : value).trim().toLowerCase();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Read DICOM attributes without pixel data (the bulk of an instance is not needed for the study UID check)
+     *
+     * @param dicomFile DICOM file
+     * @return DICOM header attributes or null when the file cannot be parsed
+     */
+    private Attributes readDicomHeader(File dicomFile) {
+        try (DicomInputStream din = new DicomInputStream(dicomFile)) {
+            return din.readDataset(-1, Tag.PixelData);
+        } catch (IOException err) {
+            log.error(err.getMessage(), err);
+            return null;
+        }
+    }
+
+    //endregion
+
+    //region Inner classes
+
+    /**
+     * Received SOP instance spooled to temporary file and its import state
+     */
+    private static class StowRsInstance {
+
+        private final File file;
+        private String patientId;
+        private String sopClassUid;
+        private String sopInstanceUid;
+        // null when the instance was stored
+        private volatile Integer failureReason;
+
+        StowRsInstance(File file) {
+            this.file = file;
+        }
+    }
+
+    //endregion
 
 }
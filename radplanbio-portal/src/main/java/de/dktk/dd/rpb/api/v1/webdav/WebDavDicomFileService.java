@@ -19,15 +19,10 @@
 
 package de.dktk.dd.rpb.api.v1.webdav;
 
-import com.sun.jersey.core.header.ContentDisposition;
-import de.dktk.dd.rpb.api.support.BaseService;
+import de.dktk.dd.rpb.api.support.WebDavDicomBaseService;
 import de.dktk.dd.rpb.api.support.WebDavUtils;
 import de.dktk.dd.rpb.core.domain.admin.DefaultAccount;
-import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
-import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
-import de.dktk.dd.rpb.core.ocsoap.types.Study;
 import de.dktk.dd.rpb.core.service.IConquestService;
-import de.dktk.dd.rpb.core.service.IOpenClinicaService;
 import net.java.dev.webdav.jaxrs.methods.PROPFIND;
 import net.java.dev.webdav.jaxrs.xml.elements.HRef;
 import net.java.dev.webdav.jaxrs.xml.elements.MultiStatus;
@@ -37,8 +32,6 @@ import net.java.dev.webdav.jaxrs.xml.elements.Response;
 import net.java.dev.webdav.jaxrs.xml.elements.Status;
 import net.java.dev.webdav.jaxrs.xml.properties.CreationDate;
 import net.java.dev.webdav.jaxrs.xml.properties.DisplayName;
-import net.java.dev.webdav.jaxrs.xml.properties.GetContentLength;
-import net.java.dev.webdav.jaxrs.xml.properties.GetContentType;
 import net.java.dev.webdav.jaxrs.xml.properties.GetLastModified;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,11 +50,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Providers;
 import java.io.InputStream;
-import java.util.Collection;
 import java.util.Date;
-import java.util.LinkedList;
 
-import static java.util.Collections.singletonList;
 import static javax.ws.rs.core.Response.Status.OK;
 import static net.java.dev.webdav.jaxrs.Headers.DAV;
 import static net.java.dev.webdav.jaxrs.Headers.DEPTH;
@@ -75,7 +65,7 @@ import static net.java.dev.webdav.jaxrs.xml.properties.ResourceType.COLLECTION;
  */
 @Component
 @Path("/v1/webdav/studies/{studyIdentifier}/sites/{siteIdentifier}/subjects/{studySubjectIdentifier}/events/{eventIdentifier}/dcmstudies/{dicomStudyIdentifier}/dcmseries/{dicomSeriesIdentifier}/dcm")
-public class WebDavDicomFileService extends BaseService {
+public class WebDavDicomFileService extends WebDavDicomBaseService {
 
     //region Finals
 
@@ -120,8 +110,6 @@ public class WebDavDicomFileService extends BaseService {
 
         // Authenticate user
         DefaultAccount defaultAccount = this.defaultAccountAuthentication(httpServletRequest);
-        IOpenClinicaService svcEdc = this.createEdcConnection(defaultAccount);
-        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
 
         // Make sure that selected dicom files URL ends with slash
         String dicomFilesUrl = uriInfo.getRequestUri().toString();
@@ -150,76 +138,17 @@ public class WebDavDicomFileService extends BaseService {
         if (depth.equals(DEPTH_0)) {
             return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(filesFolder)).build();
         }
-        // Expand files
-        final Collection<Response> responses = new LinkedList<>(singletonList(filesFolder));
 
-        // Create example to query parent study
-        de.dktk.dd.rpb.core.ocsoap.types.Study selectedStudy = new Study();
-        selectedStudy.setStudyIdentifier(studyIdentifier);
-
-        // When study and site identifier are not the same it is multi-centre study
-        if (!studyIdentifier.equals(siteIdentifier)) {
-            // Define which site to study
-            selectedStudy.setSiteName(siteIdentifier);
-        }
-
-        // Create example to query the study subject
-        de.dktk.dd.rpb.core.ocsoap.types.StudySubject selectedSubject = new de.dktk.dd.rpb.core.ocsoap.types.StudySubject();
-        String trimStudySubjectIdentifier = WebDavUtils.trimStudySubjectIdentifier(studySubjectIdentifier);
-        selectedSubject.setStudySubjectLabel(trimStudySubjectIdentifier);
-
-        // Check whether requested study subject exists within requested study
-        if (svcEdc.studySubjectExistsInStudy(selectedSubject, selectedStudy)) {
-
-            // Trim identifiers
-            String dicomPatientId = WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier);
-            String trimDicomStudyIdentifier = WebDavUtils.trimDicomStudyNameIdentifier(dicomStudyIdentifier);
-            String trimDicomSeriesIdentifier = WebDavUtils.trimDicomSeriesNameIdentifier(dicomSeriesIdentifier);
-
-            // Decode identifier
-            String dicomStudyUid = WebDavUtils.decodeDicomUid(trimDicomStudyIdentifier);
-            String dicomSeriesUid = WebDavUtils.decodeDicomUid(trimDicomSeriesIdentifier);
-
-            // Load selected DICOM series from PACS
-            DicomSeries dicomSeries = svcPacs.loadStudySeries(dicomPatientId, dicomStudyUid, dicomSeriesUid);
-            
-            if (dicomSeries != null) {
-
-                for (DicomImage dicomImage : dicomSeries.getSeriesImages()) {
-
-                    String dicomImageNameIdentifier = WebDavUtils.encodeDicomUid(dicomImage.getSopInstanceUID()) + ".dcm";
-                    int size = dicomImage.getSize() != null ? dicomImage.getSize() : 1024;
-
-                    Response fileResponse = new net.java.dev.webdav.jaxrs.xml.elements.Response(
-                            new HRef(dicomFilesUrl + dicomImageNameIdentifier),
-                            null,
-                            null,
-                            null,
-                            new PropStat(
-                            new Prop(
-                                new DisplayName(dicomImageNameIdentifier),
-                                new CreationDate(new Date()),
-                                new GetLastModified(new Date()),
-                                new GetContentLength(size),
-                                new GetContentType(MediaType.APPLICATION_OCTET_STREAM)
-                            ),
-                            new Status((javax.ws.rs.core.Response.StatusType) OK)
-                        )
-                    );
-                    responses.add(fileResponse);
-                }
-
-                return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(responses.toArray(new net.java.dev.webdav.jaxrs.xml.elements.Response[0]))).build();
-            }
-            else {
-                log.warn("WebDAV: Requested DICOM series does not exist.");
-                return javax.ws.rs.core.Response.status(404).build();
-            }
-        }
-        else {
-            log.warn("WebDAV: Requested study subject does not exist within requested study.");
-            return javax.ws.rs.core.Response.status(404).build();
-        }
+        // Expand from the WebDAV tree index
+        return this.createIndexedResponse(
+                defaultAccount,
+                filesFolder,
+                dicomFilesUrl,
+                WebDavUtils.buildIndexPath(uriInfo),
+                studyIdentifier,
+                WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier),
+                () -> this.loadDicomFiles(defaultAccount, studyIdentifier, siteIdentifier, studySubjectIdentifier, dicomStudyIdentifier, dicomSeriesIdentifier)
+        );
     }
 
     //endregion
@@ -270,16 +199,7 @@ public class WebDavDicomFileService extends BaseService {
             // Load Attributes from PACS
             InputStream in = svcPacs.loadWadoDicomStream(dicomStudyUid, dicomSeriesUid, dicomSopUid);
 
-            ContentDisposition contentDisposition = ContentDisposition
-                    .type("attachment")
-                    .fileName(fileIdentifier)
-                    .creationDate(new Date())
-                    .build();
-
-            return javax.ws.rs.core.Response
-                    .ok(in)
-                    .header("Content-Disposition", contentDisposition)
-                    .build();
+            return this.createDicomFileResponse(in, fileIdentifier);
         }
         else {
             log.error("WebDAV: Requested study/site/subject/event/dcmstudy/dcmseries/dcm identifier?cgi is null or empty.");
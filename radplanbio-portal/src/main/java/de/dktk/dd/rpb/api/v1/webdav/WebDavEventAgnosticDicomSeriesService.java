@@ -19,15 +19,9 @@
 
 package de.dktk.dd.rpb.api.v1.webdav;
 
-import de.dktk.dd.rpb.api.support.BaseService;
+import de.dktk.dd.rpb.api.support.WebDavDicomBaseService;
 import de.dktk.dd.rpb.api.support.WebDavUtils;
 import de.dktk.dd.rpb.core.domain.admin.DefaultAccount;
-import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
-import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
-import de.dktk.dd.rpb.core.ocsoap.types.Study;
-import de.dktk.dd.rpb.core.service.IConquestService;
-import de.dktk.dd.rpb.core.service.IOpenClinicaService;
-import de.dktk.dd.rpb.core.util.Constants;
 import net.java.dev.webdav.jaxrs.methods.PROPFIND;
 import net.java.dev.webdav.jaxrs.xml.elements.HRef;
 import net.java.dev.webdav.jaxrs.xml.elements.MultiStatus;
@@ -69,7 +63,7 @@ import static net.java.dev.webdav.jaxrs.xml.properties.ResourceType.COLLECTION;
  */
 @Component
 @Path("/v1/webdav/studies/{studyIdentifier}/sites/{siteIdentifier}/subjects/{studySubjectIdentifier}/dcmstudies/{dicomStudyIdentifier}/dcmseries")
-public class WebDavEventAgnosticDicomSeriesService extends BaseService {
+public class WebDavEventAgnosticDicomSeriesService extends WebDavDicomBaseService {
 
     //region Finals
 
@@ -111,8 +105,6 @@ public class WebDavEventAgnosticDicomSeriesService extends BaseService {
 
         // Authenticate user
         DefaultAccount defaultAccount = this.defaultAccountAuthentication(httpServletRequest);
-        IOpenClinicaService svcEdc = this.createEdcConnection(defaultAccount);
-        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
 
         // Make sure that Dicom series URL ends with slash
         String dicomSeriesUrl = uriInfo.getRequestUri().toString();
@@ -140,75 +132,17 @@ public class WebDavEventAgnosticDicomSeriesService extends BaseService {
         if (depth.equals(DEPTH_0)) {
             return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(seriesFolder)).build();
         }
-        // Expand
-        final Collection<Response> responses = new LinkedList<>(singletonList(seriesFolder));
 
-        // Create example to query parent study
-        de.dktk.dd.rpb.core.ocsoap.types.Study selectedStudy = new Study();
-        selectedStudy.setStudyIdentifier(studyIdentifier);
-
-        // When study and site identifier are not the same it is multi-centre study
-        if (!studyIdentifier.equals(siteIdentifier)) {
-            // Define which site to study
-            selectedStudy.setSiteName(siteIdentifier);
-        }
-
-        // Create example to query the study subject
-        de.dktk.dd.rpb.core.ocsoap.types.StudySubject selectedSubject = new de.dktk.dd.rpb.core.ocsoap.types.StudySubject();
-        String trimStudySubjectIdentifier = WebDavUtils.trimStudySubjectIdentifier(studySubjectIdentifier);
-        selectedSubject.setStudySubjectLabel(trimStudySubjectIdentifier);
-
-        // Check whether requested study subject exists within requested study
-        if (svcEdc.studySubjectExistsInStudy(selectedSubject, selectedStudy)) {
-            
-            // Trim identifiers
-            String dicomPatientId = WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier);
-            String trimDicomStudyIdentifier = WebDavUtils.trimDicomStudyNameIdentifier(dicomStudyIdentifier);
-
-            // Decode identifier
-            String dicomStudyUid = WebDavUtils.decodeDicomUid(trimDicomStudyIdentifier);
-
-            // Load DICOM study from PACS
-            DicomStudy dicomStudy = svcPacs.loadPatientStudy(dicomPatientId, dicomStudyUid);
-            if (dicomStudy != null) {
-                for (DicomSeries dicomSeries : dicomStudy.getStudySeries()) {
-                    
-                    String dicomSeriesNameIdentifier = dicomSeries.getSeriesModality() +
-                            Constants.RPB_IDENTIFIERSEP +
-                            WebDavUtils.encodeDicomUid(dicomSeries.getSeriesInstanceUID());
-
-                    // Combine date and time of DICOM study and DICOM series
-                    Date seriesCombineDate = WebDavUtils.combineDateTime(dicomStudy.getDateStudy(), dicomSeries.getTimeSeries());
-                    Response dicomSeriesFolder = new Response(
-                        new HRef(dicomSeriesUrl + dicomSeriesNameIdentifier),
-                        null,
-                        null,
-                        null,
-                        new PropStat(
-                            new Prop(
-                                new DisplayName(dicomSeriesNameIdentifier),
-                                new CreationDate(seriesCombineDate),
-                                new GetLastModified(seriesCombineDate),
-                                COLLECTION
-                            ),
-                            new Status((javax.ws.rs.core.Response.StatusType) OK)
-                        )
-                    );
-                    
-                    responses.add(dicomSeriesFolder);
-                }
-                
-                return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(responses.toArray(new Response[0]))).build();
-            }
-            else {
-                log.warn("WebDAV: Requested DICOM study does not exist.");
-                return javax.ws.rs.core.Response.status(404).build();
-            }
-        }
-        else {
-            log.warn("WebDAV: Requested study subject does not exist withing requested study.");
-            return javax.ws.rs.core.Response.status(404).build();
-        }
+        // Expand from the WebDAV tree index
+        return this.createIndexedResponse(
+                defaultAccount,
+                seriesFolder,
+                dicomSeriesUrl,
+                WebDavUtils.buildIndexPath(uriInfo),
+                studyIdentifier,
+                WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier),
+                () -> this.loadDicomSeries(defaultAccount, studyIdentifier, siteIdentifier, studySubjectIdentifier, dicomStudyIdentifier)
+        );
     }
 
     @PROPFIND
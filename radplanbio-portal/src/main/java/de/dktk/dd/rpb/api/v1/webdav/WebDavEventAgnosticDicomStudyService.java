@@ -19,20 +19,9 @@
 
 package de.dktk.dd.rpb.api.v1.webdav;
 
-import de.dktk.dd.rpb.api.support.BaseService;
+import de.dktk.dd.rpb.api.support.WebDavDicomBaseService;
 import de.dktk.dd.rpb.api.support.WebDavUtils;
 import de.dktk.dd.rpb.core.domain.admin.DefaultAccount;
-import de.dktk.dd.rpb.core.domain.edc.CrfFieldAnnotation;
-import de.dktk.dd.rpb.core.domain.edc.EventData;
-import de.dktk.dd.rpb.core.domain.edc.EventDefinition;
-import de.dktk.dd.rpb.core.domain.edc.ItemData;
-import de.dktk.dd.rpb.core.domain.edc.Odm;
-import de.dktk.dd.rpb.core.domain.edc.StudySubject;
-import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
-import de.dktk.dd.rpb.core.service.IConquestService;
-import de.dktk.dd.rpb.core.service.IOpenClinicaService;
-import de.dktk.dd.rpb.core.service.OpenClinicaService;
-import de.dktk.dd.rpb.core.util.Constants;
 import net.java.dev.webdav.jaxrs.methods.PROPFIND;
 import net.java.dev.webdav.jaxrs.xml.elements.HRef;
 import net.java.dev.webdav.jaxrs.xml.elements.MultiStatus;
@@ -56,11 +45,9 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Providers;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
-import java.util.List;
 
 import static java.util.Collections.singletonList;
 import static javax.ws.rs.core.Response.Status.OK;
@@ -76,7 +63,7 @@ import static net.java.dev.webdav.jaxrs.xml.properties.ResourceType.COLLECTION;
  */
 @Component
 @Path("/v1/webdav/studies/{studyIdentifier}/sites/{siteIdentifier}/subjects/{studySubjectIdentifier}/dcmstudies")
-public class WebDavEventAgnosticDicomStudyService extends BaseService {
+public class WebDavEventAgnosticDicomStudyService extends WebDavDicomBaseService {
 
     //region Finals
 
@@ -117,11 +104,6 @@ public class WebDavEventAgnosticDicomStudyService extends BaseService {
 
         // Authenticate
         DefaultAccount defaultAccount = this.defaultAccountAuthentication(httpServletRequest);
-        IConquestService svcPacs = this.createPacsConnection(defaultAccount);
-
-        // RPB integration engine service user
-        DefaultAccount iEngine = this.userRepository.getByUsername(this.engineService.getUsername());
-        IOpenClinicaService svcEdcEngine = this.createEdcConnection(iEngine, this.engineService.getPassword());
 
         // Make sure that Dicom studies URL ends with slash
         String dicomStudiesUrl = uriInfo.getRequestUri().toString();
@@ -149,122 +131,16 @@ public class WebDavEventAgnosticDicomStudyService extends BaseService {
             return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(dicomStudiesFolder)).build();
         }
 
-        final Collection<Response> responses = new LinkedList<>(singletonList(dicomStudiesFolder));
-
-        //TODO:
-
-        // Init the facade with OC service with access to OC data
-        this.studyIntegrationFacade.init(svcEdcEngine);
-        // Load corresponding RPB study
-        de.dktk.dd.rpb.core.domain.ctms.Study rpbStudy = studyIntegrationFacade
-                .loadStudyWithMetadataByIdentifier(studyIdentifier, siteIdentifier);
-
-        if (rpbStudy != null && rpbStudy.getEdcStudy() != null) {
-
-            // Load full ODM resource for study subject from EDC
-            String trimStudySubjectIdentifier = WebDavUtils.trimStudySubjectIdentifier(studySubjectIdentifier);
-            String queryOdmXmlPath = rpbStudy.getEdcStudy().getOid() + "/" + trimStudySubjectIdentifier + "/*/*";
-
-            // With too many parallel requests this can fail
-            Odm studySubjectOdm = svcEdcEngine.getStudyCasebookOdm(
-                    OpenClinicaService.CasebookFormat.XML,
-                    OpenClinicaService.CasebookMethod.VIEW,
-                    queryOdmXmlPath // Url
-            );
-
-            // 15 seconds - hardcoded for now
-            int retryTimeout = 15000;
-            long endTime = System.currentTimeMillis() + retryTimeout;
-            while (studySubjectOdm == null && System.currentTimeMillis() < endTime) {
-                this.sleepSecond();
-                studySubjectOdm = svcEdcEngine.getStudyCasebookOdm(
-                        OpenClinicaService.CasebookFormat.XML,
-                        OpenClinicaService.CasebookMethod.VIEW,
-                        queryOdmXmlPath // Url
-                );
-            }
-
-            // If study subject ODM exists
-            if (studySubjectOdm != null) {
-
-                // Create Definitions from References in metadata
-                studySubjectOdm.updateHierarchy();
-                StudySubject selectedStudySubject = studySubjectOdm.findUniqueStudySubjectOrNone(trimStudySubjectIdentifier);
-                selectedStudySubject.linkOdmDefinitions(studySubjectOdm);
-
-                // Metadata
-                String dicomAnnotationType = "DICOM_STUDY_INSTANCE_UID";
-                List<EventDefinition> dicomEventDefinitions = rpbStudy.findAnnotatedEventDefinitions(dicomAnnotationType);
-
-                // Data
-                List<EventData> dicomEventDataList = selectedStudySubject.getEventOccurrencesForEvenDefs(dicomEventDefinitions);
-
-                // Load DICOM data for patient from PACS (all at once, later it will be filtered)
-                List<DicomStudy> allPatientDicomStudies = svcPacs.loadPatientStudies(selectedStudySubject.getPid());
-
-                // Lookup for selected study event
-                for (EventData eventData : dicomEventDataList) {
-
-                    // Just annotation concerning selected event
-                    CrfFieldAnnotation eventExample = new CrfFieldAnnotation();
-                    eventExample.setEventDefinitionOid(eventData.getStudyEventOid());
-
-                    // Load CRF items referencing DICOM studies
-                    List<ItemData> dicomCrfItemData = eventData.findAnnotatedItemData(
-                            rpbStudy.findAnnotations(dicomAnnotationType, eventExample)
-                    );
-
-                    // Filter only DICOM studies that care referenced in item data
-                    List<DicomStudy> dicomStudies = new ArrayList<>();
-                    for (ItemData id : dicomCrfItemData) {
-                        if (!"".equals(id.getValue())) {
-                            for (DicomStudy ds : allPatientDicomStudies) {
-                                if (ds.getStudyInstanceUID().equals(id.getValue())) {
-                                    dicomStudies.add(ds);
-                                    break;
-                                }
-                            }
-                        }
-                    }
-
-                    if (dicomStudies.size() > 0) {
-                        for (DicomStudy dicomStudy : dicomStudies) {
-
-                            String dicomStudyNameIdentifier = dicomStudy.getStudyType() +
-                                    Constants.RPB_IDENTIFIERSEP +
-                                    WebDavUtils.encodeDicomUid(dicomStudy.getStudyInstanceUID());
-
-                            Response studyDicomFolder = new Response(
-                                new HRef(dicomStudiesUrl + dicomStudyNameIdentifier),
-                                null,
-                                null,
-                                null,
-                                new PropStat(
-                                    new Prop(
-                                        new DisplayName(dicomStudyNameIdentifier),
-                                        new CreationDate(dicomStudy.getDateStudy()),
-                                        new GetLastModified(dicomStudy.getDateStudy()),
-                                        COLLECTION
-                                    ),
-                                    new Status((javax.ws.rs.core.Response.StatusType) OK)
-                                )
-                            );
-                            responses.add(studyDicomFolder);
-                        }
-                    }
-                }
-
-                return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(responses.toArray(new Response[0]))).build();
-            }
-            else {
-                log.warn("WebDAV: Requested study subject does not exist within requested study.");
-                return javax.ws.rs.core.Response.status(404).build();
-            }
-        }
-        else {
-            log.error("WebDAV: OC SOAP failed, studyIdentifier: " + studyIdentifier);
-            return javax.ws.rs.core.Response.status(500).build();
-        }
+        // Expand from the WebDAV tree index
+        return this.createIndexedResponse(
+                defaultAccount,
+                dicomStudiesFolder,
+                dicomStudiesUrl,
+                WebDavUtils.buildIndexPath(uriInfo),
+                studyIdentifier,
+                WebDavUtils.trimDicomPatientPseudonymIdentifier(studySubjectIdentifier),
+                () -> this.loadDicomStudies(defaultAccount, studyIdentifier, siteIdentifier, studySubjectIdentifier, null)
+        );
     }
 
     @PROPFIND
@@ -20,8 +20,10 @@
 package de.dktk.dd.rpb.api.v1.webdav;
 
 import de.dktk.dd.rpb.api.support.BaseService;
+import de.dktk.dd.rpb.api.support.WebDavResource;
 import de.dktk.dd.rpb.api.support.WebDavUtils;
 import de.dktk.dd.rpb.core.util.Constants;
+import de.dktk.dd.rpb.portal.facade.StudyIntegrationFacade;
 import net.java.dev.webdav.jaxrs.methods.PROPFIND;
 import net.java.dev.webdav.jaxrs.xml.elements.HRef;
 import net.java.dev.webdav.jaxrs.xml.elements.MultiStatus;
@@ -45,7 +47,9 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.Providers;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
@@ -131,44 +135,18 @@ public class WebDavStudySubjectService extends BaseService {
         // Otherwise expand
         final Collection<Response> responses = new LinkedList<>(singletonList(studySubjectsFolder));
 
-        // Init the facade with OC data service with access to OC database
-        this.studyIntegrationFacade.init(this.openClinicaDataRepository);
-
-        // Define EDC study for query
-        de.dktk.dd.rpb.core.domain.edc.Study edcStudy = new de.dktk.dd.rpb.core.domain.edc.Study();
-        // Query for siteIdentifier (in mono-centre it is the same as parent study)
-        edcStudy.setUniqueIdentifier(siteIdentifier);
-
         try {
+            // Subjects are read from EDC database independently of the user, so the snapshot is shared
+            List<WebDavResource> subjects = this.webDavTreeIndex.getChildren(
+                    "",
+                    WebDavUtils.buildIndexPath(uriInfo),
+                    studyIdentifier,
+                    null,
+                    () -> this.loadStudySubjects(siteIdentifier)
+            );
 
-            List <de.dktk.dd.rpb.core.domain.edc.StudySubject> studySubjects = this.studyIntegrationFacade.loadStudySubjects(edcStudy);
-
-            if (studySubjects != null) {
-                for (de.dktk.dd.rpb.core.domain.edc.StudySubject studySubject : studySubjects) {
-
-                    String studySubjectNameIdentifier = WebDavUtils.buildStudySubjectIdentifier(studySubject);
-                    SimpleDateFormat formatter = new SimpleDateFormat(Constants.OC_DATEFORMAT);
-                    String enrollmentDateString = studySubject.getEnrollmentDate();
-                    Date enrollmentDate = formatter.parse(enrollmentDateString);
-                    Date convertEnrollmentDate = enrollmentDate;
-                    Response studySubjectFolder = new Response(
-                        new HRef(subjectsUrl + studySubjectNameIdentifier),
-                        null,
-                        null,
-                        null,
-                        new PropStat(
-                            new Prop(
-                                new DisplayName(studySubjectNameIdentifier),
-                                new CreationDate(convertEnrollmentDate),
-                                new GetLastModified(convertEnrollmentDate),
-                                COLLECTION
-                            ),
-                            new Status((javax.ws.rs.core.Response.StatusType) OK)
-                        )
-                    );
-
-                    responses.add(studySubjectFolder);
-                }
+            for (WebDavResource subject : subjects) {
+                responses.add(WebDavUtils.createResourceResponse(subjectsUrl, subject));
             }
 
             return javax.ws.rs.core.Response.status(MULTI_STATUS).entity(new MultiStatus(responses.toArray(new Response[0]))).build();
@@ -276,5 +254,37 @@ public class WebDavStudySubjectService extends BaseService {
     //endregion
 
     //endregion
-    
+
+    //region Private methods
+
+    private List<WebDavResource> loadStudySubjects(String siteIdentifier) throws ParseException {
+        List<WebDavResource> subjects = new ArrayList<>();
+
+        // Own facade with OC data service with access to OC database (loaders run concurrently on index refresh threads)
+        StudyIntegrationFacade facade = new StudyIntegrationFacade(this.studyIntegrationFacade);
+        facade.init(this.openClinicaDataRepository);
+
+        // Define EDC study for query
+        de.dktk.dd.rpb.core.domain.edc.Study edcStudy = new de.dktk.dd.rpb.core.domain.edc.Study();
+        // Query for siteIdentifier (in mono-centre it is the same as parent study)
+        edcStudy.setUniqueIdentifier(siteIdentifier);
+
+        List<de.dktk.dd.rpb.core.domain.edc.StudySubject> studySubjects = facade.loadStudySubjects(edcStudy);
+        if (studySubjects != null) {
+            SimpleDateFormat formatter = new SimpleDateFormat(Constants.OC_DATEFORMAT);
+            for (de.dktk.dd.rpb.core.domain.edc.StudySubject studySubject : studySubjects) {
+                Date enrollmentDate = formatter.parse(studySubject.getEnrollmentDate());
+                subjects.add(WebDavResource.collection(
+                        WebDavUtils.buildStudySubjectIdentifier(studySubject),
+                        enrollmentDate,
+                        enrollmentDate
+                ));
+            }
+        }
+
+        return subjects;
+    }
+
+    //endregion
+
 }
@@ -26,6 +26,9 @@ import de.dktk.dd.rpb.core.domain.edc.EnumCollectSubjectDob;
 import de.dktk.dd.rpb.core.domain.edc.EnumRequired;
 import de.dktk.dd.rpb.core.domain.edc.EnumStudySubjectIdGeneration;
 import de.dktk.dd.rpb.core.domain.edc.EventData;
+import de.dktk.dd.rpb.core.domain.edc.EventDefinition;
+import de.dktk.dd.rpb.core.domain.edc.ItemData;
+import de.dktk.dd.rpb.core.domain.edc.ItemDefinition;
 import de.dktk.dd.rpb.core.domain.edc.Odm;
 import de.dktk.dd.rpb.core.domain.edc.StudyParameterConfiguration;
 import de.dktk.dd.rpb.core.domain.edc.StudySubject;
@@ -37,14 +40,19 @@ import de.dktk.dd.rpb.core.ocsoap.types.ScheduledEvent;
 import de.dktk.dd.rpb.core.repository.ctms.IStudyRepository;
 import de.dktk.dd.rpb.core.repository.edc.IOpenClinicaDataRepository;
 import de.dktk.dd.rpb.core.service.DataTransformationService;
+import de.dktk.dd.rpb.core.service.IConquestService;
 import de.dktk.dd.rpb.core.service.IOpenClinicaService;
 import de.dktk.dd.rpb.core.service.OpenClinicaService;
+import de.dktk.dd.rpb.core.service.support.OdmImportResult;
 import de.dktk.dd.rpb.core.util.Constants;
 import de.dktk.dd.rpb.portal.web.mb.MainBean;
+import org.apache.commons.lang.StringUtils;
 import org.openclinica.ws.beans.SiteType;
 import org.openclinica.ws.beans.StudyType;
+import org.openclinica.ws.data.v1.ImportResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -57,7 +65,19 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This is a facade which tries to simplify the access to RadPlanBio study data
@@ -107,6 +127,10 @@ public class StudyIntegrationFacade {
     // Provided (init) by facade client
     private IOpenClinicaDataRepository openClinicaDataRepository;
 
+    // Number of ODM chunks imported into EDC concurrently
+    @Value("${oc.importThreads:4}")
+    private int importThreads = 4;
+
     //endregion
 
     //region Constructors
@@ -115,6 +139,18 @@ public class StudyIntegrationFacade {
         // NOOP
     }
 
+    /**
+     * Facade with injected services of other facade, it has to be initialised by its user
+     * (e.g. loaders running concurrently must not init the shared facade)
+     *
+     * @param other facade (usually injected)
+     */
+    public StudyIntegrationFacade(StudyIntegrationFacade other) {
+        this.studyRepository = other.studyRepository;
+        this.svcDataTransformation = other.svcDataTransformation;
+        this.importThreads = other.importThreads;
+    }
+
     //endregion
 
     //region Properties
@@ -647,6 +683,109 @@ public class StudyIntegrationFacade {
         return patient;
     }
 
+    /**
+     * Prefetch DICOM studies which are referenced in CRF items (annotated as DICOM_STUDY_INSTANCE_UID) of study subjects
+     * PACS is queried in parallel with one request per patient and found studies are attached to the study subject
+     * entity graph, so views do not have to query PACS for every referenced study separately
+     *
+     * @param rpbStudy      RPB study with EDC metadata (used to find annotated CRF items)
+     * @param studySubjects study subjects with event data
+     * @return StudyInstanceUIDs which have been queried in PACS (found or not)
+     */
+    public Set<String> prefetchDicomStudies(Study rpbStudy, List<StudySubject> studySubjects) {
+        Set<String> queriedStudyUids = new HashSet<>();
+
+        final IConquestService pacsService = this.mainBean.getPacsService();
+        if (pacsService == null || rpbStudy == null || studySubjects == null) {
+            return queriedStudyUids;
+        }
+
+        // Collect referenced StudyInstanceUIDs per study subject (together with CRF item definition they are stored in)
+        // Study subjects are compared by identity, business key hashing is not needed here
+        String annotationTypeName = "DICOM_STUDY_INSTANCE_UID";
+        Map<StudySubject, Map<String, ItemDefinition>> referencedStudies = new IdentityHashMap<>();
+        for (EventDefinition eventDef : rpbStudy.findAnnotatedEventDefinitions(annotationTypeName)) {
+            List<ItemDefinition> itemDefs = rpbStudy.findAnnotatedItemDefinitionsForEventDef(annotationTypeName, eventDef);
+
+            for (StudySubject ss : studySubjects) {
+                if (ss.getPerson() == null || StringUtils.isEmpty(ss.getPid())) {
+                    continue;
+                }
+
+                for (EventData eventData : ss.getEventOccurrencesForEventDef(eventDef)) {
+                    for (ItemDefinition itemDef : itemDefs) {
+                        ItemData itemData = ss.getItemDataForItemDef(eventData, itemDef);
+
+                        if (itemData != null && itemData.hasValue() && !ss.hasDicomStudyWithUid(itemData.getValue())) {
+                            Map<String, ItemDefinition> subjectStudies = referencedStudies.get(ss);
+                            if (subjectStudies == null) {
+                                subjectStudies = new LinkedHashMap<>();
+                                referencedStudies.put(ss, subjectStudies);
+                            }
+                            if (!subjectStudies.containsKey(itemData.getValue())) {
+                                subjectStudies.put(itemData.getValue(), itemDef);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (referencedStudies.isEmpty()) {
+            return queriedStudyUids;
+        }
+
+        // Query PACS in parallel (one request per patient)
+        int threads = Math.max(1, Math.min(pacsService.getThreadPoolSize(), referencedStudies.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Map<StudySubject, Future<List<DicomStudy>>> results = new IdentityHashMap<>();
+            for (Map.Entry<StudySubject, Map<String, ItemDefinition>> entry : referencedStudies.entrySet()) {
+                final String dicomPatientId = entry.getKey().getPid();
+                final List<ItemData> studyUidList = new ArrayList<>();
+                for (String dicomStudyUid : entry.getValue().keySet()) {
+                    ItemData itemData = new ItemData();
+                    itemData.setValue(dicomStudyUid);
+                    studyUidList.add(itemData);
+                }
+
+                results.put(entry.getKey(), executor.submit(new Callable<List<DicomStudy>>() {
+                    @Override
+                    public List<DicomStudy> call() {
+                        return pacsService.loadPatientStudies(dicomPatientId, studyUidList);
+                    }
+                }));
+            }
+
+            // Attach results to entity graph in the calling thread
+            for (Map.Entry<StudySubject, Future<List<DicomStudy>>> result : results.entrySet()) {
+                StudySubject ss = result.getKey();
+                Map<String, ItemDefinition> subjectStudies = referencedStudies.get(ss);
+
+                try {
+                    List<DicomStudy> dicomStudies = result.getValue().get();
+                    if (dicomStudies != null) {
+                        for (DicomStudy dicomStudy : dicomStudies) {
+                            // Store relation to crf Item definition
+                            dicomStudy.setCrfItemDefinition(subjectStudies.get(dicomStudy.getStudyInstanceUID()));
+                            ss.addDicomStudyForSubject(dicomStudy);
+                        }
+                    }
+                    queriedStudyUids.addAll(subjectStudies.keySet());
+                } catch (ExecutionException err) {
+                    log.error("Prefetching DICOM studies for patient " + ss.getPid() + " failed.", err.getCause());
+                }
+            }
+        } catch (InterruptedException err) {
+            log.error(err.getMessage(), err);
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return queriedStudyUids;
+    }
+
     public Person fetchPatientSpecimens(Person patient) {
 
         if (patient != null) {
@@ -845,6 +984,87 @@ public class StudyIntegrationFacade {
         }
     }
 
+    /**
+     * Import ODM clinical data into EDC in chunks of study subjects
+     *
+     * Chunks are marshalled and imported concurrently, failure of one chunk does not stop the import of the others.
+     * When the result of a previous import of the same data is provided, chunks which were already imported are
+     * skipped, so that a failed import can be resumed.
+     *
+     * @param odmData        ODM with clinical data of study subjects
+     * @param subjectsPerOdm number of study subjects imported with one SOAP request
+     * @param previousResult result of a previous import of the same data (to resume) or null
+     * @return import results per chunk
+     */
+    public OdmImportResult importDataInChunks(Odm odmData, Integer subjectsPerOdm, OdmImportResult previousResult) {
+        OdmImportResult result = new OdmImportResult();
+
+        if (odmData == null) {
+            return result;
+        }
+
+        odmData.cleanAttributesUnnecessaryForImport();
+        List<Odm> odmList = odmData.splitToList(subjectsPerOdm);
+
+        final IOpenClinicaService ocService = this.getOpenClinicaService();
+
+        // SOAP ports and their message handlers are not thread safe, each worker imports over its own connection
+        final Queue<IOpenClinicaService> connections = new ConcurrentLinkedQueue<>();
+
+        int threads = Math.max(1, Math.min(this.importThreads, odmList.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ImportResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < odmList.size(); i++) {
+                final Odm odm = odmList.get(i);
+
+                // Already imported chunks are not submitted again
+                if (previousResult != null && previousResult.findImportedChunk(i, getSubjectKeys(odm)) != null) {
+                    futures.add(null);
+                } else {
+                    futures.add(executor.submit(new Callable<ImportResponse>() {
+                        @Override
+                        public ImportResponse call() throws OCConnectorException {
+                            return importChunk(ocService, connections, odm);
+                        }
+                    }));
+                }
+            }
+
+            // Collect results in order of chunks
+            boolean interrupted = false;
+            for (int i = 0; i < odmList.size(); i++) {
+                List<String> subjectKeys = getSubjectKeys(odmList.get(i));
+                Future<ImportResponse> future = futures.get(i);
+
+                if (future == null) {
+                    result.addChunk(previousResult.findImportedChunk(i, subjectKeys));
+                } else if (interrupted) {
+                    result.addFailedChunk(i, subjectKeys, "Import was interrupted");
+                } else {
+                    try {
+                        result.addImportedChunk(i, subjectKeys, future.get());
+                    } catch (ExecutionException err) {
+                        log.error("Import of ODM chunk " + i + " with subjects " + subjectKeys + " failed.", err.getCause());
+                        result.addFailedChunk(i, subjectKeys, err.getCause().getMessage());
+                    } catch (InterruptedException err) {
+                        log.error(err.getMessage(), err);
+                        interrupted = true;
+                        result.addFailedChunk(i, subjectKeys, "Import was interrupted");
+                    }
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
     public List<File> createImportFiles(Odm odmData, Integer subjectsPerOdm) {
         List<File> results = new ArrayList<>();
 
@@ -881,6 +1101,43 @@ public class StudyIntegrationFacade {
 
     //region Private
 
+    private ImportResponse importChunk(IOpenClinicaService ocService, Queue<IOpenClinicaService> connections, Odm odm) throws OCConnectorException {
+        if (ocService == null) {
+            throw new OCConnectorException("EDC web services are not available.");
+        }
+
+        String odmString = this.svcDataTransformation.transformOdmToString(odm);
+        if (odmString == null || odmString.isEmpty()) {
+            throw new OCConnectorException("ODM import data could not be marshalled.");
+        }
+
+        // At most one connection per worker is created, it is returned for the next chunk when the import is done
+        IOpenClinicaService connection = connections.poll();
+        if (connection == null) {
+            connection = ocService.createConnection();
+        }
+
+        try {
+            ImportResponse response = connection.importData(odmString);
+            if (response == null) {
+                throw new OCConnectorException("EDC web services are not connected.");
+            }
+
+            return response;
+        } finally {
+            connections.offer(connection);
+        }
+    }
+
+    private static List<String> getSubjectKeys(Odm odm) {
+        List<String> result = new ArrayList<>();
+        for (StudySubject studySubject : odm.getClinicalDataList().get(0).getStudySubjects()) {
+            result.add(studySubject.getSubjectKey());
+        }
+
+        return result;
+    }
+
     private List<StudyType> loadWebServicesStudies() {
         List<StudyType> studyTypeList = new ArrayList<>();
 
@@ -28,6 +28,7 @@ import de.dktk.dd.rpb.core.domain.edc.mapping.Mapping;
 import de.dktk.dd.rpb.core.service.DataTransformationService;
 import de.dktk.dd.rpb.core.service.OdmService;
 import de.dktk.dd.rpb.core.service.OpenClinicaService;
+import de.dktk.dd.rpb.core.service.support.OdmImportResult;
 import de.dktk.dd.rpb.core.util.FileUtil;
 import de.dktk.dd.rpb.portal.facade.StudyIntegrationFacade;
 import de.dktk.dd.rpb.portal.web.mb.MainBean;
@@ -131,6 +132,8 @@ public class OCImportBean implements Serializable {
 
     private Integer subjectPerDataset;
 
+    private OdmImportResult importResult;
+
     private List<Boolean> subjectsColumnVisibilityList;
     private List<SortMeta> subjectsPreSortOrder;
 
@@ -288,6 +291,21 @@ public class OCImportBean implements Serializable {
 
     //endregion
 
+    //region ImportResult
+
+    public OdmImportResult getImportResult() {
+        return this.importResult;
+    }
+
+    /**
+     * @return true when the last import has chunks which were not imported
+     */
+    public boolean isImportResumable() {
+        return this.importResult != null && this.importResult.hasFailures();
+    }
+
+    //endregion
+
     //region Sorting
 
     public List<SortMeta> getSubjectsPreSortOrder() {
@@ -535,16 +553,15 @@ public class OCImportBean implements Serializable {
      * Import ODM data for all subject and all eCRFs into OC EDC
      */
     public void importData() {
-        try {
-            this.studyIntegrationFacade.importData(
-                    this.importDataOdm,
-                    this.subjectPerDataset
-            );
+        this.importResult = null;
+        this.importDataInChunks();
+    }
 
-            this.messageUtil.info("Import successfully finished.");
-        } catch (Exception err) {
-            this.messageUtil.error(err);
-        }
+    /**
+     * Continue import of ODM data with the chunks which were not imported by the last import
+     */
+    public void resumeImportData() {
+        this.importDataInChunks();
     }
 
     /**
@@ -698,6 +715,29 @@ public class OCImportBean implements Serializable {
 
     //region Private methods
 
+    private void importDataInChunks() {
+        try {
+            this.importResult = this.studyIntegrationFacade.importDataInChunks(
+                    this.importDataOdm,
+                    this.subjectPerDataset,
+                    this.importResult
+            );
+
+            if (this.importResult.hasFailures()) {
+                OdmImportResult.Chunk firstFailedChunk = this.importResult.getFirstFailedChunk();
+                this.messageUtil.warningText(
+                        "Import of " + this.importResult.getFailedSubjectKeys().size() + " subjects failed " +
+                        "(first failed dataset " + (firstFailedChunk.getIndex() + 1) + ": " + firstFailedChunk.getMessage() + "), " +
+                        "failed subjects: " + this.importResult.getFailedSubjectKeys()
+                );
+            } else {
+                this.messageUtil.info("Import successfully finished.");
+            }
+        } catch (Exception err) {
+            this.messageUtil.error(err);
+        }
+    }
+
     private List<StudySubject> filterOutExistingEvents(List<StudySubject> studySubjectsFromFileList) {
 
         List<StudySubject> studySubjectsForUpdate = new ArrayList<>();
@@ -189,6 +189,8 @@ public class LabBean extends CrudEntityViewModel<Lab, Integer> {
         this.siteIdentifier = rpbStudy.getEdcStudy().extractPartnerSiteIdentifier();
         this.siteModifier = rpbStudy.getEdcStudy().extractStudySiteModifier();
         this.studyConfiguration = rpbStudy.getEdcStudy().getMetaDataVersion().getStudyDetails().getStudyParameterConfiguration();
+        this.studyConfiguration.setLabKeyStreamingUpload(rpbStudy.getBooleanTagValue("LabKey-streamingUpload"));
+        this.studyConfiguration.setLabKeyUploadThreads(this.parseUploadThreads(rpbStudy.getTagValue("LabKey-uploadThreads")));
 
         this.labKeyExportConfiguration = new LabKeyExportConfiguration(this.studyConfiguration);
 
@@ -200,6 +202,19 @@ public class LabBean extends CrudEntityViewModel<Lab, Integer> {
 
     }
 
+    private Integer parseUploadThreads(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException err) {
+            log.warn("Ignoring invalid LabKey-uploadThreads study tag value: " + value);
+            return null;
+        }
+    }
+
     /**
      * Iterates on an array of possible ODM file path and returns the first one that exists.
      *
@@ -28,6 +28,8 @@ import de.dktk.dd.rpb.core.domain.edc.Subject;
 import de.dktk.dd.rpb.core.domain.edc.sorter.StudyListSorter;
 import de.dktk.dd.rpb.core.domain.pacs.DicomImage;
 import de.dktk.dd.rpb.core.domain.pacs.DicomSeries;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingJob;
+import de.dktk.dd.rpb.core.domain.pacs.DicomStagingTask;
 import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
 import de.dktk.dd.rpb.core.domain.pacs.StagedDicomSeries;
 import de.dktk.dd.rpb.core.domain.pacs.StagedDicomSeriesVirtualSeries;
@@ -37,7 +39,10 @@ import de.dktk.dd.rpb.core.facade.ParallelConquestRequestsFacade;
 import de.dktk.dd.rpb.core.repository.support.Repository;
 import de.dktk.dd.rpb.core.service.AuditEvent;
 import de.dktk.dd.rpb.core.service.AuditLogService;
+import de.dktk.dd.rpb.core.service.DicomStagingService;
+import de.dktk.dd.rpb.core.service.IConquestService;
 import de.dktk.dd.rpb.core.service.ICtpService;
+import de.dktk.dd.rpb.core.service.support.PacsPatientLookupResult;
 import de.dktk.dd.rpb.core.util.DicomUidReGeneratorUtil;
 import de.dktk.dd.rpb.core.util.PatientIdentifierUtil;
 import de.dktk.dd.rpb.core.util.StudySubjectListUtil;
@@ -100,6 +105,7 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
     private final MainBean mainBean;
     private final StudyIntegrationFacade studyIntegrationFacade;
     private final ICtpService ctpService;
+    private final DicomStagingService dicomStagingService;
 
     //endregion
 
@@ -128,6 +134,9 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
     private StagedDicomSeries selectedStagedSeries;
 
     private int progress = 0;
+    // background staging job submitted from this view
+    private String stagingJobId;
+    private boolean stagingJobReported = true;
     // limits the count of subjects per search in ddlStudySubjects component
     private int maxSubjectsPerSearch = 10;
 
@@ -140,11 +149,13 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
 
     @Inject
     public DicomLookupBean(MainBean mainBean, StudyIntegrationFacade studyIntegrationFacade,
-                           AuditLogService auditLogService, ICtpService ctpService) {
+                           AuditLogService auditLogService, ICtpService ctpService,
+                           DicomStagingService dicomStagingService) {
         this.mainBean = mainBean;
         this.studyIntegrationFacade = studyIntegrationFacade;
         this.auditLogService = auditLogService;
         this.ctpService = ctpService;
+        this.dicomStagingService = dicomStagingService;
     }
 
     // endregion
@@ -280,9 +291,30 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
     }
 
     public int getProgress() {
+        DicomStagingJob job = this.getStagingJob();
+        if (job != null) {
+            return job.getProgress();
+        }
+
         return progress;
     }
 
+    public DicomStagingJob getStagingJob() {
+        return this.dicomStagingService.getJob(this.stagingJobId);
+    }
+
+    public boolean isStagingJobRunning() {
+        DicomStagingJob job = this.getStagingJob();
+        return job != null && !job.isCompleted();
+    }
+
+    /**
+     * @return true while the result of the submitted staging job was not reported yet
+     */
+    public boolean isStagingJobPolling() {
+        return this.stagingJobId != null && !this.stagingJobReported;
+    }
+
     public int getMaxSubjectsPerSearch() {
         return maxSubjectsPerSearch;
     }
@@ -680,12 +712,20 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
      * Triggers a move request for the DicomSeries on the corresponding Pacs system, based on the selectedDicomSeries property.
      * The destination is build by convention, based on the ctp.baseAetName of the ctp properties file and the
      * edc code of the study. It reflects a pipeline of a ClinicalTrialProcessor (CTP) system that will process the data.
+     * Moves are executed as background staging job, the progress is polled via checkStagingJob.
      */
     public void stageChosenDicomSeries() {
         if (this.selectedDicomSeries.size() == 0) {
             return;
         }
 
+        if (this.isStagingJobRunning()) {
+            String errorMessage = "The previous staging job is still running.";
+            String userAdvice = "Please wait until it is finished";
+            this.messageUtil.warningText(errorMessage + " " + userAdvice);
+            return;
+        }
+
         String dicomPatientId;
         String patientPseudonym;
         String dicomStudyUid;
@@ -717,8 +757,17 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
         String uidPrefix = ctpService.getDicomUidPrefix();
         String partnerSideCode = this.mainBean.getMyAccount().getPartnerSite().getIdentifier();
 
+        IConquestService pacsService = isInStudyZero() ?
+                this.mainBean.getClinicalPacsService() :
+                this.mainBean.getPacsService();
+
+        DicomStagingJob job = new DicomStagingJob(
+                this.mainBean.getMyAccount().getUsername(),
+                pacsService.getBaseUrl(),
+                aetPrefix + edcCode
+        );
+
         for (StagedDicomSeries series : this.selectedDicomSeries) {
-            boolean moveSuccess;
             /**
              * StagedDicomSeriesVirtualSeries represent just a part of a series with the DicomImages that have
              * a reference to the same DICOM Series. Here we need to move image by image to exclude unwanted
@@ -726,26 +775,52 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
              */
             if (isMoveCompleteSeries(series)) {
                 if (isInStudyZero()) {
-                    moveSuccess = triggerDicomSeriesMoveOnClinicalPacs(patientPseudonym, dicomPatientId, dicomStudyUid, auditEvent, aetPrefix, edcCode, uidPrefix, series);
+                    auditDicomSeriesMoveOnClinicalPacs(patientPseudonym, dicomStudyUid, auditEvent, edcCode, uidPrefix, series);
                 } else {
-                    moveSuccess = triggerDicomSeriesMoveOnPacsService(patientPseudonym, dicomPatientId, dicomStudyUid, auditEvent, aetPrefix, edcCode, uidPrefix, partnerSideCode, series);
+                    auditDicomSeriesMoveOnPacsService(patientPseudonym, dicomStudyUid, auditEvent, edcCode, uidPrefix, partnerSideCode, series);
                 }
-                handleStagingSeriesErrors(series, moveSuccess);
+                job.addTask(DicomStagingTask.series(dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID()));
             } else {
                 if (series.getAvailableDicomImages() != null) {
                     for (DicomImage image : series.getAvailableDicomImages()) {
 
                         if (isInStudyZero()) {
-                            moveSuccess = triggerDicomSopInstanceMoveOnClinicalPacs(patientPseudonym, dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID(), image.getSopInstanceUID(), auditEvent, aetPrefix, edcCode, uidPrefix, partnerSideCode);
+                            auditDicomSopInstanceMoveOnClinicalPacs(patientPseudonym, dicomStudyUid, series.getSeriesInstanceUID(), image.getSopInstanceUID(), auditEvent, uidPrefix);
                         } else {
-                            moveSuccess = triggerDicomSopInstanceMoveOnPacsService(patientPseudonym, dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID(), image.getSopInstanceUID(), auditEvent, aetPrefix, edcCode, uidPrefix, partnerSideCode);
+                            auditDicomSopInstanceMoveOnPacsService(patientPseudonym, dicomStudyUid, series.getSeriesInstanceUID(), image.getSopInstanceUID(), auditEvent, edcCode, uidPrefix, partnerSideCode);
                         }
-                        handleStagingImageErrors(image, moveSuccess);
+                        job.addTask(DicomStagingTask.instance(dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID(), image.getSopInstanceUID()));
                     }
                 }
             }
         }
 
+        this.stagingJobId = this.dicomStagingService.submit(job).getId();
+        this.stagingJobReported = false;
+
+        this.messageUtil.infoText("Staging of " + job.getTotalCount() + " DICOM objects was started.");
+    }
+
+    /**
+     * Polled by the view while a staging job is running, reports the result once the job is finished
+     */
+    public void checkStagingJob() {
+        DicomStagingJob job = this.getStagingJob();
+        if (job == null || !job.isCompleted() || this.stagingJobReported) {
+            return;
+        }
+
+        this.stagingJobReported = true;
+
+        for (DicomStagingTask task : job.getFailedTasks()) {
+            String errorMessage = "There was a problem staging the " + task.toString();
+            log.error(errorMessage);
+            messageUtil.errorText(errorMessage);
+        }
+
+        if (job.getFailedCount() == 0) {
+            this.messageUtil.infoText("Staging of " + job.getDoneCount() + " DICOM objects finished.");
+        }
     }
 
     /**
@@ -1077,7 +1152,9 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
 
     private void requirePatientDataFromResearchPacs() throws Exception {
         log.debug("Query patient data from PacsService");
-        this.resultSubjectList = this.mainBean.getPacsService().loadPatients(this.inputStudySubjectList);
+        PacsPatientLookupResult lookupResult = this.mainBean.getPacsService().loadPatientsInParallel(this.inputStudySubjectList);
+        reportFailedPatientLookup(lookupResult, "research");
+        this.resultSubjectList = lookupResult.getSubjects();
     }
 
     private void requirePatientDataFromClinicalPacs() throws Exception {
@@ -1088,7 +1165,18 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
             requestedSubjects.add(requestSubject);
         }
         log.debug("Query patient data from clinical PacsService");
-        this.clinicalSubjectList = this.mainBean.getClinicalPacsService().loadPatients(requestedSubjects);
+        PacsPatientLookupResult lookupResult = this.mainBean.getClinicalPacsService().loadPatientsInParallel(requestedSubjects);
+        reportFailedPatientLookup(lookupResult, "clinical");
+        this.clinicalSubjectList = lookupResult.getSubjects();
+    }
+
+    private void reportFailedPatientLookup(PacsPatientLookupResult lookupResult, String pacsName) {
+        if (lookupResult.hasFailures()) {
+            String errorMessage = "Could not load DICOM data from the " + pacsName + " PACS for: " + lookupResult.getFailedPatientIds().toString();
+            String userAdvice = "Please try again or contact your administrator";
+            messageUtil.warningText(errorMessage + " " + userAdvice);
+            log.error(errorMessage);
+        }
     }
 
     private Subject getFirstMatchingSubjectByPid(List<Subject> subjectList, String pid) {
@@ -1147,50 +1235,22 @@ public class DicomLookupBean extends CrudEntityViewModel<StagedSubject, Integer>
         }
     }
 
-    private void handleStagingSeriesErrors(StagedDicomSeries series, boolean moveSuccess) {
-        if (!moveSuccess) {
-            String errorMessage = "There was a problem staging the series";
-            if (series != null) {
-                errorMessage += series.toString();
-            }
-            log.error(errorMessage);
-            messageUtil.errorText(errorMessage);
-        }
-    }
-
-    private void handleStagingImageErrors(DicomImage image, boolean moveSuccess) {
-        if (!moveSuccess) {
-            String errorMessage = "There was a problem staging the image";
-            if (image != null) {
-                errorMessage += image.toString();
-            }
-            log.error(errorMessage);
-            messageUtil.errorText(errorMessage);
-        }
-    }
-
-    private boolean triggerDicomSeriesMoveOnPacsService(String patientPseudonym, String dicomPatientId, String
-            dicomStudyUid, AuditEvent auditEvent, String aetPrefix, String edcCode, String uidPrefix, String
-                                                                partnerSideCode, StagedDicomSeries series) {
+    private void auditDicomSeriesMoveOnPacsService(String patientPseudonym, String dicomStudyUid, AuditEvent
+            auditEvent, String edcCode, String uidPrefix, String partnerSideCode, StagedDicomSeries series) {
         this.auditLogService.event(auditEvent, "DicomSeries", this.rpbStudy.getProtocolId() + "/" + patientPseudonym, DicomUidReGeneratorUtil.generateStageTwoUid(uidPrefix, partnerSideCode, edcCode, dicomStudyUid) + " / " + DicomUidReGeneratorUtil.generateStageTwoUid(uidPrefix, partnerSideCode, edcCode, series.getSeriesInstanceUID()));
-        return this.mainBean.getPacsService().moveDicomSeries(dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID(), aetPrefix + edcCode);
     }
 
-    private boolean triggerDicomSeriesMoveOnClinicalPacs(String patientPseudonym, String dicomPatientId, String
-            dicomStudyUid, AuditEvent auditEvent, String aetPrefix, String edcCode, String uidPrefix, StagedDicomSeries
-                                                                 series) {
+    private void auditDicomSeriesMoveOnClinicalPacs(String patientPseudonym, String dicomStudyUid, AuditEvent
+            auditEvent, String edcCode, String uidPrefix, StagedDicomSeries series) {
         this.auditLogService.event(auditEvent, "DicomSeries", this.rpbStudy.getProtocolId() + "/" + patientPseudonym, DicomUidReGeneratorUtil.generateStageOneUid(uidPrefix, dicomStudyUid) + " / " + DicomUidReGeneratorUtil.generateStageOneUid(uidPrefix, series.getSeriesInstanceUID()));
-        return this.mainBean.getClinicalPacsService().moveDicomSeries(dicomPatientId, dicomStudyUid, series.getSeriesInstanceUID(), aetPrefix + edcCode);
     }
 
-    private boolean triggerDicomSopInstanceMoveOnPacsService(String patientPseudonym, String dicomPatientId, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceId, AuditEvent auditEvent, String aetPrefix, String edcCode, String uidPrefix, String partnerSideCode) {
+    private void auditDicomSopInstanceMoveOnPacsService(String patientPseudonym, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceId, AuditEvent auditEvent, String edcCode, String uidPrefix, String partnerSideCode) {
         this.auditLogService.event(auditEvent, "SOP Instance", this.rpbStudy.getProtocolId() + "/" + patientPseudonym, DicomUidReGeneratorUtil.generateStageTwoUid(uidPrefix, partnerSideCode, edcCode, dicomStudyUid) + " / " + DicomUidReGeneratorUtil.generateStageTwoUid(uidPrefix, partnerSideCode, edcCode, dicomSeriesUid) + " / " + DicomUidReGeneratorUtil.generateStageTwoUid(uidPrefix, partnerSideCode, edcCode, dicomSopInstanceId));
-        return this.mainBean.getPacsService().moveDicomSopInstance(dicomPatientId, dicomStudyUid, dicomSeriesUid, dicomSopInstanceId, aetPrefix + edcCode);
     }
 
-    private boolean triggerDicomSopInstanceMoveOnClinicalPacs(String patientPseudonym, String dicomPatientId, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceId, AuditEvent auditEvent, String aetPrefix, String edcCode, String uidPrefix, String partnerSideCode) {
+    private void auditDicomSopInstanceMoveOnClinicalPacs(String patientPseudonym, String dicomStudyUid, String dicomSeriesUid, String dicomSopInstanceId, AuditEvent auditEvent, String uidPrefix) {
         this.auditLogService.event(auditEvent, "SOP Instance", this.rpbStudy.getProtocolId() + "/" + patientPseudonym, DicomUidReGeneratorUtil.generateStageOneUid(uidPrefix, dicomStudyUid) + " / " + DicomUidReGeneratorUtil.generateStageOneUid(uidPrefix, dicomSeriesUid) + " / " + DicomUidReGeneratorUtil.generateStageOneUid(uidPrefix, dicomSopInstanceId));
-        return this.mainBean.getClinicalPacsService().moveDicomSopInstance(dicomPatientId, dicomStudyUid, dicomSeriesUid, dicomSopInstanceId, aetPrefix + edcCode);
     }
 
     private AuditEvent getPacsDataAuditEvent(Boolean update) {
@@ -21,6 +21,7 @@ package de.dktk.dd.rpb.portal.web.mb.pacs;
 
 import de.dktk.dd.rpb.core.domain.ctms.Study;
 import de.dktk.dd.rpb.core.domain.edc.*;
+import de.dktk.dd.rpb.core.domain.pacs.DicomSeriesRtDose;
 import de.dktk.dd.rpb.core.domain.pacs.DicomStudy;
 import de.dktk.dd.rpb.core.domain.pacs.RtTreatmentCase;
 import de.dktk.dd.rpb.core.repository.edc.IStudySubjectRepository;
@@ -37,7 +38,9 @@ import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * ViewModel bean for study centric patient DICOM matrix view for monitoring of DICOM data collection progress
@@ -94,6 +97,9 @@ public class DicomMatrixBean extends CrudEntityViewModel<StudySubject, Integer>
     private List<Integer> eventDataRepeatKeys;
     private Integer selectedEventDataRepeatKey;
 
+    // StudyInstanceUIDs already queried from PACS in bulk prefetch
+    private Set<String> prefetchedDicomStudyUids = new HashSet<>();
+
     //endregion
 
     //region Properties
@@ -218,10 +224,14 @@ public class DicomMatrixBean extends CrudEntityViewModel<StudySubject, Integer>
                     dicomItemDef
             );
 
-            // When the DICOM study was not loaded yet, load it from PACS
-            if (itemData != null && itemData.hasValue() && !ss.hasDicomStudyWithUid(itemData.getValue())) {
-                if  (this.mainBean.getPacsService() != null) {
-                    DicomStudy dicomStudy = this.mainBean.getPacsService()
+            if (itemData != null && itemData.hasValue()) {
+                DicomStudy dicomStudy = ss.getDicomStudyWithUid(itemData.getValue());
+
+                // When the DICOM study was not loaded yet (and was not queried in prefetch), load it from PACS
+                if (dicomStudy == null && !this.prefetchedDicomStudyUids.contains(itemData.getValue()) &&
+                    this.mainBean.getPacsService() != null) {
+
+                    dicomStudy = this.mainBean.getPacsService()
                             .loadPatientStudy(
                                     ss.getPid(),
                                     itemData.getValue()
@@ -232,17 +242,14 @@ public class DicomMatrixBean extends CrudEntityViewModel<StudySubject, Integer>
                         // Store relation to crf Item definition
                         dicomStudy.setCrfItemDefinition(dicomItemDef);
 
-                        result = dicomStudy.getStudyType() + " [" + dicomStudy.getStudyDate() + "]";
-
                         // We place this study to entity graph so it does not have to be always queried from PACS
                         ss.addDicomStudyForSubject(dicomStudy);
                     }
                 }
-            }
-            // Otherwise use preloaded
-            else if (itemData != null && itemData.hasValue()) {
-                DicomStudy dicomStudy = ss.getDicomStudyWithUid(itemData.getValue());
-                result = dicomStudy.getStudyType() + " [" + dicomStudy.getStudyDate() + "]";
+
+                if (dicomStudy != null) {
+                    result = dicomStudy.getStudyType() + " [" + dicomStudy.getStudyDate() + "]";
+                }
             }
         }
         catch (Exception err) {
@@ -336,46 +343,93 @@ public class DicomMatrixBean extends CrudEntityViewModel<StudySubject, Integer>
     public RtTreatmentCase loadTreatmentCase(StudySubject ss) {
         RtTreatmentCase result = null;
 
-        if (ss != null && this.selectedEventDef != null) {
-            try {
-                EventData selectedEventData = ss.getEventOccurrenceForEventDef(
-                        this.selectedEventDef,
-                        this.selectedEventDataRepeatKey
+        try {
+            DicomStudy dicomStudy = this.findSelectedDicomStudy(ss);
+            if (dicomStudy != null && dicomStudy.getRtTreatmentCase() == null) {
+                result = this.mainBean.getPacsService().loadRtTreatmentCase(
+                        ss.getPid(),
+                        dicomStudy
                 );
 
-                if (selectedEventData != null) {
-                    // Get value of Item (StudyInstanceUID)
-                    ItemData itemData = ss.getItemDataForItemDef(
-                            selectedEventData,
-                            this.selectedItemDef
+                // Incomplete treatment case is not kept so that it is loaded again next time
+                if (result.isPartial()) {
+                    this.messageUtil.warningText(
+                            "Some DICOM-RT objects could not be loaded: " + String.join(", ", result.getFailedUids())
                     );
-
-                    if (itemData != null) {
-                        DicomStudy dicomStudy = ss.getDicomStudyWithUid(itemData.getValue());
-                        if (dicomStudy != null && dicomStudy.getRtTreatmentCase() == null) {
-                            result = this.mainBean.getPacsService().loadRtTreatmentCase(
-                                    ss.getPid(),
-                                    dicomStudy
-                            );
-
-                            dicomStudy.setRtTreatmentCase(result);
-                        }
-                        else if (dicomStudy != null) {
-                            result = dicomStudy.getRtTreatmentCase();
-                        }
-                    }
+                } else {
+                    dicomStudy.setRtTreatmentCase(result);
                 }
             }
-            catch (Exception err) {
-                this.messageUtil.error(err);
+            else if (dicomStudy != null) {
+                result = dicomStudy.getRtTreatmentCase();
             }
         }
+        catch (Exception err) {
+            this.messageUtil.error(err);
+        }
 
         return result;
     }
 
+    /**
+     * Calculate DVHs of RTDOSE from its dose grid (complete RTDOSE instance is retrieved, so only on request)
+     *
+     * @param ss     study subject with loaded treatment case
+     * @param rtDose RTDOSE of the treatment case
+     */
+    public void calculateDvhs(StudySubject ss, DicomSeriesRtDose rtDose) {
+        try {
+            DicomStudy dicomStudy = this.findSelectedDicomStudy(ss);
+            if (dicomStudy != null && dicomStudy.getRtTreatmentCase() != null) {
+                boolean calculated = this.mainBean.getPacsService().calculateRtDoseDvhs(
+                        dicomStudy.getStudyInstanceUID(),
+                        dicomStudy.getRtTreatmentCase(),
+                        rtDose
+                );
+
+                if (calculated) {
+                    this.messageUtil.infoText("DVHs calculated: " + rtDose.getRtDvhsCount());
+                } else {
+                    this.messageUtil.warningText("DVHs could not be calculated for RTDOSE " + rtDose.getSopInstanceUid());
+                }
+            }
+        }
+        catch (Exception err) {
+            this.messageUtil.error(err);
+        }
+    }
+
+    //endregion
+
     //endregion
 
+    //region Private methods
+
+    /**
+     * DICOM study referenced by the selected item of the selected event occurrence of study subject
+     */
+    private DicomStudy findSelectedDicomStudy(StudySubject ss) {
+        if (ss == null || this.selectedEventDef == null) {
+            return null;
+        }
+
+        EventData selectedEventData = ss.getEventOccurrenceForEventDef(
+                this.selectedEventDef,
+                this.selectedEventDataRepeatKey
+        );
+        if (selectedEventData == null) {
+            return null;
+        }
+
+        // Get value of Item (StudyInstanceUID)
+        ItemData itemData = ss.getItemDataForItemDef(
+                selectedEventData,
+                this.selectedItemDef
+        );
+
+        return itemData != null ? ss.getDicomStudyWithUid(itemData.getValue()) : null;
+    }
+
     //endregion
 
     //region Overrides
@@ -389,6 +443,12 @@ public class DicomMatrixBean extends CrudEntityViewModel<StudySubject, Integer>
 
             this.rpbStudy = this.studyIntegrationFacade.loadStudyWithMetadata();
             this.entityList = this.studyIntegrationFacade.loadOdmStudySubjects();
+
+            // Query referenced DICOM studies in bulk instead of lazily per rendered matrix cell
+            this.prefetchedDicomStudyUids = this.studyIntegrationFacade.prefetchDicomStudies(
+                    this.rpbStudy,
+                    this.entityList
+            );
         }
         catch (Exception err) {
             this.messageUtil.error(err);
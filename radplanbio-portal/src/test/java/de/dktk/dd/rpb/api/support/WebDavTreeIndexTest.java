@@ -0,0 +1,217 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.api.support;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WebDavTreeIndexTest {
+
+    private static final String scope = "user";
+    private static final String path = "v1/webdav/studies/S/sites/S/subjects/SS-1-(PID)/dcmstudies";
+
+    private WebDavTreeIndex index;
+    private AtomicInteger loads;
+    private AtomicLong time;
+
+    @Before
+    public void setUp() {
+        this.time = new AtomicLong(1000000);
+        this.index = new WebDavTreeIndex();
+        this.index.clock = this.time::get;
+        this.loads = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        this.index.shutdown();
+    }
+
+    @Test
+    public void collection_is_loaded_once_and_served_from_snapshot() throws Exception {
+        List<WebDavResource> first = this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        List<WebDavResource> second = this.index.getChildren(scope, path, "S", "PID", this.loader("MR"));
+
+        assertEquals(1, this.loads.get());
+        assertEquals("CT", second.get(0).getName());
+        assertEquals(first, second);
+        assertEquals(1, this.index.getHits());
+        assertEquals(1, this.index.getMisses());
+    }
+
+    @Test
+    public void snapshots_are_kept_per_scope() throws Exception {
+        this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        List<WebDavResource> other = this.index.getChildren("other", path, "S", "PID", this.loader("MR"));
+
+        assertEquals(2, this.loads.get());
+        assertEquals("MR", other.get(0).getName());
+    }
+
+    @Test
+    public void import_of_patient_data_invalidates_collections_of_patient() throws Exception {
+        this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        this.index.getChildren(scope, "other", "S", "PID2", this.loader("CT"));
+
+        this.index.invalidatePatient("PID");
+
+        assertEquals(1, this.index.getSize());
+        assertEquals("MR", this.index.getChildren(scope, path, "S", "PID", this.loader("MR")).get(0).getName());
+    }
+
+    @Test
+    public void invalidation_of_study_removes_its_collections() throws Exception {
+        this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        this.index.getChildren(scope, "other", "T", null, this.loader("CT"));
+
+        this.index.invalidateStudy("S");
+
+        assertEquals(1, this.index.getSize());
+    }
+
+    @Test
+    public void invalidation_discards_only_running_loads_of_its_study_or_patient() throws Exception {
+        this.index.getChildren(scope, path, "S", "PID", () -> {
+            this.index.invalidatePatient("PID2");
+            this.index.invalidateStudy("T");
+            return this.loader("CT").load();
+        });
+        this.index.getChildren(scope, "other", "S", "PID2", () -> {
+            this.index.invalidatePatient("PID2");
+            return this.loader("CT").load();
+        });
+        this.index.getChildren(scope, "study", "T", null, () -> {
+            this.index.invalidateStudy("T");
+            return this.loader("CT").load();
+        });
+
+        assertEquals(1, this.index.getSize());
+        this.index.getChildren(scope, path, "S", "PID", this.loader("MR"));
+        assertEquals(3, this.loads.get());
+    }
+
+    @Test
+    public void outdated_snapshot_is_served_and_refreshed_in_background() throws Exception {
+        ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+        this.index.refreshExecutor = refreshExecutor;
+        this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        this.time.addAndGet(this.index.refreshAfter);
+
+        List<WebDavResource> stale = this.index.getChildren(scope, path, "S", "PID", this.loader("MR"));
+        assertEquals("CT", stale.get(0).getName());
+
+        refreshExecutor.shutdown();
+        assertTrue(refreshExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(1, this.index.getRefreshes());
+        assertEquals("MR", this.index.getChildren(scope, path, "S", "PID", this.loader("US")).get(0).getName());
+    }
+
+    @Test
+    public void expired_snapshot_is_reloaded_before_answering() throws Exception {
+        this.index.getChildren(scope, path, "S", "PID", this.loader("CT"));
+        this.time.addAndGet(this.index.expireAfter);
+
+        assertEquals("MR", this.index.getChildren(scope, path, "S", "PID", this.loader("MR")).get(0).getName());
+        assertEquals(2, this.loads.get());
+    }
+
+    @Test
+    public void concurrent_requests_share_one_load() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        WebDavTreeIndex.Loader slowLoader = () -> {
+            this.loads.incrementAndGet();
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Collections.singletonList(WebDavResource.collection("CT", new Date(), new Date()));
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<WebDavResource>> first = executor.submit(() -> this.index.getChildren(scope, path, "S", "PID", slowLoader));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<List<WebDavResource>> second = executor.submit(() -> this.index.getChildren(scope, path, "S", "PID", slowLoader));
+            release.countDown();
+
+            assertEquals("CT", first.get(5, TimeUnit.SECONDS).get(0).getName());
+            assertEquals("CT", second.get(5, TimeUnit.SECONDS).get(0).getName());
+            assertEquals(1, this.loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void missing_collection_and_failures_are_not_indexed() throws Exception {
+        assertNull(this.index.getChildren(scope, path, "S", "PID", () -> null));
+
+        try {
+            this.index.getChildren(scope, path, "S", "PID", () -> {
+                throw new IOException("PACS not reachable");
+            });
+            fail();
+        } catch (IOException err) {
+            assertEquals("PACS not reachable", err.getMessage());
+        }
+
+        assertEquals(0, this.index.getSize());
+    }
+
+    @Test
+    public void oldest_snapshot_is_dropped_when_index_is_full() throws Exception {
+        this.index.maxEntries = 2;
+        this.index.getChildren(scope, "a", "S", null, this.loader("CT"));
+        this.time.incrementAndGet();
+        this.index.getChildren(scope, "b", "S", null, this.loader("CT"));
+        this.time.incrementAndGet();
+        this.index.getChildren(scope, "c", "S", null, this.loader("CT"));
+
+        assertEquals(2, this.index.getSize());
+        this.index.getChildren(scope, "b", "S", null, this.loader("CT"));
+        assertEquals(3, this.loads.get());
+    }
+
+    private WebDavTreeIndex.Loader loader(final String name) {
+        return () -> {
+            this.loads.incrementAndGet();
+            return Collections.singletonList(WebDavResource.collection(name, new Date(0), new Date(0)));
+        };
+    }
+
+}
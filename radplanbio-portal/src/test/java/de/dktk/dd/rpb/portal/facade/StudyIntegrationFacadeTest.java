@@ -0,0 +1,159 @@
+/*
+ * This file is part of RadPlanBio
+ *
+ * Copyright (C) 2013-2022 RPB Team
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.dktk.dd.rpb.portal.facade;
+
+import de.dktk.dd.rpb.core.domain.edc.ClinicalData;
+import de.dktk.dd.rpb.core.domain.edc.Odm;
+import de.dktk.dd.rpb.core.domain.edc.StudySubject;
+import de.dktk.dd.rpb.core.ocsoap.connect.OCConnectorException;
+import de.dktk.dd.rpb.core.service.DataTransformationService;
+import de.dktk.dd.rpb.core.service.IOpenClinicaService;
+import de.dktk.dd.rpb.core.service.support.OdmImportResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.openclinica.ws.data.v1.ImportResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class StudyIntegrationFacadeTest {
+
+    private StudyIntegrationFacade facade;
+    private IOpenClinicaService ocServiceMock;
+
+    @Before
+    public void setUp() throws OCConnectorException {
+        this.ocServiceMock = mock(IOpenClinicaService.class);
+        ImportResponse success = new ImportResponse();
+        success.setResult("Success");
+        when(this.ocServiceMock.importData(anyString())).thenReturn(success);
+        when(this.ocServiceMock.createConnection()).thenReturn(this.ocServiceMock);
+
+        DataTransformationService transformationMock = mock(DataTransformationService.class);
+        when(transformationMock.transformOdmToString(any(Odm.class))).thenAnswer(invocation -> {
+            Odm odm = invocation.getArgument(0);
+            return "<ODM>" + odm.getClinicalDataList().get(0).getStudySubjects().get(0).getSubjectKey() + "</ODM>";
+        });
+
+        this.facade = new StudyIntegrationFacade();
+        this.facade.init(this.ocServiceMock);
+        this.facade.svcDataTransformation = transformationMock;
+    }
+
+    @Test
+    public void failed_chunk_is_reported_with_its_subjects() throws OCConnectorException {
+        when(this.ocServiceMock.importData("<ODM>SS_2</ODM>")).thenThrow(new OCConnectorException("Fail: SS_2"));
+
+        OdmImportResult result = this.facade.importDataInChunks(odm("SS_1", "SS_2", "SS_3"), 1, null);
+
+        assertEquals(3, result.getChunks().size());
+        assertEquals(2, result.getImportedCount());
+        assertTrue(result.hasFailures());
+        assertEquals(1, result.getFirstFailedChunk().getIndex());
+        assertEquals(Collections.singletonList("SS_2"), result.getFailedSubjectKeys());
+        assertEquals("Fail: SS_2", result.getFirstFailedChunk().getMessage());
+        assertEquals("Success", result.getChunks().get(2).getMessage());
+    }
+
+    @Test
+    public void resumed_import_imports_only_chunks_which_failed() throws OCConnectorException {
+        when(this.ocServiceMock.importData("<ODM>SS_2</ODM>"))
+                .thenThrow(new OCConnectorException("Fail: SS_2"))
+                .thenReturn(new ImportResponse());
+
+        OdmImportResult failed = this.facade.importDataInChunks(odm("SS_1", "SS_2", "SS_3"), 1, null);
+        OdmImportResult resumed = this.facade.importDataInChunks(odm("SS_1", "SS_2", "SS_3"), 1, failed);
+
+        assertFalse(resumed.hasFailures());
+        assertEquals(3, resumed.getImportedCount());
+        verify(this.ocServiceMock, times(1)).importData("<ODM>SS_1</ODM>");
+        verify(this.ocServiceMock, times(2)).importData("<ODM>SS_2</ODM>");
+        verify(this.ocServiceMock, times(1)).importData("<ODM>SS_3</ODM>");
+    }
+
+    @Test
+    public void chunk_is_not_imported_when_marshalling_fails() throws OCConnectorException {
+        when(this.facade.svcDataTransformation.transformOdmToString(any(Odm.class))).thenReturn("");
+
+        OdmImportResult result = this.facade.importDataInChunks(odm("SS_1", "SS_2"), 2, null);
+
+        assertEquals(1, result.getChunks().size());
+        assertEquals(2, result.getFailedSubjectKeys().size());
+        verify(this.ocServiceMock, never()).importData(anyString());
+    }
+
+    @Test
+    public void chunks_are_imported_over_connections_of_workers() throws OCConnectorException {
+        IOpenClinicaService mainServiceMock = mock(IOpenClinicaService.class);
+        final List<IOpenClinicaService> connections = Collections.synchronizedList(new ArrayList<>());
+        when(mainServiceMock.createConnection()).thenAnswer(invocation -> {
+            IOpenClinicaService connection = mock(IOpenClinicaService.class);
+            when(connection.importData(anyString())).thenReturn(new ImportResponse());
+            connections.add(connection);
+            return connection;
+        });
+        this.facade.init(mainServiceMock);
+
+        OdmImportResult result = this.facade.importDataInChunks(odm("SS_1", "SS_2", "SS_3", "SS_4", "SS_5", "SS_6"), 1, null);
+
+        assertFalse(result.hasFailures());
+        assertEquals(6, result.getImportedCount());
+        verify(mainServiceMock, never()).importData(anyString());
+        assertTrue(connections.size() >= 1 && connections.size() <= 4);
+        int imported = 0;
+        for (IOpenClinicaService connection : connections) {
+            imported += mockingDetails(connection).getInvocations().stream()
+                    .filter(invocation -> invocation.getMethod().getName().equals("importData"))
+                    .count();
+        }
+        assertEquals(6, imported);
+    }
+
+    private static Odm odm(String... subjectKeys) {
+        ClinicalData clinicalData = new ClinicalData("S_TEST", "v1.0.0");
+        for (String subjectKey : subjectKeys) {
+            StudySubject studySubject = new StudySubject();
+            studySubject.setSubjectKey(subjectKey);
+            clinicalData.getStudySubjects().add(studySubject);
+        }
+
+        List<ClinicalData> clinicalDataList = new ArrayList<>();
+        clinicalDataList.add(clinicalData);
+
+        Odm odm = new Odm();
+        odm.setClinicalDataList(clinicalDataList);
+
+        return odm;
+    }
+
+}